@@ -38,6 +38,10 @@ export const createLobbyManager = () => ({
 
   reconnectAttempts: 0,
   maxReconnectAttempts: 5,
+  // Address of the node that owns the lobby, when the server redirected us to it
+  lobbyNodeAddress: null,
+  // Redirects since the last message, servers can briefly disagree while one joins or leaves
+  lobbyRedirects: 0,
 
   showAvatarPicker: false,
   logsVersion: 0,
@@ -447,7 +451,12 @@ export const createLobbyManager = () => ({
     this.addLogEntry('Connecting to WebSocket server...', 'info');
 
     const wsProtocol = window.location.protocol === 'https:' ? 'wss:' : 'ws:';
-    const wsUrl = `${wsProtocol}//${window.location.host}/ws/lobbies/${this.playerState.lobbyId}`;
+    const wsHost = this.lobbyNodeAddress || window.location.host;
+    let wsUrl = `${wsProtocol}//${wsHost}/ws/lobbies/${this.playerState.lobbyId}`;
+    // Let the server catch a reconnecting client up with a delta instead of the full state
+    if (this.gameState.stateVersion !== undefined) {
+      wsUrl += `?stateVersion=${this.gameState.stateVersion}`;
+    }
 
     this.addLogEntry(`WebSocket URL: ${wsUrl}`, 'info');
 
@@ -501,6 +510,8 @@ export const createLobbyManager = () => ({
       'info',
     );
 
+    this.lobbyRedirects = 0;
+
     try {
       const data = JSON.parse(event.data);
 
@@ -532,6 +543,23 @@ export const createLobbyManager = () => ({
       return; // Don't attempt to reconnect
     }
 
+    // The lobby is owned by another server, which the close reason names. Reconnect there,
+    // or through the load balancer if no address was given.
+    if (event.code === 4001) {
+      this.lobbyNodeAddress = event.reason || null;
+      this.lobbyRedirects++;
+      const redirectDelay = Math.min(250 * (this.lobbyRedirects - 1), 5000);
+      this.addLogEntry(
+        `Lobby moved, reconnecting to ${this.lobbyNodeAddress || 'any server'}`,
+        'info',
+      );
+      setTimeout(() => this.setupWebSocket(), redirectDelay);
+      return;
+    }
+
+    // Go back through the load balancer in case the lobby's server is the one that went away
+    this.lobbyNodeAddress = null;
+
     // Attempt to reconnect if not a normal closure
     if (
       event.code !== 1000 &&
@@ -0,0 +1,83 @@
+import { WebSocketService } from '../../services/websocket-service.js';
+
+/**
+ * Creates a handler for the GAME_STATE_DELTA message type. A delta carries only what
+ * changed since the version this client last acknowledged; it is merged into the last
+ * full state and handed to the GAME_STATE handler.
+ *
+ * @param {Object} lobbyManager - The lobby manager instance
+ * @param {Function} handleGameState - The GAME_STATE handler
+ * @returns {Function} - The message handler function
+ */
+export function createGameStateDeltaHandler(
+  lobbyManager,
+  gameState,
+  playerList,
+  handleGameState,
+) {
+  return function handleGameStateDelta(data) {
+    const previous = gameState.lastStateMessage;
+
+    // A delta is only valid on top of the exact version it was made from
+    if (!previous || data.baseVersion !== gameState.stateVersion) {
+      lobbyManager.addLogEntry(
+        `Game state delta from version ${data.baseVersion} doesn't follow ${gameState.stateVersion}, requesting full state`,
+        'warning',
+      );
+      if (WebSocketService.isConnected()) {
+        WebSocketService.send({
+          type: 'STATE_ACK',
+          version: gameState.stateVersion,
+          resync: true,
+        });
+      }
+      return;
+    }
+
+    const merged = { ...previous, type: 'GAME_STATE', version: data.version };
+    [
+      'state',
+      'gameInstanceId',
+      'currentRound',
+      'roundId',
+      'roundOrder',
+      'totalRounds',
+      'lastRound',
+      'gameConfiguration',
+    ].forEach((field) => {
+      if (data[field] !== undefined) {
+        merged[field] = data[field];
+      }
+    });
+
+    merged.playerScores = applyScoreChanges(
+      previous.playerScores || [],
+      data,
+      playerList,
+    );
+
+    handleGameState(merged);
+  };
+}
+
+function applyScoreChanges(playerScores, data, playerList) {
+  const scores = new Map(
+    playerScores.map((score) => [score.player.id, score]),
+  );
+
+  (data.removedPlayerIds || []).forEach((playerId) => scores.delete(playerId));
+
+  (data.scores || []).forEach((change) => {
+    const player = scores.get(change.playerId)?.player ||
+      playerList.players.find((p) => p.id === change.playerId) || {
+        id: change.playerId,
+      };
+    scores.set(change.playerId, {
+      player,
+      guess: change.guess,
+      totalScore: change.totalScore,
+    });
+  });
+
+  return [...scores.values()].sort((a, b) => b.totalScore - a.totalScore);
+}
@@ -1,5 +1,6 @@
 import { SoundEffectsService } from '../../services/sound-effects-service.js';
 import { HighScoreService } from '../../services/high-score-service.js';
+import { WebSocketService } from '../../services/websocket-service.js';
 
 /**
  * Creates a handler for the GAME_STATE message type
@@ -178,5 +179,14 @@ export function createGameStateHandler(
     if (lobbyState !== newState) {
       gameState.changeGameState(newState);
     }
+
+    // Keep the state this version produced so GAME_STATE_DELTA messages can be applied on top of it
+    gameState.lastStateMessage = data;
+    if (data.version !== undefined) {
+      gameState.stateVersion = data.version;
+      if (WebSocketService.isConnected()) {
+        WebSocketService.send({ type: 'STATE_ACK', version: data.version });
+      }
+    }
   };
 }
@@ -23,6 +23,8 @@ export function logMessageReceived(
     logMessage += `: ${data.player.name}`;
   } else if (messageType === 'PLAYER_STATUS_CHANGE') {
     logMessage += ` for player ${data.playerId}: ${data.active ? 'active' : 'inactive'}`;
+  } else if (messageType === 'PLAYER_STATUSES_CHANGE') {
+    logMessage += ` for ${data.changes ? data.changes.length : 0} players`;
   } else if (messageType === 'GUESS_RESULT') {
     logMessage += ` for round ${data.roundId}`;
   }
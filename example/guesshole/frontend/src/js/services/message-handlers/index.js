@@ -3,9 +3,11 @@ import { createPlayersUpdateHandler } from './players-update-handler.js';
 import { createPlayerUpdatedHandler } from './player-updated-handler.js';
 import { createPlayerJoinedHandler } from './player-joined-handler.js';
 import { createPlayerStatusChangeHandler } from './player-status-change-handler.js';
+import { createPlayerStatusesChangeHandler } from './player-statuses-change-handler.js';
 import { createHeartbeatHandler } from './heartbeat-handler.js';
 import { createPlayerIdAssignedHandler } from './player-id-assigned-handler.js';
 import { createGameStateHandler } from './game-state-handler.js';
+import { createGameStateDeltaHandler } from './game-state-delta-handler.js';
 import { createGuessResultHandler } from './guess-result-handler.js';
 import { createPlayerGuessHandler } from './player-guess-handler.js';
 
@@ -17,18 +19,27 @@ import { createPlayerGuessHandler } from './player-guess-handler.js';
  * @returns {Object} - Map of message types to handler functions
  */
 export function createMessageHandlers(lobbyManager) {
+  const handleGameState = createGameStateHandler(
+    lobbyManager,
+    lobbyManager.roundScoreboard,
+    lobbyManager.gameState,
+    lobbyManager.playerList,
+  );
+
   return {
     PLAYERS_UPDATE: createPlayersUpdateHandler(lobbyManager),
     PLAYER_UPDATED: createPlayerUpdatedHandler(lobbyManager),
     PLAYER_JOINED: createPlayerJoinedHandler(lobbyManager),
     PLAYER_STATUS_CHANGE: createPlayerStatusChangeHandler(lobbyManager),
+    PLAYER_STATUSES_CHANGE: createPlayerStatusesChangeHandler(lobbyManager),
     HEARTBEAT: createHeartbeatHandler(lobbyManager),
     PLAYER_ID_ASSIGNED: createPlayerIdAssignedHandler(lobbyManager),
-    GAME_STATE: createGameStateHandler(
+    GAME_STATE: handleGameState,
+    GAME_STATE_DELTA: createGameStateDeltaHandler(
       lobbyManager,
-      lobbyManager.roundScoreboard,
       lobbyManager.gameState,
       lobbyManager.playerList,
+      handleGameState,
     ),
     GUESS_RESULT: createGuessResultHandler(
       lobbyManager,
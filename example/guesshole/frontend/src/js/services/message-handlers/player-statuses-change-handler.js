@@ -0,0 +1,49 @@
+/**
+ * Creates a handler for the PLAYER_STATUSES_CHANGE message type, which carries the
+ * status changes of several players at once, e.g. when many reconnect after a restart
+ *
+ * @param {Object} lobbyManager - The lobby manager instance
+ * @returns {Function} - The message handler function
+ */
+export function createPlayerStatusesChangeHandler(lobbyManager) {
+  return function handlePlayerStatusesChange(data) {
+    const others = [];
+    for (const change of data.changes) {
+      const player = lobbyManager.playerList.changePlayerStatus(
+        change.playerId,
+        change.active,
+      );
+      if (player && change.playerId !== lobbyManager.playerState.currentPlayerId) {
+        others.push({ player, active: change.active });
+      }
+    }
+
+    lobbyManager.addLogEntry(
+      `Status changed for ${data.changes.length} players`,
+      'info',
+    );
+
+    // One notification for the whole batch rather than one per player
+    if (others.length === 1) {
+      const { player, active } = others[0];
+      lobbyManager.notification.showNotification(
+        `${player.name} is now ${active ? 'online' : 'offline'}`,
+        active ? 'success' : 'warning',
+      );
+    } else if (others.length > 1) {
+      const online = others.filter((other) => other.active).length;
+      const offline = others.length - online;
+      const parts = [];
+      if (online > 0) {
+        parts.push(`${online} players are now online`);
+      }
+      if (offline > 0) {
+        parts.push(`${offline} players are now offline`);
+      }
+      lobbyManager.notification.showNotification(
+        parts.join(', '),
+        offline > 0 ? 'warning' : 'success',
+      );
+    }
+  };
+}
@@ -0,0 +1,138 @@
+package com.guesshole.services;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Option;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures marking every player active again when they all reconnect at once, e.g. after a
+ * restart: a read and a save per player, as the session tracker used to do, against the
+ * batched UPDATE that {@link PlayerStatusWriteCoalescer} issues. The per-player path runs two
+ * statements per player, the batched path one per batch. Each invocation is one whole storm,
+ * against a table shaped like players in a Postgres container started for the trial.
+ * Run through the jmh Gradle task, with Docker available:
+ *
+ * <pre>./gradlew jmh -PjmhIncludes=ReconnectStormBenchmark</pre>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReconnectStormBenchmark {
+    private static final String TABLE = "reconnect_storm_benchmark_players";
+    private static final int POOL_SIZE = 20;
+    // Reconnects handled at once by the per-player path, as with many sessions connecting together
+    private static final int CONCURRENCY = 256;
+
+    @Param({"5000"})
+    public int players;
+
+    @Param({"1000"})
+    public int batchSize;
+
+    private PostgreSQLContainer<?> postgres;
+    private DatabaseClient client;
+    private List<UUID> playerIds;
+
+    @Setup(Level.Trial)
+    public void startDatabase() {
+        postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+        postgres.start();
+
+        ConnectionFactory connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.builder()
+                .option(ConnectionFactoryOptions.DRIVER, "pool")
+                .option(ConnectionFactoryOptions.PROTOCOL, "postgresql")
+                .option(ConnectionFactoryOptions.HOST, postgres.getHost())
+                .option(ConnectionFactoryOptions.PORT, postgres.getFirstMappedPort())
+                .option(ConnectionFactoryOptions.DATABASE, postgres.getDatabaseName())
+                .option(ConnectionFactoryOptions.USER, postgres.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, postgres.getPassword())
+                .option(Option.valueOf("maxSize"), POOL_SIZE)
+                .build());
+        client = DatabaseClient.create(connectionFactory);
+
+        playerIds = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            playerIds.add(UUID.randomUUID());
+        }
+        client.sql("CREATE TABLE " + TABLE + " (id uuid PRIMARY KEY, active boolean NOT NULL)")
+                .then().block();
+    }
+
+    /**
+     * Every player starts each storm inactive
+     */
+    @Setup(Level.Invocation)
+    public void reset() {
+        client.sql("TRUNCATE " + TABLE).then().block();
+        client.sql("INSERT INTO " + TABLE + " (id, active) SELECT id, false FROM UNNEST(CAST(:ids AS uuid[])) AS ids(id)")
+                .bind("ids", playerIds.toArray(new UUID[0]))
+                .then()
+                .block();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDatabase() {
+        postgres.stop();
+    }
+
+    @Benchmark
+    public void readAndSaveEachPlayer() {
+        readAndSaveEach(client, playerIds).block();
+    }
+
+    @Benchmark
+    public void batchedUpdate() {
+        updateInBatches(client, playerIds, batchSize).block();
+    }
+
+    private static Mono<Void> readAndSaveEach(DatabaseClient client, List<UUID> playerIds) {
+        return Flux.fromIterable(playerIds)
+                .flatMap(playerId -> client.sql("SELECT active FROM " + TABLE + " WHERE id = :id")
+                        .bind("id", playerId)
+                        .map(row -> row.get("active", Boolean.class))
+                        .one()
+                        .filter(active -> !active)
+                        .flatMap(active -> client.sql("UPDATE " + TABLE + " SET active = true WHERE id = :id")
+                                .bind("id", playerId)
+                                .then()), CONCURRENCY)
+                .then();
+    }
+
+    private static Mono<Void> updateInBatches(DatabaseClient client, List<UUID> playerIds, int batchSize) {
+        List<Integer> batchStarts = new ArrayList<>();
+        for (int start = 0; start < playerIds.size(); start += batchSize) {
+            batchStarts.add(start);
+        }
+        return Flux.fromIterable(batchStarts)
+                .concatMap(start -> {
+                    int end = Math.min(start + batchSize, playerIds.size());
+                    Boolean[] active = new Boolean[end - start];
+                    Arrays.fill(active, true);
+                    // The statement PlayerRepository.updateActiveAll runs
+                    return client.sql("UPDATE " + TABLE + " SET active = v.active " +
+                                    "FROM UNNEST(CAST(:ids AS uuid[]), CAST(:active AS boolean[])) AS v(id, active) " +
+                                    "WHERE " + TABLE + ".id = v.id AND " + TABLE + ".active <> v.active " +
+                                    "RETURNING " + TABLE + ".*")
+                            .bind("ids", playerIds.subList(start, end).toArray(new UUID[0]))
+                            .bind("active", active)
+                            .map(row -> row.get("id", UUID.class))
+                            .all();
+                })
+                .then();
+    }
+}
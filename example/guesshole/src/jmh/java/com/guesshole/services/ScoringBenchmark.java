@@ -0,0 +1,104 @@
+package com.guesshole.services;
+
+import com.guesshole.config.GameRoundProperties;
+import com.guesshole.entities.LocationPoint;
+import com.guesshole.entities.ScoreMultiplier;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures scoring throughput per guess: the compiled {@link ScoringEngine} rules for the base
+ * score and for the full score with multipliers, against the same rules compiled with settings read
+ * from the environment on every guess. The jmh task runs with the gc profiler, which reports
+ * the bytes allocated per guess as gc.alloc.rate.norm. Run through the jmh Gradle task:
+ *
+ * <pre>./gradlew jmh -PjmhIncludes=ScoringBenchmark</pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScoringBenchmark {
+    // Distances cycle through 0-6000km, a multiple of the other input periods
+    private static final int INPUT_PERIOD = 6000;
+
+    private ScoringEngine scoringEngine;
+    private ScoringRules rules;
+    private StandardEnvironment environment;
+    private LocationPoint target;
+    private LocationPoint[] guesses;
+    // Varies the distance, guess time and guessed location between invocations
+    private int i;
+
+    @Setup
+    public void setUp() {
+        scoringEngine = new ScoringEngine(List.of(new CityGuesserScoringRules()), new GameRoundProperties());
+        rules = scoringEngine.rulesFor(null);
+
+        environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("scoring", Map.of(
+                "app.game-round.maxDistanceThreshold", "5000.0",
+                "app.game-round.minDistanceThreshold", "10.0",
+                "app.game-round.distanceScoreMultiplier", "1.0",
+                "app.game-round.timeScoreMultiplier", "1.0",
+                "app.game-round.graceTimeThreshold", "5.0")));
+
+        target = location(1L, "New Zealand", "Wellington", "Wellington City");
+        guesses = new LocationPoint[]{
+                location(2L, "New Zealand", "Wellington", "Wellington City"),
+                location(3L, "New Zealand", "Auckland", "Auckland"),
+                location(4L, "Australia", "Victoria", "Melbourne")
+        };
+    }
+
+    @Benchmark
+    public int environmentBaseScore() {
+        next();
+        GameRoundProperties properties = new GameRoundProperties();
+        properties.setMaxDistanceThreshold(environment.getProperty("app.game-round.maxDistanceThreshold", Double.class, 5000.0));
+        properties.setMinDistanceThreshold(environment.getProperty("app.game-round.minDistanceThreshold", Double.class, 10.0));
+        properties.setDistanceScoreMultiplier(environment.getProperty("app.game-round.distanceScoreMultiplier", Double.class, 1.0));
+        properties.setTimeScoreMultiplier(environment.getProperty("app.game-round.timeScoreMultiplier", Double.class, 1.0));
+        properties.setGraceTimeThreshold(environment.getProperty("app.game-round.graceTimeThreshold", Double.class, 5.0));
+        return scoringEngine.preview(null, properties).baseScore(distance(i), 60, i % 60);
+    }
+
+    @Benchmark
+    public int compiledBaseScore() {
+        next();
+        return rules.baseScore(distance(i), 60, i % 60);
+    }
+
+    @Benchmark
+    public int compiledFullScore() {
+        next();
+        int baseScore = rules.baseScore(distance(i), 60, i % 60);
+        List<ScoreMultiplier> multipliers = rules.multipliers(i % 60, (i & 1) == 0, false, guesses[i % 3], target);
+        return rules.finalScore(baseScore, multipliers);
+    }
+
+    private void next() {
+        i = (i + 1) % INPUT_PERIOD;
+    }
+
+    private static double distance(int i) {
+        return i + 0.5;
+    }
+
+    private static LocationPoint location(long id, String country, String region, String district) {
+        return new LocationPoint.Builder()
+                .id(id)
+                .coordinates(-41.2865, 174.7762)
+                .level0("Country", country, "NZL")
+                .level1("Region", region, "NZL.17_1")
+                .level2("District", district, "NZL.17.6_1")
+                .build();
+    }
+}
@@ -0,0 +1,142 @@
+package com.guesshole.websocket.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guesshole.entities.*;
+import com.guesshole.websocket.messages.outgoing.GameStateMessage;
+import com.guesshole.websocket.messages.outgoing.GuessResultMessage;
+import com.guesshole.websocket.messages.outgoing.HeartbeatMessage;
+import com.guesshole.websocket.messages.outgoing.PlayersUpdateMessage;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the WebSocket codecs on representative messages: the time to encode a message,
+ * and to decode it back into a tree the way incoming messages are read. The encode benchmark
+ * also reports the size of each frame in bytes as the frameBytes counter. Run through the jmh
+ * Gradle task:
+ *
+ * <pre>./gradlew jmh -PjmhIncludes=CodecBenchmark</pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    @Param({"HEARTBEAT", "PLAYERS_UPDATE", "GUESS_RESULT", "GAME_STATE"})
+    public String message;
+
+    @Param({MessageCodecRegistry.JSON, MessageCodecRegistry.CBOR, MessageCodecRegistry.SMILE})
+    public String subprotocol;
+
+    @Param({"8"})
+    public int players;
+
+    /**
+     * The size of the last frame encoded, reported next to the encode time
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class FrameSize {
+        public long frameBytes;
+    }
+
+    private ObjectMapper objectMapper;
+    private Object payload;
+    private byte[] frame;
+
+    @Setup
+    public void setUp() throws Exception {
+        MessageCodecRegistry registry = new MessageCodecRegistry(
+                Jackson2ObjectMapperBuilder.json().build(), Jackson2ObjectMapperBuilder.json());
+        objectMapper = registry.getCodecs().stream()
+                .filter(codec -> codec.getSubprotocol().equals(subprotocol))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown subprotocol " + subprotocol))
+                .getObjectMapper();
+        payload = sampleMessages(players).get(message);
+        frame = objectMapper.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public byte[] encode(FrameSize size) throws Exception {
+        byte[] encoded = objectMapper.writeValueAsBytes(payload);
+        size.frameBytes = encoded.length;
+        return encoded;
+    }
+
+    @Benchmark
+    public JsonNode decode() throws Exception {
+        return objectMapper.readTree(frame);
+    }
+
+    private static Map<String, Object> sampleMessages(int playerCount) {
+        UUID lobbyId = UUID.randomUUID();
+        UUID gameInstanceId = UUID.randomUUID();
+        Round round = new Round(2, "dQw4w9WgXcQ", 42, 60, new BigDecimal("-41.2865"), new BigDecimal("174.7762"), 1L);
+        round.setId(UUID.randomUUID());
+        round.setGameInstanceId(gameInstanceId);
+        round.setLocationPoint(location(-41.2865, 174.7762));
+
+        List<Player> players = new ArrayList<>();
+        List<GameStateMessage.PlayerScore> scores = new ArrayList<>();
+        GuessResultMessage guessResult = null;
+        for (int i = 0; i < playerCount; i++) {
+            Player player = new Player("Player " + i, lobbyId, i == 0, "avatar-" + i);
+            player.setId(UUID.randomUUID());
+            players.add(player);
+
+            List<ScoreMultiplier> multipliers = List.of(
+                    new ScoreMultiplier(1.5f, MultiplierType.CORRECT_COUNTRY, "Correct country", "You guessed the right country"),
+                    new ScoreMultiplier(1.1f, MultiplierType.TRIGGER_HAPPY, "Trigger happy", "You guessed in the first few seconds"));
+            Guess guess = new Guess(player.getId(), round.getId(), gameInstanceId, new BigDecimal("-36.8485"),
+                    new BigDecimal("174.7633"), 2L, 493.2, 3120, 5148, multipliers, 60, 14);
+            guess.setId(UUID.randomUUID());
+            guess.setLocationPoint(location(-36.8485, 174.7633));
+            scores.add(new GameStateMessage.PlayerScore(player, guess, 5148 * (i + 1)));
+
+            if (guessResult == null) {
+                guessResult = new GuessResultMessage(guess.getId(), round.getId(), player, guess.getLocationPoint(),
+                        round.getLocationPoint(), 493.2, 3120, 5148, multipliers);
+            }
+        }
+
+        GameStateMessage scoreboard = new GameStateMessage();
+        scoreboard.setState("ROUND_SCOREBOARD");
+        scoreboard.setGameInstanceId(gameInstanceId);
+        scoreboard.setCurrentRound(round);
+        scoreboard.setTotalRounds(5);
+        scoreboard.setPlayerScores(scores);
+        scoreboard.setRoundOrder(round.getRoundOrder());
+        scoreboard.setRoundId(round.getId());
+        scoreboard.setGameConfiguration(new GameConfiguration(GameType.CITY_GUESSER, 5, 60, "WORLD"));
+
+        Map<String, Object> messages = new LinkedHashMap<>();
+        messages.put("HEARTBEAT", new HeartbeatMessage());
+        messages.put("PLAYERS_UPDATE", new PlayersUpdateMessage(players));
+        messages.put("GUESS_RESULT", guessResult);
+        messages.put("GAME_STATE", scoreboard);
+        return messages;
+    }
+
+    private static LocationPoint location(double latitude, double longitude) {
+        return new LocationPoint.Builder()
+                .id(1L)
+                .coordinates(latitude, longitude)
+                .level0("Country", "New Zealand", "NZL")
+                .level1("Region", "Wellington", "NZL.17_1")
+                .level2("District", "Wellington City", "NZL.17.6_1")
+                .build();
+    }
+}
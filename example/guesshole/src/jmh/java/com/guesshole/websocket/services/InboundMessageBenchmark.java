@@ -0,0 +1,158 @@
+package com.guesshole.websocket.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guesshole.websocket.codec.MessageCodec;
+import com.guesshole.websocket.codec.MessageCodecRegistry;
+import com.guesshole.websocket.handler.MessageHandler;
+import com.guesshole.websocket.messages.incoming.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding incoming frames the way {@link MessageHandlerRegistry} does, streaming the
+ * type and binding the rest, against building a tree and then binding the tree, for a frame of
+ * each incoming message type in each codec. Run through the jmh Gradle task:
+ *
+ * <pre>./gradlew jmh -PjmhIncludes=InboundMessageBenchmark</pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InboundMessageBenchmark {
+
+    /**
+     * Handler that only keeps the bound message so binding can't be optimised away
+     */
+    private static class BindingOnlyHandler<T> implements MessageHandler<T> {
+        private final String messageType;
+        private final Class<T> messageClass;
+        private Object last;
+
+        private BindingOnlyHandler(String messageType, Class<T> messageClass) {
+            this.messageType = messageType;
+            this.messageClass = messageClass;
+        }
+
+        @Override
+        public String getMessageType() {
+            return messageType;
+        }
+
+        @Override
+        public Class<T> getMessageClass() {
+            return messageClass;
+        }
+
+        @Override
+        public Mono<Void> handle(T message, WebSocketSession session, UUID lobbyId) {
+            last = message;
+            return Mono.empty();
+        }
+    }
+
+    @Param({"GUESS_SUBMITTED", "HEARTBEAT_ACK", "KICK_PLAYER", "PLAYER_RECONNECT", "RETURN_TO_LOBBY",
+            "START_GAME", "START_NEXT_ROUND", "STATE_ACK", "UPDATE_PLAYER"})
+    public String messageType;
+
+    @Param({MessageCodecRegistry.JSON, MessageCodecRegistry.CBOR, MessageCodecRegistry.SMILE})
+    public String subprotocol;
+
+    private MessageHandlerRegistry registry;
+    private BindingOnlyHandler<?> handler;
+    private MessageCodec codec;
+    private byte[] frame;
+
+    @Setup
+    public void setUp() throws Exception {
+        MessageCodecRegistry codecs = new MessageCodecRegistry(
+                Jackson2ObjectMapperBuilder.json().build(), Jackson2ObjectMapperBuilder.json());
+        codec = codecs.getCodecs().stream()
+                .filter(candidate -> candidate.getSubprotocol().equals(subprotocol))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown subprotocol " + subprotocol));
+
+        List<BindingOnlyHandler<?>> handlers = List.of(
+                new BindingOnlyHandler<>("GUESS_SUBMITTED", GuessSubmittedMessage.class),
+                new BindingOnlyHandler<>("HEARTBEAT_ACK", Void.class),
+                new BindingOnlyHandler<>("KICK_PLAYER", KickPlayerMessage.class),
+                new BindingOnlyHandler<>("PLAYER_RECONNECT", PlayerReconnectMessage.class),
+                new BindingOnlyHandler<>("RETURN_TO_LOBBY", Void.class),
+                new BindingOnlyHandler<>("START_GAME", StartGameMessage.class),
+                new BindingOnlyHandler<>("START_NEXT_ROUND", StartNextRoundMessage.class),
+                new BindingOnlyHandler<>("STATE_ACK", StateAckMessage.class),
+                new BindingOnlyHandler<>("UPDATE_PLAYER", UpdatePlayerMessage.class));
+        registry = new MessageHandlerRegistry(new ArrayList<>(handlers));
+        handler = handlers.stream()
+                .filter(candidate -> candidate.getMessageType().equals(messageType))
+                .findFirst()
+                .orElseThrow();
+        frame = codec.getObjectMapper().writeValueAsBytes(sampleFrames().get(messageType));
+    }
+
+    /**
+     * The previous decoding: the whole frame as a tree, then the tree bound to the message class
+     */
+    @Benchmark
+    public void tree(Blackhole blackhole) throws Exception {
+        ObjectMapper objectMapper = codec.getObjectMapper();
+        JsonNode rootNode = objectMapper.readTree(frame);
+        blackhole.consume(rootNode.path("type").asText(""));
+        if (handler.getMessageClass() != Void.class) {
+            blackhole.consume(objectMapper.treeToValue(rootNode, handler.getMessageClass()));
+        }
+    }
+
+    @Benchmark
+    public void stream(Blackhole blackhole) {
+        // Reading a frame consumes its buffer, so each invocation gets a fresh one as a real frame would
+        WebSocketMessage message = new WebSocketMessage(codec.getFrameType(),
+                DefaultDataBufferFactory.sharedInstance.wrap(frame));
+        blackhole.consume(registry.handleMessage(message, codec, null, null));
+        blackhole.consume(handler.last);
+    }
+
+    /**
+     * Frames as the client sends them, type first
+     */
+    private static Map<String, Map<String, Object>> sampleFrames() {
+        Map<String, Map<String, Object>> frames = new LinkedHashMap<>();
+        frames.put("GUESS_SUBMITTED", frame("GUESS_SUBMITTED",
+                "latitude", -36.848461, "longitude", 174.763336, "roundId", UUID.randomUUID(),
+                "roundDuration", 60, "guessTime", 14));
+        frames.put("HEARTBEAT_ACK", frame("HEARTBEAT_ACK"));
+        frames.put("KICK_PLAYER", frame("KICK_PLAYER", "playerId", UUID.randomUUID()));
+        frames.put("PLAYER_RECONNECT", frame("PLAYER_RECONNECT", "playerId", UUID.randomUUID()));
+        frames.put("RETURN_TO_LOBBY", frame("RETURN_TO_LOBBY"));
+        frames.put("START_GAME", frame("START_GAME", "rounds", 5, "roundLength", 60, "geoType", "WORLD"));
+        frames.put("START_NEXT_ROUND", frame("START_NEXT_ROUND", "currentRoundId", UUID.randomUUID()));
+        frames.put("STATE_ACK", frame("STATE_ACK", "version", System.currentTimeMillis()));
+        frames.put("UPDATE_PLAYER", frame("UPDATE_PLAYER",
+                "playerId", UUID.randomUUID(), "name", "Player 1", "avatar", "avatar-1"));
+        return frames;
+    }
+
+    private static Map<String, Object> frame(String type, Object... fields) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", type);
+        for (int i = 0; i < fields.length; i += 2) {
+            frame.put((String) fields[i], fields[i + 1]);
+        }
+        return frame;
+    }
+}
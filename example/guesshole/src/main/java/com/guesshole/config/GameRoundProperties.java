@@ -0,0 +1,87 @@
+package com.guesshole.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * The app.game-round.* scoring settings, bound once at startup. Changed at runtime
+ * through {@link com.guesshole.services.ScoringEngine#reload}.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.game-round")
+public class GameRoundProperties {
+    // Guesses this far away or further get no distance score
+    private double maxDistanceThreshold = 5000.0;
+
+    // Guesses this close or closer get the full distance score
+    private double minDistanceThreshold = 10.0;
+
+    private double distanceScoreMultiplier = 1.0;
+
+    private double timeScoreMultiplier = 1.0;
+
+    // Guesses made within this many seconds get the full time bonus
+    private double graceTimeThreshold = 5.0;
+
+    public GameRoundProperties() {
+    }
+
+    public GameRoundProperties(GameRoundProperties other) {
+        this.maxDistanceThreshold = other.maxDistanceThreshold;
+        this.minDistanceThreshold = other.minDistanceThreshold;
+        this.distanceScoreMultiplier = other.distanceScoreMultiplier;
+        this.timeScoreMultiplier = other.timeScoreMultiplier;
+        this.graceTimeThreshold = other.graceTimeThreshold;
+    }
+
+    public double getMaxDistanceThreshold() {
+        return maxDistanceThreshold;
+    }
+
+    public void setMaxDistanceThreshold(double maxDistanceThreshold) {
+        this.maxDistanceThreshold = maxDistanceThreshold;
+    }
+
+    public double getMinDistanceThreshold() {
+        return minDistanceThreshold;
+    }
+
+    public void setMinDistanceThreshold(double minDistanceThreshold) {
+        this.minDistanceThreshold = minDistanceThreshold;
+    }
+
+    public double getDistanceScoreMultiplier() {
+        return distanceScoreMultiplier;
+    }
+
+    public void setDistanceScoreMultiplier(double distanceScoreMultiplier) {
+        this.distanceScoreMultiplier = distanceScoreMultiplier;
+    }
+
+    public double getTimeScoreMultiplier() {
+        return timeScoreMultiplier;
+    }
+
+    public void setTimeScoreMultiplier(double timeScoreMultiplier) {
+        this.timeScoreMultiplier = timeScoreMultiplier;
+    }
+
+    public double getGraceTimeThreshold() {
+        return graceTimeThreshold;
+    }
+
+    public void setGraceTimeThreshold(double graceTimeThreshold) {
+        this.graceTimeThreshold = graceTimeThreshold;
+    }
+
+    @Override
+    public String toString() {
+        return "GameRoundProperties{" +
+                "maxDistanceThreshold=" + maxDistanceThreshold +
+                ", minDistanceThreshold=" + minDistanceThreshold +
+                ", distanceScoreMultiplier=" + distanceScoreMultiplier +
+                ", timeScoreMultiplier=" + timeScoreMultiplier +
+                ", graceTimeThreshold=" + graceTimeThreshold +
+                '}';
+    }
+}
@@ -0,0 +1,43 @@
+package com.guesshole.config;
+
+import com.guesshole.entities.ScoreMultipliers;
+import io.r2dbc.postgresql.codec.Json;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+
+import java.util.List;
+
+/**
+ * Conversions for column types Spring Data R2DBC doesn't map by itself
+ */
+@Configuration
+public class R2dbcConfig {
+
+    @Bean
+    public R2dbcCustomConversions r2dbcCustomConversions() {
+        return R2dbcCustomConversions.of(PostgresDialect.INSTANCE, List.of(
+                new ScoreMultipliersWritingConverter(),
+                new ScoreMultipliersReadingConverter()));
+    }
+
+    @WritingConverter
+    static class ScoreMultipliersWritingConverter implements Converter<ScoreMultipliers, Json> {
+        @Override
+        public Json convert(ScoreMultipliers source) {
+            return Json.of(source.toJson());
+        }
+    }
+
+    @ReadingConverter
+    static class ScoreMultipliersReadingConverter implements Converter<Json, ScoreMultipliers> {
+        @Override
+        public ScoreMultipliers convert(Json source) {
+            return ScoreMultipliers.fromJson(source.asString());
+        }
+    }
+}
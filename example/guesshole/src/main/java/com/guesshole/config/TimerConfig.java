@@ -0,0 +1,26 @@
+package com.guesshole.config;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node-wide hashed timing wheel for the many short, coarse timeouts the game needs
+ * (heartbeats, round deadlines, reconnection windows). Scheduling on the wheel is O(1)
+ * and needs no thread or scheduler task per timeout.
+ */
+@Configuration
+public class TimerConfig {
+
+    @Bean(destroyMethod = "stop")
+    public HashedWheelTimer timerWheel() {
+        // 100ms resolution is plenty for second-granularity game timers
+        HashedWheelTimer timer = new HashedWheelTimer(
+                new DefaultThreadFactory("timer-wheel", true), 100, TimeUnit.MILLISECONDS, 512);
+        timer.start();
+        return timer;
+    }
+}
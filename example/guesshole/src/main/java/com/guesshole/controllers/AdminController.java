@@ -2,6 +2,7 @@ package com.guesshole.controllers;
 
 import com.guesshole.entities.RoundTemplate;
 import com.guesshole.repositories.RoundTemplateRepository;
+import com.guesshole.services.RoundTemplateService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,10 +29,13 @@ public class AdminController {
 
     private static final Logger log = LoggerFactory.getLogger(AdminController.class);
     private final RoundTemplateRepository roundTemplateRepository;
+    private final RoundTemplateService roundTemplateService;
 
     @Autowired
-    public AdminController(RoundTemplateRepository roundTemplateRepository) {
+    public AdminController(RoundTemplateRepository roundTemplateRepository,
+                           RoundTemplateService roundTemplateService) {
         this.roundTemplateRepository = roundTemplateRepository;
+        this.roundTemplateService = roundTemplateService;
     }
 
     @GetMapping("/videos")
@@ -126,7 +130,7 @@ public class AdminController {
         log.info("Updating coordinates for template with ID: {}, lat: {}, lng: {}",
                 id, request.getLatitude(), request.getLongitude());
 
-        return roundTemplateRepository.updateCoordinates(id, request.getLatitude(), request.getLongitude())
+        return roundTemplateService.updateCoordinates(id, request.getLatitude(), request.getLongitude())
                 .map(rowsAffected -> {
                     if (rowsAffected > 0) {
                         log.info("Successfully updated coordinates for template with ID: {}", id);
@@ -171,7 +175,7 @@ public class AdminController {
         return roundTemplateRepository.findById(id)
                 .flatMap(template -> {
                     template.setApproveAt(Instant.now());
-                    return roundTemplateRepository.save(template);
+                    return roundTemplateService.save(template);
                 })
                 .map(savedTemplate -> {
                     log.info("Successfully approved video template with ID: {}", id);
@@ -186,7 +190,7 @@ public class AdminController {
         log.info("Deleting video template with ID: {}", id);
 
         return roundTemplateRepository.findById(id)
-                .flatMap(template -> roundTemplateRepository.delete(template)
+                .flatMap(template -> roundTemplateService.delete(template)
                         .then(Mono.just(ResponseEntity.ok(new ApiResponse("Video deleted successfully", true))))
                 )
                 .defaultIfEmpty(ResponseEntity.notFound().build())
@@ -209,7 +213,7 @@ public class AdminController {
         return roundTemplateRepository.findById(id)
                 .flatMap(template -> {
                     template.setVideoLength(request.getVideoLength());
-                    return roundTemplateRepository.save(template);
+                    return roundTemplateService.save(template);
                 })
                 .map(savedTemplate -> {
                     log.info("Successfully updated video length for template with ID: {}", id);
@@ -1,7 +1,6 @@
 package com.guesshole.controllers;
 
 import com.guesshole.entities.RoundTemplate;
-import com.guesshole.repositories.RoundTemplateRepository;
 import com.guesshole.services.RoundTemplateService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,13 +26,10 @@ public class AdminRoundTemplateController {
     private static final Logger logger = LoggerFactory.getLogger(AdminRoundTemplateController.class);
 
     private final RoundTemplateService roundTemplateService;
-    private final RoundTemplateRepository roundTemplateRepository;
 
     @Autowired
-    public AdminRoundTemplateController(RoundTemplateService roundTemplateService,
-                                        RoundTemplateRepository roundTemplateRepository) {
+    public AdminRoundTemplateController(RoundTemplateService roundTemplateService) {
         this.roundTemplateService = roundTemplateService;
-        this.roundTemplateRepository = roundTemplateRepository;
     }
 
     /**
@@ -119,7 +115,7 @@ public class AdminRoundTemplateController {
 
         return roundTemplateService.findById(id)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Round template not found")))
-                .flatMap(template -> roundTemplateRepository.delete(template)
+                .flatMap(template -> roundTemplateService.delete(template)
                         .then(Mono.just(ResponseEntity.ok(Map.of("message", "Round template deleted successfully"))))
                 )
                 .onErrorResume(e -> {
@@ -0,0 +1,55 @@
+package com.guesshole.controllers;
+
+import com.guesshole.config.GameRoundProperties;
+import com.guesshole.services.ScoringEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Controller for viewing and changing the scoring settings of a running node.
+ * Changes apply to guesses scored after the change and last until the node restarts.
+ */
+@RestController
+@RequestMapping("/admin/api/scoring")
+public class AdminScoringController {
+    private static final Logger logger = LoggerFactory.getLogger(AdminScoringController.class);
+
+    private final ScoringEngine scoringEngine;
+
+    public AdminScoringController(ScoringEngine scoringEngine) {
+        this.scoringEngine = scoringEngine;
+    }
+
+    /**
+     * Get the scoring settings in use.
+     *
+     * @return A Mono containing the current settings
+     */
+    @GetMapping
+    public Mono<GameRoundProperties> getSettings() {
+        return Mono.fromSupplier(scoringEngine::getProperties);
+    }
+
+    /**
+     * Replace the scoring settings and recompile the scoring rules.
+     *
+     * @param properties The new settings
+     * @return A Mono containing the settings now in use
+     */
+    @PutMapping
+    public Mono<GameRoundProperties> updateSettings(@RequestBody GameRoundProperties properties) {
+        logger.info("Updating scoring settings to {}", properties);
+        return Mono.fromSupplier(() -> {
+            try {
+                scoringEngine.reload(properties);
+                return scoringEngine.getProperties();
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+        });
+    }
+}
@@ -53,7 +53,7 @@ public class LobbyController {
         Lobby lobby = new Lobby("Solo Game", "private");
         lobby.setId(UUID.randomUUID());
 
-        return lobbyRepository.insertWithGeneratedShortCode(lobby)
+        return lobbyService.insertLobby(lobby)
                 .doOnSuccess(savedLobby -> log.info("Solo lobby saved successfully: {}", savedLobby))
                 .doOnError(e -> log.error("Error saving solo lobby: {}", e.getMessage(), e))
                 .flatMap(savedLobby -> {
@@ -104,7 +104,7 @@ public class LobbyController {
                     Lobby lobby = new Lobby(lobbyName, privacy);
                     lobby.setId(UUID.randomUUID());
 
-                    return lobbyRepository.insertWithGeneratedShortCode(lobby)
+                    return lobbyService.insertLobby(lobby)
                             .doOnSuccess(savedLobby -> log.info("Lobby saved successfully: {}", savedLobby))
                             .doOnError(e -> log.error("Error saving lobby: {}", e.getMessage(), e))
                             .flatMap(savedLobby -> {
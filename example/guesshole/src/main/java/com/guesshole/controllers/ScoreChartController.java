@@ -1,14 +1,18 @@
 package com.guesshole.controllers;
 
+import com.guesshole.config.GameRoundProperties;
 import com.guesshole.services.GuessService;
+import com.guesshole.services.ScoringEngine;
+import com.guesshole.services.ScoringRules;
 import com.guesshole.utils.ScoreCalculator;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
@@ -17,11 +21,11 @@ import java.util.Map;
 @Controller
 public class ScoreChartController {
 
-    private final ConfigurableEnvironment environment;
+    private final ScoringEngine scoringEngine;
 
     @Autowired
-    public ScoreChartController(ConfigurableEnvironment environment) {
-        this.environment = environment;
+    public ScoreChartController(ScoringEngine scoringEngine) {
+        this.scoringEngine = scoringEngine;
     }
 
     @GetMapping("/scorechart")
@@ -34,31 +38,31 @@ public class ScoreChartController {
             @RequestParam(required = false) Double graceTimeThreshold,
             Model model) {
 
-        if (maxDistanceThreshold == null) {
-            maxDistanceThreshold = environment.getProperty("app.game-round.maxDistanceThreshold", Double.class, 5000.0);
+        GameRoundProperties properties = scoringEngine.getProperties();
+        if (maxDistanceThreshold != null) {
+            properties.setMaxDistanceThreshold(maxDistanceThreshold);
         }
-        if (minDistanceThreshold == null) {
-            minDistanceThreshold = environment.getProperty("app.game-round.minDistanceThreshold", Double.class, 10.0);
+        if (minDistanceThreshold != null) {
+            properties.setMinDistanceThreshold(minDistanceThreshold);
         }
-        if (distanceScoreMultiplier == null) {
-            distanceScoreMultiplier = environment.getProperty("app.game-round.distanceScoreMultiplier", Double.class, 1.0);
+        if (distanceScoreMultiplier != null) {
+            properties.setDistanceScoreMultiplier(distanceScoreMultiplier);
         }
-        if (timeScoreMultiplier == null) {
-            timeScoreMultiplier = environment.getProperty("app.game-round.timeScoreMultiplier", Double.class, 1.0);
+        if (timeScoreMultiplier != null) {
+            properties.setTimeScoreMultiplier(timeScoreMultiplier);
         }
-        if (graceTimeThreshold == null) {
-            graceTimeThreshold = environment.getProperty("app.game-round.graceTimeThreshold", Double.class, 5.0);
+        if (graceTimeThreshold != null) {
+            properties.setGraceTimeThreshold(graceTimeThreshold);
         }
 
-        // Get chart data with current environment settings
-        Map<String, Object> chartData = ScoreCalculator.getChartData(
-                roundDuration,
-                maxDistanceThreshold,
-                minDistanceThreshold,
-                distanceScoreMultiplier,
-                timeScoreMultiplier,
-                graceTimeThreshold
-        );
+        // Score with the engine's rules, compiled against any overridden settings without changing the live ones
+        ScoringRules rules;
+        try {
+            rules = scoringEngine.preview(null, properties);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+        Map<String, Object> chartData = ScoreCalculator.getChartData(rules, properties, roundDuration);
         model.addAttribute("chartData", chartData);
 
         return Mono.just("pages/scorechart");
@@ -69,14 +73,9 @@ public class ScoreChartController {
     public Mono<String> getScoreChartSvg(
             @RequestParam(defaultValue = "60") Integer roundDuration) {
 
-        double maxDistanceThreshold = environment.getProperty("app.game-round.maxDistanceThreshold", Double.class, 5000.0);
-        double minDistanceThreshold = environment.getProperty("app.game-round.minDistanceThreshold", Double.class, 10.0);
-        double distanceScoreMultiplier = environment.getProperty("app.game-round.distanceScoreMultiplier", Double.class, 1.0);
-        double timeScoreMultiplier = environment.getProperty("app.game-round.timeScoreMultiplier", Double.class, 1.0);
-        double graceTimeThreshold = environment.getProperty("app.game-round.graceTimeThreshold", Double.class, 5.0);
-
-        // Get chart data
-        Map<String, Object> chartData = ScoreCalculator.getChartData(roundDuration, maxDistanceThreshold, minDistanceThreshold, distanceScoreMultiplier, timeScoreMultiplier, graceTimeThreshold);
+        // Get chart data for the rules in use
+        Map<String, Object> chartData = ScoreCalculator.getChartData(
+                scoringEngine.rulesFor(null), scoringEngine.getProperties(), roundDuration);
 
         // Generate SVG directly without relying on Thymeleaf
         StringBuilder svg = new StringBuilder();
@@ -0,0 +1,40 @@
+package com.guesshole.dto;
+
+import com.guesshole.entities.Guess;
+
+import java.util.UUID;
+
+/**
+ * One player's row on a round scoreboard: their guess for the round, with its location
+ * point and score multipliers attached, and their total score across the game instance.
+ */
+public class ScoreboardEntry {
+    private final Guess guess;
+    private final int totalScore;
+
+    public ScoreboardEntry(Guess guess, int totalScore) {
+        this.guess = guess;
+        this.totalScore = totalScore;
+    }
+
+    public UUID getPlayerId() {
+        return guess.getPlayerId();
+    }
+
+    public Guess getGuess() {
+        return guess;
+    }
+
+    public int getTotalScore() {
+        return totalScore;
+    }
+
+    @Override
+    public String toString() {
+        return "ScoreboardEntry{" +
+                "playerId=" + guess.getPlayerId() +
+                ", guessId=" + guess.getId() +
+                ", totalScore=" + totalScore +
+                '}';
+    }
+}
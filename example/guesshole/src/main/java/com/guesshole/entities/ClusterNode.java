@@ -0,0 +1,90 @@
+package com.guesshole.entities;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Entity representing an application node taking part in lobby ownership
+ */
+@Table("cluster_node")
+public class ClusterNode {
+    @Id
+    @Column("node_id")
+    private UUID nodeId;
+
+    // host:port other nodes and clients reach this node's WebSocket endpoint at
+    @Column("address")
+    private String address;
+
+    @Column("started_at")
+    private Instant startedAt;
+
+    @Column("last_heartbeat")
+    private Instant lastHeartbeat;
+
+    public ClusterNode() {
+    }
+
+    public ClusterNode(UUID nodeId, String address) {
+        this.nodeId = nodeId;
+        this.address = address;
+    }
+
+    public UUID getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(UUID nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Instant getLastHeartbeat() {
+        return lastHeartbeat;
+    }
+
+    public void setLastHeartbeat(Instant lastHeartbeat) {
+        this.lastHeartbeat = lastHeartbeat;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ClusterNode)) return false;
+        ClusterNode other = (ClusterNode) o;
+        return Objects.equals(nodeId, other.nodeId) && Objects.equals(address, other.address);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(nodeId, address);
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterNode{" +
+                "nodeId=" + nodeId +
+                ", address='" + address + '\'' +
+                '}';
+    }
+}
@@ -4,6 +4,7 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -27,6 +28,15 @@ public class GameState {
     @Column("game_instance_id")
     private UUID gameInstanceId;
 
+    @Column("deadline_type")
+    private String deadlineType;
+
+    @Column("deadline_round_id")
+    private UUID deadlineRoundId;
+
+    @Column("deadline_at")
+    private Instant deadlineAt;
+
     @Column("created_at")
     private LocalDateTime createdAt;
 
@@ -85,6 +95,30 @@ public class GameState {
         this.gameInstanceId = gameInstanceId;
     }
 
+    public String getDeadlineType() {
+        return deadlineType;
+    }
+
+    public void setDeadlineType(String deadlineType) {
+        this.deadlineType = deadlineType;
+    }
+
+    public UUID getDeadlineRoundId() {
+        return deadlineRoundId;
+    }
+
+    public void setDeadlineRoundId(UUID deadlineRoundId) {
+        this.deadlineRoundId = deadlineRoundId;
+    }
+
+    public Instant getDeadlineAt() {
+        return deadlineAt;
+    }
+
+    public void setDeadlineAt(Instant deadlineAt) {
+        this.deadlineAt = deadlineAt;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -109,6 +143,9 @@ public class GameState {
                 ", roundId=" + roundId +
                 ", lobbyId=" + lobbyId +
                 ", gameInstanceId=" + gameInstanceId +
+                ", deadlineType='" + deadlineType + '\'' +
+                ", deadlineRoundId=" + deadlineRoundId +
+                ", deadlineAt=" + deadlineAt +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
                 '}';
@@ -46,8 +46,8 @@ public class Guess {
     @Column("score")
     private Integer score;
 
-    @Transient
-    private List<ScoreMultiplier> scoreMultipliers;
+    @Column("score_multipliers")
+    private ScoreMultipliers scoreMultipliers;
 
     @Column("round_duration")
     private Integer roundDuration;
@@ -85,7 +85,7 @@ public class Guess {
         this.distanceKm = distanceKm;
         this.baseScore = baseScore;
         this.score = score;
-        this.scoreMultipliers = scoreMultipliers;
+        this.scoreMultipliers = ScoreMultipliers.of(scoreMultipliers);
         this.roundDuration = roundDuration;
         this.guessTime = guessTime;
         this.timestamp = Instant.now();
@@ -197,11 +197,11 @@ public class Guess {
     }
 
     public List<ScoreMultiplier> getScoreMultipliers() {
-        return scoreMultipliers;
+        return scoreMultipliers != null ? scoreMultipliers.asList() : null;
     }
 
     public void setScoreMultipliers(List<ScoreMultiplier> scoreMultipliers) {
-        this.scoreMultipliers = scoreMultipliers;
+        this.scoreMultipliers = ScoreMultipliers.of(scoreMultipliers);
     }
 
     public Integer getBaseScore() {
@@ -48,6 +48,11 @@ public class Round {
     @JsonIgnore // Prevent circular references during serialization
     private UUID gameInstanceId;
 
+    // The template the round was created from, only known while the game is being created
+    @Transient
+    @JsonIgnore
+    private UUID roundTemplateId;
+
     @Column("created_at")
     private LocalDateTime createdAt;
 
@@ -171,6 +176,14 @@ public class Round {
         return locationPointId;
     }
 
+    public UUID getRoundTemplateId() {
+        return roundTemplateId;
+    }
+
+    public void setRoundTemplateId(UUID roundTemplateId) {
+        this.roundTemplateId = roundTemplateId;
+    }
+
     public LocationPoint getLocationPoint() {
         return locationPoint;
     }
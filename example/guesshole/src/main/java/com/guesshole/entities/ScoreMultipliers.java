@@ -0,0 +1,65 @@
+package com.guesshole.entities;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The score multipliers of a guess as they are stored in the guesses.score_multipliers JSONB
+ * column: an array of objects with multiplierType, multiplierValue, displayName and tooltip.
+ */
+public final class ScoreMultipliers {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ScoreMultipliers EMPTY = new ScoreMultipliers(List.of());
+
+    private final List<ScoreMultiplier> multipliers;
+
+    private ScoreMultipliers(List<ScoreMultiplier> multipliers) {
+        this.multipliers = multipliers;
+    }
+
+    public static ScoreMultipliers of(List<ScoreMultiplier> multipliers) {
+        return multipliers == null || multipliers.isEmpty() ? EMPTY : new ScoreMultipliers(multipliers);
+    }
+
+    public List<ScoreMultiplier> asList() {
+        return multipliers;
+    }
+
+    public String toJson() {
+        ArrayNode array = MAPPER.createArrayNode();
+        for (ScoreMultiplier multiplier : multipliers) {
+            ObjectNode node = array.addObject();
+            node.put("multiplierType", multiplier.getMultiplierType().name());
+            node.put("multiplierValue", multiplier.getMultiplierValue());
+            node.put("displayName", multiplier.getDisplayName());
+            node.put("tooltip", multiplier.getTooltip());
+        }
+        return array.toString();
+    }
+
+    public static ScoreMultipliers fromJson(String json) {
+        if (json == null || json.isEmpty()) {
+            return EMPTY;
+        }
+        try {
+            List<ScoreMultiplier> multipliers = new ArrayList<>();
+            for (JsonNode node : MAPPER.readTree(json)) {
+                multipliers.add(new ScoreMultiplier(
+                        (float) node.path("multiplierValue").asDouble(),
+                        MultiplierType.valueOf(node.path("multiplierType").asText()),
+                        node.path("displayName").textValue(),
+                        node.path("tooltip").textValue()));
+            }
+            return of(multipliers);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading score multipliers", e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.guesshole.geocoding;
+
+import com.guesshole.entities.LocationPoint;
+
+/**
+ * The GADM administrative hierarchy of a single boundary, levels 0 (country) to 5.
+ * Immutable, so a single instance is shared by every polygon and lookup that resolves to it.
+ */
+public final class AdminHierarchy {
+    public static final int MAX_LEVEL = 5;
+
+    /** Used when a coordinate is not inside any boundary */
+    public static final AdminHierarchy INTERNATIONAL_WATERS = new AdminHierarchy(
+            new String[]{"Ocean/Uninhabited", null, null, null, null, null},
+            new String[]{"International Waters", null, null, null, null, null},
+            new String[]{"INTL.WATERS", null, null, null, null, null});
+
+    private static final String COUNTRY_TYPE = "Country";
+
+    private final String[] types;
+    private final String[] names;
+    private final String[] gids;
+    private final int adminLevel;
+
+    private AdminHierarchy(String[] types, String[] names, String[] gids) {
+        this.types = types;
+        this.names = names;
+        this.gids = gids;
+        this.adminLevel = computeAdminLevel(names);
+    }
+
+    /**
+     * Create a hierarchy from the raw gadm_boundaries columns.
+     * GADM has no engtype_0 column, so level 0 is always typed as a country.
+     *
+     * @param engTypes engtype_1 to engtype_5
+     * @param names name_0 to name_5
+     * @param gids gid_0 to gid_5
+     */
+    public static AdminHierarchy fromGadm(String[] engTypes, String[] names, String[] gids) {
+        String[] types = new String[MAX_LEVEL + 1];
+        types[0] = COUNTRY_TYPE;
+        System.arraycopy(engTypes, 0, types, 1, MAX_LEVEL);
+        return new AdminHierarchy(types, names.clone(), gids.clone());
+    }
+
+    /**
+     * The most specific level that has a name, matching the admin_level ordering used by the SQL lookups
+     */
+    public int getAdminLevel() {
+        return adminLevel;
+    }
+
+    public String getType(int level) {
+        return types[level];
+    }
+
+    public String getName(int level) {
+        return names[level];
+    }
+
+    public String getGid(int level) {
+        return gids[level];
+    }
+
+    /**
+     * Build an unsaved LocationPoint for a coordinate inside this boundary
+     */
+    public LocationPoint toLocationPoint(double latitude, double longitude) {
+        LocationPoint.Builder builder = new LocationPoint.Builder()
+                .coordinates(latitude, longitude)
+                .level0(types[0], names[0], gids[0])
+                .level1(types[1], names[1], gids[1])
+                .level2(types[2], names[2], gids[2]);
+
+        // Levels 3-5 are only present in some countries
+        if (names[3] != null) {
+            builder.level3(types[3], names[3], gids[3]);
+        }
+        if (names[4] != null) {
+            builder.level4(types[4], names[4], gids[4]);
+        }
+        if (names[5] != null) {
+            builder.level5(types[5], names[5], gids[5]);
+        }
+
+        return builder.build();
+    }
+
+    private static int computeAdminLevel(String[] names) {
+        for (int level = MAX_LEVEL; level > 0; level--) {
+            if (names[level] != null && !names[level].isEmpty()) {
+                return level;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,108 @@
+package com.guesshole.geocoding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of admin hierarchies by geohash cell, in front of the reverse geocoder.
+ * A cell is only cached when the geocoder confirms its result holds for the whole cell,
+ * so cells on a boundary edge always get an exact lookup.
+ */
+@Component
+public class AdminHierarchyCellCache {
+
+    private final ReverseGeocoder reverseGeocoder;
+    private final int precision;
+    private final Map<String, AdminHierarchy> cells;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter uncacheable;
+
+    public AdminHierarchyCellCache(
+            ReverseGeocoder reverseGeocoder,
+            MeterRegistry meterRegistry,
+            @Value("${app.geocoding.cache.geohash-precision:7}") int precision,
+            @Value("${app.geocoding.cache.max-size:100000}") int maxSize) {
+        this.reverseGeocoder = reverseGeocoder;
+        this.precision = precision;
+        this.cells = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AdminHierarchy> eldest) {
+                return size() > maxSize;
+            }
+        };
+
+        this.hits = Counter.builder("geocoding.cache.requests")
+                .description("Reverse geocoding lookups by geohash cell cache result")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("geocoding.cache.requests")
+                .description("Reverse geocoding lookups by geohash cell cache result")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.uncacheable = Counter.builder("geocoding.cache.uncacheable")
+                .description("Cache misses in cells on a boundary edge, which are never cached")
+                .register(meterRegistry);
+        Gauge.builder("geocoding.cache.size", this, cache -> cache.size())
+                .description("Number of geohash cells in the reverse geocoding cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resolve the admin hierarchy for a coordinate, from the cache when its cell has been seen before
+     *
+     * @return a Mono containing the admin hierarchy, or empty if no boundary contains the coordinate
+     */
+    public Mono<AdminHierarchy> lookup(double longitude, double latitude) {
+        GeohashCell cell = GeohashCell.of(longitude, latitude, precision);
+
+        AdminHierarchy cached;
+        synchronized (cells) {
+            cached = cells.get(cell.getHash());
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached == AdminHierarchy.INTERNATIONAL_WATERS ? Mono.empty() : Mono.just(cached);
+        }
+
+        misses.increment();
+        return reverseGeocoder.lookupCell(longitude, latitude, cell)
+                .flatMap(result -> {
+                    if (result.coversCell()) {
+                        // Cells outside every boundary are cached too, using the international waters marker
+                        AdminHierarchy value = result.getHierarchy() != null
+                                ? result.getHierarchy()
+                                : AdminHierarchy.INTERNATIONAL_WATERS;
+                        synchronized (cells) {
+                            cells.put(cell.getHash(), value);
+                        }
+                    } else {
+                        uncacheable.increment();
+                    }
+                    return Mono.justOrEmpty(result.getHierarchy());
+                });
+    }
+
+    public int size() {
+        synchronized (cells) {
+            return cells.size();
+        }
+    }
+
+    /**
+     * Drop every cached cell, e.g. after the GADM boundaries change
+     */
+    public void clear() {
+        synchronized (cells) {
+            cells.clear();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.guesshole.geocoding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Heap-backed {@link GadmPolygonSet} built from primitive arrays
+ */
+public class ArrayGadmPolygonSet implements GadmPolygonSet {
+
+    // Interleaved x,y pairs for every ring of every polygon
+    private final double[] coords;
+    // Start of each ring in points, with a trailing end marker
+    private final int[] ringOffsets;
+    // First ring of each polygon, with a trailing end marker
+    private final int[] polygonRings;
+    // minX, minY, maxX, maxY per polygon
+    private final double[] bounds;
+    private final int[] polygonFeatures;
+    private final AdminHierarchy[] features;
+
+    private ArrayGadmPolygonSet(Builder builder) {
+        this.coords = Arrays.copyOf(builder.coords, builder.coordCount);
+        this.ringOffsets = Arrays.copyOf(builder.ringOffsets, builder.ringCount + 1);
+        this.polygonRings = Arrays.copyOf(builder.polygonRings, builder.polygonCount + 1);
+        this.bounds = Arrays.copyOf(builder.bounds, builder.polygonCount * 4);
+        this.polygonFeatures = Arrays.copyOf(builder.polygonFeatures, builder.polygonCount);
+        this.features = builder.features.toArray(new AdminHierarchy[0]);
+    }
+
+    @Override
+    public int size() {
+        return polygonFeatures.length;
+    }
+
+    @Override
+    public double minX(int polygon) {
+        return bounds[polygon * 4];
+    }
+
+    @Override
+    public double minY(int polygon) {
+        return bounds[polygon * 4 + 1];
+    }
+
+    @Override
+    public double maxX(int polygon) {
+        return bounds[polygon * 4 + 2];
+    }
+
+    @Override
+    public double maxY(int polygon) {
+        return bounds[polygon * 4 + 3];
+    }
+
+    @Override
+    public int firstRing(int polygon) {
+        return polygonRings[polygon];
+    }
+
+    @Override
+    public int endRing(int polygon) {
+        return polygonRings[polygon + 1];
+    }
+
+    @Override
+    public int firstPoint(int ring) {
+        return ringOffsets[ring];
+    }
+
+    @Override
+    public int endPoint(int ring) {
+        return ringOffsets[ring + 1];
+    }
+
+    @Override
+    public double pointX(int point) {
+        return coords[point * 2];
+    }
+
+    @Override
+    public double pointY(int point) {
+        return coords[point * 2 + 1];
+    }
+
+    @Override
+    public AdminHierarchy hierarchy(int polygon) {
+        return features[polygonFeatures[polygon]];
+    }
+
+    // Raw array access for GadmStoreWriter. The arrays must not be modified.
+
+    double[] coords() {
+        return coords;
+    }
+
+    int[] ringOffsets() {
+        return ringOffsets;
+    }
+
+    int[] polygonRings() {
+        return polygonRings;
+    }
+
+    int[] polygonFeatures() {
+        return polygonFeatures;
+    }
+
+    AdminHierarchy[] features() {
+        return features;
+    }
+
+    /**
+     * Accumulates polygons into growable primitive arrays
+     */
+    public static class Builder {
+        private double[] coords = new double[1 << 16];
+        private int coordCount;
+        private int[] ringOffsets = new int[1 << 10];
+        private int ringCount;
+        private int[] polygonRings = new int[1 << 10];
+        private int polygonCount;
+        private double[] bounds = new double[1 << 12];
+        private int[] polygonFeatures = new int[1 << 10];
+        private final List<AdminHierarchy> features = new ArrayList<>();
+
+        private int currentFeature = -1;
+        private boolean polygonOpen;
+
+        /**
+         * Start a new boundary. Polygons added after this call belong to it.
+         */
+        public Builder beginFeature(AdminHierarchy hierarchy) {
+            features.add(hierarchy);
+            currentFeature = features.size() - 1;
+            return this;
+        }
+
+        public Builder beginPolygon() {
+            if (currentFeature < 0) {
+                throw new IllegalStateException("beginFeature must be called before beginPolygon");
+            }
+            closePolygon();
+
+            polygonRings = ensureCapacity(polygonRings, polygonCount + 2);
+            polygonFeatures = ensureCapacity(polygonFeatures, polygonCount + 1);
+            bounds = ensureCapacity(bounds, (polygonCount + 1) * 4);
+
+            polygonRings[polygonCount] = ringCount;
+            polygonFeatures[polygonCount] = currentFeature;
+            int b = polygonCount * 4;
+            bounds[b] = Double.POSITIVE_INFINITY;
+            bounds[b + 1] = Double.POSITIVE_INFINITY;
+            bounds[b + 2] = Double.NEGATIVE_INFINITY;
+            bounds[b + 3] = Double.NEGATIVE_INFINITY;
+            polygonOpen = true;
+            return this;
+        }
+
+        /**
+         * Start a new ring of the current polygon. The first ring is the shell, any others are holes.
+         */
+        public Builder beginRing() {
+            if (!polygonOpen) {
+                throw new IllegalStateException("beginPolygon must be called before beginRing");
+            }
+            ringOffsets = ensureCapacity(ringOffsets, ringCount + 2);
+            ringOffsets[ringCount] = coordCount / 2;
+            ringCount++;
+            ringOffsets[ringCount] = coordCount / 2;
+            return this;
+        }
+
+        public Builder addPoint(double x, double y) {
+            coords = ensureCapacity(coords, coordCount + 2);
+            coords[coordCount++] = x;
+            coords[coordCount++] = y;
+            ringOffsets[ringCount] = coordCount / 2;
+
+            int b = polygonCount * 4;
+            bounds[b] = Math.min(bounds[b], x);
+            bounds[b + 1] = Math.min(bounds[b + 1], y);
+            bounds[b + 2] = Math.max(bounds[b + 2], x);
+            bounds[b + 3] = Math.max(bounds[b + 3], y);
+            return this;
+        }
+
+        public ArrayGadmPolygonSet build() {
+            closePolygon();
+            return new ArrayGadmPolygonSet(this);
+        }
+
+        private void closePolygon() {
+            if (polygonOpen) {
+                polygonCount++;
+                polygonRings[polygonCount] = ringCount;
+                polygonOpen = false;
+            }
+        }
+
+        private static double[] ensureCapacity(double[] array, int required) {
+            return required <= array.length ? array : Arrays.copyOf(array, Math.max(required, array.length * 2));
+        }
+
+        private static int[] ensureCapacity(int[] array, int required) {
+            return required <= array.length ? array : Arrays.copyOf(array, Math.max(required, array.length * 2));
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.guesshole.geocoding;
+
+/**
+ * Result of a reverse geocode that also reports whether every coordinate in the
+ * surrounding geohash cell resolves to the same hierarchy
+ */
+public final class CellLookup {
+    private final AdminHierarchy hierarchy;
+    private final boolean coversCell;
+
+    public CellLookup(AdminHierarchy hierarchy, boolean coversCell) {
+        this.hierarchy = hierarchy;
+        this.coversCell = coversCell;
+    }
+
+    /**
+     * @return the admin hierarchy, or null if no boundary contains the coordinate
+     */
+    public AdminHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    /**
+     * @return true if the result is valid for the whole cell, false for cells on a boundary edge
+     */
+    public boolean coversCell() {
+        return coversCell;
+    }
+}
@@ -0,0 +1,62 @@
+package com.guesshole.geocoding;
+
+/**
+ * In-memory spatial index over a {@link GadmPolygonSet}
+ */
+public class GadmIndex {
+    private final GadmPolygonSet polygons;
+    private final StrTree tree;
+
+    public GadmIndex(GadmPolygonSet polygons) {
+        this.polygons = polygons;
+        this.tree = new StrTree(polygons);
+    }
+
+    public GadmPolygonSet getPolygons() {
+        return polygons;
+    }
+
+    /**
+     * Find the most specific boundary containing a coordinate
+     *
+     * @return the admin hierarchy, or null if no boundary contains the coordinate
+     */
+    public AdminHierarchy lookup(double longitude, double latitude) {
+        AdminHierarchy[] best = new AdminHierarchy[1];
+        tree.search(longitude, latitude, polygon -> {
+            AdminHierarchy candidate = polygons.hierarchy(polygon);
+            if ((best[0] == null || candidate.getAdminLevel() > best[0].getAdminLevel())
+                    && polygons.contains(polygon, longitude, latitude)) {
+                best[0] = candidate;
+            }
+        });
+        return best[0];
+    }
+
+    /**
+     * Find the most specific boundary containing a coordinate, and whether it contains the whole cell.
+     * GADM boundaries at the finest level don't overlap, so a boundary containing the whole cell
+     * is the answer for every coordinate in it.
+     */
+    public CellLookup lookupCell(double longitude, double latitude, GeohashCell cell) {
+        int[] best = {-1};
+        boolean[] cellTouched = {false};
+        tree.search(cell.getMinLongitude(), cell.getMinLatitude(), cell.getMaxLongitude(), cell.getMaxLatitude(),
+                polygon -> {
+                    cellTouched[0] = true;
+                    if ((best[0] < 0 || polygons.hierarchy(polygon).getAdminLevel() > polygons.hierarchy(best[0]).getAdminLevel())
+                            && polygons.contains(polygon, longitude, latitude)) {
+                        best[0] = polygon;
+                    }
+                });
+
+        if (best[0] < 0) {
+            // Outside every boundary; the cell is only uniform if no boundary comes near it
+            return new CellLookup(null, !cellTouched[0]);
+        }
+
+        boolean coversCell = polygons.containsEnvelope(best[0],
+                cell.getMinLongitude(), cell.getMinLatitude(), cell.getMaxLongitude(), cell.getMaxLatitude());
+        return new CellLookup(polygons.hierarchy(best[0]), coversCell);
+    }
+}
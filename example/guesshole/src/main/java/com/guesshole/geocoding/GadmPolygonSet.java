@@ -0,0 +1,98 @@
+package com.guesshole.geocoding;
+
+/**
+ * Read access to a set of GADM polygons stored as flat coordinate arrays.
+ * A multipolygon boundary contributes one polygon per part, all sharing the same hierarchy.
+ */
+public interface GadmPolygonSet {
+
+    /**
+     * @return the number of polygons in the set
+     */
+    int size();
+
+    double minX(int polygon);
+
+    double minY(int polygon);
+
+    double maxX(int polygon);
+
+    double maxY(int polygon);
+
+    /**
+     * @return the index of the polygon's first ring. The first ring is the shell, any others are holes.
+     */
+    int firstRing(int polygon);
+
+    /**
+     * @return the index just past the polygon's last ring
+     */
+    int endRing(int polygon);
+
+    /**
+     * @return the index of the ring's first point
+     */
+    int firstPoint(int ring);
+
+    /**
+     * @return the index just past the ring's last point
+     */
+    int endPoint(int ring);
+
+    double pointX(int point);
+
+    double pointY(int point);
+
+    /**
+     * Even-odd point-in-polygon test over every ring of the polygon, so holes are excluded
+     */
+    default boolean contains(int polygon, double x, double y) {
+        boolean inside = false;
+        for (int ring = firstRing(polygon), endRing = endRing(polygon); ring < endRing; ring++) {
+            int start = firstPoint(ring);
+            int end = endPoint(ring);
+            for (int i = start, j = end - 1; i < end; j = i++) {
+                double xi = pointX(i);
+                double yi = pointY(i);
+                double xj = pointX(j);
+                double yj = pointY(j);
+                if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Conservative test for whether the polygon contains the whole envelope. Returns false if
+     * any edge of the polygon comes near the envelope, even if it doesn't actually cross it.
+     */
+    default boolean containsEnvelope(int polygon, double minX, double minY, double maxX, double maxY) {
+        if (minX < minX(polygon) || minY < minY(polygon) || maxX > maxX(polygon) || maxY > maxY(polygon)
+                || !contains(polygon, minX, minY)) {
+            return false;
+        }
+        // With one corner inside and no edge touching the envelope, the whole envelope is inside
+        for (int ring = firstRing(polygon), endRing = endRing(polygon); ring < endRing; ring++) {
+            int start = firstPoint(ring);
+            int end = endPoint(ring);
+            for (int i = start, j = end - 1; i < end; j = i++) {
+                double xi = pointX(i);
+                double yi = pointY(i);
+                double xj = pointX(j);
+                double yj = pointY(j);
+                if (Math.max(xi, xj) >= minX && Math.min(xi, xj) <= maxX
+                        && Math.max(yi, yj) >= minY && Math.min(yi, yj) <= maxY) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the admin hierarchy of the boundary the polygon belongs to
+     */
+    AdminHierarchy hierarchy(int polygon);
+}
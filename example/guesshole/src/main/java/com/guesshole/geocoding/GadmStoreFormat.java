@@ -0,0 +1,54 @@
+package com.guesshole.geocoding;
+
+/**
+ * Layout of the binary GADM polygon store written by {@link GadmStoreWriter}
+ * and read by {@link MappedGadmPolygonSet}. All values are little-endian.
+ *
+ * <pre>
+ * header (64 bytes)
+ *   long   magic
+ *   int    format version
+ *   int    schema version length, followed by up to 32 bytes of UTF-8 Flyway schema version
+ *   long   CRC32 of the body
+ *   long   body length
+ * body
+ *   int    polygon, ring, point, feature and string counts
+ *   int[]  polygon bounds (minX, minY, maxX, maxY), fixed point
+ *   int[]  first ring of each polygon, plus an end marker
+ *   int[]  feature of each polygon
+ *   int[]  first point of each ring, plus an end marker
+ *   int[]  string table indices per feature (engtype 1-5, name 0-5, gid 0-5), -1 for null
+ *   int[]  interleaved x,y coordinates, fixed point
+ *   string table: int length followed by UTF-8 bytes, per string
+ * </pre>
+ */
+final class GadmStoreFormat {
+    static final long MAGIC = 0x524F5453_4D444147L; // "GADMSTOR"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int SCHEMA_VERSION_OFFSET = 16;
+    static final int SCHEMA_VERSION_MAX_BYTES = 32;
+    static final int CHECKSUM_OFFSET = 48;
+    static final int BODY_LENGTH_OFFSET = 56;
+    static final int FEATURE_STRINGS = 17;
+
+    /** Coordinates are stored as integers in units of 1e-7 degrees, roughly 1cm */
+    static final double COORDINATE_SCALE = 1e7;
+
+    /** The version of the most recent successful versioned Flyway migration */
+    static final String SCHEMA_VERSION_SQL =
+            "SELECT version FROM flyway_schema_history " +
+            "WHERE success AND version IS NOT NULL " +
+            "ORDER BY installed_rank DESC LIMIT 1";
+
+    private GadmStoreFormat() {
+    }
+
+    static int toFixed(double degrees) {
+        return (int) Math.round(degrees * COORDINATE_SCALE);
+    }
+
+    static double fromFixed(int fixed) {
+        return fixed / COORDINATE_SCALE;
+    }
+}
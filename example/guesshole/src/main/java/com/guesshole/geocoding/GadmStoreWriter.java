@@ -0,0 +1,252 @@
+package com.guesshole.geocoding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Offline build step that compiles gadm_boundaries into a binary polygon store
+ * for {@link MappedGadmPolygonSet}. Run through the buildGadmStore Gradle task:
+ *
+ * <pre>./gradlew buildGadmStore -PgadmStoreOutput=/var/lib/guesshole/gadm.bin</pre>
+ */
+public class GadmStoreWriter {
+    private static final Logger log = LoggerFactory.getLogger(GadmStoreWriter.class);
+
+    private static final String LOAD_SQL =
+            "SELECT " + SqlReverseGeocoder.GADM_COLUMNS + ", ST_AsBinary(geom) AS wkb FROM gadm_boundaries";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 4) {
+            System.err.println("Usage: GadmStoreWriter <jdbc url> <user> <password> <output file>");
+            System.exit(1);
+        }
+
+        long start = System.currentTimeMillis();
+        try (Connection connection = DriverManager.getConnection(args[0], args[1], args[2])) {
+            String schemaVersion = readSchemaVersion(connection);
+            ArrayGadmPolygonSet polygons = readPolygons(connection);
+            write(polygons, schemaVersion, Path.of(args[3]));
+
+            log.info("Wrote {} polygons for schema version {} to {} in {} ms",
+                    polygons.size(), schemaVersion, args[3], System.currentTimeMillis() - start);
+        }
+    }
+
+    private static String readSchemaVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(GadmStoreFormat.SCHEMA_VERSION_SQL)) {
+            if (!rs.next()) {
+                throw new IllegalStateException("No Flyway schema version found - run the migrations first");
+            }
+            return rs.getString(1);
+        }
+    }
+
+    private static ArrayGadmPolygonSet readPolygons(Connection connection) throws SQLException {
+        ArrayGadmPolygonSet.Builder builder = new ArrayGadmPolygonSet.Builder();
+
+        // Cursor-based fetch so the whole table isn't buffered by the driver
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.setFetchSize(500);
+            try (ResultSet rs = statement.executeQuery(LOAD_SQL)) {
+                while (rs.next()) {
+                    String[] engTypes = new String[AdminHierarchy.MAX_LEVEL];
+                    String[] names = new String[AdminHierarchy.MAX_LEVEL + 1];
+                    String[] gids = new String[AdminHierarchy.MAX_LEVEL + 1];
+                    for (int level = 0; level <= AdminHierarchy.MAX_LEVEL; level++) {
+                        names[level] = rs.getString("name_" + level);
+                        gids[level] = rs.getString("gid_" + level);
+                        if (level > 0) {
+                            engTypes[level - 1] = rs.getString("engtype_" + level);
+                        }
+                    }
+
+                    builder.beginFeature(AdminHierarchy.fromGadm(engTypes, names, gids));
+                    WkbPolygonReader.read(rs.getBytes("wkb"), builder);
+                }
+            }
+        } finally {
+            connection.rollback();
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Write a polygon set to a store file. The file is written alongside and moved into place,
+     * so a running application never maps a partially written store.
+     */
+    static void write(ArrayGadmPolygonSet polygons, String schemaVersion, Path output) throws IOException {
+        byte[] schemaVersionBytes = schemaVersion.getBytes(StandardCharsets.UTF_8);
+        if (schemaVersionBytes.length > GadmStoreFormat.SCHEMA_VERSION_MAX_BYTES) {
+            throw new IllegalArgumentException("Schema version too long: " + schemaVersion);
+        }
+
+        double[] coords = polygons.coords();
+        int[] ringOffsets = polygons.ringOffsets();
+        int[] polygonRings = polygons.polygonRings();
+        int[] polygonFeatures = polygons.polygonFeatures();
+        AdminHierarchy[] features = polygons.features();
+
+        int polygonCount = polygons.size();
+        int ringCount = ringOffsets.length - 1;
+        int pointCount = coords.length / 2;
+
+        // Deduplicate names, types and gids into a single string table
+        List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIndex = new HashMap<>();
+        int[] featureStrings = new int[features.length * GadmStoreFormat.FEATURE_STRINGS];
+        for (int f = 0; f < features.length; f++) {
+            AdminHierarchy feature = features[f];
+            int base = f * GadmStoreFormat.FEATURE_STRINGS;
+            for (int level = 1; level <= AdminHierarchy.MAX_LEVEL; level++) {
+                featureStrings[base + level - 1] = intern(feature.getType(level), strings, stringIndex);
+            }
+            for (int level = 0; level <= AdminHierarchy.MAX_LEVEL; level++) {
+                featureStrings[base + 5 + level] = intern(feature.getName(level), strings, stringIndex);
+                featureStrings[base + 11 + level] = intern(feature.getGid(level), strings, stringIndex);
+            }
+        }
+
+        Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        Files.createDirectories(output.toAbsolutePath().getParent());
+
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.position(GadmStoreFormat.HEADER_SIZE);
+            BodyWriter body = new BodyWriter(channel);
+
+            body.putInt(polygonCount);
+            body.putInt(ringCount);
+            body.putInt(pointCount);
+            body.putInt(features.length);
+            body.putInt(strings.size());
+
+            // Bounds are computed from the fixed point coordinates so they match what's stored
+            for (int p = 0; p < polygonCount; p++) {
+                int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+                int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+                for (int point = ringOffsets[polygonRings[p]]; point < ringOffsets[polygonRings[p + 1]]; point++) {
+                    int x = GadmStoreFormat.toFixed(coords[point * 2]);
+                    int y = GadmStoreFormat.toFixed(coords[point * 2 + 1]);
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    maxX = Math.max(maxX, x);
+                    maxY = Math.max(maxY, y);
+                }
+                body.putInt(minX);
+                body.putInt(minY);
+                body.putInt(maxX);
+                body.putInt(maxY);
+            }
+
+            for (int value : polygonRings) {
+                body.putInt(value);
+            }
+            for (int value : polygonFeatures) {
+                body.putInt(value);
+            }
+            for (int value : ringOffsets) {
+                body.putInt(value);
+            }
+            for (int value : featureStrings) {
+                body.putInt(value);
+            }
+            for (double value : coords) {
+                body.putInt(GadmStoreFormat.toFixed(value));
+            }
+            for (String value : strings) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                body.putInt(bytes.length);
+                body.putBytes(bytes);
+            }
+            body.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(GadmStoreFormat.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(0, GadmStoreFormat.MAGIC);
+            header.putInt(8, GadmStoreFormat.FORMAT_VERSION);
+            header.putInt(12, schemaVersionBytes.length);
+            header.put(GadmStoreFormat.SCHEMA_VERSION_OFFSET, schemaVersionBytes);
+            header.putLong(GadmStoreFormat.CHECKSUM_OFFSET, body.crc.getValue());
+            header.putLong(GadmStoreFormat.BODY_LENGTH_OFFSET, body.length);
+            channel.write(header, 0);
+            channel.force(true);
+        }
+
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int intern(String value, List<String> strings, Map<String, Integer> stringIndex) {
+        if (value == null) {
+            return -1;
+        }
+        return stringIndex.computeIfAbsent(value, v -> {
+            strings.add(v);
+            return strings.size() - 1;
+        });
+    }
+
+    /**
+     * Buffers little-endian writes to the channel and checksums everything written
+     */
+    private static class BodyWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 crc = new CRC32();
+        private long length;
+
+        BodyWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            length += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
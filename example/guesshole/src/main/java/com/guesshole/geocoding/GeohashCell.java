@@ -0,0 +1,82 @@
+package com.guesshole.geocoding;
+
+/**
+ * A geohash cell: the quantized rectangle of coordinates sharing a geohash prefix
+ */
+public final class GeohashCell {
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private final String hash;
+    private final double minLongitude;
+    private final double minLatitude;
+    private final double maxLongitude;
+    private final double maxLatitude;
+
+    private GeohashCell(String hash, double minLongitude, double minLatitude, double maxLongitude, double maxLatitude) {
+        this.hash = hash;
+        this.minLongitude = minLongitude;
+        this.minLatitude = minLatitude;
+        this.maxLongitude = maxLongitude;
+        this.maxLatitude = maxLatitude;
+    }
+
+    /**
+     * Find the cell containing a coordinate
+     *
+     * @param precision the number of geohash characters, 7 gives cells of roughly 150m
+     */
+    public static GeohashCell of(double longitude, double latitude, int precision) {
+        double minLon = -180, maxLon = 180;
+        double minLat = -90, maxLat = 90;
+        char[] hash = new char[precision];
+        boolean evenBit = true;
+
+        for (int c = 0; c < precision; c++) {
+            int index = 0;
+            for (int bit = 0; bit < 5; bit++) {
+                index <<= 1;
+                if (evenBit) {
+                    double mid = (minLon + maxLon) / 2;
+                    if (longitude >= mid) {
+                        index |= 1;
+                        minLon = mid;
+                    } else {
+                        maxLon = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (latitude >= mid) {
+                        index |= 1;
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                evenBit = !evenBit;
+            }
+            hash[c] = BASE32[index];
+        }
+
+        return new GeohashCell(new String(hash), minLon, minLat, maxLon, maxLat);
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+}
@@ -0,0 +1,194 @@
+package com.guesshole.geocoding;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * {@link GadmPolygonSet} read from a memory-mapped store written by {@link GadmStoreWriter}.
+ * Polygon data stays off-heap in the page cache, shared by every JVM on the host that maps
+ * the same file; only the admin hierarchies are materialised on the heap.
+ */
+public class MappedGadmPolygonSet implements GadmPolygonSet {
+
+    private final int polygonCount;
+    private final IntBuffer bounds;
+    private final IntBuffer polygonRings;
+    private final IntBuffer polygonFeatures;
+    private final IntBuffer ringOffsets;
+    private final IntBuffer coords;
+    private final AdminHierarchy[] features;
+
+    private MappedGadmPolygonSet(ByteBuffer body) {
+        this.polygonCount = body.getInt();
+        int ringCount = body.getInt();
+        int pointCount = body.getInt();
+        int featureCount = body.getInt();
+        int stringCount = body.getInt();
+
+        this.bounds = intSection(body, polygonCount * 4);
+        this.polygonRings = intSection(body, polygonCount + 1);
+        this.polygonFeatures = intSection(body, polygonCount);
+        this.ringOffsets = intSection(body, ringCount + 1);
+        IntBuffer featureStrings = intSection(body, featureCount * GadmStoreFormat.FEATURE_STRINGS);
+        this.coords = intSection(body, pointCount * 2);
+
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[body.getInt()];
+            body.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        this.features = new AdminHierarchy[featureCount];
+        for (int f = 0; f < featureCount; f++) {
+            int base = f * GadmStoreFormat.FEATURE_STRINGS;
+            String[] engTypes = new String[AdminHierarchy.MAX_LEVEL];
+            String[] names = new String[AdminHierarchy.MAX_LEVEL + 1];
+            String[] gids = new String[AdminHierarchy.MAX_LEVEL + 1];
+            for (int level = 1; level <= AdminHierarchy.MAX_LEVEL; level++) {
+                engTypes[level - 1] = lookupString(strings, featureStrings.get(base + level - 1));
+            }
+            for (int level = 0; level <= AdminHierarchy.MAX_LEVEL; level++) {
+                names[level] = lookupString(strings, featureStrings.get(base + 5 + level));
+                gids[level] = lookupString(strings, featureStrings.get(base + 11 + level));
+            }
+            features[f] = AdminHierarchy.fromGadm(engTypes, names, gids);
+        }
+    }
+
+    /**
+     * Map a store file, verifying its format, checksum and schema version
+     *
+     * @param path the store file
+     * @param expectedSchemaVersion the current Flyway schema version of the database
+     * @throws IOException if the file can't be read
+     * @throws IllegalStateException if the file is corrupt or was built for a different schema version
+     */
+    public static MappedGadmPolygonSet open(Path path, String expectedSchemaVersion) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < GadmStoreFormat.HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("GADM store " + path + " has unsupported size " + size);
+            }
+
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapped.getLong(0) != GadmStoreFormat.MAGIC) {
+                throw new IllegalStateException(path + " is not a GADM store");
+            }
+            int formatVersion = mapped.getInt(8);
+            if (formatVersion != GadmStoreFormat.FORMAT_VERSION) {
+                throw new IllegalStateException("GADM store " + path + " has format version " + formatVersion
+                        + ", expected " + GadmStoreFormat.FORMAT_VERSION);
+            }
+
+            byte[] schemaVersionBytes = new byte[mapped.getInt(12)];
+            mapped.get(GadmStoreFormat.SCHEMA_VERSION_OFFSET, schemaVersionBytes);
+            String schemaVersion = new String(schemaVersionBytes, StandardCharsets.UTF_8);
+            if (!schemaVersion.equals(expectedSchemaVersion)) {
+                throw new IllegalStateException("GADM store " + path + " was built for schema version "
+                        + schemaVersion + " but the database is at " + expectedSchemaVersion);
+            }
+
+            long bodyLength = mapped.getLong(GadmStoreFormat.BODY_LENGTH_OFFSET);
+            if (bodyLength != size - GadmStoreFormat.HEADER_SIZE) {
+                throw new IllegalStateException("GADM store " + path + " is truncated");
+            }
+
+            ByteBuffer body = mapped.slice(GadmStoreFormat.HEADER_SIZE, (int) bodyLength)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if (crc.getValue() != mapped.getLong(GadmStoreFormat.CHECKSUM_OFFSET)) {
+                throw new IllegalStateException("GADM store " + path + " failed its checksum");
+            }
+
+            return new MappedGadmPolygonSet(body);
+        }
+    }
+
+    @Override
+    public int size() {
+        return polygonCount;
+    }
+
+    @Override
+    public double minX(int polygon) {
+        return GadmStoreFormat.fromFixed(bounds.get(polygon * 4));
+    }
+
+    @Override
+    public double minY(int polygon) {
+        return GadmStoreFormat.fromFixed(bounds.get(polygon * 4 + 1));
+    }
+
+    @Override
+    public double maxX(int polygon) {
+        return GadmStoreFormat.fromFixed(bounds.get(polygon * 4 + 2));
+    }
+
+    @Override
+    public double maxY(int polygon) {
+        return GadmStoreFormat.fromFixed(bounds.get(polygon * 4 + 3));
+    }
+
+    @Override
+    public int firstRing(int polygon) {
+        return polygonRings.get(polygon);
+    }
+
+    @Override
+    public int endRing(int polygon) {
+        return polygonRings.get(polygon + 1);
+    }
+
+    @Override
+    public int firstPoint(int ring) {
+        return ringOffsets.get(ring);
+    }
+
+    @Override
+    public int endPoint(int ring) {
+        return ringOffsets.get(ring + 1);
+    }
+
+    @Override
+    public double pointX(int point) {
+        return GadmStoreFormat.fromFixed(coords.get(point * 2));
+    }
+
+    @Override
+    public double pointY(int point) {
+        return GadmStoreFormat.fromFixed(coords.get(point * 2 + 1));
+    }
+
+    @Override
+    public AdminHierarchy hierarchy(int polygon) {
+        return features[polygonFeatures.get(polygon)];
+    }
+
+    /**
+     * Take an int view of the next section of the body and advance past it
+     */
+    private static IntBuffer intSection(ByteBuffer body, int count) {
+        IntBuffer section = body.slice(body.position(), count * Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+        body.position(body.position() + count * Integer.BYTES);
+        return section;
+    }
+
+    private static String lookupString(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+}
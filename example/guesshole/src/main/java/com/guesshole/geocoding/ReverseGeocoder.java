@@ -0,0 +1,27 @@
+package com.guesshole.geocoding;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Resolves a coordinate to the most specific GADM administrative boundary that contains it
+ */
+public interface ReverseGeocoder {
+
+    /**
+     * @param longitude the longitude coordinate
+     * @param latitude the latitude coordinate
+     * @return a Mono containing the admin hierarchy, or empty if no boundary contains the coordinate
+     */
+    Mono<AdminHierarchy> lookup(double longitude, double latitude);
+
+    /**
+     * Look up a coordinate, also checking whether the result holds for every coordinate in its cell.
+     * Only cells fully inside one boundary (or fully outside all of them) cover the cell.
+     *
+     * @param longitude the longitude coordinate
+     * @param latitude the latitude coordinate
+     * @param cell the geohash cell containing the coordinate
+     * @return a Mono containing the lookup result
+     */
+    Mono<CellLookup> lookupCell(double longitude, double latitude, GeohashCell cell);
+}
@@ -0,0 +1,137 @@
+package com.guesshole.geocoding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Reverse geocoder backed by an in-memory STR-tree of the GADM polygons.
+ * The polygons come from a memory-mapped store file when one is configured, otherwise
+ * they are read from gadm_boundaries.
+ * The index is loaded in the background once the application is ready; until then,
+ * or if it's disabled or fails to load, lookups fall back to the SQL geocoder.
+ */
+@Component
+@Primary
+public class SpatialIndexReverseGeocoder implements ReverseGeocoder {
+    private static final Logger log = LoggerFactory.getLogger(SpatialIndexReverseGeocoder.class);
+
+    private static final String LOAD_SQL =
+            "SELECT " + SqlReverseGeocoder.GADM_COLUMNS + ", ST_AsBinary(geom) AS wkb FROM gadm_boundaries";
+
+    private final SqlReverseGeocoder fallback;
+    private final DatabaseClient databaseClient;
+    private final boolean enabled;
+    private final String storePath;
+
+    private volatile GadmIndex index;
+
+    public SpatialIndexReverseGeocoder(
+            SqlReverseGeocoder fallback,
+            DatabaseClient databaseClient,
+            @Value("${app.geocoding.index.enabled:false}") boolean enabled,
+            @Value("${app.geocoding.index.store-path:}") String storePath) {
+        this.fallback = fallback;
+        this.databaseClient = databaseClient;
+        this.enabled = enabled;
+        this.storePath = storePath;
+    }
+
+    @Override
+    public Mono<AdminHierarchy> lookup(double longitude, double latitude) {
+        GadmIndex current = index;
+        if (current == null) {
+            return fallback.lookup(longitude, latitude);
+        }
+        return Mono.justOrEmpty(current.lookup(longitude, latitude));
+    }
+
+    @Override
+    public Mono<CellLookup> lookupCell(double longitude, double latitude, GeohashCell cell) {
+        GadmIndex current = index;
+        if (current == null) {
+            return fallback.lookupCell(longitude, latitude, cell);
+        }
+        return Mono.just(current.lookupCell(longitude, latitude, cell));
+    }
+
+    /**
+     * @return true once the in-memory index is serving lookups
+     */
+    public boolean isIndexLoaded() {
+        return index != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        if (!enabled) {
+            log.info("GADM spatial index disabled, reverse geocoding will use PostGIS");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Mono<GadmPolygonSet> polygons = storePath.isBlank()
+                ? loadFromDatabase()
+                : openStore(Path.of(storePath)).onErrorResume(e -> {
+                    log.warn("Could not open GADM store {}, loading polygons from the database instead: {}",
+                            storePath, e.getMessage());
+                    return loadFromDatabase();
+                });
+
+        polygons
+                .publishOn(Schedulers.boundedElastic())
+                .map(GadmIndex::new)
+                .subscribe(
+                        loaded -> {
+                            this.index = loaded;
+                            log.info("Loaded GADM spatial index with {} polygons in {} ms",
+                                    loaded.getPolygons().size(), System.currentTimeMillis() - start);
+                        },
+                        error -> log.error("Failed to load GADM spatial index, reverse geocoding will use PostGIS", error));
+    }
+
+    /**
+     * Map a store built by {@link GadmStoreWriter}, checking it matches the database's schema version
+     */
+    private Mono<GadmPolygonSet> openStore(Path path) {
+        return databaseClient.sql(GadmStoreFormat.SCHEMA_VERSION_SQL)
+                .map((row, metadata) -> row.get("version", String.class))
+                .one()
+                .publishOn(Schedulers.boundedElastic())
+                .<GadmPolygonSet>map(schemaVersion -> {
+                    try {
+                        return MappedGadmPolygonSet.open(path, schemaVersion);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Read every polygon from gadm_boundaries onto the heap
+     */
+    private Mono<GadmPolygonSet> loadFromDatabase() {
+        ArrayGadmPolygonSet.Builder builder = new ArrayGadmPolygonSet.Builder();
+
+        return databaseClient.sql(LOAD_SQL)
+                .map((row, metadata) -> {
+                    // Rows are consumed in order, so the builder is never touched concurrently
+                    builder.beginFeature(SqlReverseGeocoder.readHierarchy(row));
+                    WkbPolygonReader.read(row.get("wkb", byte[].class), builder);
+                    return 1;
+                })
+                .all()
+                .then(Mono.<GadmPolygonSet>fromSupplier(builder::build));
+    }
+}
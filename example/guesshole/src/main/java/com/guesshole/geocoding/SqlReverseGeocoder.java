@@ -0,0 +1,119 @@
+package com.guesshole.geocoding;
+
+import io.r2dbc.spi.Row;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Reverse geocoder that runs an ST_Contains query against gadm_boundaries for every lookup.
+ * Always available, so it's used whenever the in-memory index isn't.
+ */
+@Component
+public class SqlReverseGeocoder implements ReverseGeocoder {
+
+    static final String GADM_COLUMNS =
+            "gid_0, name_0, " +
+            "gid_1, name_1, engtype_1, " +
+            "gid_2, name_2, engtype_2, " +
+            "gid_3, name_3, engtype_3, " +
+            "gid_4, name_4, engtype_4, " +
+            "gid_5, name_5, engtype_5";
+
+    private static final String LOOKUP_SQL =
+            "SELECT " + GADM_COLUMNS + ", " +
+            "   CASE " +
+            "       WHEN name_5 IS NOT NULL AND name_5 <> '' THEN 5 " +
+            "       WHEN name_4 IS NOT NULL AND name_4 <> '' THEN 4 " +
+            "       WHEN name_3 IS NOT NULL AND name_3 <> '' THEN 3 " +
+            "       WHEN name_2 IS NOT NULL AND name_2 <> '' THEN 2 " +
+            "       WHEN name_1 IS NOT NULL AND name_1 <> '' THEN 1 " +
+            "       ELSE 0 " +
+            "   END AS admin_level " +
+            "FROM gadm_boundaries " +
+            "WHERE ST_Contains(geom, ST_SetSRID(ST_Point(:longitude, :latitude), 4326)) " +
+            "ORDER BY admin_level DESC " +
+            "LIMIT 1";
+
+    // Same lookup, plus whether the match contains the whole cell. With no match, the cell only
+    // counts as covered if no boundary intersects it at all.
+    private static final String LOOKUP_CELL_SQL =
+            "WITH cell AS (SELECT ST_MakeEnvelope(:minLongitude, :minLatitude, :maxLongitude, :maxLatitude, 4326) AS envelope), " +
+            "match AS (" +
+            "   SELECT " + GADM_COLUMNS + ", ST_Contains(geom, cell.envelope) AS contains_cell, " +
+            "       CASE " +
+            "           WHEN name_5 IS NOT NULL AND name_5 <> '' THEN 5 " +
+            "           WHEN name_4 IS NOT NULL AND name_4 <> '' THEN 4 " +
+            "           WHEN name_3 IS NOT NULL AND name_3 <> '' THEN 3 " +
+            "           WHEN name_2 IS NOT NULL AND name_2 <> '' THEN 2 " +
+            "           WHEN name_1 IS NOT NULL AND name_1 <> '' THEN 1 " +
+            "           ELSE 0 " +
+            "       END AS admin_level " +
+            "   FROM gadm_boundaries, cell " +
+            "   WHERE ST_Contains(geom, ST_SetSRID(ST_Point(:longitude, :latitude), 4326)) " +
+            "   ORDER BY admin_level DESC " +
+            "   LIMIT 1" +
+            ") " +
+            "SELECT match.*, " +
+            "   CASE WHEN match.gid_0 IS NULL " +
+            "       THEN NOT EXISTS (SELECT 1 FROM gadm_boundaries gb, cell WHERE ST_Intersects(gb.geom, cell.envelope)) " +
+            "       ELSE match.contains_cell " +
+            "   END AS covers_cell " +
+            "FROM (SELECT 1) AS one LEFT JOIN match ON true";
+
+    private static final Duration QUERY_TIMEOUT = Duration.ofSeconds(10);
+
+    private final DatabaseClient databaseClient;
+
+    public SqlReverseGeocoder(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<AdminHierarchy> lookup(double longitude, double latitude) {
+        return databaseClient.sql(LOOKUP_SQL)
+                .bind("longitude", longitude)
+                .bind("latitude", latitude)
+                .map((row, metadata) -> readHierarchy(row))
+                .one()
+                .timeout(QUERY_TIMEOUT);
+    }
+
+    @Override
+    public Mono<CellLookup> lookupCell(double longitude, double latitude, GeohashCell cell) {
+        return databaseClient.sql(LOOKUP_CELL_SQL)
+                .bind("longitude", longitude)
+                .bind("latitude", latitude)
+                .bind("minLongitude", cell.getMinLongitude())
+                .bind("minLatitude", cell.getMinLatitude())
+                .bind("maxLongitude", cell.getMaxLongitude())
+                .bind("maxLatitude", cell.getMaxLatitude())
+                .map((row, metadata) -> {
+                    AdminHierarchy hierarchy = row.get("gid_0", String.class) != null ? readHierarchy(row) : null;
+                    return new CellLookup(hierarchy, Boolean.TRUE.equals(row.get("covers_cell", Boolean.class)));
+                })
+                .one()
+                .timeout(QUERY_TIMEOUT);
+    }
+
+    /**
+     * Read the admin hierarchy from a row containing {@link #GADM_COLUMNS}
+     */
+    static AdminHierarchy readHierarchy(Row row) {
+        String[] engTypes = new String[AdminHierarchy.MAX_LEVEL];
+        String[] names = new String[AdminHierarchy.MAX_LEVEL + 1];
+        String[] gids = new String[AdminHierarchy.MAX_LEVEL + 1];
+
+        for (int level = 0; level <= AdminHierarchy.MAX_LEVEL; level++) {
+            names[level] = row.get("name_" + level, String.class);
+            gids[level] = row.get("gid_" + level, String.class);
+            if (level > 0) {
+                engTypes[level - 1] = row.get("engtype_" + level, String.class);
+            }
+        }
+
+        return AdminHierarchy.fromGadm(engTypes, names, gids);
+    }
+}
@@ -0,0 +1,163 @@
+package com.guesshole.geocoding;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Packed Sort-Tile-Recursive R-tree over the bounding boxes of a {@link GadmPolygonSet}.
+ * The tree is static and stored level by level in flat arrays, with the children of
+ * node i at a level being nodes i * NODE_CAPACITY onwards on the level below.
+ */
+final class StrTree {
+    private static final int NODE_CAPACITY = 16;
+
+    // Polygon indices in leaf order
+    private final int[] items;
+    // minX, minY, maxX, maxY per node, level 0 being the leaves
+    private final double[][] levelBounds;
+
+    StrTree(GadmPolygonSet polygons) {
+        int size = polygons.size();
+        this.items = sortTileRecursive(polygons);
+
+        double[] leaves = new double[size * 4];
+        for (int i = 0; i < size; i++) {
+            int polygon = items[i];
+            leaves[i * 4] = polygons.minX(polygon);
+            leaves[i * 4 + 1] = polygons.minY(polygon);
+            leaves[i * 4 + 2] = polygons.maxX(polygon);
+            leaves[i * 4 + 3] = polygons.maxY(polygon);
+        }
+
+        int levels = 1;
+        for (int count = size; count > 1; count = ceilDiv(count, NODE_CAPACITY)) {
+            levels++;
+        }
+
+        this.levelBounds = new double[levels][];
+        levelBounds[0] = leaves;
+        for (int level = 1; level < levels; level++) {
+            levelBounds[level] = packLevel(levelBounds[level - 1]);
+        }
+    }
+
+    /**
+     * Visit every polygon whose bounding box contains the point
+     */
+    void search(double x, double y, PolygonVisitor visitor) {
+        search(x, y, x, y, visitor);
+    }
+
+    /**
+     * Visit every polygon whose bounding box intersects the envelope
+     */
+    void search(double minX, double minY, double maxX, double maxY, PolygonVisitor visitor) {
+        if (items.length == 0) {
+            return;
+        }
+
+        int top = levelBounds.length - 1;
+        int[] stackLevels = new int[NODE_CAPACITY * levelBounds.length];
+        int[] stackNodes = new int[NODE_CAPACITY * levelBounds.length];
+        int depth = 0;
+
+        // The top level is always a single root node
+        stackLevels[depth] = top;
+        stackNodes[depth] = 0;
+        depth++;
+
+        while (depth > 0) {
+            depth--;
+            int level = stackLevels[depth];
+            int node = stackNodes[depth];
+            double[] bounds = levelBounds[level];
+
+            if (!intersects(bounds, node, minX, minY, maxX, maxY)) {
+                continue;
+            }
+
+            if (level == 0) {
+                visitor.visit(items[node]);
+                continue;
+            }
+
+            int childCount = levelBounds[level - 1].length / 4;
+            int firstChild = node * NODE_CAPACITY;
+            int lastChild = Math.min(firstChild + NODE_CAPACITY, childCount);
+            for (int child = firstChild; child < lastChild; child++) {
+                stackLevels[depth] = level - 1;
+                stackNodes[depth] = child;
+                depth++;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface PolygonVisitor {
+        void visit(int polygon);
+    }
+
+    private static boolean intersects(double[] bounds, int node, double minX, double minY, double maxX, double maxY) {
+        int b = node * 4;
+        return maxX >= bounds[b] && maxY >= bounds[b + 1] && minX <= bounds[b + 2] && minY <= bounds[b + 3];
+    }
+
+    private static double[] packLevel(double[] children) {
+        int childCount = children.length / 4;
+        int nodeCount = ceilDiv(childCount, NODE_CAPACITY);
+        double[] nodes = new double[nodeCount * 4];
+
+        for (int node = 0; node < nodeCount; node++) {
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            int end = Math.min((node + 1) * NODE_CAPACITY, childCount);
+            for (int child = node * NODE_CAPACITY; child < end; child++) {
+                minX = Math.min(minX, children[child * 4]);
+                minY = Math.min(minY, children[child * 4 + 1]);
+                maxX = Math.max(maxX, children[child * 4 + 2]);
+                maxY = Math.max(maxY, children[child * 4 + 3]);
+            }
+            nodes[node * 4] = minX;
+            nodes[node * 4 + 1] = minY;
+            nodes[node * 4 + 2] = maxX;
+            nodes[node * 4 + 3] = maxY;
+        }
+        return nodes;
+    }
+
+    /**
+     * Order polygons into vertical slices by x centre, then by y centre within each slice
+     */
+    private static int[] sortTileRecursive(GadmPolygonSet polygons) {
+        int size = polygons.size();
+        Integer[] order = new Integer[size];
+        double[] centreX = new double[size];
+        double[] centreY = new double[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            centreX[i] = (polygons.minX(i) + polygons.maxX(i)) / 2;
+            centreY[i] = (polygons.minY(i) + polygons.maxY(i)) / 2;
+        }
+
+        Arrays.sort(order, Comparator.comparingDouble(i -> centreX[i]));
+
+        int leafCount = ceilDiv(size, NODE_CAPACITY);
+        int sliceCount = (int) Math.ceil(Math.sqrt(leafCount));
+        int sliceSize = Math.max(1, sliceCount * NODE_CAPACITY);
+        for (int start = 0; start < size; start += sliceSize) {
+            Arrays.sort(order, start, Math.min(start + sliceSize, size), Comparator.comparingDouble(i -> centreY[i]));
+        }
+
+        int[] items = new int[size];
+        for (int i = 0; i < size; i++) {
+            items[i] = order[i];
+        }
+        return items;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,59 @@
+package com.guesshole.geocoding;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Minimal reader for 2D WKB Polygon and MultiPolygon geometries, as returned by ST_AsBinary.
+ * Coordinates are written straight into an {@link ArrayGadmPolygonSet.Builder} without
+ * creating intermediate geometry objects.
+ */
+final class WkbPolygonReader {
+    private static final int WKB_POLYGON = 3;
+    private static final int WKB_MULTIPOLYGON = 6;
+
+    private WkbPolygonReader() {
+    }
+
+    /**
+     * Append every polygon in the geometry to the builder's current feature
+     *
+     * @throws IllegalArgumentException if the geometry isn't a 2D polygon or multipolygon
+     */
+    static void read(byte[] wkb, ArrayGadmPolygonSet.Builder builder) {
+        ByteBuffer buffer = ByteBuffer.wrap(wkb);
+        int type = readHeader(buffer);
+
+        if (type == WKB_POLYGON) {
+            readPolygon(buffer, builder);
+        } else if (type == WKB_MULTIPOLYGON) {
+            int polygonCount = buffer.getInt();
+            for (int i = 0; i < polygonCount; i++) {
+                int partType = readHeader(buffer);
+                if (partType != WKB_POLYGON) {
+                    throw new IllegalArgumentException("Unexpected WKB type " + partType + " inside multipolygon");
+                }
+                readPolygon(buffer, builder);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported WKB geometry type " + type);
+        }
+    }
+
+    private static int readHeader(ByteBuffer buffer) {
+        buffer.order(buffer.get() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        return buffer.getInt();
+    }
+
+    private static void readPolygon(ByteBuffer buffer, ArrayGadmPolygonSet.Builder builder) {
+        builder.beginPolygon();
+        int ringCount = buffer.getInt();
+        for (int ring = 0; ring < ringCount; ring++) {
+            builder.beginRing();
+            int pointCount = buffer.getInt();
+            for (int point = 0; point < pointCount; point++) {
+                builder.addPoint(buffer.getDouble(), buffer.getDouble());
+            }
+        }
+    }
+}
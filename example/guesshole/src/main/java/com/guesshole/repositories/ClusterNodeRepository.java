@@ -0,0 +1,39 @@
+package com.guesshole.repositories;
+
+import com.guesshole.entities.ClusterNode;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+@Repository
+public interface ClusterNodeRepository extends ReactiveCrudRepository<ClusterNode, UUID> {
+
+    /**
+     * Record that a node is alive, adding it if it hasn't sent a heartbeat before.
+     * Heartbeats use the database clock so nodes with skewed clocks agree on who is live.
+     *
+     * @return A Mono containing the number of rows affected
+     */
+    @Query("INSERT INTO cluster_node (node_id, address) VALUES (:nodeId, :address) " +
+            "ON CONFLICT (node_id) DO UPDATE SET address = EXCLUDED.address, last_heartbeat = NOW()")
+    Mono<Integer> heartbeat(@Param("nodeId") UUID nodeId, @Param("address") String address);
+
+    /**
+     * Find the nodes that have sent a heartbeat within the timeout
+     */
+    @Query("SELECT * FROM cluster_node WHERE last_heartbeat > NOW() - make_interval(secs => :timeoutSeconds) ORDER BY node_id")
+    Flux<ClusterNode> findLive(@Param("timeoutSeconds") long timeoutSeconds);
+
+    /**
+     * Delete nodes that stopped sending heartbeats long ago
+     *
+     * @return A Mono containing the number of rows affected
+     */
+    @Query("DELETE FROM cluster_node WHERE last_heartbeat < NOW() - make_interval(secs => :ageSeconds)")
+    Mono<Integer> deleteStale(@Param("ageSeconds") long ageSeconds);
+}
@@ -7,5 +7,5 @@ import org.springframework.stereotype.Repository;
 import java.util.UUID;
 
 @Repository
-public interface GameInstanceRepository extends ReactiveCrudRepository<GameInstance, UUID> {
+public interface GameInstanceRepository extends ReactiveCrudRepository<GameInstance, UUID>, GameInstanceRepositoryCustom {
 }
\ No newline at end of file
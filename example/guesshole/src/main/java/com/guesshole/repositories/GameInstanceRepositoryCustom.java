@@ -0,0 +1,23 @@
+package com.guesshole.repositories;
+
+import com.guesshole.entities.GameInstance;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Custom game instance queries that don't fit the derived query model
+ */
+public interface GameInstanceRepositoryCustom {
+
+    /**
+     * Insert a game instance, all of its rounds and an association for every player in the
+     * lobby in a single statement, so a game is either created whole or not at all.
+     * The game instance and its rounds must already have their IDs assigned.
+     *
+     * @param gameInstance the game instance to insert, with its rounds attached
+     * @param lobbyId the lobby whose players are associated with the game instance
+     * @return a Mono containing the number of players associated with the game instance
+     */
+    Mono<Long> insertWithRoundsAndPlayers(GameInstance gameInstance, UUID lobbyId);
+}
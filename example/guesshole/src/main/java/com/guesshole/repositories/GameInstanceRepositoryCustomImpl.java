@@ -0,0 +1,87 @@
+package com.guesshole.repositories;
+
+import com.guesshole.entities.GameInstance;
+import com.guesshole.entities.Round;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Implementation of {@link GameInstanceRepositoryCustom}, picked up by Spring Data as a repository fragment
+ */
+public class GameInstanceRepositoryCustomImpl implements GameInstanceRepositoryCustom {
+
+    private static final String INSERT_WITH_ROUNDS_AND_PLAYERS_SQL =
+            "WITH inserted_instance AS (" +
+            "   INSERT INTO game_instance (id, game_type) VALUES (:id, :gameType) " +
+            "   RETURNING id" +
+            "), inserted_rounds AS (" +
+            "   INSERT INTO round (id, game_instance_id, round_order, youtube_video_id, start_time_seconds, " +
+            "       duration_seconds, latitude, longitude, location_point_id) " +
+            "   SELECT r.id, inserted_instance.id, r.round_order, r.youtube_video_id, r.start_time_seconds, " +
+            "       r.duration_seconds, r.latitude, r.longitude, r.location_point_id " +
+            "   FROM inserted_instance, " +
+            "       UNNEST(CAST(:roundIds AS uuid[]), CAST(:roundOrders AS int4[]), CAST(:videoIds AS varchar[]), " +
+            "              CAST(:startTimes AS int4[]), CAST(:durations AS int4[]), CAST(:latitudes AS numeric[]), " +
+            "              CAST(:longitudes AS numeric[]), CAST(:locationPointIds AS int8[])) " +
+            "       AS r(id, round_order, youtube_video_id, start_time_seconds, duration_seconds, latitude, " +
+            "            longitude, location_point_id)" +
+            "), inserted_players AS (" +
+            "   INSERT INTO game_instance_player (id, game_instance_id, player_id) " +
+            "   SELECT gen_random_uuid(), inserted_instance.id, p.id " +
+            "   FROM inserted_instance, players p WHERE p.lobby_id = :lobbyId " +
+            "   ON CONFLICT (game_instance_id, player_id) DO NOTHING " +
+            "   RETURNING player_id" +
+            ") " +
+            "SELECT COUNT(*) AS players FROM inserted_players";
+
+    private final DatabaseClient databaseClient;
+
+    public GameInstanceRepositoryCustomImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<Long> insertWithRoundsAndPlayers(GameInstance gameInstance, UUID lobbyId) {
+        List<Round> rounds = gameInstance.getRounds();
+        int size = rounds.size();
+        UUID[] roundIds = new UUID[size];
+        Integer[] roundOrders = new Integer[size];
+        String[] videoIds = new String[size];
+        Integer[] startTimes = new Integer[size];
+        Integer[] durations = new Integer[size];
+        BigDecimal[] latitudes = new BigDecimal[size];
+        BigDecimal[] longitudes = new BigDecimal[size];
+        Long[] locationPointIds = new Long[size];
+
+        for (int i = 0; i < size; i++) {
+            Round round = rounds.get(i);
+            roundIds[i] = round.getId();
+            roundOrders[i] = round.getRoundOrder();
+            videoIds[i] = round.getYoutubeVideoId();
+            startTimes[i] = round.getStartTimeSeconds();
+            durations[i] = round.getDurationSeconds();
+            latitudes[i] = round.getLatitude();
+            longitudes[i] = round.getLongitude();
+            locationPointIds[i] = round.getLocationPointId();
+        }
+
+        return databaseClient.sql(INSERT_WITH_ROUNDS_AND_PLAYERS_SQL)
+                .bind("id", gameInstance.getId())
+                .bind("gameType", gameInstance.getGameType().name())
+                .bind("lobbyId", lobbyId)
+                .bind("roundIds", roundIds)
+                .bind("roundOrders", roundOrders)
+                .bind("videoIds", videoIds)
+                .bind("startTimes", startTimes)
+                .bind("durations", durations)
+                .bind("latitudes", latitudes)
+                .bind("longitudes", longitudes)
+                .bind("locationPointIds", locationPointIds)
+                .map(row -> row.get("players", Long.class))
+                .one();
+    }
+}
@@ -1,13 +1,59 @@
 package com.guesshole.repositories;
 
 import com.guesshole.entities.GameState;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
 import java.util.UUID;
 
 @Repository
 public interface GameStateRepository extends ReactiveCrudRepository<GameState, UUID> {
     Mono<GameState> findByLobbyId(UUID lobbyId);
-}
\ No newline at end of file
+
+    Flux<GameState> findByDeadlineAtIsNotNull();
+
+    /**
+     * Write a lobby's current state without reading the row first.
+     *
+     * @return A Mono containing the number of rows affected
+     */
+    @Query("UPDATE game_state SET lobby_state = :lobbyState, round_id = :roundId, game_instance_id = :gameInstanceId, updated_at = NOW() WHERE lobby_id = :lobbyId")
+    Mono<Integer> updateByLobbyId(
+            @Param("lobbyId") UUID lobbyId,
+            @Param("lobbyState") String lobbyState,
+            @Param("roundId") UUID roundId,
+            @Param("gameInstanceId") UUID gameInstanceId
+    );
+
+    /**
+     * Record the pending deadline of a lobby, replacing any previous one
+     *
+     * @return A Mono containing the number of rows affected
+     */
+    @Query("UPDATE game_state SET deadline_type = :deadlineType, deadline_round_id = :roundId, deadline_at = :deadlineAt WHERE lobby_id = :lobbyId")
+    Mono<Integer> setDeadline(
+            @Param("lobbyId") UUID lobbyId,
+            @Param("deadlineType") String deadlineType,
+            @Param("roundId") UUID roundId,
+            @Param("deadlineAt") Instant deadlineAt
+    );
+
+    /**
+     * Clear a lobby's deadline, but only if it is still the given one, so a deadline that
+     * has since been replaced is left alone
+     *
+     * @return A Mono containing the number of rows affected
+     */
+    @Query("UPDATE game_state SET deadline_type = NULL, deadline_round_id = NULL, deadline_at = NULL " +
+            "WHERE lobby_id = :lobbyId AND deadline_type = :deadlineType AND deadline_round_id = :roundId")
+    Mono<Integer> clearDeadline(
+            @Param("lobbyId") UUID lobbyId,
+            @Param("deadlineType") String deadlineType,
+            @Param("roundId") UUID roundId
+    );
+}
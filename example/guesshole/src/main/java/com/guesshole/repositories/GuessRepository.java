@@ -9,7 +9,7 @@ import reactor.core.publisher.Mono;
 import java.util.UUID;
 
 @Repository
-public interface GuessRepository extends ReactiveCrudRepository<Guess, UUID> {
+public interface GuessRepository extends ReactiveCrudRepository<Guess, UUID>, GuessRepositoryCustom {
 
     Mono<Long>  countByRoundId(UUID roundId);
 
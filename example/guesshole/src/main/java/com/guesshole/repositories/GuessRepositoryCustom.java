@@ -0,0 +1,47 @@
+package com.guesshole.repositories;
+
+import com.guesshole.dto.ScoreboardEntry;
+import com.guesshole.entities.Guess;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Custom guess queries that don't fit the derived query model
+ */
+public interface GuessRepositoryCustom {
+
+    /**
+     * Insert a guess with its score multipliers inline in the same row, adding its score
+     * to the player's running total for the game instance in the same statement.
+     * The guess must already have its ID assigned.
+     *
+     * @param guess the guess to insert, with its score multipliers attached
+     * @return a Mono containing true if no other guess existed for the round when this one was written
+     */
+    Mono<Boolean> insertWithMultipliers(Guess guess);
+
+    /**
+     * Insert a batch of guesses with their score multipliers inline in a single statement, skipping
+     * guesses whose ID already exists, and add the scores of the guesses that were inserted to
+     * the players' running totals in the same statement. Writing the same batch twice is safe.
+     * The guesses must already have their IDs assigned.
+     *
+     * @param guesses the guesses to insert, with their score multipliers attached
+     * @return a Mono containing the number of guesses that were inserted
+     */
+    Mono<Long> insertAllWithMultipliers(List<Guess> guesses);
+
+    /**
+     * Read the scoreboard for a round in a single query: every guess made in the round,
+     * with its location point and score multipliers, and the guessing player's running
+     * total for the game instance.
+     *
+     * @param gameInstanceId the game instance the round belongs to
+     * @param roundId the round to build the scoreboard for
+     * @return a Flux with one entry per player who guessed in the round
+     */
+    Flux<ScoreboardEntry> findScoreboard(UUID gameInstanceId, UUID roundId);
+}
@@ -0,0 +1,233 @@
+package com.guesshole.repositories;
+
+import com.guesshole.dto.ScoreboardEntry;
+import com.guesshole.entities.Guess;
+import com.guesshole.entities.LocationPoint;
+import com.guesshole.entities.ScoreMultipliers;
+import io.r2dbc.postgresql.codec.Json;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Implementation of {@link GuessRepositoryCustom}, picked up by Spring Data as a repository fragment
+ */
+public class GuessRepositoryCustomImpl implements GuessRepositoryCustom {
+
+    private static final String INSERT_GUESS_SQL =
+            "WITH prior_guess AS (" +
+            "   SELECT EXISTS(SELECT 1 FROM guesses WHERE round_id = :roundId) AS found" +
+            "), inserted_guesses AS (" +
+            "   INSERT INTO guesses (id, player_id, round_id, game_instance_id, latitude, longitude, " +
+            "       location_point_id, distance_km, base_score, score, round_duration, guess_time, \"timestamp\", " +
+            "       score_multipliers) " +
+            "   VALUES (:id, :playerId, :roundId, :gameInstanceId, :latitude, :longitude, " +
+            "       :locationPointId, :distanceKm, :baseScore, :score, :roundDuration, :guessTime, :timestamp, " +
+            "       CAST(:scoreMultipliers AS jsonb)) " +
+            "   RETURNING id, game_instance_id, player_id, score, score_multipliers" +
+            ")";
+
+    private static final String INSERT_GUESSES_SQL =
+            "WITH inserted_guesses AS (" +
+            "   INSERT INTO guesses (id, player_id, round_id, game_instance_id, latitude, longitude, " +
+            "       location_point_id, distance_km, base_score, score, round_duration, guess_time, \"timestamp\", " +
+            "       score_multipliers) " +
+            "   SELECT * FROM UNNEST(CAST(:ids AS uuid[]), CAST(:playerIds AS uuid[]), CAST(:roundIds AS uuid[]), " +
+            "       CAST(:gameInstanceIds AS uuid[]), CAST(:latitudes AS numeric[]), CAST(:longitudes AS numeric[]), " +
+            "       CAST(:locationPointIds AS int8[]), CAST(:distances AS float8[]), CAST(:baseScores AS int4[]), " +
+            "       CAST(:scores AS int4[]), CAST(:roundDurations AS int4[]), CAST(:guessTimes AS int4[]), " +
+            "       CAST(:timestamps AS timestamptz[]), CAST(:scoreMultipliers AS jsonb[])) " +
+            "   ON CONFLICT (id) DO NOTHING " +
+            "   RETURNING id, game_instance_id, player_id, score, score_multipliers" +
+            ")";
+
+    // Copies the inline multipliers of the inserted guesses into the score_multipliers table
+    private static final String PROJECT_MULTIPLIERS_SQL =
+            ", projected_multipliers AS (" +
+            "   INSERT INTO score_multipliers (guess_id, multiplier_type, multiplier_value, display_name, tooltip) " +
+            "   SELECT inserted_guesses.id, m.\"multiplierType\", m.\"multiplierValue\", m.\"displayName\", m.tooltip " +
+            "   FROM inserted_guesses, jsonb_to_recordset(inserted_guesses.score_multipliers) " +
+            "       AS m(\"multiplierType\" varchar, \"multiplierValue\" float8, \"displayName\" varchar, tooltip text)" +
+            ")";
+
+    private static final String UPDATE_TOTALS_SQL =
+            ", updated_totals AS (" +
+            "   INSERT INTO game_instance_player (id, game_instance_id, player_id, total_score) " +
+            "   SELECT gen_random_uuid(), game_instance_id, player_id, SUM(COALESCE(score, 0)) " +
+            "   FROM inserted_guesses GROUP BY game_instance_id, player_id " +
+            "   ON CONFLICT (game_instance_id, player_id) " +
+            "       DO UPDATE SET total_score = game_instance_player.total_score + EXCLUDED.total_score" +
+            ") ";
+
+    private static final String SCOREBOARD_SQL =
+            "SELECT g.id, g.player_id, g.round_id, g.game_instance_id, g.latitude, g.longitude, " +
+            "       g.location_point_id, g.distance_km, g.base_score, g.score, g.round_duration, g.guess_time, " +
+            "       g.\"timestamp\", g.score_multipliers, COALESCE(gip.total_score, 0) AS total_score, " +
+            "       lp.id AS lp_id, lp.latitude AS lp_latitude, lp.longitude AS lp_longitude, " +
+            "       lp.admin0_type, lp.admin0_name, lp.gid0, lp.admin1_type, lp.admin1_name, lp.gid1, " +
+            "       lp.admin2_type, lp.admin2_name, lp.gid2, lp.admin3_type, lp.admin3_name, lp.gid3, " +
+            "       lp.admin4_type, lp.admin4_name, lp.gid4, lp.admin5_type, lp.admin5_name, lp.gid5 " +
+            "FROM guesses g " +
+            "LEFT JOIN game_instance_player gip " +
+            "   ON gip.game_instance_id = :gameInstanceId AND gip.player_id = g.player_id " +
+            "LEFT JOIN location_points lp ON lp.id = g.location_point_id " +
+            "WHERE g.round_id = :roundId";
+
+    private final DatabaseClient databaseClient;
+    private final String insertWithMultipliersSql;
+    private final String insertAllWithMultipliersSql;
+
+    public GuessRepositoryCustomImpl(
+            DatabaseClient databaseClient,
+            @Value("${app.guesses.multipliers.projection.enabled:false}") boolean projectMultipliers) {
+        this.databaseClient = databaseClient;
+        String projection = projectMultipliers ? PROJECT_MULTIPLIERS_SQL : "";
+        this.insertWithMultipliersSql = INSERT_GUESS_SQL + projection + UPDATE_TOTALS_SQL +
+                "SELECT NOT prior_guess.found AS first_guess FROM prior_guess, inserted_guesses";
+        this.insertAllWithMultipliersSql = INSERT_GUESSES_SQL + projection + UPDATE_TOTALS_SQL +
+                "SELECT COUNT(*) AS inserted FROM inserted_guesses";
+    }
+
+    @Override
+    public Mono<Boolean> insertWithMultipliers(Guess guess) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(insertWithMultipliersSql)
+                .bind("id", guess.getId())
+                .bind("playerId", guess.getPlayerId())
+                .bind("roundId", guess.getRoundId())
+                .bind("gameInstanceId", guess.getGameInstanceId())
+                .bind("latitude", guess.getLatitude())
+                .bind("longitude", guess.getLongitude())
+                .bind("timestamp", guess.getTimestamp())
+                .bind("scoreMultipliers", ScoreMultipliers.of(guess.getScoreMultipliers()).toJson());
+
+        spec = bindNullable(spec, "locationPointId", guess.getLocationPointId(), Long.class);
+        spec = bindNullable(spec, "distanceKm", guess.getDistanceKm(), Double.class);
+        spec = bindNullable(spec, "baseScore", guess.getBaseScore(), Integer.class);
+        spec = bindNullable(spec, "score", guess.getScore(), Integer.class);
+        spec = bindNullable(spec, "roundDuration", guess.getRoundDuration(), Integer.class);
+        spec = bindNullable(spec, "guessTime", guess.getGuessTime(), Integer.class);
+
+        return spec.map(row -> row.get("first_guess", Boolean.class)).one();
+    }
+
+    @Override
+    public Mono<Long> insertAllWithMultipliers(List<Guess> guesses) {
+        int size = guesses.size();
+        UUID[] ids = new UUID[size];
+        UUID[] playerIds = new UUID[size];
+        UUID[] roundIds = new UUID[size];
+        UUID[] gameInstanceIds = new UUID[size];
+        BigDecimal[] latitudes = new BigDecimal[size];
+        BigDecimal[] longitudes = new BigDecimal[size];
+        Long[] locationPointIds = new Long[size];
+        Double[] distances = new Double[size];
+        Integer[] baseScores = new Integer[size];
+        Integer[] scores = new Integer[size];
+        Integer[] roundDurations = new Integer[size];
+        Integer[] guessTimes = new Integer[size];
+        // Bound as text and cast, the driver has no array codec for Instant
+        String[] timestamps = new String[size];
+        String[] scoreMultipliers = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            Guess guess = guesses.get(i);
+            ids[i] = guess.getId();
+            playerIds[i] = guess.getPlayerId();
+            roundIds[i] = guess.getRoundId();
+            gameInstanceIds[i] = guess.getGameInstanceId();
+            latitudes[i] = guess.getLatitude();
+            longitudes[i] = guess.getLongitude();
+            locationPointIds[i] = guess.getLocationPointId();
+            distances[i] = guess.getDistanceKm();
+            baseScores[i] = guess.getBaseScore();
+            scores[i] = guess.getScore();
+            roundDurations[i] = guess.getRoundDuration();
+            guessTimes[i] = guess.getGuessTime();
+            timestamps[i] = guess.getTimestamp().toString();
+            scoreMultipliers[i] = ScoreMultipliers.of(guess.getScoreMultipliers()).toJson();
+        }
+
+        return databaseClient.sql(insertAllWithMultipliersSql)
+                .bind("ids", ids)
+                .bind("playerIds", playerIds)
+                .bind("roundIds", roundIds)
+                .bind("gameInstanceIds", gameInstanceIds)
+                .bind("latitudes", latitudes)
+                .bind("longitudes", longitudes)
+                .bind("locationPointIds", locationPointIds)
+                .bind("distances", distances)
+                .bind("baseScores", baseScores)
+                .bind("scores", scores)
+                .bind("roundDurations", roundDurations)
+                .bind("guessTimes", guessTimes)
+                .bind("timestamps", timestamps)
+                .bind("scoreMultipliers", scoreMultipliers)
+                .map(row -> row.get("inserted", Long.class))
+                .one();
+    }
+
+    @Override
+    public Flux<ScoreboardEntry> findScoreboard(UUID gameInstanceId, UUID roundId) {
+        return databaseClient.sql(SCOREBOARD_SQL)
+                .bind("gameInstanceId", gameInstanceId)
+                .bind("roundId", roundId)
+                .map((row, metadata) -> {
+                    Guess guess = readGuess(row);
+                    Integer totalScore = row.get("total_score", Integer.class);
+                    return new ScoreboardEntry(guess, totalScore != null ? totalScore : 0);
+                })
+                .all();
+    }
+
+    private static Guess readGuess(Row row) {
+        Guess guess = new Guess();
+        guess.setId(row.get("id", UUID.class));
+        guess.setPlayerId(row.get("player_id", UUID.class));
+        guess.setRoundId(row.get("round_id", UUID.class));
+        guess.setGameInstanceId(row.get("game_instance_id", UUID.class));
+        guess.setLatitude(row.get("latitude", BigDecimal.class));
+        guess.setLongitude(row.get("longitude", BigDecimal.class));
+        guess.setLocationPointId(row.get("location_point_id", Long.class));
+        guess.setDistanceKm(row.get("distance_km", Double.class));
+        guess.setBaseScore(row.get("base_score", Integer.class));
+        guess.setScore(row.get("score", Integer.class));
+        guess.setRoundDuration(row.get("round_duration", Integer.class));
+        guess.setGuessTime(row.get("guess_time", Integer.class));
+        guess.setTimestamp(row.get("timestamp", Instant.class));
+
+        Long locationPointId = row.get("lp_id", Long.class);
+        if (locationPointId != null) {
+            guess.setLocationPoint(readLocationPoint(row, locationPointId));
+        }
+        Json multipliers = row.get("score_multipliers", Json.class);
+        if (multipliers != null) {
+            guess.setScoreMultipliers(ScoreMultipliers.fromJson(multipliers.asString()).asList());
+        }
+        return guess;
+    }
+
+    private static LocationPoint readLocationPoint(Row row, Long id) {
+        return new LocationPoint.Builder()
+                .id(id)
+                .coordinates(row.get("lp_latitude", Double.class), row.get("lp_longitude", Double.class))
+                .level0(row.get("admin0_type", String.class), row.get("admin0_name", String.class), row.get("gid0", String.class))
+                .level1(row.get("admin1_type", String.class), row.get("admin1_name", String.class), row.get("gid1", String.class))
+                .level2(row.get("admin2_type", String.class), row.get("admin2_name", String.class), row.get("gid2", String.class))
+                .level3(row.get("admin3_type", String.class), row.get("admin3_name", String.class), row.get("gid3", String.class))
+                .level4(row.get("admin4_type", String.class), row.get("admin4_name", String.class), row.get("gid4", String.class))
+                .level5(row.get("admin5_type", String.class), row.get("admin5_name", String.class), row.get("gid5", String.class))
+                .build();
+    }
+
+    private static <T> DatabaseClient.GenericExecuteSpec bindNullable(
+            DatabaseClient.GenericExecuteSpec spec, String name, T value, Class<T> type) {
+        return value != null ? spec.bind(name, value) : spec.bindNull(name, type);
+    }
+}
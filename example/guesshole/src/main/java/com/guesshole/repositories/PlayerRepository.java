@@ -2,6 +2,7 @@ package com.guesshole.repositories;
 
 import com.guesshole.entities.Player;
 import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
@@ -23,4 +24,16 @@ public interface PlayerRepository extends ReactiveCrudRepository<Player, UUID> {
      */
     @Query("SELECT * FROM players WHERE lobby_id = :lobbyId")
     Flux<Player> findAllByLobbyId(UUID lobbyId);
-}
\ No newline at end of file
+
+    /**
+     * Apply a batch of active status changes in one statement, skipping players whose status
+     * already is the requested one. The IDs and statuses are paired by position.
+     *
+     * @return The players whose status changed
+     */
+    @Query("UPDATE players SET active = v.active " +
+            "FROM UNNEST(CAST(:ids AS uuid[]), CAST(:active AS boolean[])) AS v(id, active) " +
+            "WHERE players.id = v.id AND players.active <> v.active " +
+            "RETURNING players.*")
+    Flux<Player> updateActiveAll(@Param("ids") UUID[] ids, @Param("active") Boolean[] active);
+}
@@ -54,14 +54,24 @@ public interface RoundTemplateRepository extends ReactiveCrudRepository<RoundTem
     );
 
     /**
-     * Select a specific number of random RoundTemplates.
+     * Select a specific number of random RoundTemplates that games can be built from, as findPlayable.
      * This method ensures we get exactly the number requested or fewer if not enough exist.
      *
      * @param numRounds The exact number of round templates to return
-     * @return A Flux of randomly selected RoundTemplate entities
+     * @param approvedOnly Whether to leave out templates that have never been approved
+     * @return A Flux of randomly selected playable RoundTemplate entities
      */
-    @Query("SELECT * FROM round_template ORDER BY RANDOM() LIMIT :numRounds")
-    Flux<RoundTemplate> selectRandomTemplates(@Param("numRounds") int numRounds);
+    @Query("SELECT * FROM round_template WHERE latitude IS NOT NULL AND longitude IS NOT NULL AND (NOT :approvedOnly OR approve_at IS NOT NULL) ORDER BY RANDOM() LIMIT :numRounds")
+    Flux<RoundTemplate> selectRandomPlayable(@Param("numRounds") int numRounds, @Param("approvedOnly") boolean approvedOnly);
+
+    /**
+     * Find the templates games can be built from: those with coordinates and, if required, approved.
+     *
+     * @param approvedOnly Whether to leave out templates that have never been approved
+     * @return A Flux of playable RoundTemplate entities
+     */
+    @Query("SELECT * FROM round_template WHERE latitude IS NOT NULL AND longitude IS NOT NULL AND (NOT :approvedOnly OR approve_at IS NOT NULL)")
+    Flux<RoundTemplate> findPlayable(@Param("approvedOnly") boolean approvedOnly);
 
     /**
      * Count round templates by source.
@@ -129,4 +139,25 @@ public interface RoundTemplateRepository extends ReactiveCrudRepository<RoundTem
             @Param("latitude") BigDecimal latitude,
             @Param("longitude") BigDecimal longitude
     );
-}
\ No newline at end of file
+
+    /**
+     * Find templates that have coordinates but no location point yet.
+     *
+     * @return A Flux of RoundTemplate entities missing a location point
+     */
+    @Query("SELECT * FROM round_template WHERE location_point_id IS NULL AND latitude IS NOT NULL AND longitude IS NOT NULL")
+    Flux<RoundTemplate> findMissingLocationPoint();
+
+    /**
+     * Update the location point for a template.
+     *
+     * @param id The ID of the template to update
+     * @param locationPointId The ID of the location point
+     * @return A Mono containing the number of rows affected
+     */
+    @Query("UPDATE round_template SET location_point_id = :locationPointId, updated_at = NOW() WHERE id = :id")
+    Mono<Integer> updateLocationPointId(
+            @Param("id") UUID id,
+            @Param("locationPointId") Long locationPointId
+    );
+}
@@ -0,0 +1,189 @@
+package com.guesshole.services;
+
+import com.guesshole.config.GameRoundProperties;
+import com.guesshole.entities.GameConfiguration;
+import com.guesshole.entities.LocationPoint;
+import com.guesshole.entities.MultiplierType;
+import com.guesshole.entities.ScoreMultiplier;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The standard scoring: up to 1000 points for distance, a time bonus weighted by accuracy,
+ * and multipliers for guessing fast, guessing first and getting the country, region or
+ * district right. Applies to every game no other rules claim.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class CityGuesserScoringRules implements ScoringRules {
+    private static final int TRIGGER_HAPPY = 0;
+    private static final int FIRST_GUESS = 1;
+    private static final int CORRECT_COUNTRY = 2;
+    private static final int CORRECT_CITY = 3;
+    private static final int CORRECT_COUNTY = 4;
+
+    private static final ScoreMultiplier TRIGGER_HAPPY_MULTIPLIER = new ScoreMultiplier(
+            1.2f, MultiplierType.TRIGGER_HAPPY, "Trigger Happy!", "Trigger Happy Bonus: Guess within 5 seconds");
+    private static final ScoreMultiplier FIRST_GUESS_MULTIPLIER = new ScoreMultiplier(
+            1.1f, MultiplierType.FIRST_GUESS, "First Guess!", "First Guess Bonus: You were the first to guess this round");
+
+    // Target locations whose multipliers are kept, more than enough for every active round
+    private static final int MAX_CACHED_TARGETS = 10_000;
+
+    /**
+     * The settings as primitives, replaced as a whole on reload
+     */
+    private static final class Settings {
+        private final double maxDistance;
+        private final double minDistance;
+        private final double distanceMultiplier;
+        private final double timeMultiplier;
+        private final double graceTime;
+
+        private Settings(GameRoundProperties properties) {
+            this.maxDistance = properties.getMaxDistanceThreshold();
+            this.minDistance = properties.getMinDistanceThreshold();
+            this.distanceMultiplier = properties.getDistanceScoreMultiplier();
+            this.timeMultiplier = properties.getTimeScoreMultiplier();
+            this.graceTime = properties.getGraceTimeThreshold();
+        }
+    }
+
+    /**
+     * Every multiplier a guess at one target location can earn, and every combination of
+     * them as a shared list, built the first time a combination is earned
+     */
+    private static final class TargetMultipliers {
+        private final ScoreMultiplier[] multipliers = new ScoreMultiplier[5];
+        @SuppressWarnings("unchecked")
+        private final List<ScoreMultiplier>[] combinations = new List[1 << 5];
+
+        private TargetMultipliers(LocationPoint target) {
+            multipliers[TRIGGER_HAPPY] = TRIGGER_HAPPY_MULTIPLIER;
+            multipliers[FIRST_GUESS] = FIRST_GUESS_MULTIPLIER;
+            multipliers[CORRECT_COUNTRY] = new ScoreMultiplier(1.1f, MultiplierType.CORRECT_COUNTRY,
+                    "Country Bonus!", "Country Bonus: Correctly identified " + target.getAdmin0Name());
+            // Sometimes for the right state, other times the metropolitan, province, region or even city
+            multipliers[CORRECT_CITY] = new ScoreMultiplier(1.3f, MultiplierType.CORRECT_CITY,
+                    target.getAdmin1Type() + " Bonus!",
+                    target.getAdmin1Type() + " Bonus: Correctly identified " + target.getAdmin1Name());
+            // Sometimes for the right city, or other level-2 administrative region
+            multipliers[CORRECT_COUNTY] = new ScoreMultiplier(1.5f, MultiplierType.CORRECT_COUNTY,
+                    target.getAdmin2Type() + " Bonus!",
+                    target.getAdmin2Type() + " Bonus: Correctly identified " + target.getAdmin2Name());
+        }
+
+        private List<ScoreMultiplier> combination(int earned) {
+            List<ScoreMultiplier> combination = combinations[earned];
+            if (combination == null) {
+                List<ScoreMultiplier> selected = new ArrayList<>(multipliers.length);
+                for (int i = 0; i < multipliers.length; i++) {
+                    if ((earned & (1 << i)) != 0) {
+                        selected.add(multipliers[i]);
+                    }
+                }
+                combination = List.copyOf(selected);
+                combinations[earned] = combination;
+            }
+            return combination;
+        }
+    }
+
+    private volatile Settings settings = new Settings(new GameRoundProperties());
+    private final Map<Long, TargetMultipliers> targets = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean appliesTo(GameConfiguration gameConfiguration) {
+        return true;
+    }
+
+    @Override
+    public void compile(GameRoundProperties properties) {
+        settings = new Settings(properties);
+    }
+
+    @Override
+    public ScoringRules preview(GameRoundProperties properties) {
+        CityGuesserScoringRules preview = new CityGuesserScoringRules();
+        preview.compile(properties);
+        return preview;
+    }
+
+    @Override
+    public int baseScore(double distanceKm, int roundDuration, int guessTime) {
+        Settings current = settings;
+
+        // Cap the distance at the maximum threshold
+        double cappedDistance = Math.min(distanceKm, current.maxDistance);
+
+        // Accuracy falls linearly from 100% at the minimum distance threshold to 0% at the maximum
+        double accuracyPercentage;
+        if (cappedDistance <= current.minDistance) {
+            accuracyPercentage = 1.0;
+        } else if (cappedDistance >= current.maxDistance) {
+            accuracyPercentage = 0.0;
+        } else {
+            accuracyPercentage = 1.0 - ((cappedDistance - current.minDistance) / (current.maxDistance - current.minDistance));
+        }
+        double baseDistanceScore = 1000 * accuracyPercentage;
+
+        // The time bonus falls linearly from 100% at the grace time to 0% at the end of the round
+        double timePercentage;
+        if (guessTime <= current.graceTime) {
+            timePercentage = 1.0;
+        } else if (guessTime >= roundDuration) {
+            timePercentage = 0.0;
+        } else {
+            timePercentage = 1.0 - ((guessTime - current.graceTime) / (roundDuration - current.graceTime));
+        }
+
+        // Weighting the time bonus by accuracy means fast but completely wrong guesses get nothing
+        double timeWeightedScore = baseDistanceScore * timePercentage * current.timeMultiplier;
+        int finalScore = (int) Math.round((baseDistanceScore * current.distanceMultiplier) + timeWeightedScore);
+        return Math.max(0, finalScore);
+    }
+
+    @Override
+    public List<ScoreMultiplier> multipliers(int guessTime, boolean isFirstGuess, boolean isSoloGame,
+                                             LocationPoint guessedLocation, LocationPoint targetLocation) {
+        int earned = 0;
+        if (guessTime < 5) {
+            earned |= 1 << TRIGGER_HAPPY;
+        }
+        // First guess bonus - only in games with multiple players
+        if (!isSoloGame && isFirstGuess) {
+            earned |= 1 << FIRST_GUESS;
+        }
+        if (Objects.equals(guessedLocation.getAdmin0Name(), targetLocation.getAdmin0Name())) {
+            earned |= 1 << CORRECT_COUNTRY;
+        }
+        if (Objects.equals(guessedLocation.getAdmin1Name(), targetLocation.getAdmin1Name())) {
+            earned |= 1 << CORRECT_CITY;
+        }
+        if (Objects.equals(guessedLocation.getAdmin2Name(), targetLocation.getAdmin2Name())) {
+            earned |= 1 << CORRECT_COUNTY;
+        }
+        return targetMultipliers(targetLocation).combination(earned);
+    }
+
+    private TargetMultipliers targetMultipliers(LocationPoint target) {
+        if (target.getId() == null) {
+            return new TargetMultipliers(target);
+        }
+        TargetMultipliers cached = targets.get(target.getId());
+        if (cached == null) {
+            if (targets.size() >= MAX_CACHED_TARGETS) {
+                targets.clear();
+            }
+            cached = targets.computeIfAbsent(target.getId(), id -> new TargetMultipliers(target));
+        }
+        return cached;
+    }
+}
@@ -0,0 +1,225 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.GameInstance;
+import com.guesshole.entities.Round;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps game instances with their rounds built ahead of time for each game configuration
+ * being played, so starting a game only has to claim one and write it. Sets are built in
+ * memory in the background and are not written until claimed, so nothing is left behind
+ * in the database when the node stops.
+ * <p>
+ * How many sets are kept for a configuration follows an exponentially weighted moving
+ * average of how often games with it are started. Configurations nobody plays decay to
+ * nothing and are dropped.
+ */
+@Service
+public class GameInstancePool {
+    private static final Logger log = LoggerFactory.getLogger(GameInstancePool.class);
+    private static final double EWMA_ALPHA = 0.2;
+    // Below this many starts per interval a configuration is considered idle
+    private static final double IDLE_RATE = 0.05;
+
+    /**
+     * The settings that make one pre-built game interchangeable with another
+     */
+    private static final class PoolKey {
+        private final int rounds;
+        private final int roundLength;
+        private final String geoType;
+
+        private PoolKey(int rounds, int roundLength, String geoType) {
+            this.rounds = rounds;
+            this.roundLength = roundLength;
+            this.geoType = geoType != null ? geoType.toUpperCase(Locale.ROOT) : "WORLD";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PoolKey)) return false;
+            PoolKey other = (PoolKey) o;
+            return rounds == other.rounds && roundLength == other.roundLength && geoType.equals(other.geoType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rounds, roundLength, geoType);
+        }
+
+        @Override
+        public String toString() {
+            return rounds + "x" + roundLength + "s/" + geoType;
+        }
+    }
+
+    /**
+     * A built game waiting to be claimed
+     */
+    private static final class PreparedGame {
+        private final GameInstance gameInstance;
+        private final Instant preparedAt = Instant.now();
+
+        private PreparedGame(GameInstance gameInstance) {
+            this.gameInstance = gameInstance;
+        }
+
+        private List<UUID> templateIds() {
+            return gameInstance.getRounds().stream().map(Round::getRoundTemplateId).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * The ready games and start rate of one configuration
+     */
+    private static final class PoolEntry {
+        private final Deque<PreparedGame> ready = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger building = new AtomicInteger();
+        private final AtomicLong startsThisInterval = new AtomicLong();
+        private volatile double startRate;
+        private volatile int target;
+    }
+
+    private final GameInstanceService gameInstanceService;
+    private final RoundTemplateCatalog roundTemplateCatalog;
+    private final Map<PoolKey, PoolEntry> entries = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    @Value("${app.game-instance.pool.enabled:true}")
+    private boolean enabled;
+
+    // Ready games kept per configuration for each game started per adjust interval
+    @Value("${app.game-instance.pool.headroom:2.0}")
+    private double headroom;
+
+    @Value("${app.game-instance.pool.max-size:20}")
+    private int maxSize;
+
+    @Value("${app.game-instance.pool.max-age-seconds:300}")
+    private long maxAgeSeconds;
+
+    public GameInstancePool(GameInstanceService gameInstanceService,
+                            RoundTemplateCatalog roundTemplateCatalog,
+                            MeterRegistry meterRegistry) {
+        this.gameInstanceService = gameInstanceService;
+        this.roundTemplateCatalog = roundTemplateCatalog;
+        this.hits = Counter.builder("game.instance.pool.claims")
+                .description("Game starts served from a pre-built game")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("game.instance.pool.claims")
+                .description("Game starts served from a pre-built game")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("game.instance.pool.ready", entries,
+                        map -> map.values().stream().mapToInt(entry -> entry.ready.size()).sum())
+                .description("Pre-built games waiting to be claimed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get a game instance for a lobby, written and with the lobby's players associated. Uses a
+     * pre-built game for the configuration if there is one the lobby hasn't played the rounds
+     * of recently, and creates one otherwise.
+     */
+    public Mono<GameInstance> claim(UUID lobbyId, int rounds, int roundLength, String geoType) {
+        if (!enabled) {
+            return gameInstanceService.createGameInstance(lobbyId, rounds, roundLength, geoType);
+        }
+
+        PoolKey key = new PoolKey(rounds, roundLength, geoType);
+        PoolEntry entry = entries.computeIfAbsent(key, k -> new PoolEntry());
+        entry.startsThisInterval.incrementAndGet();
+
+        PreparedGame prepared = take(entry, lobbyId);
+        replenish(key, entry);
+        if (prepared == null) {
+            misses.increment();
+            return gameInstanceService.createGameInstance(lobbyId, rounds, roundLength, geoType);
+        }
+
+        hits.increment();
+        log.info("Claimed pre-built game instance {} ({}) for lobby {}", prepared.gameInstance.getId(), key, lobbyId);
+        roundTemplateCatalog.markPlayed(lobbyId, prepared.templateIds());
+        return gameInstanceService.saveGameInstance(prepared.gameInstance, lobbyId);
+    }
+
+    /**
+     * Scheduled task to update the start rate of each configuration, resize its pool to match,
+     * and drop stale games and idle configurations
+     */
+    @Scheduled(fixedRate = 10000) // Run every 10 seconds
+    public void adjust() {
+        Instant cutoff = Instant.now().minusSeconds(maxAgeSeconds);
+        entries.forEach((key, entry) -> {
+            entry.startRate = EWMA_ALPHA * entry.startsThisInterval.getAndSet(0) + (1 - EWMA_ALPHA) * entry.startRate;
+            entry.target = entry.startRate < IDLE_RATE ? 0
+                    : (int) Math.min(maxSize, Math.max(1, Math.ceil(entry.startRate * headroom)));
+
+            // Stale games may hold templates that have since been removed
+            entry.ready.removeIf(prepared -> prepared.preparedAt.isBefore(cutoff));
+            // Drop the oldest games beyond the target
+            while (entry.ready.size() > entry.target) {
+                if (entry.ready.pollFirst() == null) {
+                    break;
+                }
+            }
+            if (entry.target == 0 && entry.ready.isEmpty() && entry.building.get() == 0) {
+                entries.remove(key, entry);
+            } else {
+                replenish(key, entry);
+            }
+        });
+    }
+
+    private PreparedGame take(PoolEntry entry, UUID lobbyId) {
+        // Games the lobby would see repeated rounds in are left for other lobbies
+        List<PreparedGame> passedOver = new ArrayList<>();
+        PreparedGame prepared;
+        try {
+            while ((prepared = entry.ready.pollLast()) != null) {
+                if (!roundTemplateCatalog.playedRecently(lobbyId, prepared.templateIds())) {
+                    return prepared;
+                }
+                passedOver.add(prepared);
+            }
+            return null;
+        } finally {
+            passedOver.forEach(entry.ready::addFirst);
+        }
+    }
+
+    private void replenish(PoolKey key, PoolEntry entry) {
+        while (entry.ready.size() + entry.building.get() < entry.target) {
+            entry.building.incrementAndGet();
+            gameInstanceService.buildGameInstance(null, key.rounds, key.roundLength, key.geoType)
+                    .doFinally(signal -> entry.building.decrementAndGet())
+                    .subscribe(
+                            gameInstance -> {
+                                // Only full games are worth keeping, a short one means the catalog is too small
+                                if (gameInstance.getRounds().size() == key.rounds) {
+                                    entry.ready.addLast(new PreparedGame(gameInstance));
+                                }
+                            },
+                            error -> log.error("Error pre-building a game for {}: {}", key, error.getMessage(), error));
+        }
+    }
+}
@@ -1,15 +1,18 @@
 package com.guesshole.services;
 
 import com.guesshole.entities.*;
+import com.guesshole.repositories.GameInstanceRepository;
 import com.guesshole.repositories.PlayerRepository;
-import com.guesshole.repositories.RoundTemplateRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -18,26 +21,103 @@ public class GameInstanceService {
     private final PlayerRepository playerRepository;
     private final R2dbcEntityTemplate r2dbcEntityTemplate;
     private final RoundTemplateService roundTemplateService;
+    private final GameInstanceRepository gameInstanceRepository;
+    private final MeterRegistry meterRegistry;
+    private final Timer bulkCreateTimer;
+    private final Timer perRowCreateTimer;
+
+    @Value("${app.game-instance.bulk-insert.enabled:true}")
+    private boolean bulkInsert;
 
     public GameInstanceService(
             RoundTemplateService roundTemplateService,
             PlayerRepository playerRepository,
-            R2dbcEntityTemplate r2dbcEntityTemplate
+            GameInstanceRepository gameInstanceRepository,
+            R2dbcEntityTemplate r2dbcEntityTemplate,
+            MeterRegistry meterRegistry
     ) {
         this.roundTemplateService = roundTemplateService;
         this.playerRepository = playerRepository;
+        this.gameInstanceRepository = gameInstanceRepository;
         this.r2dbcEntityTemplate = r2dbcEntityTemplate;
+        this.meterRegistry = meterRegistry;
+        this.bulkCreateTimer = createTimer(meterRegistry, "bulk");
+        this.perRowCreateTimer = createTimer(meterRegistry, "per-row");
     }
 
-    public Mono<GameInstance> createGameInstance(int numRounds, int roundLength, String geoType) {
-        log.info("Creating new game instance with settings: rounds={}, roundLength={}, geoType={}",
-                numRounds, roundLength, geoType);
+    private static Timer createTimer(MeterRegistry meterRegistry, String path) {
+        return Timer.builder("game.instance.create")
+                .description("Time to create a game instance with its rounds and player associations")
+                .tag("path", path)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
 
+    /**
+     * Create a game instance with rounds picked from the round templates, and associate every
+     * player in the lobby with it
+     */
+    public Mono<GameInstance> createGameInstance(UUID lobbyId, int numRounds, int roundLength, String geoType) {
+        log.info("Creating new game instance for lobby {} with settings: rounds={}, roundLength={}, geoType={}",
+                lobbyId, numRounds, roundLength, geoType);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return buildGameInstance(lobbyId, numRounds, roundLength, geoType)
+                .flatMap(gameInstance -> saveGameInstance(gameInstance, lobbyId))
+                .doOnSuccess(instance -> sample.stop(bulkInsert ? bulkCreateTimer : perRowCreateTimer));
+    }
+
+    /**
+     * Build a game instance and its rounds in memory, without writing anything
+     *
+     * @param lobbyId The lobby whose recently played templates are avoided, or null for none
+     */
+    public Mono<GameInstance> buildGameInstance(UUID lobbyId, int numRounds, int roundLength, String geoType) {
         // Create the game instance with UUID
         GameInstance gameInstance = new GameInstance();
         gameInstance.setId(UUID.randomUUID());
         gameInstance.setGameType(GameType.CITY_GUESSER);
 
+        // Select random round templates from the catalog based on region filter
+        return roundTemplateService.getRandomTemplates(lobbyId, numRounds, geoType)
+                .index() // Add index for round ordering
+                .map(tuple -> createRound(gameInstance, tuple.getT2(), tuple.getT1().intValue(), roundLength))
+                .collectList()
+                .map(generatedRounds -> {
+                    if (generatedRounds.isEmpty()) {
+                        log.warn("No round templates found in the database for geoType: {}. Cannot create rounds for game instance: {}",
+                                geoType, gameInstance.getId());
+                    }
+                    gameInstance.setRounds(generatedRounds);
+                    return gameInstance;
+                });
+    }
+
+    /**
+     * Write a built game instance and its rounds, and associate every player in the lobby with it
+     */
+    public Mono<GameInstance> saveGameInstance(GameInstance gameInstance, UUID lobbyId) {
+        return bulkInsert
+                ? insertGameInstance(gameInstance, lobbyId)
+                : insertGameInstancePerRow(gameInstance, lobbyId);
+    }
+
+    /**
+     * Insert the game instance, its rounds and the lobby's player associations in one statement
+     */
+    private Mono<GameInstance> insertGameInstance(GameInstance gameInstance, UUID lobbyId) {
+        log.info("Inserting game instance {} with {} rounds", gameInstance.getId(), gameInstance.getRounds().size());
+        return gameInstanceRepository.insertWithRoundsAndPlayers(gameInstance, lobbyId)
+                .doOnNext(players -> log.info("Game instance saved with ID: {}, associated {} players",
+                        gameInstance.getId(), players))
+                .thenReturn(gameInstance);
+    }
+
+    /**
+     * Insert the game instance, each round and each player association with separate statements
+     */
+    private Mono<GameInstance> insertGameInstancePerRow(GameInstance gameInstance, UUID lobbyId) {
+        List<Round> generatedRounds = gameInstance.getRounds();
         log.info("Inserting game instance with ID: {}", gameInstance.getId());
 
         // Use insert operation explicitly
@@ -45,88 +125,64 @@ public class GameInstanceService {
                 .using(gameInstance)
                 .doOnNext(savedInstance -> log.info("Game instance saved with ID: {}", savedInstance.getId()))
                 .flatMap(savedInstance -> {
-                    // Select random round templates from the database based on region filter
-                    Flux<RoundTemplate> templatesFlux = roundTemplateService.getRandomTemplates(numRounds);
-
-                    // Inside the createGameInstance method in GameInstanceService.java
-                    return templatesFlux
-                            .index() // Add index for round ordering
-                            .map(tuple -> {
-                                RoundTemplate template = tuple.getT2();
-                                int roundOrder = tuple.getT1().intValue();
-
-                                // Calculate a random start time that:
-                                // 1. Skips the first 5 minutes (300 seconds)
-                                // 2. Ensures the video doesn't end before the round ends
-                                int minStartTime = 300; // Skip first 5 minutes (300 seconds)
-                                int videoLength = template.getVideoLength() != null ? template.getVideoLength() : 0;
-
-                                // Make sure we have enough video to play for the round duration
-                                int maxPossibleStartTime = videoLength - roundLength;
-
-                                // If video is too short or we don't have length info, use template start time as fallback
-                                int startTime = template.getStartTime();
-
-                                if (videoLength > 0 && maxPossibleStartTime > minStartTime) {
-                                    // Generate random start time between min and max
-                                    startTime = minStartTime + (int)(Math.random() * (maxPossibleStartTime - minStartTime));
-                                    log.debug("Generated random start time {} for video {} (length: {}s, round: {}s)",
-                                            startTime, template.getYoutubeVideoId(), videoLength, roundLength);
-                                } else {
-                                    log.warn("Using template start time {}s for video {} - insufficient length info or video too short",
-                                            startTime, template.getYoutubeVideoId());
-                                }
-
-                                // Create a round from the template with the calculated start time
-                                Round round = new Round(
-                                        roundOrder,
-                                        template.getYoutubeVideoId(),
-                                        startTime,
-                                        roundLength,
-                                        template.getLatitude(),
-                                        template.getLongitude(),
-                                        template.getLocationPointId()
-                                );
-
-                                round.setId(UUID.randomUUID());
-                                round.setGameInstanceId(savedInstance.getId());
-
-                                return round;
-                            })
-                            .collectList()
-                            .flatMap(generatedRounds -> {
-                                log.info("Inserting {} rounds for game instance: {}", generatedRounds.size(), savedInstance.getId());
-
-                                if (generatedRounds.isEmpty()) {
-                                    log.warn("No round templates found in the database for geoType: {}. Cannot create rounds for game instance: {}",
-                                            geoType, savedInstance.getId());
-                                    return Mono.just(savedInstance); // Return instance without rounds if no templates exist
-                                }
-
-                                @SuppressWarnings("unchecked")
-                                Mono<Round>[] roundInsertions = generatedRounds.stream()
-                                        .map(round -> r2dbcEntityTemplate.insert(Round.class).using(round))
-                                        .toArray(Mono[]::new);
-
-                                return Mono.when(roundInsertions)
-                                        .then(Mono.just(savedInstance));
-                            })
-                            .flatMap(instance -> {
-                                // Fetch rounds to attach to the instance
-                                return r2dbcEntityTemplate.select(Round.class)
-                                        .matching(org.springframework.data.relational.core.query.Query.query(
-                                                org.springframework.data.relational.core.query.Criteria.where("game_instance_id").is(instance.getId())
-                                        ))
-                                        .all()
-                                        .collectList()
-                                        .map(fetchedRounds -> {
-                                            instance.setRounds(fetchedRounds);
-                                            return instance;
-                                        });
-                            });
+                    log.info("Inserting {} rounds for game instance: {}", generatedRounds.size(), savedInstance.getId());
+
+                    @SuppressWarnings("unchecked")
+                    Mono<Round>[] roundInsertions = generatedRounds.stream()
+                            .map(round -> r2dbcEntityTemplate.insert(Round.class).using(round))
+                            .toArray(Mono[]::new);
+
+                    return Mono.when(roundInsertions)
+                            .then(associateLobbyPlayersWithGameInstance(lobbyId, savedInstance))
+                            .thenReturn(savedInstance);
+                })
+                .map(savedInstance -> {
+                    savedInstance.setRounds(generatedRounds);
+                    return savedInstance;
                 });
     }
 
+    private Round createRound(GameInstance gameInstance, RoundTemplate template, int roundOrder, int roundLength) {
+        // Calculate a random start time that:
+        // 1. Skips the first 5 minutes (300 seconds)
+        // 2. Ensures the video doesn't end before the round ends
+        int minStartTime = 300; // Skip first 5 minutes (300 seconds)
+        int videoLength = template.getVideoLength() != null ? template.getVideoLength() : 0;
+
+        // Make sure we have enough video to play for the round duration
+        int maxPossibleStartTime = videoLength - roundLength;
+
+        // If video is too short or we don't have length info, use template start time as fallback
+        int startTime = template.getStartTime();
+
+        if (videoLength > 0 && maxPossibleStartTime > minStartTime) {
+            // Generate random start time between min and max
+            startTime = minStartTime + (int)(Math.random() * (maxPossibleStartTime - minStartTime));
+            log.debug("Generated random start time {} for video {} (length: {}s, round: {}s)",
+                    startTime, template.getYoutubeVideoId(), videoLength, roundLength);
+        } else {
+            log.warn("Using template start time {}s for video {} - insufficient length info or video too short",
+                    startTime, template.getYoutubeVideoId());
+        }
+
+        // Create a round from the template with the calculated start time
+        Round round = new Round(
+                roundOrder,
+                template.getYoutubeVideoId(),
+                startTime,
+                roundLength,
+                template.getLatitude(),
+                template.getLongitude(),
+                template.getLocationPointId()
+        );
+
+        round.setId(UUID.randomUUID());
+        round.setGameInstanceId(gameInstance.getId());
+        round.setRoundTemplateId(template.getId());
+
+        return round;
+    }
+
     /**
      * Associate all players in a lobby with a game instance
      */
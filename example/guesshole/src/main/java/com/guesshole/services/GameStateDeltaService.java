@@ -0,0 +1,321 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.GameConfiguration;
+import com.guesshole.entities.Guess;
+import com.guesshole.websocket.messages.outgoing.GameStateDeltaMessage;
+import com.guesshole.websocket.messages.outgoing.GameStateMessage;
+import com.guesshole.websocket.services.LobbyBroadcastBus;
+import com.guesshole.websocket.services.WebSocketSessionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Sends game state to clients as deltas against the version each client already has,
+ * falling back to the full GameStateMessage for new clients, clients that have never
+ * acknowledged a version, and clients too far behind the lobby's recent history.
+ * <p>
+ * Versions are assumed to arrive in order. A client that gets a delta for a version it
+ * doesn't have asks for a resync and is sent the full state.
+ * <p>
+ * Each lobby numbers its own versions with a counter kept beside its history. The counter sits
+ * under an epoch taken when this node starts the lobby's history, so a restarted node, or the
+ * node that takes a lobby over, never reissues a version the lobby's clients may still hold.
+ * Versions stay below 2^53 so the browser client can hold them exactly.
+ */
+@Service
+public class GameStateDeltaService {
+    private static final Logger log = LoggerFactory.getLogger(GameStateDeltaService.class);
+    private static final long NO_VERSION = -1;
+    // A lobby can send this many versions under one epoch before moving to the next
+    private static final int COUNTER_BITS = 21;
+    private static final long MAX_COUNTER = (1L << COUNTER_BITS) - 1;
+    // Epochs are seconds since 2025-01-01T00:00:00Z, which fit in the remaining 32 bits until 2161
+    private static final long EPOCH_ORIGIN_SECONDS = 1735689600L;
+
+    /**
+     * What a client has been sent and has confirmed applying
+     */
+    private static class ClientVersion {
+        private volatile boolean acknowledges;
+        private volatile long applied = NO_VERSION;
+        private volatile long sent = NO_VERSION;
+    }
+
+    /**
+     * The recent game states sent to a lobby, and the counter that versions them
+     */
+    private static class LobbyHistory {
+        private final Deque<GameStateMessage> messages = new ArrayDeque<>();
+        private long epoch;
+        private long counter;
+
+        private LobbyHistory(long epoch) {
+            this.epoch = epoch;
+        }
+
+        /**
+         * Must hold the history lock
+         */
+        private long nextVersion() {
+            if (counter == MAX_COUNTER) {
+                epoch = Math.max(epoch + 1, currentEpoch());
+                counter = 0;
+            }
+            counter++;
+            return (epoch << COUNTER_BITS) | counter;
+        }
+    }
+
+    private final Map<UUID, LobbyHistory> lobbyHistory = new ConcurrentHashMap<>();
+    private final Map<String, ClientVersion> clientVersions = new ConcurrentHashMap<>();
+
+    private final WebSocketSessionService sessionHandler;
+    private final LobbyService lobbyService;
+    private final LobbyBroadcastBus broadcastBus;
+    private final Counter deltasSent;
+    private final Counter snapshotsSent;
+
+    @Value("${app.game-state.delta.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.game-state.delta.history-size:8}")
+    private int historySize;
+
+    public GameStateDeltaService(WebSocketSessionService sessionHandler, LobbyService lobbyService,
+                                 LobbyBroadcastBus broadcastBus, MeterRegistry meterRegistry) {
+        this.sessionHandler = sessionHandler;
+        this.lobbyService = lobbyService;
+        this.broadcastBus = broadcastBus;
+        this.deltasSent = Counter.builder("game.state.deltas")
+                .description("Game state updates sent to a group of sessions as a delta")
+                .register(meterRegistry);
+        this.snapshotsSent = Counter.builder("game.state.snapshots")
+                .description("Game state updates sent to a group of sessions as the full state")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Give a game state the lobby's next version and send it to every session in the lobby.
+     * Sessions on other nodes get the full state, their node has no history to diff against.
+     */
+    public Mono<Void> broadcast(UUID lobbyId, GameStateMessage message) {
+        Mono<Void> local = send(lobbyId, sessionHandler.getLobbySessions(lobbyId), message);
+        return Mono.when(local, broadcastBus.publishToOtherNodes(lobbyId, message));
+    }
+
+    /**
+     * Give a game state the lobby's next version and send it to one session
+     */
+    public Mono<Void> sendToSession(UUID lobbyId, WebSocketSession session, GameStateMessage message) {
+        return send(lobbyId, List.of(session), message);
+    }
+
+    /**
+     * Record that a client has applied a version
+     */
+    public void acknowledge(WebSocketSession session, long version) {
+        ClientVersion client = clientVersions.computeIfAbsent(session.getId(), id -> new ClientVersion());
+        client.acknowledges = true;
+        client.applied = version;
+    }
+
+    /**
+     * A reconnecting client already has this version from its previous connection
+     */
+    public void resume(WebSocketSession session, long version) {
+        ClientVersion client = clientVersions.computeIfAbsent(session.getId(), id -> new ClientVersion());
+        client.acknowledges = true;
+        client.applied = version;
+        client.sent = version;
+    }
+
+    /**
+     * Send the full state next time, the client couldn't apply a delta
+     */
+    public void requestResync(WebSocketSession session) {
+        ClientVersion client = clientVersions.get(session.getId());
+        if (client != null) {
+            client.sent = NO_VERSION;
+        }
+    }
+
+    /**
+     * Drop what is known about a closed session
+     */
+    public void forget(WebSocketSession session) {
+        clientVersions.remove(session.getId());
+    }
+
+    /**
+     * Scheduled task to drop the history of lobbies nobody is connected to
+     */
+    @Scheduled(fixedRate = 300000) // Run every 5 minutes
+    public void pruneHistory() {
+        lobbyHistory.keySet().removeIf(lobbyId -> sessionHandler.getLobbySessions(lobbyId).isEmpty());
+    }
+
+    private Mono<Void> send(UUID lobbyId, Collection<WebSocketSession> sessions, GameStateMessage message) {
+        Map<Long, List<WebSocketSession>> sessionsByBase;
+        LobbyHistory lobby = lobbyHistory.computeIfAbsent(lobbyId, id -> new LobbyHistory(currentEpoch()));
+        Deque<GameStateMessage> history = lobby.messages;
+
+        // Versioning and deciding what each session gets happen together so versions go out in order
+        synchronized (history) {
+            message.setVersion(lobby.nextVersion());
+            history.addLast(message);
+            while (history.size() > historySize) {
+                history.removeFirst();
+            }
+
+            sessionsByBase = sessions.stream()
+                    .filter(WebSocketSession::isOpen)
+                    .collect(Collectors.groupingBy(session -> baseVersion(history, session)));
+            sessionsByBase.values().forEach(group -> group.forEach(session -> clientVersions
+                    .computeIfAbsent(session.getId(), id -> new ClientVersion()).sent = message.getVersion()));
+        }
+
+        return Flux.fromIterable(sessionsByBase.entrySet())
+                .flatMap(entry -> {
+                    Object payload = entry.getKey() == NO_VERSION ? null
+                            : diff(findVersion(history, entry.getKey()), message);
+                    if (payload == null) {
+                        snapshotsSent.increment();
+                        payload = message;
+                    } else {
+                        deltasSent.increment();
+                    }
+                    log.debug("Sending game state version {} to {} sessions in lobby {} as {}", message.getVersion(),
+                            entry.getValue().size(), lobbyId, payload.getClass().getSimpleName());
+                    return lobbyService.sendToSessions(entry.getValue(), payload);
+                })
+                .then();
+    }
+
+    /**
+     * The version a session's delta should be based on, or NO_VERSION if it needs the full state.
+     * Must hold the history lock.
+     */
+    private long baseVersion(Deque<GameStateMessage> history, WebSocketSession session) {
+        ClientVersion client = clientVersions.get(session.getId());
+        if (!enabled || client == null || !client.acknowledges) {
+            return NO_VERSION;
+        }
+        // The client must have applied something still in the history, or it is too far behind to catch up
+        if (findVersion(history, client.applied) == null || findVersion(history, client.sent) == null) {
+            return NO_VERSION;
+        }
+        return client.sent;
+    }
+
+    private static long currentEpoch() {
+        return System.currentTimeMillis() / 1000 - EPOCH_ORIGIN_SECONDS;
+    }
+
+    private GameStateMessage findVersion(Deque<GameStateMessage> history, long version) {
+        synchronized (history) {
+            for (GameStateMessage message : history) {
+                if (message.getVersion() == version) {
+                    return message;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The changes from one game state to another, or null if they can't be expressed as a delta
+     */
+    private GameStateDeltaMessage diff(GameStateMessage base, GameStateMessage target) {
+        // A delta can't clear a field, so states that drop the round or game go out in full. They are small.
+        if (base == null || target.getState() == null
+                || (base.getGameInstanceId() != null && target.getGameInstanceId() == null)
+                || (base.getCurrentRound() != null && target.getCurrentRound() == null)
+                || (base.getGameConfiguration() != null && target.getGameConfiguration() == null)) {
+            return null;
+        }
+
+        GameStateDeltaMessage delta = new GameStateDeltaMessage(base.getVersion(), target.getVersion());
+        boolean stateChanged = !target.getState().equals(base.getState());
+        if (stateChanged) {
+            delta.setState(target.getState());
+        }
+        if (!Objects.equals(base.getGameInstanceId(), target.getGameInstanceId())) {
+            delta.setGameInstanceId(target.getGameInstanceId());
+        }
+        // The round is sent without its location while it is being played, and with it on the scoreboard
+        if (target.getCurrentRound() != null && (stateChanged || base.getCurrentRound() == null
+                || !target.getCurrentRound().getId().equals(base.getCurrentRound().getId()))) {
+            delta.setCurrentRound(target.getCurrentRound());
+        }
+        if (!Objects.equals(base.getRoundId(), target.getRoundId())) {
+            delta.setRoundId(target.getRoundId());
+        }
+        if (base.getRoundOrder() != target.getRoundOrder()) {
+            delta.setRoundOrder(target.getRoundOrder());
+        }
+        if (!Objects.equals(base.getTotalRounds(), target.getTotalRounds())) {
+            delta.setTotalRounds(target.getTotalRounds());
+        }
+        if (base.isLastRound() != target.isLastRound()) {
+            delta.setLastRound(target.isLastRound());
+        }
+        if (!sameConfiguration(base.getGameConfiguration(), target.getGameConfiguration())) {
+            delta.setGameConfiguration(target.getGameConfiguration());
+        }
+        diffScores(base.getPlayerScores(), target.getPlayerScores(), delta);
+        return delta;
+    }
+
+    private void diffScores(List<GameStateMessage.PlayerScore> baseScores, List<GameStateMessage.PlayerScore> targetScores,
+                            GameStateDeltaMessage delta) {
+        Map<UUID, GameStateMessage.PlayerScore> baseByPlayer = baseScores == null ? Map.of() : baseScores.stream()
+                .collect(Collectors.toMap(score -> score.getPlayer().getId(), Function.identity(), (first, second) -> second));
+        Set<UUID> targetPlayers = new HashSet<>();
+
+        if (targetScores != null) {
+            for (GameStateMessage.PlayerScore score : targetScores) {
+                UUID playerId = score.getPlayer().getId();
+                targetPlayers.add(playerId);
+                GameStateMessage.PlayerScore previous = baseByPlayer.get(playerId);
+                if (previous == null || !Objects.equals(previous.getTotalScore(), score.getTotalScore())
+                        || !sameGuess(previous.getGuess(), score.getGuess())) {
+                    delta.addScore(new GameStateDeltaMessage.ScoreChange(playerId, score.getGuess(), score.getTotalScore()));
+                }
+            }
+        }
+        baseByPlayer.keySet().stream()
+                .filter(playerId -> !targetPlayers.contains(playerId))
+                .forEach(delta::addRemovedPlayerId);
+    }
+
+    private static boolean sameGuess(Guess a, Guess b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return Objects.equals(a.getId(), b.getId()) && Objects.equals(a.getScore(), b.getScore());
+    }
+
+    private static boolean sameConfiguration(GameConfiguration a, GameConfiguration b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return Objects.equals(a.getId(), b.getId())
+                && a.getGameType() == b.getGameType()
+                && a.getNumRounds() == b.getNumRounds()
+                && a.getRoundLengthSeconds() == b.getRoundLengthSeconds()
+                && Objects.equals(a.getGeographyType(), b.getGeographyType());
+    }
+}
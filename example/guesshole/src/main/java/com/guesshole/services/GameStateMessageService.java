@@ -1,7 +1,7 @@
 package com.guesshole.services;
 
 import com.guesshole.entities.*;
-import com.guesshole.repositories.PlayerRepository;
+import com.guesshole.services.LobbyStateEngine.LobbySnapshot;
 import com.guesshole.websocket.messages.outgoing.GameStateMessage;
 import com.guesshole.websocket.messages.outgoing.GameStateMessageBuilder;
 import org.slf4j.Logger;
@@ -13,7 +13,9 @@ import reactor.core.publisher.Mono;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -24,19 +26,17 @@ import java.util.stream.Collectors;
 public class GameStateMessageService {
     private static final Logger log = LoggerFactory.getLogger(GameStateMessageService.class);
 
-    private final PlayerRepository playerRepository;
+    private final LobbyStateEngine lobbyStateEngine;
     private final RoundService roundService;
     private final GuessService guessService;
-    private final LobbyService lobbyService;
 
     public GameStateMessageService(
-            PlayerRepository playerRepository,
+            LobbyStateEngine lobbyStateEngine,
             RoundService roundService,
-            GuessService guessService, LobbyService lobbyService) {
-        this.playerRepository = playerRepository;
+            GuessService guessService) {
+        this.lobbyStateEngine = lobbyStateEngine;
         this.roundService = roundService;
         this.guessService = guessService;
-        this.lobbyService = lobbyService;
     }
 
     /**
@@ -55,9 +55,9 @@ public class GameStateMessageService {
                 .state(state)
                 .gameInstanceId(gameInstanceId);
 
-        // Always start with the freshest lobby information
-        return lobbyService.findById(lobbyId)
-                .flatMap(lobby -> {
+        // Lobby, rounds and roster all come from the in-memory lobby state
+        return lobbyStateEngine.getSnapshot(lobbyId)
+                .flatMap(snapshot -> {
                     // Build message based on state
                     switch (state) {
                         case GameStateService.STATE_LOBBY:
@@ -65,10 +65,10 @@ public class GameStateMessageService {
                             return Mono.just(builder.build());
 
                         case GameStateService.STATE_GAME_IN_PROGRESS:
-                            return buildGameInProgressMessage(lobby, gameInstanceId, currentRound, builder);
+                            return buildGameInProgressMessage(snapshot, gameInstanceId, currentRound, builder);
 
                         case GameStateService.STATE_ROUND_SCOREBOARD:
-                            return buildRoundScoreboardMessage(lobby, gameInstanceId, currentRound, builder);
+                            return buildRoundScoreboardMessage(snapshot, gameInstanceId, currentRound, builder);
 
                         default:
                             log.warn("Unknown game state: {}", state);
@@ -80,7 +80,7 @@ public class GameStateMessageService {
     /**
      * Build message for GAME_IN_PROGRESS state
      */
-    private Mono<GameStateMessage> buildGameInProgressMessage(Lobby lobby, UUID gameInstanceId, Round currentRound, GameStateMessageBuilder builder) {
+    private Mono<GameStateMessage> buildGameInProgressMessage(LobbySnapshot snapshot, UUID gameInstanceId, Round currentRound, GameStateMessageBuilder builder) {
         if (currentRound != null) {
             builder
                     .currentRound(currentRound)
@@ -89,13 +89,13 @@ public class GameStateMessageService {
         }
 
         // Get total rounds for this game instance
-        return getTotalRoundsCount(gameInstanceId)
+        return getTotalRoundsCount(snapshot, gameInstanceId)
                 .flatMap(totalRounds -> {
                     builder.totalRounds(totalRounds);
 
                     // If this is not the first round, include previous player scores
                     if (currentRound != null && currentRound.getRoundOrder() > 0) {
-                        return fetchPlayerScores(lobby.getId(), gameInstanceId, currentRound)
+                        return fetchPlayerScores(snapshot.getRoster(), gameInstanceId, currentRound)
                                 .collectList()
                                 .map(playerScores -> {
                                     builder.playerScores(playerScores);
@@ -105,12 +105,12 @@ public class GameStateMessageService {
                                         builder.lastRound(true);
                                     }
 
-                                    builder.gameConfiguration(lobby.getGameConfiguration());
+                                    builder.gameConfiguration(snapshot.getLobby().getGameConfiguration());
                                     return builder.build();
                                 });
                     } else {
                         // First round - no player scores yet
-                        builder.gameConfiguration(lobby.getGameConfiguration());
+                        builder.gameConfiguration(snapshot.getLobby().getGameConfiguration());
                         return Mono.just(builder.build());
                     }
                 });
@@ -119,7 +119,7 @@ public class GameStateMessageService {
     /**
      * Build message for ROUND_SCOREBOARD state
      */
-    private Mono<GameStateMessage> buildRoundScoreboardMessage(Lobby lobby, UUID gameInstanceId, Round currentRound, GameStateMessageBuilder builder) {
+    private Mono<GameStateMessage> buildRoundScoreboardMessage(LobbySnapshot snapshot, UUID gameInstanceId, Round currentRound, GameStateMessageBuilder builder) {
         if (currentRound == null) {
             log.warn("Round scoreboard requested but no current round provided");
             return Mono.just(builder.build());
@@ -129,7 +129,7 @@ public class GameStateMessageService {
                 .roundId(currentRound.getId())
                 .roundOrder(currentRound.getRoundOrder());
 
-        return getTotalRoundsCount(gameInstanceId)
+        return getTotalRoundsCount(snapshot, gameInstanceId)
                 .flatMap(totalRounds -> {
                     builder.totalRounds(totalRounds);
 
@@ -139,23 +139,26 @@ public class GameStateMessageService {
                     }
 
                     // Fetch player scores for this round
-                    return fetchPlayerScores(lobby.getId(), gameInstanceId, currentRound)
+                    return fetchPlayerScores(snapshot.getRoster(), gameInstanceId, currentRound)
                             .collectList()
                             .map(playerScores -> {
                                 builder.playerScores(playerScores);
-                                builder.gameConfiguration(lobby.getGameConfiguration());
+                                builder.gameConfiguration(snapshot.getLobby().getGameConfiguration());
                                 return builder.build();
                             });
                 });
     }
 
     /**
-     * Get the total number of rounds for a game instance
+     * Get the total number of rounds for a game instance, from the lobby state when it holds that instance
      */
-    private Mono<Integer> getTotalRoundsCount(UUID gameInstanceId) {
+    private Mono<Integer> getTotalRoundsCount(LobbySnapshot snapshot, UUID gameInstanceId) {
         if (gameInstanceId == null) {
             return Mono.just(0);
         }
+        if (gameInstanceId.equals(snapshot.getGameInstanceId())) {
+            return Mono.just(snapshot.getTotalRounds());
+        }
 
         return roundService.findByGameInstanceId(gameInstanceId)
                 .collectList()
@@ -163,33 +166,18 @@ public class GameStateMessageService {
     }
 
     /**
-     * Fetch player scores for the current round and game instance
+     * Fetch player scores for the current round and game instance.
+     * Guesses, multipliers, locations and totals come from one scoreboard query,
+     * and are matched up with the in-memory roster.
      */
-    private Flux<GameStateMessage.PlayerScore> fetchPlayerScores(UUID lobbyId, UUID gameInstanceId, Round currentRound) {
-        // TODO avoid this n+1 by fetching all player and guess data in one query
-        return playerRepository.findByLobbyId(lobbyId)
-                .flatMap(player -> {
-                    // Get player's current round guess
-                    Mono<Guess> currentGuess = guessService.findPlayerGuessForRound(player.getId(), currentRound.getId());
-                    // TODO make a proper default guess (defaultIfEmpty)
-
-                    // Get all player's guesses in this game instance for total score
-                    Mono<List<Guess>> allPlayerGuesses = guessService.findPlayerGuessesForGameInstance(gameInstanceId, player.getId())
-                            .collectList();
-
-                    return Mono.zip(currentGuess, allPlayerGuesses, (guess, allGuesses) -> {
-                        // Calculate total score
-                        int totalScore = allGuesses.stream()
-                                .mapToInt(g -> g.getScore() != null ? g.getScore() : 0)
-                                .sum();
-
-                        List<ScoreMultiplier> multipliers = guess.getScoreMultipliers();
-
-                        return new GameStateMessage.PlayerScore(
-                                player, guess, totalScore
-                        );
-                    });
-                })
+    private Flux<GameStateMessage.PlayerScore> fetchPlayerScores(List<Player> roster, UUID gameInstanceId, Round currentRound) {
+        Map<UUID, Player> playersById = roster.stream()
+                .collect(Collectors.toMap(Player::getId, Function.identity(), (first, second) -> second));
+
+        return guessService.findScoreboard(gameInstanceId, currentRound.getId())
+                .filter(entry -> playersById.containsKey(entry.getPlayerId()))
+                .map(entry -> new GameStateMessage.PlayerScore(
+                        playersById.get(entry.getPlayerId()), entry.getGuess(), entry.getTotalScore()))
                 // Sort by total score descending
                 .sort((ps1, ps2) -> Integer.compare(ps2.getTotalScore(), ps1.getTotalScore()));
     }
@@ -1,22 +1,20 @@
 package com.guesshole.services;
 
-import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
-import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 import com.guesshole.entities.*;
-import com.guesshole.repositories.*;
+import com.guesshole.services.GameTimerService.DeadlineType;
+import com.guesshole.services.LobbyStateEngine.LobbySnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.socket.WebSocketSession;
 
-import java.util.stream.Collectors;
-
 /**
  * Service for managing game state
  */
@@ -24,17 +22,18 @@ import java.util.stream.Collectors;
 public class GameStateService {
     private static final Logger log = LoggerFactory.getLogger(GameStateService.class);
 
-    private final GameStateRepository gameStateRepository;
+    private final LobbyStateEngine lobbyStateEngine;
     private final LobbyService lobbyService;
-    private final PlayerRepository playerRepository;
-    private final GuessRepository guessRepository;
     private final RoundService roundService;
-    private final GameInstanceService gameInstanceService;
+    private final RoundContextService roundContextService;
+    private final GameInstancePool gameInstancePool;
     private final GameStateMessageService gameStateMessageService;
-    private final R2dbcEntityTemplate r2dbcEntityTemplate;
+    private final GameTimerService gameTimerService;
+    private final GameStateDeltaService gameStateDeltaService;
 
-    private final Map<UUID, Disposable> roundTimers = new ConcurrentHashMap<>();
-    private final Map<UUID, Disposable> roundAdvanceTimers = new ConcurrentHashMap<>();
+    // Seconds the scoreboard is shown before moving to the next round on its own, 0 waits for the host
+    @Value("${app.game-round.scoreboard-advance-seconds:0}")
+    private long scoreboardAdvanceSeconds;
 
     // Valid game states
     public static final String STATE_LOBBY = "LOBBY";
@@ -42,65 +41,39 @@ public class GameStateService {
     public static final String STATE_ROUND_SCOREBOARD = "ROUND_SCOREBOARD";
 
 
-    public GameStateService(GameStateRepository gameStateRepository,
+    public GameStateService(LobbyStateEngine lobbyStateEngine,
                             LobbyService lobbyService,
-                            PlayerRepository playerRepository,
-                            GuessRepository guessRepository,
                             RoundService roundService,
-                            GameInstanceService gameInstanceService,
+                            RoundContextService roundContextService,
+                            GameInstancePool gameInstancePool,
                             GameStateMessageService gameStateMessageService,
-                            R2dbcEntityTemplate r2dbcEntityTemplate) {
-        this.gameStateRepository = gameStateRepository;
+                            GameTimerService gameTimerService,
+                            GameStateDeltaService gameStateDeltaService) {
+        this.lobbyStateEngine = lobbyStateEngine;
         this.lobbyService = lobbyService;
-        this.playerRepository = playerRepository;
-        this.guessRepository = guessRepository;
         this.roundService = roundService;
-        this.gameInstanceService = gameInstanceService;
+        this.roundContextService = roundContextService;
+        this.gameInstancePool = gameInstancePool;
         this.gameStateMessageService = gameStateMessageService;
-        this.r2dbcEntityTemplate = r2dbcEntityTemplate;
+        this.gameTimerService = gameTimerService;
+        this.gameStateDeltaService = gameStateDeltaService;
+
+        gameTimerService.setHandler(DeadlineType.ROUND_END, this::handleRoundDeadline);
+        gameTimerService.setHandler(DeadlineType.SCOREBOARD_ADVANCE, this::handleScoreboardDeadline);
     }
 
     /**
-     * Change the game state of a lobby and broadcast to all clients
+     * Change the game state of a lobby and broadcast to all clients.
+     * The lobby state engine applies the change in memory and persists it in the background.
      */
     public Mono<Void> changeGameState(UUID lobbyId, String newState, UUID gameInstanceId, Round currentRound) {
         log.info("Changing game state for lobby {} to {}", lobbyId, newState);
 
         UUID roundId = currentRound != null ? currentRound.getId() : null;
 
-        return gameStateRepository.findByLobbyId(lobbyId)
-                .defaultIfEmpty(new GameState(lobbyId))
-                .flatMap(gameState -> {
-                    // Update or create game state with new values
-                    gameState.setLobbyState(newState);
-                    gameState.setRoundId(roundId);
-                    gameState.setGameInstanceId(gameInstanceId);
-
-                    log.info("Saving game state for lobby {}: state={}, roundId={}, gameInstanceId={}",
-                            lobbyId, newState, roundId, gameInstanceId);
-
-                    return gameStateRepository.save(gameState);
-                })
-                .flatMap(updatedGameState -> {
-                    // Fetch the full round data if there's a round ID
-                    if (updatedGameState.getRoundId() != null && (currentRound == null || !updatedGameState.getRoundId().equals(currentRound.getId()))) {
-                        return roundService.findById(updatedGameState.getRoundId())
-                                .map(fetchedRound -> {
-                                    // Create a client-safe version of the round if needed
-                                    if (STATE_GAME_IN_PROGRESS.equals(updatedGameState.getLobbyState())) {
-                                        return fetchedRound.getClientSafeRound();
-                                    }
-                                    return fetchedRound;
-                                })
-                                .defaultIfEmpty(currentRound)
-                                .flatMap(round -> broadcastGameState(lobbyId, updatedGameState.getLobbyState(),
-                                        updatedGameState.getGameInstanceId(), round));
-                    } else {
-                        // Use the round provided in the method arguments
-                        return broadcastGameState(lobbyId, updatedGameState.getLobbyState(),
-                                updatedGameState.getGameInstanceId(), currentRound);
-                    }
-                })
+        return lobbyStateEngine.transition(lobbyId, newState, gameInstanceId, roundId)
+                .flatMap(snapshot -> broadcastGameState(lobbyId, snapshot.getState(),
+                        snapshot.getGameInstanceId(), clientRound(snapshot, currentRound)))
                 .onErrorResume(e -> {
                     log.error("Error changing game state for lobby {}: {}", lobbyId, e.getMessage(), e);
                     return Mono.empty();
@@ -108,49 +81,33 @@ public class GameStateService {
     }
 
     /**
-     * Broadcast the current game state to all clients in a lobby
+     * The version of the snapshot's current round that is safe to send to clients,
+     * falling back to the given round if the snapshot doesn't know it
+     */
+    private Round clientRound(LobbySnapshot snapshot, Round fallback) {
+        Round round = snapshot.getCurrentRound() != null ? snapshot.getCurrentRound() : fallback;
+        if (round != null && STATE_GAME_IN_PROGRESS.equals(snapshot.getState())) {
+            return round.getClientSafeRound();
+        }
+        return round;
+    }
+
+    /**
+     * Broadcast the current game state to all clients in a lobby, as a delta to clients that can take one
      */
     public Mono<Void> broadcastGameState(UUID lobbyId, String state, UUID gameInstanceId, Round currentRound) {
         return gameStateMessageService.buildGameStateMessage(lobbyId, state, gameInstanceId, currentRound)
-                .flatMap(message -> lobbyService.broadcastToLobby(lobbyId, message));
+                .flatMap(message -> gameStateDeltaService.broadcast(lobbyId, message));
     }
 
     /**
      * Send the current game state to a specific client
      */
     public Mono<Void> sendGameStateToClient(UUID lobbyId, WebSocketSession session) {
-        return gameStateRepository.findByLobbyId(lobbyId)
-                .switchIfEmpty(Mono.defer(() -> {
-                    // Create a new GameState if none exists - this happens on a new lobby
-                    GameState newGameState = new GameState(lobbyId);
-                    return gameStateRepository.save(newGameState);
-                }))
-                .flatMap(gameState -> {
-                    String state = gameState.getLobbyState();
-                    UUID gameInstanceId = gameState.getGameInstanceId();
-                    UUID roundId = gameState.getRoundId();
-
-                    // If we have a round ID, fetch the round first
-                    Mono<Round> roundMono = roundId != null
-                            ? roundService.findById(roundId)
-                            .map(round -> {
-                                // Create a client-safe version of the round if needed
-                                if (STATE_GAME_IN_PROGRESS.equals(state)) {
-                                    return round.getClientSafeRound();
-                                }
-                                return round;
-                            })
-                            : Mono.empty();
-
-                    return roundMono
-                            .flatMap(round -> gameStateMessageService.buildGameStateMessage(
-                                    lobbyId, state, gameInstanceId, round
-                            ))
-                            .switchIfEmpty(gameStateMessageService.buildGameStateMessage(
-                                    lobbyId, state, gameInstanceId, null
-                            ));
-                })
-                .flatMap(message -> lobbyService.sendToSession(session, message));
+        return lobbyStateEngine.getSnapshot(lobbyId)
+                .flatMap(snapshot -> gameStateMessageService.buildGameStateMessage(
+                        lobbyId, snapshot.getState(), snapshot.getGameInstanceId(), clientRound(snapshot, null)))
+                .flatMap(message -> gameStateDeltaService.sendToSession(lobbyId, session, message));
     }
 
     /**
@@ -162,27 +119,28 @@ public class GameStateService {
 
         GameConfiguration gameConfiguration = new GameConfiguration(GameType.CITY_GUESSER, rounds, roundLength, geoType);
 
-        return lobbyService.setLobbyGameConfiguration(lobbyId, gameConfiguration)
-                .flatMap(lobby -> gameInstanceService.createGameInstance(rounds, roundLength, geoType)
-                        .flatMap(gameInstance -> gameInstanceService.associateLobbyPlayersWithGameInstance(lobbyId, gameInstance)
-                                .thenReturn(gameInstance))
-                        .flatMap(gameInstance -> {
-                            log.info("Starting game with instance ID: {}", gameInstance.getId());
+        // The configuration is saved while the game instance is claimed, the game needs both before it starts
+        // The lobby state engine picks up the new configuration from the lobby service
+        Mono<Lobby> configuredLobby = lobbyService.setLobbyGameConfiguration(lobbyId, gameConfiguration);
 
-                            // Get the first round for the game
-                            Round firstRound = gameInstance.getRounds().get(0);
-                            // Set the round length from game settings
-                            firstRound.setDurationSeconds(roundLength);
+        return Mono.zip(configuredLobby, gameInstancePool.claim(lobbyId, rounds, roundLength, geoType))
+                .map(Tuple2::getT2)
+                .flatMap(gameInstance -> {
+                    log.info("Starting game with instance ID: {}", gameInstance.getId());
 
-                            // Create a client-safe version of the round (without lat/long)
-                            Round clientSafeRound = firstRound.getClientSafeRound();
+                    // Get the first round for the game
+                    Round firstRound = gameInstance.getRounds().get(0);
+                    // Set the round length from game settings
+                    firstRound.setDurationSeconds(roundLength);
 
-                            // Start the timer for the first round
-                            startRoundTimer(lobbyId, firstRound);
+                    // Create a client-safe version of the round (without lat/long)
+                    Round clientSafeRound = firstRound.getClientSafeRound();
 
-                            // Change the game state and broadcast with the game instance ID and first round
-                            return changeGameState(lobbyId, STATE_GAME_IN_PROGRESS, gameInstance.getId(), clientSafeRound);
-                        }))
+                    // Change the game state and broadcast with the game instance ID and first round,
+                    // then start the timer once the lobby state knows about the new rounds
+                    return changeGameState(lobbyId, STATE_GAME_IN_PROGRESS, gameInstance.getId(), clientSafeRound)
+                            .then(Mono.fromRunnable(() -> startRoundTimer(lobbyId, firstRound)));
+                })
                 .onErrorResume(e -> {
                     log.error("Error starting game for lobby {}: {}", lobbyId, e.getMessage(), e);
                     return Mono.empty();
@@ -194,10 +152,8 @@ public class GameStateService {
      * Reset the game to lobby state
      */
     public Mono<Void> resetToLobby(UUID lobbyId) {
-        // Cancel any running round timer
-        cancelRoundTimer(lobbyId);
-
-        // TODO we will need to store scoreboard timers and store them here too
+        // Cancel any pending round end or scoreboard advance
+        gameTimerService.cancel(lobbyId);
 
         // Change game state to LOBBY
         return changeGameState(lobbyId, STATE_LOBBY, null, null);
@@ -210,29 +166,39 @@ public class GameStateService {
         log.info("Starting timer for round {} in lobby {} with duration {} seconds",
                 round.getId(), lobbyId, round.getDurationSeconds());
 
-        // Cancel any existing timer for this lobby
-        cancelRoundTimer(lobbyId);
-
-        // Let's fetch the round fresh, because sometimes it's not fully populated with data
-        roundService.findById(round.getId())
-                .doOnNext(freshRound -> {
-                    Disposable disposable = Mono.delay(Duration.ofSeconds(freshRound.getDurationSeconds()))
-                            .flatMap(ignored -> handleRoundEnd(lobbyId, freshRound))
-                            .doOnSubscribe(sub -> log.info("Round timer started for lobby {}", lobbyId))
-                            .doOnError(error -> log.error("Error in round timer: {}", error.getMessage(), error))
-                            .subscribe();
-
-                    // Store the timer reference
-                    roundTimers.put(lobbyId, disposable);
-                }).subscribe();
+        // Use the fully populated round from the lobby state, only going to the database if it isn't there
+        lobbyStateEngine.getSnapshot(lobbyId)
+                .flatMap(snapshot -> Mono.justOrEmpty(snapshot.findRound(round.getId())))
+                .switchIfEmpty(Mono.defer(() -> roundService.findById(round.getId())))
+                .flatMap(freshRound -> gameTimerService.schedule(lobbyId, DeadlineType.ROUND_END, freshRound.getId(),
+                        Instant.now().plusSeconds(freshRound.getDurationSeconds())))
+                .subscribe(null, error -> log.error("Error in round timer: {}", error.getMessage(), error));
     }
 
-    private void cancelRoundTimer(UUID lobbyId) {
-        Disposable existingTimer = roundTimers.remove(lobbyId);
-        if (existingTimer != null && !existingTimer.isDisposed()) {
-            log.info("Cancelling existing round timer for lobby {}", lobbyId);
-            existingTimer.dispose();
-        }
+    /**
+     * A round's timer ran out. Only ends the round if the lobby is still playing it,
+     * a deadline restored after a restart may be for a round that has since moved on.
+     */
+    private Mono<Void> handleRoundDeadline(UUID lobbyId, UUID roundId) {
+        return lobbyStateEngine.getSnapshot(lobbyId)
+                .filter(snapshot -> STATE_GAME_IN_PROGRESS.equals(snapshot.getState())
+                        && roundId.equals(snapshot.getCurrentRoundId()))
+                .flatMap(snapshot -> Mono.justOrEmpty(snapshot.findRound(roundId)))
+                .flatMap(round -> roundContextService.getContext(roundId, lobbyId)
+                        // Claim the end so players guessing at the last moment can't end the round a second time
+                        .filter(RoundContextService.RoundContext::claimRoundEnd)
+                        .flatMap(context -> handleRoundEnd(lobbyId, round)));
+    }
+
+    /**
+     * The scoreboard has been shown for long enough, move on if the host hasn't already
+     */
+    private Mono<Void> handleScoreboardDeadline(UUID lobbyId, UUID roundId) {
+        return lobbyStateEngine.getSnapshot(lobbyId)
+                .filter(snapshot -> STATE_ROUND_SCOREBOARD.equals(snapshot.getState())
+                        && roundId.equals(snapshot.getCurrentRoundId()))
+                .flatMap(snapshot -> Mono.justOrEmpty(snapshot.findRound(roundId)))
+                .flatMap(round -> advanceToNextRound(lobbyId, round));
     }
 
     /**
@@ -241,23 +207,24 @@ public class GameStateService {
     public Mono<Void> handleRoundEnd(UUID lobbyId, Round round) {
         log.info("Handling round end for round {} in lobby {}", round.getId(), lobbyId);
 
-        // Check if this is the last round and get the next round if available
-        return r2dbcEntityTemplate.select(Round.class)
-                .matching(org.springframework.data.relational.core.query.Query.query(
-                        org.springframework.data.relational.core.query.Criteria.where("game_instance_id").is(round.getGameInstanceId())
-                ))
-                .all()
-                .collectList()
-                .flatMap(rounds -> {
-                    int totalRounds = rounds.size();
+        return lobbyStateEngine.getSnapshot(lobbyId)
+                .flatMap(snapshot -> {
+                    int totalRounds = snapshot.getTotalRounds();
                     boolean isLastRound = round.getRoundOrder() >= totalRounds - 1;
 
                     log.info("Round {}/{} ended. Is last round: {}",
                             round.getRoundOrder() + 1, totalRounds, isLastRound);
 
-                    // First change game state in the database
-                    return changeGameState(lobbyId, STATE_ROUND_SCOREBOARD, round.getGameInstanceId(), round);
+                    Mono<Void> scoreboardTimer = Mono.empty();
+                    if (!isLastRound && scoreboardAdvanceSeconds > 0) {
+                        scoreboardTimer = gameTimerService.schedule(lobbyId, DeadlineType.SCOREBOARD_ADVANCE, round.getId(),
+                                Instant.now().plusSeconds(scoreboardAdvanceSeconds));
+                    }
+
+                    return changeGameState(lobbyId, STATE_ROUND_SCOREBOARD, round.getGameInstanceId(), round)
+                            .then(scoreboardTimer);
                 })
+                .doFinally(signal -> roundContextService.evict(round.getId()))
                 .onErrorResume(e -> {
                     log.error("Error handling round end: {}", e.getMessage(), e);
                     return Mono.<Void>empty(); // Explicitly typed as Void
@@ -275,52 +242,34 @@ public class GameStateService {
     public Mono<Void> checkAllPlayersGuessed(UUID lobbyId, Round round) {
         log.info("Checking if all players in lobby {} have submitted guesses for round {}", lobbyId, round.getId());
 
-        // Get all active players in the lobby
-        return playerRepository.findByLobbyId(lobbyId)
-                .collectList()
-                .flatMap(activePlayers -> {
-                    if (activePlayers.isEmpty()) {
+        // A guess arriving after the round ended would otherwise get a fresh context and end it again
+        return lobbyStateEngine.getSnapshot(lobbyId)
+                .filter(snapshot -> STATE_GAME_IN_PROGRESS.equals(snapshot.getState())
+                        && round.getId().equals(snapshot.getCurrentRoundId()))
+                // The round context tracks the roster and who has guessed, so no queries are needed here
+                .flatMap(snapshot -> roundContextService.getContext(round.getId(), lobbyId))
+                .flatMap(context -> {
+                    if (context.getRoster().isEmpty()) {
                         log.warn("No active players found in lobby {}", lobbyId);
                         return Mono.empty();
                     }
 
-                    log.info("Found {} active players in lobby {}", activePlayers.size(), lobbyId);
-
-                    // Get all guesses for this round
-                    return guessRepository.findByRoundId(round.getId())
-                            .collectList()
-                            .flatMap(guesses -> {
-                                // Create a set of player IDs who have guessed
-                                Set<UUID> playerGuesses = guesses.stream()
-                                        .map(Guess::getPlayerId)
-                                        .collect(Collectors.toSet());
-
-                                log.info("Found {} guesses for round {}", playerGuesses.size(), round.getId());
-
-                                // Check if all active players have guessed
-                                boolean allPlayersGuessed = true;
-                                for (Player activePlayer : activePlayers) {
-                                    if (!playerGuesses.contains(activePlayer.getId())) {
-                                        allPlayersGuessed = false;
-                                        log.info("Player {} has not submitted a guess yet", activePlayer.getId());
-                                        break;
-                                    }
-                                }
-
-                                if (allPlayersGuessed && activePlayers.size() > 0) {
-                                    log.info("All {} active players have submitted guesses for round {}. Ending round early.",
-                                            activePlayers.size(), round.getId());
-
-                                    // Cancel the current round timer
-                                    cancelRoundTimer(lobbyId);
-
-                                    // Handle the round end using the existing method
-                                    return handleRoundEnd(lobbyId, round);
-                                } else {
-                                    log.info("Not all players have submitted guesses for round {} yet.", round.getId());
-                                    return Mono.empty();
-                                }
-                            });
+                    log.info("Found {} guesses from {} active players for round {}",
+                            context.getGuessedPlayerIds().size(), context.getRoster().size(), round.getId());
+
+                    if (context.allPlayersGuessed() && context.claimRoundEnd()) {
+                        log.info("All {} active players have submitted guesses for round {}. Ending round early.",
+                                context.getRoster().size(), round.getId());
+
+                        // Cancel this round's timer, leaving any deadline armed since alone
+                        gameTimerService.cancel(lobbyId, DeadlineType.ROUND_END, round.getId());
+
+                        // Handle the round end using the existing method
+                        return handleRoundEnd(lobbyId, round);
+                    } else {
+                        log.info("Not all players have submitted guesses for round {} yet.", round.getId());
+                        return Mono.empty();
+                    }
                 });
     }
 
@@ -332,24 +281,17 @@ public class GameStateService {
 
         int nextRoundOrder = currentRound.getRoundOrder() + 1;
 
-        // Find the next round
-        return r2dbcEntityTemplate.select(Round.class)
-                .matching(org.springframework.data.relational.core.query.Query.query(
-                        org.springframework.data.relational.core.query.Criteria.where("game_instance_id").is(currentRound.getGameInstanceId())
-                                .and("round_order").is(nextRoundOrder)
-                ))
-                .one()
+        // Find the next round in the lobby's in-memory round list
+        return lobbyStateEngine.getSnapshot(lobbyId)
+                .flatMap(snapshot -> Mono.justOrEmpty(snapshot.findRoundByOrder(nextRoundOrder)))
                 .flatMap(nextRound -> {
                     log.info("Found next round: {}", nextRound.getId());
 
                     // Create a client-safe version of the round
                     Round clientSafeRound = nextRound.getClientSafeRound();
 
-                    var existingTimer = roundAdvanceTimers.remove(lobbyId);
-                    if (existingTimer != null && !existingTimer.isDisposed()) {
-                        log.info("Cancelling existing round advance timer for lobby {}", lobbyId);
-                        existingTimer.dispose();
-                    }
+                    // The host may have moved on before the scoreboard timer ran out
+                    gameTimerService.cancel(lobbyId);
 
                     // Update the game state with the new round
                     return changeGameState(lobbyId, STATE_GAME_IN_PROGRESS, currentRound.getGameInstanceId(), clientSafeRound)
@@ -361,11 +303,7 @@ public class GameStateService {
                 })
                 .onErrorResume(e -> {
                     log.error("Error advancing to next round: {}", e.getMessage(), e);
-                    var existingTimer = roundAdvanceTimers.remove(lobbyId);
-                    if (existingTimer != null && !existingTimer.isDisposed()) {
-                        log.info("Cancelling existing round advance timer for lobby {}", lobbyId);
-                        existingTimer.dispose();
-                    }
+                    gameTimerService.cancel(lobbyId);
                     return Mono.<Void>empty(); // Explicitly typed as Void
                 })
                 .then(); // Final then() to ensure Mono<Void> return type
@@ -0,0 +1,243 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.GameState;
+import com.guesshole.repositories.GameStateRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Keeps the one pending deadline each lobby can have: the end of the current round or the
+ * automatic advance from the scoreboard. Deadlines are armed on the shared timing wheel and
+ * written to game_state, so after a restart they are re-armed, or fired straight away if
+ * they passed while the node was down.
+ * <p>
+ * Only the node that owns a lobby arms its deadline. When a lobby moves to another node the
+ * deadline is dropped here, left in game_state, and re-armed by the new owner.
+ */
+@Service
+public class GameTimerService {
+    private static final Logger log = LoggerFactory.getLogger(GameTimerService.class);
+
+    /**
+     * The kinds of deadline a lobby can be waiting for
+     */
+    public enum DeadlineType {
+        ROUND_END,
+        SCOREBOARD_ADVANCE
+    }
+
+    /**
+     * A deadline armed on the wheel
+     */
+    private final class ArmedDeadline implements TimerTask {
+        private final UUID lobbyId;
+        private final DeadlineType type;
+        private final UUID roundId;
+        private final Instant deadline;
+        private volatile Timeout timeout;
+
+        private ArmedDeadline(UUID lobbyId, DeadlineType type, UUID roundId, Instant deadline) {
+            this.lobbyId = lobbyId;
+            this.type = type;
+            this.roundId = roundId;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            fire(this);
+        }
+
+        private void cancel() {
+            Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+
+    private final HashedWheelTimer timerWheel;
+    private final GameStateRepository gameStateRepository;
+    private final LobbyOwnershipService lobbyOwnership;
+    private final Timer lagTimer;
+
+    private final Map<UUID, ArmedDeadline> deadlines = new ConcurrentHashMap<>();
+    private final Map<DeadlineType, BiFunction<UUID, UUID, Mono<Void>>> handlers = new EnumMap<>(DeadlineType.class);
+
+    public GameTimerService(HashedWheelTimer timerWheel, GameStateRepository gameStateRepository,
+                            LobbyOwnershipService lobbyOwnership, MeterRegistry meterRegistry) {
+        this.timerWheel = timerWheel;
+        this.gameStateRepository = gameStateRepository;
+        this.lobbyOwnership = lobbyOwnership;
+        lobbyOwnership.addOwnershipListener(this::handOff);
+        this.lagTimer = Timer.builder("game.timers.lag")
+                .description("How late game deadlines fire after they were due")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("game.timers.active", deadlines, Map::size)
+                .description("Game deadlines currently armed on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Set the action to run when a deadline of the given type fires.
+     * The handler gets the lobby ID and the round the deadline was set for.
+     */
+    public void setHandler(DeadlineType type, BiFunction<UUID, UUID, Mono<Void>> handler) {
+        handlers.put(type, handler);
+    }
+
+    /**
+     * Arm a deadline for a lobby, replacing any deadline it already had, and persist it
+     */
+    public Mono<Void> schedule(UUID lobbyId, DeadlineType type, UUID roundId, Instant deadline) {
+        arm(lobbyId, type, roundId, deadline);
+        return gameStateRepository.setDeadline(lobbyId, type.name(), roundId, deadline)
+                .doOnError(e -> log.error("Error persisting {} deadline for lobby {}: {}", type, lobbyId, e.getMessage(), e))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Cancel a lobby's pending deadline, if it has one
+     */
+    public void cancel(UUID lobbyId) {
+        ArmedDeadline armed = deadlines.remove(lobbyId);
+        if (armed != null) {
+            log.info("Cancelling {} deadline for lobby {}", armed.type, lobbyId);
+            armed.cancel();
+            clearPersisted(armed);
+        }
+    }
+
+    /**
+     * Cancel a lobby's pending deadline only if it is of the given type and for the given round,
+     * so a late caller can't cancel a deadline armed for a later stage of the game
+     */
+    public void cancel(UUID lobbyId, DeadlineType type, UUID roundId) {
+        ArmedDeadline armed = deadlines.get(lobbyId);
+        if (armed != null && armed.type == type && armed.roundId.equals(roundId) && deadlines.remove(lobbyId, armed)) {
+            log.info("Cancelling {} deadline for round {} of lobby {}", type, roundId, lobbyId);
+            armed.cancel();
+            clearPersisted(armed);
+        }
+    }
+
+    /**
+     * Get the deadline a lobby is waiting for, or null if it has none
+     */
+    public Instant getDeadline(UUID lobbyId) {
+        ArmedDeadline armed = deadlines.get(lobbyId);
+        return armed != null ? armed.deadline : null;
+    }
+
+    /**
+     * Re-arm the deadlines of this node's lobbies that were pending when the application last stopped
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restoreDeadlines() {
+        gameStateRepository.findByDeadlineAtIsNotNull()
+                .filter(gameState -> lobbyOwnership.isOwner(gameState.getLobbyId()))
+                .doOnNext(this::restore)
+                .count()
+                .subscribe(
+                        count -> log.info("Restored {} game deadlines", count),
+                        error -> log.error("Error restoring game deadlines: {}", error.getMessage(), error));
+    }
+
+    private void restore(GameState gameState) {
+        DeadlineType type;
+        try {
+            type = DeadlineType.valueOf(gameState.getDeadlineType());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            log.warn("Ignoring unknown deadline type {} for lobby {}", gameState.getDeadlineType(), gameState.getLobbyId());
+            return;
+        }
+        log.info("Restoring {} deadline for lobby {} due at {}", type, gameState.getLobbyId(), gameState.getDeadlineAt());
+        // Deadlines armed since startup are newer than the stored one
+        if (!deadlines.containsKey(gameState.getLobbyId())) {
+            arm(gameState.getLobbyId(), type, gameState.getDeadlineRoundId(), gameState.getDeadlineAt());
+        }
+    }
+
+    /**
+     * Drop the deadlines of lobbies that moved to another node, leaving them persisted for the
+     * new owner, and arm the deadlines of lobbies that moved here
+     */
+    private void handOff() {
+        deadlines.forEach((lobbyId, armed) -> {
+            if (!lobbyOwnership.isOwner(lobbyId) && deadlines.remove(lobbyId, armed)) {
+                log.info("Handing off {} deadline for lobby {}", armed.type, lobbyId);
+                armed.cancel();
+            }
+        });
+        restoreDeadlines();
+    }
+
+    private void arm(UUID lobbyId, DeadlineType type, UUID roundId, Instant deadline) {
+        ArmedDeadline armed = new ArmedDeadline(lobbyId, type, roundId, deadline);
+        ArmedDeadline previous = deadlines.put(lobbyId, armed);
+        if (previous != null) {
+            previous.cancel();
+        }
+
+        // Overdue deadlines get no delay and fire on the next tick
+        long delayMillis = Math.max(0, Duration.between(Instant.now(), deadline).toMillis());
+        armed.timeout = timerWheel.newTimeout(armed, delayMillis, TimeUnit.MILLISECONDS);
+        log.info("Armed {} deadline for lobby {} in {}ms", type, lobbyId, delayMillis);
+    }
+
+    private void fire(ArmedDeadline armed) {
+        UUID lobbyId = armed.lobbyId;
+        // Only fire if this is still the lobby's deadline, it may have been replaced as the timeout expired
+        if (!deadlines.remove(lobbyId, armed)) {
+            return;
+        }
+        // The lobby moved as the timeout expired, its new owner fires the persisted deadline
+        if (!lobbyOwnership.isOwner(lobbyId)) {
+            return;
+        }
+        lagTimer.record(Duration.between(armed.deadline, Instant.now()).abs());
+
+        BiFunction<UUID, UUID, Mono<Void>> handler = handlers.get(armed.type);
+        if (handler == null) {
+            log.warn("No handler for {} deadline of lobby {}", armed.type, lobbyId);
+            clearPersisted(armed);
+            return;
+        }
+
+        log.info("{} deadline fired for lobby {}", armed.type, lobbyId);
+        Mono.defer(() -> handler.apply(lobbyId, armed.roundId))
+                .onErrorResume(e -> {
+                    log.error("Error handling {} deadline for lobby {}: {}", armed.type, lobbyId, e.getMessage(), e);
+                    return Mono.empty();
+                })
+                // Clear after handling so a crash part way through fires the deadline again on restart
+                .doFinally(signal -> clearPersisted(armed))
+                .subscribe();
+    }
+
+    private void clearPersisted(ArmedDeadline armed) {
+        gameStateRepository.clearDeadline(armed.lobbyId, armed.type.name(), armed.roundId)
+                .subscribe(null, e -> log.error("Error clearing deadline for lobby {}: {}", armed.lobbyId, e.getMessage(), e));
+    }
+}
@@ -0,0 +1,517 @@
+package com.guesshole.services;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guesshole.entities.Guess;
+import com.guesshole.entities.MultiplierType;
+import com.guesshole.entities.ScoreMultiplier;
+import com.guesshole.repositories.GuessRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind persistence for guesses. When enabled, a guess is appended to a local journal
+ * and its result sent as soon as the journal is synced to disk, and the guesses are written to
+ * the database afterwards in batches.
+ * <p>
+ * Appends are group committed: one thread writes every guess waiting to be journaled and syncs
+ * them with a single fsync, while the next group gathers. On each flush the current journal file
+ * is sealed, its guesses are inserted with {@link GuessRepository#insertAllWithMultipliers}, and
+ * the file is deleted. Journal files left by a crash are replayed at startup. Inserts skip guesses
+ * that are already in the database, so replaying a file that was partly flushed is safe. A file
+ * that still can't be written after a number of attempts, e.g. because a guess in it violates a
+ * constraint, is renamed to a dead letter file for someone to look at and is no longer retried.
+ * <p>
+ * Anything that reads guesses from the database calls {@link #flush()} first.
+ */
+@Service
+public class GuessJournal {
+    private static final Logger log = LoggerFactory.getLogger(GuessJournal.class);
+    private static final String SEGMENT_PREFIX = "guesses-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String DEAD_LETTER_SUFFIX = ".dead";
+
+    /**
+     * A guess as it is written to the journal, one JSON line per guess
+     */
+    private static class Entry {
+        @JsonProperty private UUID id;
+        @JsonProperty private UUID playerId;
+        @JsonProperty private UUID roundId;
+        @JsonProperty private UUID gameInstanceId;
+        @JsonProperty private BigDecimal latitude;
+        @JsonProperty private BigDecimal longitude;
+        @JsonProperty private Long locationPointId;
+        @JsonProperty private Double distanceKm;
+        @JsonProperty private Integer baseScore;
+        @JsonProperty private Integer score;
+        @JsonProperty private Integer roundDuration;
+        @JsonProperty private Integer guessTime;
+        @JsonProperty private Instant timestamp;
+        @JsonProperty private List<Multiplier> multipliers = new ArrayList<>();
+
+        private static class Multiplier {
+            @JsonProperty private MultiplierType type;
+            @JsonProperty private float value;
+            @JsonProperty private String displayName;
+            @JsonProperty private String tooltip;
+        }
+
+        private static Entry from(Guess guess) {
+            Entry entry = new Entry();
+            entry.id = guess.getId();
+            entry.playerId = guess.getPlayerId();
+            entry.roundId = guess.getRoundId();
+            entry.gameInstanceId = guess.getGameInstanceId();
+            entry.latitude = guess.getLatitude();
+            entry.longitude = guess.getLongitude();
+            entry.locationPointId = guess.getLocationPointId();
+            entry.distanceKm = guess.getDistanceKm();
+            entry.baseScore = guess.getBaseScore();
+            entry.score = guess.getScore();
+            entry.roundDuration = guess.getRoundDuration();
+            entry.guessTime = guess.getGuessTime();
+            entry.timestamp = guess.getTimestamp();
+            if (guess.getScoreMultipliers() != null) {
+                for (ScoreMultiplier scoreMultiplier : guess.getScoreMultipliers()) {
+                    Multiplier multiplier = new Multiplier();
+                    multiplier.type = scoreMultiplier.getMultiplierType();
+                    multiplier.value = scoreMultiplier.getMultiplierValue();
+                    multiplier.displayName = scoreMultiplier.getDisplayName();
+                    multiplier.tooltip = scoreMultiplier.getTooltip();
+                    entry.multipliers.add(multiplier);
+                }
+            }
+            return entry;
+        }
+
+        private Guess toGuess() {
+            List<ScoreMultiplier> scoreMultipliers = multipliers.stream()
+                    .map(m -> new ScoreMultiplier(id, m.value, m.type, m.displayName, m.tooltip))
+                    .toList();
+            Guess guess = new Guess(playerId, roundId, gameInstanceId, latitude, longitude, locationPointId,
+                    distanceKm, baseScore, score, scoreMultipliers, roundDuration, guessTime);
+            guess.setId(id);
+            guess.setTimestamp(timestamp);
+            return guess;
+        }
+    }
+
+    /**
+     * A guess waiting for the journal thread to write and sync it
+     */
+    private static class PendingAppend {
+        private final Guess guess;
+        private final byte[] line;
+        private final CompletableFuture<Void> synced = new CompletableFuture<>();
+
+        private PendingAppend(Guess guess, byte[] line) {
+            this.guess = guess;
+            this.line = line;
+        }
+    }
+
+    /**
+     * A journal file and the guesses written to it
+     */
+    private static class Segment {
+        private final Path path;
+        private final List<Guess> guesses = new ArrayList<>();
+        private int failedFlushes;
+
+        private Segment(Path path) {
+            this.path = path;
+        }
+    }
+
+    private final GuessRepository guessRepository;
+    private final ObjectMapper objectMapper;
+    private final Timer syncTimer;
+    private final DistributionSummary groupSize;
+    private final Counter flushedGuesses;
+    private final Counter deadLetteredGuesses;
+
+    // Only the journal thread touches the current segment and its channel
+    private final ExecutorService journalThread =
+            Executors.newSingleThreadExecutor(new DefaultThreadFactory("guess-journal", true));
+    private final List<PendingAppend> pendingAppends = new ArrayList<>();
+    private boolean writeScheduled;
+    private Segment currentSegment;
+    private FileChannel channel;
+    private final AtomicLong segmentSequence = new AtomicLong();
+
+    // Sealed segments whose guesses aren't in the database yet
+    private final Queue<Segment> unflushed = new ConcurrentLinkedQueue<>();
+    // Guesses synced to the journal and not yet in the database
+    private final AtomicInteger unflushedGuesses = new AtomicInteger();
+    // Flushes run one at a time, so a flush that completes has written everything sealed before it
+    private final Sinks.Many<CompletableFuture<Void>> flushRequests = Sinks.many().unicast().onBackpressureBuffer();
+
+    @Value("${app.guesses.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.guesses.write-behind.journal-dir:data/guess-journal}")
+    private String journalDir;
+
+    @Value("${app.guesses.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.guesses.write-behind.max-flush-attempts:120}")
+    private int maxFlushAttempts;
+
+    public GuessJournal(GuessRepository guessRepository, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.guessRepository = guessRepository;
+        this.objectMapper = objectMapper;
+        this.syncTimer = Timer.builder("guess.journal.sync")
+                .description("Time taken to write and fsync a group of guesses to the journal")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.groupSize = DistributionSummary.builder("guess.journal.group.size")
+                .description("Guesses made durable by each journal fsync")
+                .register(meterRegistry);
+        this.flushedGuesses = Counter.builder("guess.journal.flushed")
+                .description("Journaled guesses written to the database")
+                .register(meterRegistry);
+        this.deadLetteredGuesses = Counter.builder("guess.journal.dead.lettered")
+                .description("Journaled guesses given up on after repeated failures to write them to the database")
+                .register(meterRegistry);
+        Gauge.builder("guess.journal.unflushed", unflushedGuesses, AtomicInteger::get)
+                .description("Guesses in the journal that aren't in the database yet")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        flushRequests.asFlux()
+                .concatMap(request -> flushSealed().doFinally(signal -> request.complete(null)))
+                .subscribe();
+
+        Path dir = Paths.get(journalDir);
+        if (Files.isDirectory(dir)) {
+            recover(dir);
+        }
+        if (enabled) {
+            Files.createDirectories(dir);
+            currentSegment = openSegment(dir);
+            log.info("Guess write-behind enabled, journaling to {}", dir.toAbsolutePath());
+        }
+    }
+
+    /**
+     * Write the guesses left in the journal by the last run to the database
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayRecovered() {
+        if (!unflushed.isEmpty()) {
+            flush().subscribe(null, e -> log.error("Error replaying guess journal: {}", e.getMessage(), e));
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        // Best effort, anything not written now is replayed from the journal at the next start
+        if (enabled) {
+            try {
+                flush().block(Duration.ofSeconds(10));
+            } catch (Exception e) {
+                log.warn("Guess journal not flushed at shutdown, it will be replayed at the next start: {}", e.getMessage());
+            }
+        }
+        journalThread.shutdown();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Append a guess to the journal. Completes once the guess is synced to disk,
+     * together with every other guess appended while the previous sync was running.
+     */
+    public Mono<Void> append(Guess guess) {
+        return Mono.defer(() -> {
+            PendingAppend append = new PendingAppend(guess, encode(guess));
+            boolean scheduleWrite;
+            synchronized (pendingAppends) {
+                pendingAppends.add(append);
+                scheduleWrite = !writeScheduled;
+                writeScheduled = true;
+            }
+            if (scheduleWrite) {
+                journalThread.execute(this::writePending);
+            }
+            return Mono.fromFuture(append.synced);
+        });
+    }
+
+    /**
+     * Write every journaled guess to the database. Completes once the guesses that were
+     * journaled when it was called are in the database, or the attempt to write them failed.
+     */
+    public Mono<Void> flush() {
+        if (unflushedGuesses.get() == 0 && unflushed.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            CompletableFuture<Void> flushed = new CompletableFuture<>();
+            flushRequests.emitNext(flushed, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+            return Mono.fromFuture(flushed);
+        });
+    }
+
+    /**
+     * Scheduled task to move journaled guesses into the database
+     */
+    @Scheduled(fixedDelayString = "${app.guesses.write-behind.flush-interval-ms:500}")
+    public void flushJournal() {
+        flush().subscribe(null, e -> log.error("Error flushing guess journal: {}", e.getMessage(), e));
+    }
+
+    private byte[] encode(Guess guess) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(Entry.from(guess));
+            byte[] line = new byte[json.length + 1];
+            System.arraycopy(json, 0, line, 0, json.length);
+            line[json.length] = '\n';
+            return line;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error encoding guess " + guess.getId(), e);
+        }
+    }
+
+    /**
+     * Runs on the journal thread: write and sync everything appended since the last write
+     */
+    private void writePending() {
+        List<PendingAppend> group;
+        synchronized (pendingAppends) {
+            group = new ArrayList<>(pendingAppends);
+            pendingAppends.clear();
+            writeScheduled = false;
+        }
+
+        Timer.Sample sample = Timer.start();
+        long start = -1;
+        try {
+            start = channel.position();
+            for (PendingAppend append : group) {
+                ByteBuffer buffer = ByteBuffer.wrap(append.line);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            log.error("Error writing {} guesses to the journal: {}", group.size(), e.getMessage(), e);
+            discardPartialWrite(start);
+            group.forEach(append -> append.synced.completeExceptionally(e));
+            return;
+        }
+        sample.stop(syncTimer);
+        groupSize.record(group.size());
+
+        group.forEach(append -> currentSegment.guesses.add(append.guess));
+        unflushedGuesses.addAndGet(group.size());
+        group.forEach(append -> append.synced.complete(null));
+    }
+
+    /**
+     * Runs on the journal thread: remove what a failed write left in the segment, so the next
+     * group isn't appended onto a partial line. If that fails too the segment is sealed as it is,
+     * recovery skips a partial last line.
+     */
+    private void discardPartialWrite(long start) {
+        try {
+            if (start >= 0) {
+                channel.truncate(start);
+                channel.position(start);
+                return;
+            }
+        } catch (IOException e) {
+            log.error("Error discarding a partial write from guess journal {}: {}",
+                    currentSegment.path.getFileName(), e.getMessage(), e);
+        }
+        try {
+            Path dir = currentSegment.path.getParent();
+            channel.close();
+            if (currentSegment.guesses.isEmpty()) {
+                deleteSegment(currentSegment.path);
+            } else {
+                unflushed.add(currentSegment);
+            }
+            currentSegment = openSegment(dir);
+        } catch (IOException e) {
+            log.error("Error starting a new guess journal segment: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Runs on the journal thread: seal the current segment and start a new one
+     */
+    private void sealCurrentSegment() {
+        if (currentSegment == null || currentSegment.guesses.isEmpty()) {
+            return;
+        }
+        try {
+            channel.close();
+            unflushed.add(currentSegment);
+            currentSegment = openSegment(currentSegment.path.getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error starting a new guess journal segment", e);
+        }
+    }
+
+    private Segment openSegment(Path dir) throws IOException {
+        Segment segment = new Segment(dir.resolve(
+                SEGMENT_PREFIX + System.currentTimeMillis() + "-" + segmentSequence.incrementAndGet() + SEGMENT_SUFFIX));
+        channel = FileChannel.open(segment.path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        return segment;
+    }
+
+    private Mono<Void> flushSealed() {
+        return Mono.fromFuture(CompletableFuture.runAsync(this::sealCurrentSegment, journalThread))
+                .onErrorResume(e -> {
+                    log.error("Error sealing guess journal segment: {}", e.getMessage(), e);
+                    return Mono.empty();
+                })
+                .thenMany(Flux.defer(() -> {
+                    List<Segment> segments = new ArrayList<>();
+                    Segment segment;
+                    while ((segment = unflushed.poll()) != null) {
+                        segments.add(segment);
+                    }
+                    return Flux.fromIterable(segments);
+                }))
+                .concatMap(this::flushSegment)
+                .then();
+    }
+
+    private Mono<Void> flushSegment(Segment segment) {
+        return Flux.fromIterable(segment.guesses)
+                .buffer(batchSize)
+                .concatMap(guessRepository::insertAllWithMultipliers)
+                .reduce(0L, Long::sum)
+                .doOnNext(inserted -> {
+                    log.debug("Flushed {} journaled guesses from {}, {} were new",
+                            segment.guesses.size(), segment.path.getFileName(), inserted);
+                    unflushedGuesses.addAndGet(-segment.guesses.size());
+                    flushedGuesses.increment(segment.guesses.size());
+                    deleteSegment(segment.path);
+                })
+                .then()
+                .onErrorResume(e -> {
+                    segment.failedFlushes++;
+                    if (segment.failedFlushes >= maxFlushAttempts) {
+                        log.error("Giving up on {} journaled guesses from {} after {} attempts: {}",
+                                segment.guesses.size(), segment.path.getFileName(), segment.failedFlushes, e.getMessage(), e);
+                        deadLetter(segment);
+                        return Mono.empty();
+                    }
+                    // Keep the segment, it is retried on the next flush
+                    log.error("Error flushing {} journaled guesses from {} (attempt {} of {}): {}",
+                            segment.guesses.size(), segment.path.getFileName(), segment.failedFlushes,
+                            maxFlushAttempts, e.getMessage(), e);
+                    unflushed.add(segment);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Stop retrying a segment, keeping its file under a name recovery doesn't pick up
+     */
+    private void deadLetter(Segment segment) {
+        Path deadLetter = segment.path.resolveSibling(segment.path.getFileName() + DEAD_LETTER_SUFFIX);
+        try {
+            Files.move(segment.path, deadLetter);
+            log.error("Moved guess journal segment {} to {}", segment.path.getFileName(), deadLetter.getFileName());
+        } catch (IOException e) {
+            // It stays a segment, and is retried from the start after the next restart
+            log.error("Error moving guess journal segment {} to {}: {}",
+                    segment.path.getFileName(), deadLetter.getFileName(), e.getMessage(), e);
+        }
+        unflushedGuesses.addAndGet(-segment.guesses.size());
+        deadLetteredGuesses.increment(segment.guesses.size());
+    }
+
+    /**
+     * Load the segments left in the journal directory by the last run
+     */
+    private void recover(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : files.filter(this::isSegment).sorted().toList()) {
+                Segment segment = new Segment(path);
+                for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        segment.guesses.add(objectMapper.readValue(line, Entry.class).toGuess());
+                    } catch (IOException e) {
+                        // A crash part way through a write leaves a partial last line. It was never synced, so never acknowledged.
+                        log.warn("Skipping unreadable entry in guess journal {}: {}", path.getFileName(), e.getMessage());
+                    }
+                }
+                if (segment.guesses.isEmpty()) {
+                    deleteSegment(path);
+                } else {
+                    log.info("Recovered {} unflushed guesses from {}", segment.guesses.size(), path.getFileName());
+                    unflushed.add(segment);
+                    unflushedGuesses.addAndGet(segment.guesses.size());
+                }
+            }
+        }
+    }
+
+    private boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private void deleteSegment(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Error deleting guess journal segment {}: {}", path.getFileName(), e.getMessage());
+        }
+    }
+}
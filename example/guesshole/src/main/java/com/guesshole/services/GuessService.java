@@ -1,5 +1,6 @@
 package com.guesshole.services;
 
+import com.guesshole.dto.ScoreboardEntry;
 import com.guesshole.entities.Guess;
 import com.guesshole.entities.LocationPoint;
 import com.guesshole.entities.Player;
@@ -7,23 +8,25 @@ import com.guesshole.entities.Round;
 import com.guesshole.entities.ScoreMultiplier;
 import com.guesshole.repositories.GuessRepository;
 import com.guesshole.repositories.LocationPointRepository;
-import com.guesshole.repositories.PlayerRepository;
-import com.guesshole.repositories.ScoreMultiplierRepository;
+import com.guesshole.services.RoundContextService.RoundContext;
 import com.guesshole.utils.GeographicDistanceCalculator;
-import com.guesshole.utils.ScoreCalculator;
+import com.guesshole.websocket.codec.MessageCodec;
 import com.guesshole.websocket.messages.outgoing.GuessResultMessage;
-import com.guesshole.websocket.services.WebSocketSessionService;
+import com.guesshole.websocket.services.SharedMessagePayload;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.env.Environment;
-import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.socket.WebSocketSession;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,41 +34,46 @@ public class GuessService {
     private static final Logger log = LoggerFactory.getLogger(GuessService.class);
 
     private final GuessRepository guessRepository;
-    private final RoundService roundService;
-    private final PlayerRepository playerRepository;
-    private final ScoreMultiplierRepository scoreMultiplierRepository;
     private final LocationPointRepository locationPointRepository;
     private final LocationService locationService;
-    private final WebSocketSessionService sessionService;
+    private final RoundContextService roundContextService;
     private final LobbyService lobbyService;
-    private final R2dbcEntityTemplate r2dbcEntityTemplate;
-    private final Environment environment;
+    private final GuessJournal guessJournal;
+    private final ScoringEngine scoringEngine;
+    private final MeterRegistry meterRegistry;
+    private final Timer guessIngestTimer;
 
     public GuessService(
             GuessRepository guessRepository,
-            RoundService roundService,
-            PlayerRepository playerRepository,
-            ScoreMultiplierRepository scoreMultiplierRepository,
             LocationPointRepository locationPointRepository,
             LocationService locationService,
-            WebSocketSessionService sessionService,
+            RoundContextService roundContextService,
             LobbyService lobbyService,
-            R2dbcEntityTemplate r2dbcEntityTemplate,
-            Environment environment) {
+            GuessJournal guessJournal,
+            ScoringEngine scoringEngine,
+            MeterRegistry meterRegistry) {
         this.guessRepository = guessRepository;
-        this.roundService = roundService;
-        this.playerRepository = playerRepository;
-        this.scoreMultiplierRepository = scoreMultiplierRepository;
         this.locationPointRepository = locationPointRepository;
         this.locationService = locationService;
-        this.sessionService = sessionService;
+        this.roundContextService = roundContextService;
         this.lobbyService = lobbyService;
-        this.r2dbcEntityTemplate = r2dbcEntityTemplate;
-        this.environment = environment;
+        this.guessJournal = guessJournal;
+        this.scoringEngine = scoringEngine;
+        this.meterRegistry = meterRegistry;
+
+        // Tagged with the persistence mode so latency can be compared with write-behind on and off
+        this.guessIngestTimer = Timer.builder("guess.ingest")
+                .description("Time taken to process a submitted guess, from receipt to notifying players")
+                .tag("persistence", guessJournal.isEnabled() ? "write-behind" : "direct")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
     }
 
     /**
-     * Process a guess from a player
+     * Process a guess from a player.
+     * Round and lobby context comes from the in-memory round context, and the guess
+     * is written together with its score multipliers in a single statement, or appended
+     * to the {@link GuessJournal} when write-behind is enabled.
      *
      * @param playerId The ID of the player making the guess
      * @param roundId The ID of the round
@@ -73,6 +81,7 @@ public class GuessService {
      * @param longitude The guessed longitude
      * @param roundDuration The total duration of the round in seconds
      * @param guessTime The time elapsed from round start to guess in seconds
+     * @param lobbyId The ID of the lobby the guess was made in
      * @param session The WebSocket session
      * @return A Mono that completes when the guess has been processed
      */
@@ -83,51 +92,38 @@ public class GuessService {
             BigDecimal longitude,
             Integer roundDuration,
             Integer guessTime,
+            UUID lobbyId,
             WebSocketSession session) {
 
         log.info("Processing guess from player {} for round {}: ({}, {}), made at {} seconds of {} second round",
                 playerId, roundId, latitude, longitude, guessTime, roundDuration);
 
-        // Find the player to get their name
-        Mono<Player> playerMono = playerRepository.findById(playerId);
-
-        // Find the round to get the actual location and game instance ID
-        Mono<Round> roundMono = roundService.findById(roundId);
-
-        // Find or create the location point for the guessed coordinates
-        Mono<LocationPoint> locationPointMono = locationService.createAndSaveLocationPoint(
-                longitude.doubleValue(), latitude.doubleValue());
-
-        return Mono.zip(playerMono, roundMono, locationPointMono)
-                .flatMap(tuple -> {
-                    Player player = tuple.getT1();
-                    Round round = tuple.getT2();
-                    LocationPoint guessLocationPoint = tuple.getT3();
-
-                    // Check if this is a solo game
-                    return checkSoloGame(player.getLobbyId())
-                            .flatMap(isSoloGame -> {
-                                // Calculate distance
-                                double distanceKm = calculateDistance(latitude, longitude, round);
-
-                                // Process remaining logic
-                                return processGuessLogic(player, round, guessLocationPoint, distanceKm,
-                                        roundDuration, guessTime, isSoloGame, session);
-                            });
-                })
-                .onErrorResume(e -> {
-                    log.error("Error processing guess from player {}: {}", playerId, e.getMessage(), e);
-                    return Mono.empty();
-                });
-    }
-
-    /**
-     * Check if this is a solo game by counting players in the lobby
-     */
-    private Mono<Boolean> checkSoloGame(UUID lobbyId) {
-        return playerRepository.findByLobbyId(lobbyId)
-                .collectList()
-                .map(players -> players.size() <= 1);
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+
+            // Find or create the location point for the guessed coordinates
+            Mono<LocationPoint> locationPointMono = locationService.createAndSaveLocationPoint(
+                    longitude.doubleValue(), latitude.doubleValue());
+
+            return Mono.zip(roundContextService.getContext(roundId, lobbyId), locationPointMono)
+                    .flatMap(tuple -> {
+                        RoundContext context = tuple.getT1();
+                        LocationPoint guessLocationPoint = tuple.getT2();
+
+                        return roundContextService.findPlayer(context, playerId)
+                                .flatMap(player -> {
+                                    double distanceKm = calculateDistance(latitude, longitude, context.getRound());
+
+                                    return processScoreAndSaveGuess(player, context, guessLocationPoint,
+                                            distanceKm, guessTime, roundDuration, session);
+                                });
+                    })
+                    .doOnError(e -> roundContextService.evict(roundId))
+                    .doFinally(signal -> sample.stop(guessIngestTimer));
+        }).onErrorResume(e -> {
+            log.error("Error processing guess from player {}: {}", playerId, e.getMessage(), e);
+            return Mono.empty();
+        });
     }
 
     /**
@@ -142,89 +138,38 @@ public class GuessService {
         return distanceKm;
     }
 
-    /**
-     * Process the main guess logic after initial data is gathered
-     */
-    private Mono<Void> processGuessLogic(
-            Player player,
-            Round round,
-            LocationPoint guessLocationPoint,
-            double distanceKm,
-            Integer roundDuration,
-            Integer guessTime,
-            boolean isSoloGame,
-            WebSocketSession session) {
-
-        Mono<Boolean> isFirstGuessMono = guessRepository.countByRoundId(round.getId())
-                .map(count -> count == 0);
-
-        return isFirstGuessMono.flatMap(isFirstGuess ->
-                // Get location data from the target location
-                locationService.getLocationById(round.getLocationPointId())
-                        .flatMap(targetLocation ->
-                                processScoreAndSaveGuess(
-                                        player,
-                                        round,
-                                        guessLocationPoint,
-                                        targetLocation,
-                                        distanceKm,
-                                        isFirstGuess,
-                                        guessTime,
-                                        roundDuration,
-                                        isSoloGame,
-                                        session
-                                )
-                        )
-        );
-    }
-
-    /**
-     * Calculate the base score for a guess
-     */
-    private int calculateBaseScore(double distanceKm, Integer roundDuration, Integer guessTime) {
-        return ScoreCalculator.calculateBaseScore(
-                distanceKm,
-                roundDuration,
-                guessTime,
-                environment.getProperty("app.game-round.maxDistanceThreshold", Double.class, 5000.0),
-                environment.getProperty("app.game-round.minDistanceThreshold", Double.class, 10.0),
-                environment.getProperty("app.game-round.distanceScoreMultiplier", Double.class, 1.0),
-                environment.getProperty("app.game-round.timeScoreMultiplier", Double.class, 1.0),
-                environment.getProperty("app.game-round.graceTimeThreshold", Double.class, 5.0)
-        );
-    }
-
     /**
      * Process score multipliers and save the guess
      */
     private Mono<Void> processScoreAndSaveGuess(
             Player player,
-            Round round,
+            RoundContext context,
             LocationPoint guessLocationPoint,
-            LocationPoint targetLocation,
             double distanceKm,
-            boolean isFirstGuess,
             Integer guessTime,
             Integer roundDuration,
-            boolean isSoloGame,
             WebSocketSession session) {
 
+        Round round = context.getRound();
+        LocationPoint targetLocation = round.getLocationPoint();
+        if (targetLocation == null) {
+            log.warn("Round {} has no target location point - ignoring guess", round.getId());
+            return Mono.empty();
+        }
 
-        // Calculate base score with isSoloGame parameter
-        int baseScore = calculateBaseScore(distanceKm, roundDuration, guessTime);
+        boolean isFirstGuess = context.claimFirstGuess();
 
-        // Calculate multipliers
-        List<ScoreMultiplier> scoreMultipliers = ScoreCalculator.calculateScoreMultipliers(
-                distanceKm,
-                guessTime,
-                isFirstGuess,
-                guessLocationPoint,
-                targetLocation,
-                isSoloGame
-        );
+        ScoringRules scoringRules = scoringEngine.rulesFor(context.getGameConfiguration());
+
+        // Calculate base score
+        int baseScore = scoringRules.baseScore(distanceKm, roundDuration, guessTime);
+
+        // Calculate multipliers, these are shared between guesses and must not be modified
+        List<ScoreMultiplier> scoreMultipliers = scoringRules.multipliers(
+                guessTime, isFirstGuess, context.isSoloGame(), guessLocationPoint, targetLocation);
 
         // Calculate final score with multipliers
-        int finalScore = ScoreCalculator.calculateFinalScore(baseScore, scoreMultipliers);
+        int finalScore = scoringRules.finalScore(baseScore, scoreMultipliers);
 
         // Create guess entity with locationPointId
         Guess guess = new Guess(
@@ -242,54 +187,54 @@ public class GuessService {
                 guessTime
         );
 
-        return saveGuessAndNotifyPlayers(guess, player, round, guessLocationPoint, session);
+        // The ID is assigned up front so the guess can be journaled before it is written
+        guess.setId(UUID.randomUUID());
+
+        return saveGuessAndNotifyPlayers(guess, isFirstGuess, player, context, guessLocationPoint, session);
     }
 
     /**
-     * Save the guess and related data, then notify players
+     * Save the guess and its multipliers, then notify players
      */
     private Mono<Void> saveGuessAndNotifyPlayers(
             Guess guess,
+            boolean isFirstGuess,
             Player player,
-            Round round,
+            RoundContext context,
             LocationPoint guessLocationPoint,
             WebSocketSession session) {
 
-        // Use R2dbcEntityTemplate for explicit INSERT operation
-        return r2dbcEntityTemplate.insert(Guess.class)
-                .using(guess)
-                .flatMap(savedGuess -> {
-                    log.info("Saved guess with ID: {} and LocationPoint ID: {}",
-                            savedGuess.getId(), savedGuess.getLocationPointId());
+        Mono<Void> save = guessJournal.isEnabled()
+                ? guessJournal.append(guess)
+                        .onErrorResume(e -> {
+                            log.error("Error journaling guess {}, saving it directly: {}", guess.getId(), e.getMessage(), e);
+                            return insertGuess(guess, isFirstGuess);
+                        })
+                : insertGuess(guess, isFirstGuess);
 
-                    // Set the location point on the saved guess
-                    savedGuess.setLocationPoint(guessLocationPoint);
+        return save.then(Mono.defer(() -> {
+            // Set the location point on the saved guess
+            guess.setLocationPoint(guessLocationPoint);
 
-                    return saveScoreMultipliers(savedGuess)
-                            .then(sendGuessResults(savedGuess, player, round, guessLocationPoint, session));
-                });
+            return sendGuessResults(guess, player, context, guessLocationPoint, session);
+        }));
     }
 
     /**
-     * Save all score multipliers for a guess
+     * Write the guess and its multipliers to the database
      */
-    private Mono<Void> saveScoreMultipliers(Guess savedGuess) {
-        // Create database entries for each multiplier
-        List<Mono<ScoreMultiplier>> persistedMultipliers = new ArrayList<>();
-
-        for (ScoreMultiplier multiplier : savedGuess.getScoreMultipliers()) {
-            // Set the guess ID reference on each multiplier
-            multiplier.setGuessId(savedGuess.getId());
-
-            // Insert each multiplier into the database
-            persistedMultipliers.add(r2dbcEntityTemplate.insert(ScoreMultiplier.class)
-                    .using(multiplier)
-                    .doOnSuccess(sm -> log.info("Saved score multiplier {} for guess {}",
-                            sm.getId(), savedGuess.getId())));
-        }
+    private Mono<Void> insertGuess(Guess guess, boolean isFirstGuess) {
+        return guessRepository.insertWithMultipliers(guess)
+                .doOnNext(firstGuessInDatabase -> {
+                    log.info("Saved guess with ID: {} and LocationPoint ID: {}",
+                            guess.getId(), guess.getLocationPointId());
 
-        // Wait for all multipliers to be persisted
-        return Mono.when(persistedMultipliers);
+                    if (firstGuessInDatabase != isFirstGuess) {
+                        log.warn("First guess mismatch for round {}: context={}, database={}",
+                                guess.getRoundId(), isFirstGuess, firstGuessInDatabase);
+                    }
+                })
+                .then();
     }
 
     /**
@@ -298,11 +243,11 @@ public class GuessService {
     private Mono<Void> sendGuessResults(
             Guess savedGuess,
             Player player,
-            Round round,
+            RoundContext context,
             LocationPoint guessLocationPoint,
             WebSocketSession session) {
 
-        UUID lobbyId = player.getLobbyId();
+        Round round = context.getRound();
 
         // Include location info in the result message
         GuessResultMessage resultMessage = new GuessResultMessage(
@@ -317,160 +262,88 @@ public class GuessService {
                 savedGuess.getScoreMultipliers()
         );
 
-        // Also fetch all previous guesses for this round to send to the player
-        Mono<Void> sendPreviousGuesses = sendPreviousGuessesToPlayer(round.getId(), player.getId(), session);
+        List<GuessResultMessage> previousResults = context.recordGuess(player.getId(), resultMessage);
+
+        // Serialized once per codec and reused for the guesser, the broadcast and every later guesser
+        Function<MessageCodec, SharedMessagePayload> resultPayload =
+                codec -> context.getResultPayload(resultMessage, codec, this::serializeResult);
 
         // Send the result back to the guessing player
-        Mono<Void> sendResult = lobbyService.sendToSession(session, resultMessage);
+        Mono<Void> sendResult = lobbyService.sendToSession(session, resultPayload);
+
+        // Send all previous guesses for this round to the player
+        Mono<Void> sendPreviousGuesses = Flux.fromIterable(previousResults)
+                .filter(message -> !message.getPlayer().getId().equals(player.getId()))
+                .concatMap(message -> lobbyService.sendToSession(session,
+                        codec -> context.getResultPayload(message, codec, this::serializeResult)))
+                .then();
 
         Mono<Void> broadcastGuess = broadcastGuessToPlayersWhoGuessed(
-                lobbyId, round.getId(), player.getId(), resultMessage);
+                context.getLobbyId(), player.getId(), previousResults, resultMessage, resultPayload);
 
         // Execute all operations
         return Mono.when(sendResult, broadcastGuess, sendPreviousGuesses);
     }
 
+    private SharedMessagePayload serializeResult(GuessResultMessage message, MessageCodec codec) {
+        try {
+            return lobbyService.serializeForReuse(message, codec);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error serializing guess result " + message.getGuessId(), e);
+        }
+    }
+
     /**
      * Broadcast a player's guess only to other players who have already submitted their own guesses
      */
     private Mono<Void> broadcastGuessToPlayersWhoGuessed(
             UUID lobbyId,
-            UUID roundId,
             UUID currentPlayerId,
-            GuessResultMessage message) {
-
-        log.info("Broadcasting guess from player {} to other players who have already guessed", currentPlayerId);
-
-        // Find all guesses for this round to determine which players have already guessed
-        return guessRepository.findByRoundId(roundId)
-                .collectList()
-                .flatMap(guesses -> {
-                    // Create a set of player IDs who have already guessed
-                    Set<UUID> playersWhoGuessed = guesses.stream()
-                            .map(Guess::getPlayerId)
-                            .collect(Collectors.toSet());
-
-                    log.info("Found {} players who have already guessed for round {}",
-                            playersWhoGuessed.size(), roundId);
-
-                    // Filter out the current player (don't send to self)
-                    playersWhoGuessed.remove(currentPlayerId);
-
-                    if (playersWhoGuessed.isEmpty()) {
-                        log.info("No other players have guessed yet - skipping broadcast");
-                        return Mono.empty();
-                    }
-
-                    // Get all active sessions for this lobby
-                    List<WebSocketSession> lobbySessions = sessionService.getLobbySessions(lobbyId);
-                    if (lobbySessions.isEmpty()) {
-                        log.info("No active sessions found for lobby {} - skipping broadcast", lobbyId);
-                        return Mono.empty();
-                    }
-
-                    // For each session, check if it belongs to a player who has already guessed
-                    List<Mono<Void>> sendOperations = new ArrayList<>();
-
-                    for (WebSocketSession playerSession : lobbySessions) {
-                        // Get the player ID for this session
-                        UUID sessionPlayerId = sessionService.getPlayerIdForSession(playerSession);
-
-                        if (sessionPlayerId != null &&
-                                playersWhoGuessed.contains(sessionPlayerId) &&
-                                playerSession.isOpen()) {
-
-                            log.info("Sending guess info to player {} who already guessed", sessionPlayerId);
-                            sendOperations.add(lobbyService.sendToSession(playerSession, message));
-                        }
-                    }
+            List<GuessResultMessage> previousResults,
+            GuessResultMessage resultMessage,
+            Function<MessageCodec, SharedMessagePayload> payload) {
+
+        // Players who guessed before this one, excluding the current player
+        Set<UUID> playersWhoGuessed = previousResults.stream()
+                .map(result -> result.getPlayer().getId())
+                .filter(id -> !id.equals(currentPlayerId))
+                .collect(Collectors.toSet());
+
+        if (playersWhoGuessed.isEmpty()) {
+            log.info("No other players have guessed yet - skipping broadcast");
+            return Mono.empty();
+        }
 
-                    if (sendOperations.isEmpty()) {
-                        log.info("No sessions found for players who have already guessed");
-                        return Mono.empty();
-                    }
+        log.info("Broadcasting guess from player {} to {} players who have already guessed",
+                currentPlayerId, playersWhoGuessed.size());
 
-                    // Execute all send operations in parallel
-                    return Mono.when(sendOperations);
-                });
+        // The same bytes are shared by every recipient's session on this node
+        return lobbyService.sendToPlayers(lobbyId, playersWhoGuessed, resultMessage, payload);
     }
 
     /**
-     * Send previous guesses for a round to a player
+     * Find a player's guess for a specific round, with associated LocationPoint data
      */
-    private Mono<Void> sendPreviousGuessesToPlayer(UUID roundId, UUID currentPlayerId, WebSocketSession session) {
-        log.info("Fetching previous guesses for round {} to send to player {}", roundId, currentPlayerId);
-
-        // Find the guesses for this round, excluding the current player's guess
-        return guessRepository.findByRoundId(roundId)
-                .filter(guess -> !guess.getPlayerId().equals(currentPlayerId)) // Exclude the current player's guess
-                .flatMap(guess -> {
-                    // Load location point for each guess
-                    Mono<LocationPoint> locationPointMono = locationPointRepository.findById(guess.getLocationPointId());
-
-                    return Mono.zip(
-                            playerRepository.findById(guess.getPlayerId()),
-                            roundService.findById(roundId),
-                            locationPointMono
-                    ).map(tuple -> {
-                        Player player = tuple.getT1();
-                        Round round = tuple.getT2();
-                        LocationPoint guessLocationPoint = tuple.getT3();
-
-                        guess.setLocationPoint(guessLocationPoint);
-
-                        // Create a player guess message with location info
-                        return new GuessResultMessage(
-                                guess.getId(),
-                                roundId,
-                                player,
-                                guessLocationPoint,
-                                round.getLocationPoint(),
-                                guess.getDistanceKm(),
-                                guess.getBaseScore(),
-                                guess.getScore(),
-                                guess.getScoreMultipliers()
-                        );
-                    });
-                })
-                .flatMap(message -> lobbyService.sendToSession(session, message))
-                .then();
+    public Mono<Guess> findPlayerGuessForRound(UUID playerId, UUID roundId) {
+        return guessJournal.flush()
+                .then(guessRepository.findByPlayerIdAndRoundId(playerId, roundId))
+                .flatMap(this::loadGuessRelations);
     }
 
     /**
-     * Find a player's guess for a specific round, with associated LocationPoint data
+     * Read the scoreboard for a round: each player's guess with its LocationPoint and
+     * multipliers, and their running total for the game instance, in a single query
      */
-    public Mono<Guess> findPlayerGuessForRound(UUID playerId, UUID roundId) {
-        return guessRepository.findByPlayerIdAndRoundId(playerId, roundId)
-                .flatMap(guess -> {
-                    if (guess == null) {
-                        return Mono.empty();
-                    }
-
-                    Mono<List<ScoreMultiplier>> multipliersMono =
-                            scoreMultiplierRepository.findByGuessId(guess.getId()).collectList();
-
-                    Mono<LocationPoint> locationPointMono = guess.getLocationPointId() != null ?
-                            locationPointRepository.findById(guess.getLocationPointId()) : Mono.empty();
-
-                    return Mono.zip(multipliersMono, locationPointMono)
-                            .map(tuple -> {
-                                List<ScoreMultiplier> multipliers = tuple.getT1();
-                                LocationPoint locationPoint = tuple.getT2();
-
-                                guess.setScoreMultipliers(multipliers);
-                                if (locationPoint != null) {
-                                    guess.setLocationPoint(locationPoint);
-                                }
-                                return guess;
-                            });
-                });
+    public Flux<ScoreboardEntry> findScoreboard(UUID gameInstanceId, UUID roundId) {
+        return guessJournal.flush().thenMany(guessRepository.findScoreboard(gameInstanceId, roundId));
     }
 
     /**
      * Find all guesses for a player in a game instance, with LocationPoint data
      */
     public Flux<Guess> findPlayerGuessesForGameInstance(UUID gameInstanceId, UUID playerId) {
-        return guessRepository.findByGameInstanceIdAndPlayerId(gameInstanceId, playerId)
+        return guessJournal.flush()
+                .thenMany(guessRepository.findByGameInstanceIdAndPlayerId(gameInstanceId, playerId))
                 .flatMap(this::loadGuessRelations);
     }
 
@@ -478,7 +351,8 @@ public class GuessService {
      * Find all guesses for a game instance, with LocationPoint data
      */
     public Flux<Guess> findAllGuessesForGameInstance(UUID gameInstanceId) {
-        return guessRepository.findByGameInstanceId(gameInstanceId)
+        return guessJournal.flush()
+                .thenMany(guessRepository.findByGameInstanceId(gameInstanceId))
                 .flatMap(this::loadGuessRelations);
     }
 
@@ -486,22 +360,15 @@ public class GuessService {
      * Helper method to load related data for a guess
      */
     private Mono<Guess> loadGuessRelations(Guess guess) {
-        Mono<List<ScoreMultiplier>> multipliersMono =
-                scoreMultiplierRepository.findByGuessId(guess.getId()).collectList();
-
-        Mono<LocationPoint> locationPointMono = guess.getLocationPointId() != null ?
-                locationPointRepository.findById(guess.getLocationPointId()) : Mono.empty();
-
-        return Mono.zip(multipliersMono, locationPointMono)
-                .map(tuple -> {
-                    List<ScoreMultiplier> multipliers = tuple.getT1();
-                    LocationPoint locationPoint = tuple.getT2();
-
-                    guess.setScoreMultipliers(multipliers);
-                    if (locationPoint != null) {
-                        guess.setLocationPoint(locationPoint);
-                    }
+        // Score multipliers are read inline with the guess row
+        if (guess.getLocationPointId() == null) {
+            return Mono.just(guess);
+        }
+        return locationPointRepository.findById(guess.getLocationPointId())
+                .map(locationPoint -> {
+                    guess.setLocationPoint(locationPoint);
                     return guess;
-                });
+                })
+                .defaultIfEmpty(guess);
     }
-}
\ No newline at end of file
+}
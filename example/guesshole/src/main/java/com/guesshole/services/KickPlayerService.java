@@ -24,16 +24,19 @@ public class KickPlayerService {
     private final WebSocketSessionService sessionService;
     private final PlayerSessionTracker sessionTracker;
     private final LobbyService lobbyService;
+    private final LobbyStateEngine lobbyStateEngine;
 
     public KickPlayerService(
             PlayerRepository playerRepository,
             WebSocketSessionService sessionService,
             PlayerSessionTracker sessionTracker,
-            LobbyService lobbyService) {
+            LobbyService lobbyService,
+            LobbyStateEngine lobbyStateEngine) {
         this.playerRepository = playerRepository;
         this.sessionService = sessionService;
         this.sessionTracker = sessionTracker;
         this.lobbyService = lobbyService;
+        this.lobbyStateEngine = lobbyStateEngine;
     }
 
     /**
@@ -97,6 +100,7 @@ public class KickPlayerService {
                 .collectList()
                 .flatMap(players -> {
                     log.info("Sending updated players list with {} players", players.size());
+                    lobbyStateEngine.updateRoster(lobbyId, players);
                     return lobbyService.broadcastToLobby(lobbyId, new PlayersUpdateMessage(players));
                 });
     }
@@ -3,14 +3,11 @@ package com.guesshole.services;
 import com.guesshole.entities.GameState;
 import com.guesshole.entities.Lobby;
 import com.guesshole.repositories.GameStateRepository;
-import com.guesshole.repositories.LobbyRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
-import java.util.UUID;
-
 /**
  * Service to handle lobby creation with associated game state
  */
@@ -18,11 +15,11 @@ import java.util.UUID;
 public class LobbyCreationService {
     private static final Logger log = LoggerFactory.getLogger(LobbyCreationService.class);
 
-    private final LobbyRepository lobbyRepository;
+    private final LobbyService lobbyService;
     private final GameStateRepository gameStateRepository;
 
-    public LobbyCreationService(LobbyRepository lobbyRepository, GameStateRepository gameStateRepository) {
-        this.lobbyRepository = lobbyRepository;
+    public LobbyCreationService(LobbyService lobbyService, GameStateRepository gameStateRepository) {
+        this.lobbyService = lobbyService;
         this.gameStateRepository = gameStateRepository;
     }
 
@@ -30,13 +27,10 @@ public class LobbyCreationService {
      * Create a new lobby with an initial game state
      */
     public Mono<Lobby> createLobby(String name, String privacy) {
-        // Create a new lobby with UUID
-        Lobby lobby = new Lobby(name, privacy);
-        lobby.setId(UUID.randomUUID());
-
-        log.info("Creating new lobby: {}", lobby);
+        log.info("Creating new lobby: {}", name);
 
-        return lobbyRepository.save(lobby)
+        // Saved through the lobby service so in-memory copies of the lobby are told about it
+        return lobbyService.createLobby(name, privacy)
                 .flatMap(savedLobby -> {
                     // Create initial game state
                     GameState gameState = new GameState(savedLobby.getId());
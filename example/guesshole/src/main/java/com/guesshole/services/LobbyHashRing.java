@@ -0,0 +1,71 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.ClusterNode;
+
+import java.util.*;
+
+/**
+ * An immutable consistent hash ring of the live nodes. Each node is placed at a number of
+ * points on the ring and a lobby belongs to the first node point at or after the lobby's own
+ * hash, so when a node joins or leaves only the lobbies next to its points change owner.
+ */
+public final class LobbyHashRing {
+    private final NavigableMap<Long, ClusterNode> points;
+    private final List<ClusterNode> nodes;
+
+    private LobbyHashRing(NavigableMap<Long, ClusterNode> points, List<ClusterNode> nodes) {
+        this.points = points;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Build a ring of the given nodes
+     *
+     * @param virtualNodes Points each node is placed at, more spread lobbies more evenly
+     */
+    public static LobbyHashRing of(Collection<ClusterNode> nodes, int virtualNodes) {
+        NavigableMap<Long, ClusterNode> points = new TreeMap<>();
+        for (ClusterNode node : nodes) {
+            UUID nodeId = node.getNodeId();
+            for (int i = 0; i < virtualNodes; i++) {
+                // Ties are broken by node ID so every node builds the same ring
+                points.merge(mix(nodeId.getMostSignificantBits() ^ mix(nodeId.getLeastSignificantBits() + i)), node,
+                        (existing, candidate) -> existing.getNodeId().compareTo(candidate.getNodeId()) <= 0 ? existing : candidate);
+            }
+        }
+        List<ClusterNode> sorted = new ArrayList<>(nodes);
+        sorted.sort(Comparator.comparing(ClusterNode::getNodeId));
+        return new LobbyHashRing(points, List.copyOf(sorted));
+    }
+
+    /**
+     * Get the node that owns a lobby, or null if the ring is empty
+     */
+    public ClusterNode ownerOf(UUID lobbyId) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, ClusterNode> point = points.ceilingEntry(mix(lobbyId.getMostSignificantBits() ^ lobbyId.getLeastSignificantBits()));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    /**
+     * The nodes on the ring, ordered by node ID
+     */
+    public List<ClusterNode> getNodes() {
+        return nodes;
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * SplitMix64 finalizer, spreads UUIDs that share bits across the whole ring
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,218 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.ClusterNode;
+import com.guesshole.repositories.ClusterNodeRepository;
+import com.guesshole.websocket.services.WebSocketSessionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Gives every lobby exactly one owning node, so its timers, connection tracking and in-memory
+ * state live on a single JVM. Nodes send heartbeats to the cluster_node table, and lobbies
+ * are assigned to the live nodes by a consistent hash of the lobby ID.
+ * <p>
+ * When the live nodes change, services holding per-lobby state are told so they can drop the
+ * lobbies this node no longer owns and pick up the ones it gained, and sessions connected to
+ * lobbies that moved are closed with the new owner's address so clients reconnect there.
+ * With app.cluster.enabled=false this node owns every lobby.
+ */
+@Service
+public class LobbyOwnershipService {
+    private static final Logger log = LoggerFactory.getLogger(LobbyOwnershipService.class);
+
+    /**
+     * Close code telling a client the lobby is owned by another node. The reason is the
+     * owner's address, or empty to reconnect through the load balancer.
+     */
+    public static final int LOBBY_MOVED = 4001;
+
+    private final UUID nodeId = UUID.randomUUID();
+    private final ClusterNodeRepository clusterNodeRepository;
+    private final WebSocketSessionService sessionHandler;
+    private final List<Runnable> ownershipListeners = new CopyOnWriteArrayList<>();
+    private final Counter redirects;
+    private volatile LobbyHashRing ring = LobbyHashRing.of(List.of(), 0);
+    private String address;
+
+    @Value("${app.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.cluster.advertised-address:}")
+    private String advertisedAddress;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    @Value("${app.cluster.node-timeout-seconds:15}")
+    private long nodeTimeoutSeconds;
+
+    @Value("${app.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    public LobbyOwnershipService(ClusterNodeRepository clusterNodeRepository,
+                                 WebSocketSessionService sessionHandler,
+                                 MeterRegistry meterRegistry) {
+        this.clusterNodeRepository = clusterNodeRepository;
+        this.sessionHandler = sessionHandler;
+        this.redirects = Counter.builder("cluster.lobby.redirects")
+                .description("WebSocket sessions sent to the node that owns their lobby")
+                .register(meterRegistry);
+        Gauge.builder("cluster.nodes.live", this, service -> service.ring.getNodes().size())
+                .description("Live nodes lobbies are spread over")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Join the cluster before accepting connections, so a new node doesn't start out
+     * redirecting every session
+     */
+    @PostConstruct
+    void join() {
+        if (!enabled) {
+            return;
+        }
+        address = advertisedAddress.isBlank() ? localAddress() : advertisedAddress;
+        try {
+            refreshMembership().block(Duration.ofSeconds(10));
+        } catch (Exception e) {
+            log.warn("Couldn't join the cluster at startup, retrying with the next heartbeat: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Leave the cluster so the other nodes take over this node's lobbies straight away
+     */
+    @PreDestroy
+    void leave() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            clusterNodeRepository.deleteById(nodeId).block(Duration.ofSeconds(5));
+        } catch (Exception e) {
+            log.warn("Couldn't leave the cluster, other nodes take over after the node timeout: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Scheduled task to send this node's heartbeat and pick up nodes that joined or left
+     */
+    @Scheduled(fixedRate = 5000) // Run every 5 seconds
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        refreshMembership().subscribe(null,
+                error -> log.error("Error sending cluster heartbeat: {}", error.getMessage(), error));
+    }
+
+    /**
+     * Scheduled task to delete nodes that stopped long ago without leaving
+     */
+    @Scheduled(fixedRate = 3600000) // Run every hour
+    public void pruneStaleNodes() {
+        if (!enabled) {
+            return;
+        }
+        clusterNodeRepository.deleteStale(Duration.ofDays(1).toSeconds())
+                .subscribe(
+                        deleted -> {
+                            if (deleted > 0) {
+                                log.info("Deleted {} stale cluster nodes", deleted);
+                            }
+                        },
+                        error -> log.error("Error deleting stale cluster nodes: {}", error.getMessage(), error));
+    }
+
+    /**
+     * Whether this node owns a lobby. A node that hasn't seen the cluster yet owns nothing,
+     * so it can't run a lobby another node is already running; its sessions are sent back
+     * through the load balancer until it has joined.
+     */
+    public boolean isOwner(UUID lobbyId) {
+        if (!enabled) {
+            return true;
+        }
+        ClusterNode owner = ring.ownerOf(lobbyId);
+        return owner != null && owner.getNodeId().equals(nodeId);
+    }
+
+    /**
+     * Register a callback run after lobbies have changed owner, to drop the state of lobbies
+     * this node no longer owns and restore the state of lobbies it gained
+     */
+    public void addOwnershipListener(Runnable listener) {
+        ownershipListeners.add(listener);
+    }
+
+    /**
+     * Close a session connected to a lobby this node doesn't own, telling the client where
+     * the owner is
+     */
+    public Mono<Void> redirect(WebSocketSession session, UUID lobbyId) {
+        ClusterNode owner = ring.ownerOf(lobbyId);
+        String ownerAddress = owner != null ? owner.getAddress() : "";
+        log.info("Redirecting session {} of lobby {} to {}", session.getId(), lobbyId, owner);
+        redirects.increment();
+        return session.close(new CloseStatus(LOBBY_MOVED, ownerAddress));
+    }
+
+    private Mono<Void> refreshMembership() {
+        return clusterNodeRepository.heartbeat(nodeId, address)
+                .thenMany(clusterNodeRepository.findLive(nodeTimeoutSeconds))
+                .collectList()
+                .doOnNext(this::updateRing)
+                .then();
+    }
+
+    private void updateRing(List<ClusterNode> liveNodes) {
+        LobbyHashRing next = LobbyHashRing.of(liveNodes, virtualNodes);
+        if (next.getNodes().equals(ring.getNodes())) {
+            return;
+        }
+        log.info("Cluster membership changed from {} to {} nodes: {}", ring.getNodes().size(), liveNodes.size(), liveNodes);
+        ring = next;
+
+        ownershipListeners.forEach(listener -> {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                log.error("Error handing off lobbies after a membership change: {}", e.getMessage(), e);
+            }
+        });
+
+        // Last, so the listeners have dropped the lobbies before their sessions disconnect
+        sessionHandler.getLobbyIds().stream()
+                .filter(lobbyId -> !isOwner(lobbyId))
+                .forEach(lobbyId -> sessionHandler.getLobbySessions(lobbyId).forEach(session ->
+                        redirect(session, lobbyId).subscribe(null,
+                                error -> log.error("Error redirecting session {}: {}", session.getId(), error.getMessage()))));
+    }
+
+    private String localAddress() {
+        try {
+            return InetAddress.getLocalHost().getHostAddress() + ":" + serverPort;
+        } catch (UnknownHostException e) {
+            log.warn("Couldn't resolve this node's address, set app.cluster.advertised-address: {}", e.getMessage());
+            return "localhost:" + serverPort;
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package com.guesshole.services;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.guesshole.entities.GameConfiguration;
 import com.guesshole.entities.Lobby;
 import com.guesshole.repositories.GameConfigurationRepository;
 import com.guesshole.repositories.LobbyRepository;
+import com.guesshole.websocket.codec.MessageCodec;
+import com.guesshole.websocket.services.LobbyBroadcastBus;
+import com.guesshole.websocket.services.SessionOutbound;
+import com.guesshole.websocket.services.SharedMessagePayload;
 import com.guesshole.websocket.services.WebSocketSessionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,7 +16,16 @@ import org.springframework.web.reactive.socket.WebSocketSession;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Service for lobby-related operations.
@@ -23,16 +34,20 @@ import java.util.UUID;
 public class LobbyService {
     private static final Logger log = LoggerFactory.getLogger(LobbyService.class);
 
-    private final ObjectMapper objectMapper;
     private final WebSocketSessionService sessionHandler;
     private final LobbyRepository lobbyRepository;
     private final GameConfigurationRepository gameConfigurationRepository;
+    private final LobbyBroadcastBus broadcastBus;
+    private final List<Consumer<Lobby>> lobbyListeners = new CopyOnWriteArrayList<>();
 
-    public LobbyService(ObjectMapper objectMapper, WebSocketSessionService sessionHandler, LobbyRepository lobbyRepository, GameConfigurationRepository gameConfigurationRepository) {
-        this.objectMapper = objectMapper;
+    public LobbyService(WebSocketSessionService sessionHandler, LobbyRepository lobbyRepository,
+                        GameConfigurationRepository gameConfigurationRepository, LobbyBroadcastBus broadcastBus) {
         this.sessionHandler = sessionHandler;
         this.lobbyRepository = lobbyRepository;
         this.gameConfigurationRepository = gameConfigurationRepository;
+        this.broadcastBus = broadcastBus;
+        broadcastBus.setLocalDelivery(this::broadcastToLocalSessions);
+        broadcastBus.setLocalPlayerDelivery(this::sendToLocalPlayers);
     }
 
     /**
@@ -46,7 +61,18 @@ public class LobbyService {
         lobby.setId(UUID.randomUUID());
         // The short_code will be automatically generated by the database trigger
         return lobbyRepository.save(lobby)
-                .doOnSuccess(savedLobby -> log.debug("Created lobby: {}", savedLobby));
+                .doOnSuccess(savedLobby -> log.debug("Created lobby: {}", savedLobby))
+                .doOnNext(this::notifyLobbyListeners);
+    }
+
+    /**
+     * Insert a new lobby, letting the database generate its short code
+     * @param lobby The lobby to insert, with its ID set
+     * @return A Mono containing the saved lobby with its generated short code
+     */
+    public Mono<Lobby> insertLobby(Lobby lobby) {
+        return lobbyRepository.insertWithGeneratedShortCode(lobby)
+                .doOnNext(this::notifyLobbyListeners);
     }
 
     public Mono<Lobby> setLobbyGameConfiguration(UUID lobbyId, GameConfiguration gameConfiguration) {
@@ -55,7 +81,20 @@ public class LobbyService {
                         .flatMap(savedGameConfiguration -> {
                             lobby.setGameConfiguration(savedGameConfiguration);
                             return lobbyRepository.save(lobby).thenReturn(lobby);
-                        }));
+                        }))
+                .doOnNext(this::notifyLobbyListeners);
+    }
+
+    /**
+     * Register a callback that is told about every lobby written through this service,
+     * so copies of the lobby held in memory can be kept up to date
+     */
+    public void addLobbyListener(Consumer<Lobby> listener) {
+        lobbyListeners.add(listener);
+    }
+
+    private void notifyLobbyListeners(Lobby lobby) {
+        lobbyListeners.forEach(listener -> listener.accept(lobby));
     }
 
     /**
@@ -106,45 +145,127 @@ public class LobbyService {
 
 
     /**
-     * Broadcast a message to all clients in a lobby
+     * Broadcast a message to all clients in a lobby, whichever node they are connected to
      */
     public Mono<Void> broadcastToLobby(UUID lobbyId, Object message) {
-        try {
-            String messageJson = objectMapper.writeValueAsString(message);
-            log.debug("Broadcasting to lobby {}: {}", lobbyId, messageJson);
-
-            return Flux.fromIterable(sessionHandler.getLobbySessions(lobbyId))
-                    .filter(WebSocketSession::isOpen)
-                    .flatMap(session -> sendJsonToSession(session, messageJson))
-                    .then();
-        } catch (JsonProcessingException e) {
-            log.error("Error serializing broadcast message", e);
-            return Mono.error(e);
-        }
+        log.debug("Broadcasting {} to lobby {}", message.getClass().getSimpleName(), lobbyId);
+        return broadcastBus.publish(lobbyId, message);
+    }
+
+    /**
+     * Send a message to the clients in a lobby connected to this node
+     */
+    public Mono<Void> broadcastToLocalSessions(UUID lobbyId, Object message) {
+        return sendByCodec(sessionHandler.getLobbySessionsByCodec(lobbyId), message);
+    }
+
+    /**
+     * Send a message to the sessions of a subset of the players in a lobby, whichever node they are connected to
+     */
+    public Mono<Void> sendToPlayers(UUID lobbyId, Collection<UUID> playerIds, Object message) {
+        return Mono.when(sendToLocalPlayers(lobbyId, playerIds, message),
+                broadcastBus.publishToOtherNodes(lobbyId, playerIds, message));
+    }
+
+    /**
+     * Send an already serialized message to the sessions of a subset of the players in a lobby,
+     * whichever node they are connected to. Other nodes are sent the message itself.
+     *
+     * @param payloads Gives the message serialized with each session's codec
+     */
+    public Mono<Void> sendToPlayers(UUID lobbyId, Collection<UUID> playerIds, Object message,
+                                    Function<MessageCodec, SharedMessagePayload> payloads) {
+        Mono<Void> local = Flux.fromIterable(findPlayerSessions(lobbyId, playerIds))
+                .filter(WebSocketSession::isOpen)
+                .flatMap(session -> sendPayload(session, payloads.apply(sessionHandler.getCodec(session))))
+                .then();
+        return Mono.when(local, broadcastBus.publishToOtherNodes(lobbyId, playerIds, message));
+    }
+
+    /**
+     * Send a message to the sessions of a subset of the players in a lobby connected to this node
+     */
+    public Mono<Void> sendToLocalPlayers(UUID lobbyId, Collection<UUID> playerIds, Object message) {
+        return sendToSessions(findPlayerSessions(lobbyId, playerIds), message);
     }
 
     /**
-     * Send a message to a specific session
+     * Send a message to a specific session. Sessions are only ever connected to this node.
      */
     public Mono<Void> sendToSession(WebSocketSession session, Object message) {
-        if (!session.isOpen()) {
-            return Mono.empty();
-        }
+        return sendToSessions(List.of(session), message);
+    }
 
-        try {
-            String messageJson = objectMapper.writeValueAsString(message);
-            return sendJsonToSession(session, messageJson);
-        } catch (JsonProcessingException e) {
-            log.error("Error serializing message for session {}", session.getId(), e);
-            return Mono.error(e);
+    /**
+     * Send an already serialized message to a specific session
+     *
+     * @param payloads Gives the message serialized with the session's codec
+     */
+    public Mono<Void> sendToSession(WebSocketSession session, Function<MessageCodec, SharedMessagePayload> payloads) {
+        return Mono.defer(() -> sendPayload(session, payloads.apply(sessionHandler.getCodec(session))));
+    }
+
+    /**
+     * Send a message to any number of sessions. The message is serialized once per codec in use
+     * into a pooled buffer that those sessions share, and the buffer is released when all of
+     * their sends have finished.
+     */
+    public Mono<Void> sendToSessions(Collection<WebSocketSession> sessions, Object message) {
+        return sendByCodec(sessions.stream()
+                .filter(WebSocketSession::isOpen)
+                .collect(Collectors.groupingBy(sessionHandler::getCodec)), message);
+    }
+
+    /**
+     * Send a message to sessions already grouped by codec, serializing it once per codec
+     */
+    private Mono<Void> sendByCodec(Map<MessageCodec, List<WebSocketSession>> sessionsByCodec, Object message) {
+        return Flux.fromIterable(sessionsByCodec.entrySet())
+                .flatMap(entry -> Mono.using(
+                        () -> SharedMessagePayload.pooled(entry.getKey(), message),
+                        payload -> sendPayload(entry.getValue(), payload),
+                        SharedMessagePayload::release
+                ).doOnError(IOException.class, e -> log.error("Error serializing {} as {}",
+                        message.getClass().getSimpleName(), entry.getKey(), e)))
+                .then();
+    }
+
+    /**
+     * Serialize a message once with a codec so that it can be kept and sent to more sessions later
+     */
+    public SharedMessagePayload serializeForReuse(Object message, MessageCodec codec) throws IOException {
+        return SharedMessagePayload.reusable(codec, message);
+    }
+
+    private List<WebSocketSession> findPlayerSessions(UUID lobbyId, Collection<UUID> playerIds) {
+        List<WebSocketSession> sessions = new ArrayList<>(playerIds.size());
+        for (UUID playerId : playerIds) {
+            sessions.addAll(sessionHandler.getPlayerSessions(lobbyId, playerId));
         }
+        return sessions;
+    }
+
+    /**
+     * Helper method to send a serialized payload to sessions
+     */
+    private Mono<Void> sendPayload(Collection<WebSocketSession> sessions, SharedMessagePayload payload) {
+        return Flux.fromIterable(sessions)
+                .filter(WebSocketSession::isOpen)
+                .flatMap(session -> sendPayload(session, payload))
+                .then();
     }
 
     /**
-     * Helper method to send a JSON string to a session
+     * Queue a payload on the session's outbound stream. Sessions that aren't registered
+     * (e.g. still in the handshake) are written to directly.
      */
-    private Mono<Void> sendJsonToSession(WebSocketSession session, String json) {
-        return session.send(Mono.just(session.textMessage(json)))
+    private Mono<Void> sendPayload(WebSocketSession session, SharedMessagePayload payload) {
+        SessionOutbound outbound = sessionHandler.getOutbound(session);
+        if (outbound != null) {
+            return Mono.fromRunnable(() -> outbound.offer(payload));
+        }
+        // The duplicate is only taken once the send is subscribed, so nothing leaks if it never is
+        return session.send(Mono.fromSupplier(() -> payload.toMessage(session)))
                 .onErrorResume(e -> {
                     log.error("Error sending message to session {}: {}",
                             session.getId(), e.getMessage());
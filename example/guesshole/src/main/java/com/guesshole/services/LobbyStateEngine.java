@@ -0,0 +1,451 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.GameState;
+import com.guesshole.entities.Lobby;
+import com.guesshole.entities.Player;
+import com.guesshole.entities.Round;
+import com.guesshole.repositories.GameStateRepository;
+import com.guesshole.repositories.PlayerRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Authoritative in-memory state for every active lobby: the game state, the rounds of the
+ * current game instance, the lobby itself and its roster.
+ * Each lobby has a mailbox that applies changes one at a time, so there is only ever a single
+ * writer per lobby, and reads are served from an immutable snapshot without a database round trip.
+ * State transitions are written to game_state in the background. The database is the durable
+ * record that a lobby's state is rebuilt from the first time it is used after a restart.
+ */
+@Service
+public class LobbyStateEngine {
+    private static final Logger log = LoggerFactory.getLogger(LobbyStateEngine.class);
+    private static final Duration IDLE_TTL = Duration.ofMinutes(30);
+    private static final int PERSIST_RETRIES = 3;
+    private static final Duration FLUSH_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * An immutable view of a lobby's state at a particular version
+     */
+    public static class LobbySnapshot {
+        private final String state;
+        private final UUID gameInstanceId;
+        private final UUID currentRoundId;
+        private final Round currentRound;
+        private final List<Round> rounds;
+        private final Lobby lobby;
+        private final List<Player> roster;
+        private final long version;
+
+        private LobbySnapshot(String state, UUID gameInstanceId, UUID currentRoundId, List<Round> rounds,
+                              Lobby lobby, List<Player> roster, long version) {
+            this.state = state;
+            this.gameInstanceId = gameInstanceId;
+            this.currentRoundId = currentRoundId;
+            this.rounds = List.copyOf(rounds);
+            this.currentRound = currentRoundId != null ? findRound(currentRoundId) : null;
+            this.lobby = lobby;
+            this.roster = List.copyOf(roster);
+            this.version = version;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public UUID getGameInstanceId() {
+            return gameInstanceId;
+        }
+
+        public UUID getCurrentRoundId() {
+            return currentRoundId;
+        }
+
+        /**
+         * The full current round, including its answer. Use {@link Round#getClientSafeRound()}
+         * before sending it to clients while the round is in progress.
+         */
+        public Round getCurrentRound() {
+            return currentRound;
+        }
+
+        /**
+         * All rounds of the current game instance, ordered by round order
+         */
+        public List<Round> getRounds() {
+            return rounds;
+        }
+
+        public int getTotalRounds() {
+            return rounds.size();
+        }
+
+        /**
+         * Find a round of the current game instance by its ID, or null if there is none
+         */
+        public Round findRound(UUID roundId) {
+            return rounds.stream()
+                    .filter(round -> round.getId().equals(roundId))
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        /**
+         * Find a round of the current game instance by its order, or null if there is none
+         */
+        public Round findRoundByOrder(int roundOrder) {
+            return rounds.stream()
+                    .filter(round -> round.getRoundOrder() == roundOrder)
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        public Lobby getLobby() {
+            return lobby;
+        }
+
+        public List<Player> getRoster() {
+            return roster;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        private LobbySnapshot withState(String newState, UUID newGameInstanceId, UUID newRoundId, List<Round> newRounds) {
+            return new LobbySnapshot(newState, newGameInstanceId, newRoundId, newRounds, lobby, roster, version + 1);
+        }
+
+        private LobbySnapshot withLobby(Lobby newLobby) {
+            return new LobbySnapshot(state, gameInstanceId, currentRoundId, rounds, newLobby, roster, version + 1);
+        }
+
+        private LobbySnapshot withRoster(List<Player> newRoster) {
+            return new LobbySnapshot(state, gameInstanceId, currentRoundId, rounds, lobby, newRoster, version + 1);
+        }
+    }
+
+    /**
+     * Owns the state of one lobby. Tasks sent to the mailbox run one at a time on whichever
+     * thread finds the mailbox idle, so the snapshot only ever has a single writer.
+     */
+    private static class LobbyActor {
+        private final UUID lobbyId;
+        private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingTasks = new AtomicInteger();
+        private final AtomicBoolean persisting = new AtomicBoolean(false);
+        private volatile LobbySnapshot snapshot;
+        private volatile long dirtyVersion;
+        private volatile long persistedVersion;
+        private volatile Instant lastAccess = Instant.now();
+
+        private LobbyActor(UUID lobbyId, LobbySnapshot snapshot) {
+            this.lobbyId = lobbyId;
+            this.snapshot = snapshot;
+        }
+
+        private void tell(Runnable task) {
+            mailbox.offer(task);
+            if (pendingTasks.getAndIncrement() != 0) {
+                // Another thread is draining the mailbox and will run this task
+                return;
+            }
+            do {
+                Runnable next = mailbox.poll();
+                try {
+                    next.run();
+                } catch (RuntimeException e) {
+                    log.error("Error applying change to lobby {}: {}", lobbyId, e.getMessage(), e);
+                }
+            } while (pendingTasks.decrementAndGet() != 0);
+        }
+
+        private <T> Mono<T> ask(Supplier<T> task) {
+            return Mono.create(sink -> tell(() -> {
+                try {
+                    sink.success(task.get());
+                } catch (RuntimeException e) {
+                    sink.error(e);
+                }
+            }));
+        }
+
+        private LobbySnapshot apply(UnaryOperator<LobbySnapshot> change) {
+            snapshot = change.apply(snapshot);
+            return snapshot;
+        }
+
+        private boolean isDirty() {
+            return persistedVersion < dirtyVersion;
+        }
+    }
+
+    private final Map<UUID, Mono<LobbyActor>> actors = new ConcurrentHashMap<>();
+    private final List<BiConsumer<UUID, List<Player>>> rosterListeners = new CopyOnWriteArrayList<>();
+    private final GameStateRepository gameStateRepository;
+    private final LobbyService lobbyService;
+    private final PlayerRepository playerRepository;
+    private final RoundService roundService;
+    private final LobbyOwnershipService lobbyOwnership;
+
+    public LobbyStateEngine(
+            GameStateRepository gameStateRepository,
+            LobbyService lobbyService,
+            PlayerRepository playerRepository,
+            RoundService roundService,
+            LobbyOwnershipService lobbyOwnership) {
+        this.gameStateRepository = gameStateRepository;
+        this.lobbyService = lobbyService;
+        this.playerRepository = playerRepository;
+        this.roundService = roundService;
+        this.lobbyOwnership = lobbyOwnership;
+        lobbyOwnership.addOwnershipListener(this::releaseMovedLobbies);
+        lobbyService.addLobbyListener(this::updateLobby);
+    }
+
+    /**
+     * Get the current state of a lobby, loading it from the database on first use
+     */
+    public Mono<LobbySnapshot> getSnapshot(UUID lobbyId) {
+        return getActor(lobbyId).map(actor -> actor.snapshot);
+    }
+
+    /**
+     * Move a lobby to a new state. The change is visible to readers as soon as the returned
+     * Mono completes, and is written to the database in the background.
+     *
+     * @param lobbyId The lobby ID
+     * @param state The new game state
+     * @param gameInstanceId The game instance ID (may be null for LOBBY state)
+     * @param roundId The ID of the current round (may be null)
+     * @return A Mono containing the snapshot after the transition
+     */
+    public Mono<LobbySnapshot> transition(UUID lobbyId, String state, UUID gameInstanceId, UUID roundId) {
+        return getActor(lobbyId).flatMap(actor -> {
+            LobbySnapshot current = actor.snapshot;
+
+            // Rounds are only loaded once per game instance
+            Mono<List<Round>> roundsMono = Objects.equals(current.getGameInstanceId(), gameInstanceId)
+                    ? Mono.just(current.getRounds())
+                    : loadRounds(gameInstanceId);
+
+            return roundsMono
+                    .flatMap(rounds -> actor.ask(() -> {
+                        LobbySnapshot next = actor.apply(snapshot -> snapshot.withState(state, gameInstanceId, roundId, rounds));
+                        actor.dirtyVersion = next.getVersion();
+                        return next;
+                    }))
+                    .doOnNext(next -> {
+                        if (roundId != null && next.getCurrentRound() == null) {
+                            log.warn("Round {} is not part of game instance {} in lobby {}", roundId, gameInstanceId, lobbyId);
+                        }
+                        log.debug("Lobby {} is now in state {} (version {})", lobbyId, state, next.getVersion());
+                        persist(actor);
+                    });
+        });
+    }
+
+    /**
+     * Replace a lobby's cached details. Called for every lobby written through {@link LobbyService},
+     * e.g. after its game configuration changed.
+     */
+    public void updateLobby(Lobby lobby) {
+        withLoadedActor(lobby.getId(), actor -> actor.tell(() -> actor.apply(snapshot -> snapshot.withLobby(lobby))));
+    }
+
+    /**
+     * Replace a lobby's roster. Called whenever the lobby's player list is re-broadcast.
+     */
+    public void updateRoster(UUID lobbyId, List<Player> players) {
+        withLoadedActor(lobbyId, actor -> actor.tell(() -> actor.apply(snapshot -> snapshot.withRoster(players))));
+        notifyRosterListeners(lobbyId, players);
+    }
+
+    /**
+     * Add or replace a single player in their lobby's roster. Kicked players are removed instead.
+     */
+    public void putPlayer(Player player) {
+        UUID lobbyId = player.getLobbyId();
+        withLoadedActor(lobbyId, actor -> actor.tell(() -> {
+            List<Player> roster = new ArrayList<>(actor.snapshot.getRoster());
+            roster.removeIf(existing -> existing.getId().equals(player.getId()));
+            if (!player.isKicked()) {
+                roster.add(player);
+            }
+            actor.apply(snapshot -> snapshot.withRoster(roster));
+            notifyRosterListeners(lobbyId, roster);
+        }));
+    }
+
+    /**
+     * Register a callback that is told about every roster change
+     */
+    public void addRosterListener(BiConsumer<UUID, List<Player>> listener) {
+        rosterListeners.add(listener);
+    }
+
+    /**
+     * Scheduled task to retry failed writes and drop lobbies that haven't been used in a while.
+     * A dropped lobby is rebuilt from the database the next time it is used.
+     */
+    @Scheduled(fixedRate = 300000) // Run every 5 minutes
+    public void evictIdleLobbies() {
+        Instant cutoff = Instant.now().minus(IDLE_TTL);
+        actors.forEach((lobbyId, actorMono) -> actorMono.subscribe(actor -> {
+            if (actor.isDirty()) {
+                persist(actor);
+            } else if (actor.lastAccess.isBefore(cutoff)) {
+                actors.remove(lobbyId, actorMono);
+                log.debug("Evicted idle lobby state for lobby {}", lobbyId);
+            }
+        }, error -> actors.remove(lobbyId, actorMono)));
+    }
+
+    /**
+     * Drop the state of lobbies that moved to another node, writing any transitions that haven't
+     * reached the database yet, so the new owner rebuilds the lobby from the latest state
+     */
+    private void releaseMovedLobbies() {
+        actors.forEach((lobbyId, actorMono) -> {
+            if (!lobbyOwnership.isOwner(lobbyId) && actors.remove(lobbyId, actorMono)) {
+                actorMono.subscribe(actor -> {
+                    log.info("Releasing lobby state for lobby {} to its new owner", lobbyId);
+                    persist(actor);
+                }, error -> { });
+            }
+        });
+    }
+
+    /**
+     * Write any transitions that haven't reached the database yet before shutting down
+     */
+    @PreDestroy
+    public void flush() {
+        Flux.fromIterable(actors.values())
+                .flatMap(actorMono -> actorMono.onErrorResume(e -> Mono.empty()))
+                .filter(LobbyActor::isDirty)
+                .flatMap(this::write)
+                .then()
+                .onErrorResume(e -> {
+                    log.error("Error flushing lobby states on shutdown: {}", e.getMessage(), e);
+                    return Mono.empty();
+                })
+                .block(FLUSH_TIMEOUT);
+    }
+
+    private Mono<LobbyActor> getActor(UUID lobbyId) {
+        return actors.computeIfAbsent(lobbyId, id -> loadActor(id)
+                        .doOnError(e -> actors.remove(id))
+                        .cache())
+                .doOnNext(actor -> actor.lastAccess = Instant.now());
+    }
+
+    private void withLoadedActor(UUID lobbyId, Consumer<LobbyActor> action) {
+        Mono<LobbyActor> actorMono = actors.get(lobbyId);
+        if (actorMono == null) {
+            // Nothing cached yet, the next load will read the latest data from the database
+            return;
+        }
+        actorMono.subscribe(action,
+                error -> log.debug("Skipping update for lobby {} that failed to load: {}", lobbyId, error.getMessage()));
+    }
+
+    private void notifyRosterListeners(UUID lobbyId, List<Player> roster) {
+        rosterListeners.forEach(listener -> listener.accept(lobbyId, roster));
+    }
+
+    private Mono<LobbyActor> loadActor(UUID lobbyId) {
+        log.info("Loading lobby state for lobby {}", lobbyId);
+
+        return lobbyService.findById(lobbyId)
+                .switchIfEmpty(Mono.error(new IllegalArgumentException("Lobby not found: " + lobbyId)))
+                .flatMap(lobby -> {
+                    Mono<GameState> gameStateMono = gameStateRepository.findByLobbyId(lobbyId)
+                            .switchIfEmpty(Mono.defer(() -> {
+                                // Create a new GameState if none exists - this happens on a new lobby
+                                return gameStateRepository.save(new GameState(lobbyId));
+                            }));
+                    Mono<List<Player>> rosterMono = playerRepository.findByLobbyId(lobbyId).collectList();
+
+                    return Mono.zip(gameStateMono, rosterMono)
+                            .flatMap(tuple -> {
+                                GameState gameState = tuple.getT1();
+                                return loadRounds(gameState.getGameInstanceId())
+                                        .map(rounds -> new LobbyActor(lobbyId, new LobbySnapshot(
+                                                gameState.getLobbyState(),
+                                                gameState.getGameInstanceId(),
+                                                gameState.getRoundId(),
+                                                rounds,
+                                                lobby,
+                                                tuple.getT2(),
+                                                0)));
+                            });
+                });
+    }
+
+    private Mono<List<Round>> loadRounds(UUID gameInstanceId) {
+        if (gameInstanceId == null) {
+            return Mono.just(List.of());
+        }
+        return roundService.findByGameInstanceId(gameInstanceId)
+                .sort(Comparator.comparingInt(Round::getRoundOrder))
+                .collectList();
+    }
+
+    /**
+     * Write the actor's latest state to the database unless a write is already running.
+     * A running write checks for newer transitions when it finishes, so only the latest
+     * state is written when transitions arrive faster than the database accepts them.
+     */
+    private void persist(LobbyActor actor) {
+        if (!actor.isDirty() || !actor.persisting.compareAndSet(false, true)) {
+            return;
+        }
+        write(actor).subscribe(
+                ignored -> { },
+                error -> {
+                    actor.persisting.set(false);
+                    log.error("Error persisting game state for lobby {}: {}", actor.lobbyId, error.getMessage(), error);
+                },
+                () -> {
+                    actor.persisting.set(false);
+                    persist(actor);
+                });
+    }
+
+    private Mono<Void> write(LobbyActor actor) {
+        // Read the version before the snapshot so the snapshot is never older than the version recorded
+        long version = actor.dirtyVersion;
+        LobbySnapshot snapshot = actor.snapshot;
+
+        return gameStateRepository.updateByLobbyId(
+                        actor.lobbyId, snapshot.getState(), snapshot.getCurrentRoundId(), snapshot.getGameInstanceId())
+                .retryWhen(Retry.backoff(PERSIST_RETRIES, Duration.ofMillis(100)))
+                .doOnNext(rows -> {
+                    if (rows == 0) {
+                        log.warn("No game state row to update for lobby {}", actor.lobbyId);
+                    }
+                    actor.persistedVersion = Math.max(actor.persistedVersion, version);
+                })
+                .then();
+    }
+}
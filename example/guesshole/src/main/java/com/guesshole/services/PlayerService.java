@@ -26,17 +26,20 @@ public class PlayerService {
     private final WebSocketSessionService sessionHandler;
     private final LobbyService lobbyService;
     private final PlayerSessionTracker sessionTracker;
+    private final LobbyStateEngine lobbyStateEngine;
 
     public PlayerService(
             PlayerRepository playerRepository,
             WebSocketSessionService sessionHandler,
             LobbyService lobbyService,
-            PlayerSessionTracker sessionTracker
+            PlayerSessionTracker sessionTracker,
+            LobbyStateEngine lobbyStateEngine
     ) {
         this.playerRepository = playerRepository;
         this.sessionHandler = sessionHandler;
         this.lobbyService = lobbyService;
         this.sessionTracker = sessionTracker;
+        this.lobbyStateEngine = lobbyStateEngine;
     }
 
     /**
@@ -259,6 +262,7 @@ public class PlayerService {
     private Mono<Void> sendUpdatedPlayersList(UUID lobbyId) {
         return playerRepository.findByLobbyId(lobbyId)
                 .collectList()
+                .doOnNext(players -> lobbyStateEngine.updateRoster(lobbyId, players))
                 .flatMap(players -> lobbyService.broadcastToLobby(lobbyId, new PlayersUpdateMessage(players)));
     }
 }
\ No newline at end of file
@@ -1,71 +1,39 @@
 package com.guesshole.services;
 
-import com.guesshole.entities.Player;
-import com.guesshole.repositories.PlayerRepository;
-import com.guesshole.websocket.messages.outgoing.PlayerStatusChangeMessage;
+import com.guesshole.websocket.services.PlayerConnection;
+import com.guesshole.websocket.services.PlayerConnection.State;
+import com.guesshole.websocket.services.WebSocketSessionService;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.socket.WebSocketSession;
-import reactor.core.publisher.Mono;
 
 import java.time.Duration;
-import java.time.Instant;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tracks player connection states and manages disconnect/reconnect scenarios.
  * This services allows players to temporarily disconnect and reconnect without
  * losing their identity within a lobby.
+ * <p>
+ * The states are kept with the sessions in {@link WebSocketSessionService}. Every transition
+ * arms its own timeout on the shared timer wheel: a connected player's heartbeat check, and
+ * a disconnected player's reconnection window, which ends exactly on time rather than at
+ * the next scan. Status changes are written through {@link PlayerStatusWriteCoalescer}.
  */
 @Service
 public class PlayerSessionTracker {
     private static final Logger log = LoggerFactory.getLogger(PlayerSessionTracker.class);
 
-    /**
-     * Represents the connection state of a player
-     */
-    public enum ConnectionState {
-        CONNECTED,      // Player has an active websocket connection
-        DISCONNECTED,   // Player's websocket disconnected but within reconnection window
-        INACTIVE        // Player disconnected and exceeded reconnection window, but still in lobby
-    }
-
-    /**
-     * Tracks connection information for a player
-     */
-    private static class PlayerConnectionInfo {
-        private ConnectionState state;
-        private Instant lastStateChange;
-        private UUID playerId;
-        private UUID lobbyId;
-        private WebSocketSession session;
-
-        public PlayerConnectionInfo(UUID playerId, UUID lobbyId, WebSocketSession session) {
-            this.playerId = playerId;
-            this.lobbyId = lobbyId;
-            this.session = session;
-            this.state = ConnectionState.CONNECTED;
-            this.lastStateChange = Instant.now();
-        }
-
-        public void updateState(ConnectionState newState) {
-            this.state = newState;
-            this.lastStateChange = Instant.now();
-        }
-
-        public Duration getTimeSinceStateChange() {
-            return Duration.between(lastStateChange, Instant.now());
-        }
-    }
-
-    private final Map<UUID, PlayerConnectionInfo> playerConnections = new ConcurrentHashMap<>();
-    private final PlayerRepository playerRepository;
-    private final LobbyService lobbyService;
+    private final WebSocketSessionService sessionHandler;
+    private final HashedWheelTimer timerWheel;
+    private final PlayerStatusWriteCoalescer statusWrites;
+    private final LobbyOwnershipService lobbyOwnership;
 
     @Value("${app.player.disconnected-timeout-seconds:60}")
     private long disconnectedTimeoutSeconds;
@@ -73,9 +41,16 @@ public class PlayerSessionTracker {
     @Value("${app.player.inactive-timeout-minutes:10}")
     private long inactiveTimeoutMinutes;
 
-    public PlayerSessionTracker(PlayerRepository playerRepository, LobbyService lobbyService) {
-        this.playerRepository = playerRepository;
-        this.lobbyService = lobbyService;
+    @Value("${app.player.heartbeat-timeout-seconds:90}")
+    private long heartbeatTimeoutSeconds;
+
+    public PlayerSessionTracker(WebSocketSessionService sessionHandler, HashedWheelTimer timerWheel,
+                                PlayerStatusWriteCoalescer statusWrites, LobbyOwnershipService lobbyOwnership) {
+        this.sessionHandler = sessionHandler;
+        this.timerWheel = timerWheel;
+        this.statusWrites = statusWrites;
+        this.lobbyOwnership = lobbyOwnership;
+        lobbyOwnership.addOwnershipListener(this::releaseMovedLobbies);
         log.info("PlayerSessionTracker initialized with default timeouts: disconnected={}s, inactive={}m",
                 disconnectedTimeoutSeconds, inactiveTimeoutMinutes);
     }
@@ -84,47 +59,64 @@ public class PlayerSessionTracker {
      * Register a player's active connection
      */
     public void registerConnection(UUID playerId, UUID lobbyId, WebSocketSession session) {
-        PlayerConnectionInfo existingInfo = playerConnections.get(playerId);
-
-        if (existingInfo != null) {
+        PlayerConnection connection = sessionHandler.getOrCreatePlayerConnection(playerId);
+        if (connection.getState() != null) {
             log.info("Player {} reconnected to lobby {}", playerId, lobbyId);
-            existingInfo.session = session;
-            existingInfo.updateState(ConnectionState.CONNECTED);
         } else {
             log.info("Player {} connected to lobby {}", playerId, lobbyId);
-            playerConnections.put(playerId, new PlayerConnectionInfo(playerId, lobbyId, session));
         }
+        connection.connect(lobbyId, session, connected -> armHeartbeatCheck(connected, heartbeatTimeout()));
 
         // Update player's active status in database
-        updatePlayerActiveStatus(playerId, true);
+        statusWrites.setActive(playerId, true);
     }
 
     /**
-     * Handle a player disconnection
+     * Handle a player's session closing. Starts the reconnection window unless the player has
+     * already reconnected through another session.
      */
-    public void handleDisconnection(UUID playerId) {
-        PlayerConnectionInfo info = playerConnections.get(playerId);
-        if (info != null) {
+    public void handleDisconnection(UUID playerId, WebSocketSession session) {
+        PlayerConnection connection = sessionHandler.getPlayerConnection(playerId);
+        if (connection != null && connection.disconnect(session, this::armExpiry)) {
             log.info("Player {} disconnected, starting reconnection window", playerId);
-            info.updateState(ConnectionState.DISCONNECTED);
         }
     }
 
+    /**
+     * Record a heartbeat acknowledgement from a player's session
+     *
+     * @param roundTrip The heartbeat's round trip time, or null if it isn't known
+     */
+    public void recordHeartbeat(UUID playerId, Duration roundTrip) {
+        PlayerConnection connection = sessionHandler.getPlayerConnection(playerId);
+        if (connection != null) {
+            connection.recordHeartbeat(roundTrip);
+        }
+    }
+
+    /**
+     * Get the round trip time of a connected player's last acknowledged heartbeat
+     */
+    public Duration getLastRoundTrip(UUID playerId) {
+        PlayerConnection connection = sessionHandler.getPlayerConnection(playerId);
+        return connection != null && connection.getState() == State.CONNECTED ? connection.getLastRoundTrip() : null;
+    }
+
     /**
      * Check if a player is currently connected
      */
     public boolean isPlayerConnected(UUID playerId) {
-        PlayerConnectionInfo info = playerConnections.get(playerId);
-        return info != null && info.state == ConnectionState.CONNECTED;
+        PlayerConnection connection = sessionHandler.getPlayerConnection(playerId);
+        return connection != null && connection.getState() == State.CONNECTED;
     }
 
     /**
      * Get the session for a connected player
      */
     public WebSocketSession getPlayerSession(UUID playerId) {
-        PlayerConnectionInfo info = playerConnections.get(playerId);
-        if (info != null && info.state == ConnectionState.CONNECTED) {
-            return info.session;
+        PlayerConnection connection = sessionHandler.getPlayerConnection(playerId);
+        if (connection != null && connection.getState() == State.CONNECTED) {
+            return connection.getSession();
         }
         return null;
     }
@@ -132,71 +124,66 @@ public class PlayerSessionTracker {
     /**
      * Get the connection state for a player
      */
-    public ConnectionState getPlayerConnectionState(UUID playerId) {
-        PlayerConnectionInfo info = playerConnections.get(playerId);
-        return info != null ? info.state : null;
+    public State getPlayerConnectionState(UUID playerId) {
+        PlayerConnection connection = sessionHandler.getPlayerConnection(playerId);
+        return connection != null ? connection.getState() : null;
     }
 
     /**
-     * Scheduled task to manage player state transitions
-     * - DISCONNECTED -> INACTIVE after disconnectedTimeoutSeconds
-     * - Update player active status in database based on state
+     * Stop tracking the players of lobbies that moved to another node. Their sessions are about
+     * to be redirected, and the new owner tracks them from when they reconnect there, so the
+     * disconnect here must not start a reconnection window.
      */
-    @Scheduled(fixedRate = 30000) // Run every 30 seconds
-    public void processDisconnectedPlayers() {
-        log.debug("Running scheduled task: processDisconnectedPlayers");
-        Instant now = Instant.now();
-        Duration disconnectTimeout = Duration.ofSeconds(disconnectedTimeoutSeconds);
-        int processedCount = 0;
-
-        for (Map.Entry<UUID, PlayerConnectionInfo> entry : playerConnections.entrySet()) {
-            UUID playerId = entry.getKey();
-            PlayerConnectionInfo info = entry.getValue();
-
-            if (info.state == ConnectionState.DISCONNECTED &&
-                    info.getTimeSinceStateChange().compareTo(disconnectTimeout) > 0) {
-                log.info("Player {} exceeded reconnection window of {}s, marking as inactive",
-                        playerId, disconnectedTimeoutSeconds);
-                info.updateState(ConnectionState.INACTIVE);
-                processedCount++;
-
-                // Update player status in database and notify lobby
-                updatePlayerActiveStatus(playerId, false)
-                        .subscribe(
-                                null,
-                                error -> log.error("Error updating player status: {}", error.getMessage(), error)
-                        );
+    private void releaseMovedLobbies() {
+        for (PlayerConnection connection : sessionHandler.getPlayerConnections()) {
+            if (!lobbyOwnership.isOwner(connection.getLobbyId())) {
+                connection.cancelPendingTimeout();
+                sessionHandler.removePlayerConnection(connection);
             }
         }
-
-        log.debug("Processed {} disconnected players", processedCount);
     }
 
     /**
-     * Scheduled task to check for inactive players that should be reported
-     * but not removed from the player tracker yet
+     * Arm a check that a connected player's session is still acknowledging heartbeats. A
+     * connection that stopped acknowledging them is dead even if the socket hasn't noticed,
+     * and closing it runs the normal disconnection handling and starts the reconnection window.
      */
-    @Scheduled(fixedRate = 300000) // Run every 5 minutes
-    public void processInactivePlayers() {
-        log.debug("Running scheduled task: processInactivePlayers");
-        Duration inactiveTimeout = Duration.ofMinutes(inactiveTimeoutMinutes);
-        int longInactiveCount = 0;
-
-        for (Map.Entry<UUID, PlayerConnectionInfo> entry : playerConnections.entrySet()) {
-            UUID playerId = entry.getKey();
-            PlayerConnectionInfo info = entry.getValue();
+    private Timeout armHeartbeatCheck(PlayerConnection connection, Duration delay) {
+        return timerWheel.newTimeout(check -> {
+            if (connection.heartbeatCheckDue(check, heartbeatTimeout(), remaining -> armHeartbeatCheck(connection, remaining))) {
+                log.info("Player {} hasn't acknowledged a heartbeat in {}s, closing session",
+                        connection.getPlayerId(), heartbeatTimeoutSeconds);
+                connection.getSession().close()
+                        .subscribe(null, error -> log.error("Error closing session: {}", error.getMessage(), error));
+            }
+        }, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
 
-            if (info.state == ConnectionState.INACTIVE &&
-                    info.getTimeSinceStateChange().compareTo(inactiveTimeout) > 0) {
-                longInactiveCount++;
-                log.info("Player {} has been inactive for more than {} minutes",
-                        playerId, inactiveTimeoutMinutes);
-                // At this point, we could broadcast a message about long-term inactive players
-                // Or implement any specific logic for very long-term inactive players
+    /**
+     * Arm the end of a disconnected player's reconnection window
+     */
+    private Timeout armExpiry(PlayerConnection connection) {
+        return timerWheel.newTimeout(expiry -> {
+            if (!connection.expire(expiry)) {
+                return;
             }
+            log.info("Player {} exceeded reconnection window of {}s, marking as inactive",
+                    connection.getPlayerId(), disconnectedTimeoutSeconds);
+            statusWrites.setActive(connection.getPlayerId(), false);
+            timerWheel.newTimeout(report -> reportLongInactive(connection), inactiveTimeoutMinutes, TimeUnit.MINUTES);
+        }, disconnectedTimeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    private void reportLongInactive(PlayerConnection connection) {
+        if (connection.getState() == State.INACTIVE &&
+                connection.getTimeSinceStateChange().compareTo(Duration.ofMinutes(inactiveTimeoutMinutes)) >= 0) {
+            log.info("Player {} has been inactive for more than {} minutes",
+                    connection.getPlayerId(), inactiveTimeoutMinutes);
         }
+    }
 
-        log.debug("Found {} long-term inactive players", longInactiveCount);
+    private Duration heartbeatTimeout() {
+        return Duration.ofSeconds(heartbeatTimeoutSeconds);
     }
 
     /**
@@ -207,8 +194,12 @@ public class PlayerSessionTracker {
         int disconnectedCount = 0;
         int inactiveCount = 0;
 
-        for (PlayerConnectionInfo info : playerConnections.values()) {
-            switch (info.state) {
+        for (PlayerConnection connection : sessionHandler.getPlayerConnections()) {
+            State state = connection.getState();
+            if (state == null) {
+                continue;
+            }
+            switch (state) {
                 case CONNECTED: connectedCount++; break;
                 case DISCONNECTED: disconnectedCount++; break;
                 case INACTIVE: inactiveCount++; break;
@@ -216,7 +207,7 @@ public class PlayerSessionTracker {
         }
 
         return String.format("PlayerSessionTracker stats: connected=%d, disconnected=%d, inactive=%d, total=%d",
-                connectedCount, disconnectedCount, inactiveCount, playerConnections.size());
+                connectedCount, disconnectedCount, inactiveCount, connectedCount + disconnectedCount + inactiveCount);
     }
 
     /**
@@ -226,38 +217,4 @@ public class PlayerSessionTracker {
     public void logConnectionStatistics() {
         log.info(getConnectionStatistics());
     }
-
-    /**
-     * Update a player's active status in the database and broadcast the change
-     */
-    private Mono<Void> updatePlayerActiveStatus(UUID playerId, boolean active) {
-        return playerRepository.findById(playerId)
-                .flatMap(player -> {
-                    if (player.isActive() != active) {
-                        log.debug("Updating player {} active status to: {}", playerId, active);
-                        player.setActive(active);
-                        return playerRepository.save(player)
-                                .flatMap(savedPlayer -> {
-                                    // Notify lobby of player status change
-                                    return notifyPlayerStatusChange(savedPlayer);
-                                });
-                    }
-                    return Mono.empty();
-                })
-                .then();
-    }
-
-    /**
-     * Notify the lobby about a player's status change
-     */
-    private Mono<Void> notifyPlayerStatusChange(Player player) {
-        UUID lobbyId = player.getLobbyId();
-        log.info("Broadcasting player {} status change in lobby {}. Active: {}",
-                player.getId(), lobbyId, player.isActive());
-
-        // You'd implement a message class for player status changes
-        // and broadcast it via the LobbyService
-        return lobbyService.broadcastToLobby(lobbyId,
-                new PlayerStatusChangeMessage(player.getId(), player.isActive()));
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,216 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.Player;
+import com.guesshole.repositories.PlayerRepository;
+import com.guesshole.websocket.messages.WebSocketMessage;
+import com.guesshole.websocket.messages.outgoing.PlayerStatusChangeMessage;
+import com.guesshole.websocket.messages.outgoing.PlayerStatusesChangeMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.util.HashedWheelTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects players' active status changes for a short window and writes them to the database
+ * in one UPDATE per batch, instead of reading and saving each player. When thousands of clients
+ * reconnect after a restart this turns a read-modify-write per player into a handful of
+ * statements. Only the latest status requested for a player in a window is written.
+ * <p>
+ * The players whose status actually changed are broadcast once per lobby. Writes run one
+ * batch at a time, so a player's later change can't overtake an earlier one. While writes keep
+ * failing, the retries back off exponentially up to maxBackoffMillis.
+ */
+@Service
+public class PlayerStatusWriteCoalescer {
+    private static final Logger log = LoggerFactory.getLogger(PlayerStatusWriteCoalescer.class);
+
+    private final HashedWheelTimer timerWheel;
+    private final PlayerRepository playerRepository;
+    private final LobbyService lobbyService;
+    private final LobbyStateEngine lobbyStateEngine;
+    private final Counter requestedChanges;
+    private final DistributionSummary batchSizes;
+
+    private final ConcurrentHashMap<UUID, Boolean> pending = new ConcurrentHashMap<>();
+    // Set from when a flush is scheduled until its writes complete
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    // Flushes in a row that failed to write some of their statuses, reset by one that writes them all
+    private volatile int failedFlushes;
+
+    @Value("${app.player.status-writes.window-millis:100}")
+    private long windowMillis;
+
+    @Value("${app.player.status-writes.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.player.status-writes.max-backoff-millis:5000}")
+    private long maxBackoffMillis;
+
+    public PlayerStatusWriteCoalescer(HashedWheelTimer timerWheel, PlayerRepository playerRepository,
+                                      LobbyService lobbyService, LobbyStateEngine lobbyStateEngine,
+                                      MeterRegistry meterRegistry) {
+        this.timerWheel = timerWheel;
+        this.playerRepository = playerRepository;
+        this.lobbyService = lobbyService;
+        this.lobbyStateEngine = lobbyStateEngine;
+        this.requestedChanges = Counter.builder("player.status.changes")
+                .description("Player active status changes requested")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("player.status.batch.size")
+                .description("Player active status changes written by each UPDATE")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Request a change to a player's active status, written with the other changes in the window
+     */
+    public void setActive(UUID playerId, boolean active) {
+        pending.put(playerId, active);
+        requestedChanges.increment();
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            timerWheel.newTimeout(timeout -> flush(), flushDelayMillis(failedFlushes), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * The window, doubled for each flush in a row that failed, up to maxBackoffMillis
+     */
+    private long flushDelayMillis(int failures) {
+        if (failures == 0) {
+            return windowMillis;
+        }
+        return Math.min(maxBackoffMillis, windowMillis << Math.min(failures, 20));
+    }
+
+    private void flush() {
+        List<UUID> playerIds = new ArrayList<>(pending.size());
+        List<Boolean> statuses = new ArrayList<>(pending.size());
+        for (Map.Entry<UUID, Boolean> entry : pending.entrySet()) {
+            // A status requested after this one was read stays pending for the next flush
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                playerIds.add(entry.getKey());
+                statuses.add(entry.getValue());
+            }
+        }
+
+        AtomicBoolean failed = new AtomicBoolean();
+        write(playerIds, statuses, failed)
+                .flatMap(this::notifyStatusChanges)
+                .doFinally(signal -> {
+                    if (failed.get()) {
+                        failedFlushes++;
+                    } else if (failedFlushes > 0) {
+                        log.info("Wrote player statuses again after {} failed flushes", failedFlushes);
+                        failedFlushes = 0;
+                    }
+                    flushScheduled.set(false);
+                    if (!pending.isEmpty()) {
+                        scheduleFlush();
+                    }
+                })
+                .subscribe(null, error -> log.error("Error writing player statuses: {}", error.getMessage(), error));
+    }
+
+    /**
+     * Write the statuses in batches of at most batchSize players. The statuses of a batch that
+     * fails go back into pending, so the next flush retries them, and failed is set.
+     *
+     * @return The players whose status changed
+     */
+    private Mono<List<Player>> write(List<UUID> playerIds, List<Boolean> statuses, AtomicBoolean failed) {
+        if (playerIds.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        log.debug("Writing active status of {} players", playerIds.size());
+
+        List<Integer> batchStarts = new ArrayList<>();
+        for (int start = 0; start < playerIds.size(); start += batchSize) {
+            batchStarts.add(start);
+        }
+        return Flux.fromIterable(batchStarts)
+                .concatMap(start -> {
+                    int end = Math.min(start + batchSize, playerIds.size());
+                    batchSizes.record(end - start);
+                    List<UUID> batchIds = playerIds.subList(start, end);
+                    List<Boolean> batchStatuses = statuses.subList(start, end);
+                    return playerRepository.updateActiveAll(
+                                    batchIds.toArray(new UUID[0]), batchStatuses.toArray(new Boolean[0]))
+                            .onErrorResume(error -> {
+                                // Only the first failure in a row is logged in full, the rest repeat it
+                                int failures = failedFlushes;
+                                if (failures == 0) {
+                                    log.error("Error writing active status of {} players, retrying in {}ms: {}",
+                                            batchIds.size(), flushDelayMillis(1), error.getMessage(), error);
+                                } else {
+                                    log.warn("Error writing active status of {} players again, retrying in {}ms: {}",
+                                            batchIds.size(), flushDelayMillis(failures + 1), error.getMessage());
+                                }
+                                failed.set(true);
+                                restore(batchIds, batchStatuses);
+                                return Flux.empty();
+                            });
+                })
+                .collectList();
+    }
+
+    /**
+     * Put statuses that weren't written back into pending, unless a newer status was requested meanwhile
+     */
+    private void restore(List<UUID> playerIds, List<Boolean> statuses) {
+        for (int i = 0; i < playerIds.size(); i++) {
+            pending.putIfAbsent(playerIds.get(i), statuses.get(i));
+        }
+    }
+
+    /**
+     * Update the in-memory rosters and send each lobby one message with its players' changes
+     */
+    private Mono<Void> notifyStatusChanges(List<Player> changed) {
+        Map<UUID, List<Player>> byLobby = new HashMap<>();
+        for (Player player : changed) {
+            // Keep the in-memory roster in step with the database
+            lobbyStateEngine.putPlayer(player);
+            byLobby.computeIfAbsent(player.getLobbyId(), lobbyId -> new ArrayList<>()).add(player);
+        }
+
+        return Flux.fromIterable(byLobby.entrySet())
+                .flatMap(entry -> {
+                    UUID lobbyId = entry.getKey();
+                    List<Player> players = entry.getValue();
+                    log.info("Broadcasting status change of {} players in lobby {}", players.size(), lobbyId);
+                    return lobbyService.broadcastToLobby(lobbyId, statusMessage(players))
+                            .onErrorResume(e -> {
+                                log.error("Error broadcasting player statuses to lobby {}: {}", lobbyId, e.getMessage());
+                                return Mono.empty();
+                            });
+                })
+                .then();
+    }
+
+    private static WebSocketMessage statusMessage(List<Player> players) {
+        if (players.size() == 1) {
+            Player player = players.get(0);
+            return new PlayerStatusChangeMessage(player.getId(), player.isActive());
+        }
+        List<PlayerStatusesChangeMessage.Change> changes = new ArrayList<>(players.size());
+        for (Player player : players) {
+            changes.add(new PlayerStatusesChangeMessage.Change(player.getId(), player.isActive()));
+        }
+        return new PlayerStatusesChangeMessage(changes);
+    }
+}
@@ -0,0 +1,297 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.GameConfiguration;
+import com.guesshole.entities.Guess;
+import com.guesshole.entities.LocationPoint;
+import com.guesshole.entities.Player;
+import com.guesshole.entities.Round;
+import com.guesshole.repositories.GuessRepository;
+import com.guesshole.repositories.LocationPointRepository;
+import com.guesshole.repositories.PlayerRepository;
+import com.guesshole.websocket.codec.MessageCodec;
+import com.guesshole.websocket.messages.outgoing.GuessResultMessage;
+import com.guesshole.websocket.services.SharedMessagePayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps an in-memory context for each active round so that guess processing
+ * doesn't have to re-read the round, the lobby roster and the existing guesses
+ * from the database for every single guess.
+ * A context is loaded once, the first time a round receives a guess. The round and roster
+ * come from the lobby state engine and the guesses are seeded from the database,
+ * so it stays correct after a restart.
+ */
+@Service
+public class RoundContextService {
+    private static final Logger log = LoggerFactory.getLogger(RoundContextService.class);
+    private static final Duration CONTEXT_TTL = Duration.ofMinutes(30);
+
+    /**
+     * Everything needed to score and broadcast a guess for a single round
+     */
+    public static class RoundContext {
+        private final Round round;
+        private final UUID lobbyId;
+        private final GameConfiguration gameConfiguration;
+        private final Instant loadedAt = Instant.now();
+        private final Map<UUID, Player> roster = new ConcurrentHashMap<>();
+        private final Set<UUID> guessedPlayerIds = ConcurrentHashMap.newKeySet();
+        private final List<GuessResultMessage> guessResults = new ArrayList<>();
+        private final AtomicBoolean firstGuessClaimed;
+        private final AtomicBoolean roundEndClaimed = new AtomicBoolean(false);
+        private final Map<MessageCodec, Map<UUID, SharedMessagePayload>> resultPayloads = new ConcurrentHashMap<>();
+
+        private RoundContext(Round round, UUID lobbyId, GameConfiguration gameConfiguration,
+                             List<Player> players, List<Guess> existingGuesses) {
+            this.round = round;
+            this.lobbyId = lobbyId;
+            this.gameConfiguration = gameConfiguration;
+            players.forEach(player -> roster.put(player.getId(), player));
+            existingGuesses.forEach(guess -> guessedPlayerIds.add(guess.getPlayerId()));
+            this.firstGuessClaimed = new AtomicBoolean(!existingGuesses.isEmpty());
+        }
+
+        public Round getRound() {
+            return round;
+        }
+
+        public UUID getLobbyId() {
+            return lobbyId;
+        }
+
+        /**
+         * The configuration of the game being played, or null if the lobby doesn't have one loaded
+         */
+        public GameConfiguration getGameConfiguration() {
+            return gameConfiguration;
+        }
+
+        public Player getPlayer(UUID playerId) {
+            return roster.get(playerId);
+        }
+
+        public Collection<Player> getRoster() {
+            return roster.values();
+        }
+
+        public boolean isSoloGame() {
+            return roster.size() <= 1;
+        }
+
+        /**
+         * Claim the first guess bonus for this round. Only the first caller gets true.
+         */
+        public boolean claimFirstGuess() {
+            return firstGuessClaimed.compareAndSet(false, true);
+        }
+
+        /**
+         * Claim the early end of this round once every player has guessed,
+         * so that simultaneous last guesses only end the round once
+         */
+        public boolean claimRoundEnd() {
+            return roundEndClaimed.compareAndSet(false, true);
+        }
+
+        /**
+         * Record a player's saved guess for this round
+         * @return the results of every guess recorded before this one
+         */
+        public synchronized List<GuessResultMessage> recordGuess(UUID playerId, GuessResultMessage message) {
+            List<GuessResultMessage> previousResults = new ArrayList<>(guessResults);
+            guessedPlayerIds.add(playerId);
+            guessResults.add(message);
+            return previousResults;
+        }
+
+        /**
+         * Get the serialized form of a guess result. Each result is serialized the first time
+         * it is sent with a codec and the same bytes are reused for every later recipient.
+         */
+        public SharedMessagePayload getResultPayload(GuessResultMessage message, MessageCodec codec,
+                                                     BiFunction<GuessResultMessage, MessageCodec, SharedMessagePayload> serializer) {
+            return resultPayloads.computeIfAbsent(codec, c -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(message.getGuessId(), guessId -> serializer.apply(message, codec));
+        }
+
+        public Set<UUID> getGuessedPlayerIds() {
+            return Collections.unmodifiableSet(guessedPlayerIds);
+        }
+
+        /**
+         * Check whether every player currently in the roster has guessed
+         */
+        public boolean allPlayersGuessed() {
+            return guessedPlayerIds.containsAll(roster.keySet());
+        }
+
+        private void replaceRoster(List<Player> players) {
+            roster.clear();
+            players.forEach(player -> roster.put(player.getId(), player));
+        }
+    }
+
+    private final Map<UUID, Mono<RoundContext>> contexts = new ConcurrentHashMap<>();
+    private final LobbyStateEngine lobbyStateEngine;
+    private final RoundService roundService;
+    private final PlayerRepository playerRepository;
+    private final GuessRepository guessRepository;
+    private final GuessJournal guessJournal;
+    private final LocationPointRepository locationPointRepository;
+
+    public RoundContextService(
+            LobbyStateEngine lobbyStateEngine,
+            RoundService roundService,
+            PlayerRepository playerRepository,
+            GuessRepository guessRepository,
+            GuessJournal guessJournal,
+            LocationPointRepository locationPointRepository) {
+        this.lobbyStateEngine = lobbyStateEngine;
+        this.roundService = roundService;
+        this.playerRepository = playerRepository;
+        this.guessRepository = guessRepository;
+        this.guessJournal = guessJournal;
+        this.locationPointRepository = locationPointRepository;
+
+        lobbyStateEngine.addRosterListener(this::updateRoster);
+    }
+
+    /**
+     * Get the context for a round, loading it from the database on first use.
+     * Concurrent callers for the same round share a single load.
+     */
+    public Mono<RoundContext> getContext(UUID roundId, UUID lobbyId) {
+        return contexts.computeIfAbsent(roundId, id -> loadContext(id, lobbyId)
+                .doOnError(e -> contexts.remove(id))
+                .cache());
+    }
+
+    /**
+     * Look up a player in the round's roster, falling back to the database
+     * for players that joined after the context was loaded
+     */
+    public Mono<Player> findPlayer(RoundContext context, UUID playerId) {
+        Player player = context.getPlayer(playerId);
+        if (player != null) {
+            return Mono.just(player);
+        }
+        return playerRepository.findById(playerId)
+                .doOnNext(found -> {
+                    context.roster.put(found.getId(), found);
+                    lobbyStateEngine.putPlayer(found);
+                });
+    }
+
+    /**
+     * Replace the cached roster for any round contexts belonging to a lobby.
+     * Called by the lobby state engine whenever the lobby's roster changes.
+     */
+    private void updateRoster(UUID lobbyId, List<Player> players) {
+        contexts.values().forEach(contextMono -> contextMono
+                .filter(context -> context.getLobbyId().equals(lobbyId))
+                .subscribe(context -> context.replaceRoster(players),
+                        error -> log.debug("Skipping roster update for failed context: {}", error.getMessage())));
+    }
+
+    /**
+     * Drop the cached context for a round. A later guess will reload it from the database.
+     */
+    public void evict(UUID roundId) {
+        if (contexts.remove(roundId) != null) {
+            log.debug("Evicted round context for round {}", roundId);
+        }
+    }
+
+    /**
+     * Scheduled task to drop contexts for rounds that are long finished
+     */
+    @Scheduled(fixedRate = 300000) // Run every 5 minutes
+    public void evictExpiredContexts() {
+        Instant cutoff = Instant.now().minus(CONTEXT_TTL);
+        contexts.forEach((roundId, contextMono) -> contextMono
+                .filter(context -> context.loadedAt.isBefore(cutoff))
+                .subscribe(context -> contexts.remove(roundId, contextMono),
+                        error -> contexts.remove(roundId, contextMono)));
+    }
+
+    private Mono<RoundContext> loadContext(UUID roundId, UUID lobbyId) {
+        log.info("Loading round context for round {} in lobby {}", roundId, lobbyId);
+
+        Mono<List<Guess>> guessesMono = guessJournal.flush()
+                .thenMany(guessRepository.findByRoundId(roundId))
+                .collectList();
+
+        return lobbyStateEngine.getSnapshot(lobbyId)
+                .flatMap(snapshot -> {
+                    // The lobby state holds every round of the current game, fully populated
+                    Mono<Round> roundMono = Mono.justOrEmpty(snapshot.findRound(roundId))
+                            .switchIfEmpty(Mono.defer(() -> roundService.findById(roundId)
+                                    // A round from another lobby or an earlier game must not be cached as this lobby's
+                                    .filter(round -> round.getGameInstanceId() != null
+                                            && round.getGameInstanceId().equals(snapshot.getGameInstanceId()))
+                                    .switchIfEmpty(Mono.error(() -> new IllegalArgumentException(
+                                            "Round " + roundId + " is not in the current game of lobby " + lobbyId)))));
+
+                    return Mono.zip(roundMono, guessesMono)
+                            .flatMap(tuple -> {
+                                GameConfiguration gameConfiguration = snapshot.getLobby() != null
+                                        ? snapshot.getLobby().getGameConfiguration() : null;
+                                RoundContext context = new RoundContext(tuple.getT1(), lobbyId, gameConfiguration,
+                                        snapshot.getRoster(), tuple.getT2());
+                                return seedGuessResults(context, tuple.getT2()).thenReturn(context);
+                            });
+                });
+    }
+
+    /**
+     * Rebuild the guess history for a round that already had guesses when the context was loaded
+     */
+    private Mono<Void> seedGuessResults(RoundContext context, List<Guess> existingGuesses) {
+        if (existingGuesses.isEmpty()) {
+            return Mono.empty();
+        }
+
+        List<Long> locationPointIds = existingGuesses.stream()
+                .map(Guess::getLocationPointId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        Mono<Map<Long, LocationPoint>> locationPointsMono = locationPointIds.isEmpty()
+                ? Mono.just(Collections.emptyMap())
+                : locationPointRepository.findAllByIdIn(locationPointIds)
+                        .collectMap(LocationPoint::getId, Function.identity());
+
+        return locationPointsMono.flatMap(locationPoints -> Mono.fromRunnable(() -> {
+            for (Guess guess : existingGuesses) {
+                Player player = context.getPlayer(guess.getPlayerId());
+                if (player == null) {
+                    continue;
+                }
+                context.guessResults.add(new GuessResultMessage(
+                        guess.getId(),
+                        context.getRound().getId(),
+                        player,
+                        locationPoints.get(guess.getLocationPointId()),
+                        context.getRound().getLocationPoint(),
+                        guess.getDistanceKm() != null ? guess.getDistanceKm() : 0.0,
+                        guess.getBaseScore() != null ? guess.getBaseScore() : 0,
+                        guess.getScore() != null ? guess.getScore() : 0,
+                        guess.getScoreMultipliers()
+                ));
+            }
+        }));
+    }
+}
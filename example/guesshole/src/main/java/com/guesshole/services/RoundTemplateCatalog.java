@@ -0,0 +1,250 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.LocationPoint;
+import com.guesshole.entities.RoundTemplate;
+import com.guesshole.repositories.LocationPointRepository;
+import com.guesshole.repositories.RoundTemplateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory catalog of the round templates games can be built from, so picking the rounds for
+ * a game doesn't sort the whole round_template table. Holds the IDs of approved templates that
+ * have coordinates, indexed by country (GID0 of the template's location point), and samples
+ * from them with a partial Fisher-Yates shuffle that only touches the positions it draws.
+ * <p>
+ * The catalog is reloaded when admins change templates, and periodically to pick up
+ * changes made through other nodes or imports.
+ */
+@Service
+public class RoundTemplateCatalog {
+    private static final Logger log = LoggerFactory.getLogger(RoundTemplateCatalog.class);
+    private static final Set<String> WHOLE_WORLD = Set.of("WORLD", "DEFAULT");
+
+    /**
+     * An immutable view of the catalog, replaced as a whole on refresh
+     */
+    private static class Snapshot {
+        private final UUID[] all;
+        private final Map<String, UUID[]> byCountry;
+
+        private Snapshot(UUID[] all, Map<String, UUID[]> byCountry) {
+            this.all = all;
+            this.byCountry = byCountry;
+        }
+    }
+
+    private final RoundTemplateRepository roundTemplateRepository;
+    private final LocationPointRepository locationPointRepository;
+
+    private volatile Snapshot snapshot = new Snapshot(new UUID[0], Map.of());
+    // Refreshes requested while a reload is running collapse into one more reload
+    private final Sinks.Many<Boolean> refreshes = Sinks.many().unicast().onBackpressureBuffer();
+
+    // Templates recently played in each lobby, most recent last. Access ordered so idle lobbies are evicted first.
+    private final Map<UUID, Deque<UUID>> recentByLobby = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Deque<UUID>> eldest) {
+            return size() > maxLobbies;
+        }
+    };
+
+    @Value("${app.round-templates.catalog.approved-only:true}")
+    private boolean approvedOnly;
+
+    @Value("${app.round-templates.catalog.recent-per-lobby:50}")
+    private int recentPerLobby;
+
+    @Value("${app.round-templates.catalog.max-lobbies:10000}")
+    private int maxLobbies;
+
+    public RoundTemplateCatalog(RoundTemplateRepository roundTemplateRepository,
+                                LocationPointRepository locationPointRepository) {
+        this.roundTemplateRepository = roundTemplateRepository;
+        this.locationPointRepository = locationPointRepository;
+        refreshes.asFlux()
+                .onBackpressureLatest()
+                .concatMap(request -> load()
+                        .onErrorResume(e -> {
+                            log.error("Error loading the round template catalog: {}", e.getMessage(), e);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    /**
+     * Load the catalog once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        refresh();
+    }
+
+    /**
+     * Scheduled task to reload the catalog, picking up templates changed outside this node
+     */
+    @Scheduled(fixedRate = 300000) // Run every 5 minutes
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    /**
+     * Reload the catalog in the background, e.g. after a template was approved, edited or deleted
+     */
+    public void refresh() {
+        synchronized (refreshes) {
+            refreshes.tryEmitNext(Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Pick distinct templates at random for a game in a lobby, preferring templates the lobby
+     * hasn't played recently. Templates it has played are only used once the rest run out.
+     *
+     * @param lobbyId The lobby the game is for, or null to ignore recently played templates
+     * @param count The number of templates to pick
+     * @param geoType A country code (GID0) to pick from, or WORLD for all templates
+     * @return The IDs of the picked templates, fewer than requested if the catalog is too small
+     */
+    public List<UUID> sample(UUID lobbyId, int count, String geoType) {
+        UUID[] pool = poolFor(geoType);
+        Set<UUID> recent = lobbyId != null ? recentTemplates(lobbyId) : Set.of();
+
+        List<UUID> picked = new ArrayList<>(count);
+        List<UUID> skipped = new ArrayList<>();
+        // Positions of the pool that have been swapped, everything else is still at its own index
+        Map<Integer, Integer> swapped = new HashMap<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int i = 0; i < pool.length && picked.size() < count; i++) {
+            int j = random.nextInt(i, pool.length);
+            int drawn = swapped.getOrDefault(j, j);
+            swapped.put(j, swapped.getOrDefault(i, i));
+
+            UUID templateId = pool[drawn];
+            if (recent.contains(templateId)) {
+                skipped.add(templateId);
+            } else {
+                picked.add(templateId);
+            }
+        }
+        for (int i = 0; i < skipped.size() && picked.size() < count; i++) {
+            picked.add(skipped.get(i));
+        }
+
+        if (lobbyId != null) {
+            remember(lobbyId, picked);
+        }
+        return picked;
+    }
+
+    /**
+     * Whether a lobby has played any of the given templates recently
+     */
+    public boolean playedRecently(UUID lobbyId, Collection<UUID> templateIds) {
+        Set<UUID> recent = recentTemplates(lobbyId);
+        return templateIds.stream().anyMatch(recent::contains);
+    }
+
+    /**
+     * Record that a lobby is playing templates picked without it, e.g. for a pre-built game
+     */
+    public void markPlayed(UUID lobbyId, List<UUID> templateIds) {
+        remember(lobbyId, templateIds);
+    }
+
+    /**
+     * Number of templates in the catalog
+     */
+    public int size() {
+        return snapshot.all.length;
+    }
+
+    /**
+     * Whether the catalog leaves out templates that have never been approved
+     */
+    public boolean isApprovedOnly() {
+        return approvedOnly;
+    }
+
+    private UUID[] poolFor(String geoType) {
+        Snapshot current = snapshot;
+        if (geoType == null || WHOLE_WORLD.contains(geoType.toUpperCase(Locale.ROOT))) {
+            return current.all;
+        }
+        UUID[] country = current.byCountry.get(geoType.toUpperCase(Locale.ROOT));
+        if (country == null) {
+            log.warn("No round templates for geoType {}, picking from all templates", geoType);
+            return current.all;
+        }
+        return country;
+    }
+
+    private Set<UUID> recentTemplates(UUID lobbyId) {
+        synchronized (recentByLobby) {
+            Deque<UUID> recent = recentByLobby.get(lobbyId);
+            return recent != null ? new HashSet<>(recent) : Set.of();
+        }
+    }
+
+    private void remember(UUID lobbyId, List<UUID> templateIds) {
+        synchronized (recentByLobby) {
+            Deque<UUID> recent = recentByLobby.computeIfAbsent(lobbyId, id -> new ArrayDeque<>());
+            recent.removeAll(templateIds);
+            recent.addAll(templateIds);
+            while (recent.size() > recentPerLobby) {
+                recent.removeFirst();
+            }
+        }
+    }
+
+    private Mono<Void> load() {
+        return roundTemplateRepository.findPlayable(approvedOnly)
+                .collectList()
+                .flatMap(templates -> {
+                    List<Long> locationPointIds = templates.stream()
+                            .map(RoundTemplate::getLocationPointId)
+                            .filter(Objects::nonNull)
+                            .distinct()
+                            .collect(Collectors.toList());
+                    Mono<Map<Long, LocationPoint>> locationPoints = locationPointIds.isEmpty() ? Mono.just(Map.of())
+                            : locationPointRepository.findAllByIdIn(locationPointIds)
+                                    .collectMap(LocationPoint::getId, Function.identity());
+                    return locationPoints.map(byId -> build(templates, byId));
+                })
+                .doOnNext(loaded -> {
+                    snapshot = loaded;
+                    log.info("Loaded round template catalog: {} templates in {} countries",
+                            loaded.all.length, loaded.byCountry.size());
+                })
+                .then();
+    }
+
+    private static Snapshot build(List<RoundTemplate> templates, Map<Long, LocationPoint> locationPoints) {
+        Map<String, List<UUID>> byCountry = new HashMap<>();
+        for (RoundTemplate template : templates) {
+            LocationPoint locationPoint = template.getLocationPointId() != null
+                    ? locationPoints.get(template.getLocationPointId()) : null;
+            if (locationPoint != null && locationPoint.getGid0() != null) {
+                byCountry.computeIfAbsent(locationPoint.getGid0().toUpperCase(Locale.ROOT), gid -> new ArrayList<>())
+                        .add(template.getId());
+            }
+        }
+        return new Snapshot(
+                templates.stream().map(RoundTemplate::getId).toArray(UUID[]::new),
+                byCountry.entrySet().stream().collect(Collectors.toUnmodifiableMap(
+                        Map.Entry::getKey, entry -> entry.getValue().toArray(new UUID[0]))));
+    }
+}
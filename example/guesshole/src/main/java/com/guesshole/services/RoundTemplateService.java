@@ -7,6 +7,8 @@ import com.guesshole.repositories.RoundTemplateRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
@@ -30,12 +32,18 @@ public class RoundTemplateService {
 
     private final RoundTemplateRepository roundTemplateRepository;
     private final LocationPointRepository locationPointRepository;
+    private final LocationService locationService;
+    private final RoundTemplateCatalog roundTemplateCatalog;
 
     @Autowired
     public RoundTemplateService(RoundTemplateRepository roundTemplateRepository,
-                                LocationPointRepository locationPointRepository) {
+                                LocationPointRepository locationPointRepository,
+                                LocationService locationService,
+                                RoundTemplateCatalog roundTemplateCatalog) {
         this.roundTemplateRepository = roundTemplateRepository;
         this.locationPointRepository = locationPointRepository;
+        this.locationService = locationService;
+        this.roundTemplateCatalog = roundTemplateCatalog;
     }
 
     /**
@@ -112,14 +120,30 @@ public class RoundTemplateService {
     }
 
     /**
-     * Select a specific number of random round templates and populate location points.
+     * Select a specific number of random round templates from the catalog and populate location points.
+     * Falls back to sampling the same playable templates in the database until the catalog has loaded.
      *
+     * @param lobbyId The lobby the game is for, whose recently played templates are avoided
      * @param numRounds The exact number of round templates to return
+     * @param geoType A country code (GID0) to pick from, or WORLD for all templates
      * @return A Flux of randomly selected round templates with populated location points
      */
-    public Flux<RoundTemplate> getRandomTemplates(int numRounds) {
-        return roundTemplateRepository.selectRandomTemplates(numRounds)
-                .collectList()
+    public Flux<RoundTemplate> getRandomTemplates(UUID lobbyId, int numRounds, String geoType) {
+        if (roundTemplateCatalog.size() == 0) {
+            logger.warn("Round template catalog is empty, selecting random templates from the database");
+            return roundTemplateRepository.selectRandomPlayable(numRounds, roundTemplateCatalog.isApprovedOnly())
+                    .collectList()
+                    .flatMapMany(this::populateLocationPoints);
+        }
+
+        List<UUID> templateIds = roundTemplateCatalog.sample(lobbyId, numRounds, geoType);
+        return roundTemplateRepository.findAllById(templateIds)
+                .collectMap(RoundTemplate::getId, Function.identity())
+                // Keep the sampled order, findAllById returns rows in any order
+                .map(templatesById -> templateIds.stream()
+                        .map(templatesById::get)
+                        .filter(template -> template != null)
+                        .collect(Collectors.toList()))
                 .flatMapMany(this::populateLocationPoints);
     }
 
@@ -144,9 +168,64 @@ public class RoundTemplateService {
      */
     public Mono<RoundTemplate> save(RoundTemplate roundTemplate) {
         return roundTemplateRepository.save(roundTemplate)
+                .doOnNext(saved -> roundTemplateCatalog.refresh())
                 .flatMap(this::populateLocationPoint);
     }
 
+    /**
+     * Delete a round template.
+     *
+     * @param roundTemplate The round template to delete
+     * @return A Mono that completes when the template has been deleted
+     */
+    public Mono<Void> delete(RoundTemplate roundTemplate) {
+        return roundTemplateRepository.delete(roundTemplate)
+                .doOnSuccess(deleted -> roundTemplateCatalog.refresh());
+    }
+
+    /**
+     * Update the coordinates of a template and resolve its location point.
+     *
+     * @param id The ID of the template to update
+     * @param latitude The new latitude value
+     * @param longitude The new longitude value
+     * @return A Mono containing the number of rows affected
+     */
+    public Mono<Integer> updateCoordinates(UUID id, BigDecimal latitude, BigDecimal longitude) {
+        return roundTemplateRepository.updateCoordinates(id, latitude, longitude)
+                .flatMap(rowsAffected -> {
+                    if (rowsAffected == 0 || latitude == null || longitude == null) {
+                        return Mono.just(rowsAffected);
+                    }
+                    return assignLocationPoint(id, latitude, longitude).thenReturn(rowsAffected);
+                })
+                .doOnNext(rowsAffected -> roundTemplateCatalog.refresh());
+    }
+
+    /**
+     * Resolve location points for any templates that have coordinates but no location point,
+     * e.g. templates imported after R__020 last ran. Uses the same reverse geocoder as guesses.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void populateMissingLocationPoints() {
+        roundTemplateRepository.findMissingLocationPoint()
+                .concatMap(template -> assignLocationPoint(template.getId(), template.getLatitude(), template.getLongitude()))
+                .count()
+                .subscribe(
+                        count -> {
+                            if (count > 0) {
+                                logger.info("Populated location points for {} round templates", count);
+                                roundTemplateCatalog.refresh();
+                            }
+                        },
+                        error -> logger.error("Error populating round template location points", error));
+    }
+
+    private Mono<Integer> assignLocationPoint(UUID id, BigDecimal latitude, BigDecimal longitude) {
+        return locationService.createAndSaveLocationPoint(longitude.doubleValue(), latitude.doubleValue())
+                .flatMap(locationPoint -> roundTemplateRepository.updateLocationPointId(id, locationPoint.getId()));
+    }
+
     /**
      * Populate the location point for a single round template.
      *
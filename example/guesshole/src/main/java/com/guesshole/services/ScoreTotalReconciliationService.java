@@ -0,0 +1,95 @@
+package com.guesshole.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Checks the running totals in game_instance_player against the guesses they are built from.
+ * The totals are maintained by the guess insert, so any difference found here points to a bug
+ * or a manual data change. Mismatches are logged, counted and corrected.
+ */
+@Service
+public class ScoreTotalReconciliationService {
+    private static final Logger log = LoggerFactory.getLogger(ScoreTotalReconciliationService.class);
+    private static final Duration SETTLE_TIME = Duration.ofMinutes(2);
+
+    // Games still receiving guesses are skipped, so a guess committed while this runs can't be undone.
+    // Only rows whose stored total differs from the sum of guesses are written and returned.
+    private static final String RECONCILE_SQL =
+            "WITH recent_games AS (" +
+            "   SELECT game_instance_id FROM guesses WHERE \"timestamp\" >= :since " +
+            "   GROUP BY game_instance_id HAVING MAX(\"timestamp\") < :settledBefore" +
+            "), actual AS (" +
+            "   SELECT g.game_instance_id, g.player_id, SUM(COALESCE(g.score, 0))::int AS total_score " +
+            "   FROM guesses g JOIN recent_games r ON r.game_instance_id = g.game_instance_id " +
+            "   GROUP BY g.game_instance_id, g.player_id" +
+            ") " +
+            "INSERT INTO game_instance_player (id, game_instance_id, player_id, total_score) " +
+            "SELECT gen_random_uuid(), game_instance_id, player_id, total_score FROM actual " +
+            "ON CONFLICT (game_instance_id, player_id) " +
+            "   DO UPDATE SET total_score = EXCLUDED.total_score " +
+            "   WHERE game_instance_player.total_score <> EXCLUDED.total_score " +
+            "RETURNING game_instance_id, player_id, total_score";
+
+    private final DatabaseClient databaseClient;
+    private final Counter corrections;
+
+    @Value("${app.scores.reconciliation.window-hours:24}")
+    private long windowHours;
+
+    public ScoreTotalReconciliationService(DatabaseClient databaseClient, MeterRegistry meterRegistry) {
+        this.databaseClient = databaseClient;
+        this.corrections = Counter.builder("scores.reconciliation.corrections")
+                .description("Running score totals that didn't match the guesses table and were corrected")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Scheduled task to reconcile the totals of games that had guesses recently
+     */
+    @Scheduled(fixedRate = 600000) // Run every 10 minutes
+    public void reconcileRecentGames() {
+        reconcile(Instant.now().minus(Duration.ofHours(windowHours)))
+                .subscribe(
+                        corrected -> {
+                            if (corrected > 0) {
+                                log.warn("Corrected {} running score totals", corrected);
+                            }
+                        },
+                        error -> log.error("Error reconciling running score totals: {}", error.getMessage(), error));
+    }
+
+    /**
+     * Recompute the totals for every game instance whose last guess was made since the given time
+     *
+     * @param since Only games with their last guess at or after this time are checked
+     * @return A Mono containing the number of totals that were corrected
+     */
+    public Mono<Long> reconcile(Instant since) {
+        return databaseClient.sql(RECONCILE_SQL)
+                .bind("since", since)
+                .bind("settledBefore", Instant.now().minus(SETTLE_TIME))
+                .map(row -> {
+                    UUID gameInstanceId = row.get("game_instance_id", UUID.class);
+                    UUID playerId = row.get("player_id", UUID.class);
+                    Integer totalScore = row.get("total_score", Integer.class);
+                    log.warn("Running total for player {} in game instance {} was out of step, corrected to {}",
+                            playerId, gameInstanceId, totalScore);
+                    return totalScore;
+                })
+                .all()
+                .count()
+                .doOnNext(corrections::increment);
+    }
+}
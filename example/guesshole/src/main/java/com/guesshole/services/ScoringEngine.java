@@ -0,0 +1,76 @@
+package com.guesshole.services;
+
+import com.guesshole.config.GameRoundProperties;
+import com.guesshole.entities.GameConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Picks the scoring rules for a game and keeps them compiled against the current
+ * app.game-round settings. The settings are bound once at startup instead of being read
+ * from the environment for every guess, and can be replaced at runtime with {@link #reload}.
+ */
+@Service
+public class ScoringEngine {
+    private static final Logger log = LoggerFactory.getLogger(ScoringEngine.class);
+
+    private final List<ScoringRules> rules;
+    private volatile GameRoundProperties properties;
+
+    public ScoringEngine(List<ScoringRules> rules, GameRoundProperties properties) {
+        this.rules = List.copyOf(rules);
+        reload(properties);
+    }
+
+    /**
+     * Get the rules that score guesses in a game
+     *
+     * @param gameConfiguration The game's configuration, or null if it isn't known
+     */
+    public ScoringRules rulesFor(GameConfiguration gameConfiguration) {
+        for (int i = 0; i < rules.size(); i++) {
+            ScoringRules candidate = rules.get(i);
+            if (candidate.appliesTo(gameConfiguration)) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("No scoring rules apply to " + gameConfiguration);
+    }
+
+    /**
+     * Recompile every set of rules against new settings. Guesses already being scored
+     * finish with the settings they started with.
+     */
+    public synchronized void reload(GameRoundProperties newProperties) {
+        validate(newProperties);
+        GameRoundProperties copy = new GameRoundProperties(newProperties);
+        rules.forEach(rule -> rule.compile(copy));
+        properties = copy;
+        log.info("Compiled {} scoring rules with {}", rules.size(), copy);
+    }
+
+    /**
+     * Get the rules for a game compiled against other settings, without changing the rules in use.
+     * Lets the score chart show what a reload would do.
+     */
+    public ScoringRules preview(GameConfiguration gameConfiguration, GameRoundProperties previewProperties) {
+        validate(previewProperties);
+        return rulesFor(gameConfiguration).preview(new GameRoundProperties(previewProperties));
+    }
+
+    private static void validate(GameRoundProperties properties) {
+        if (properties.getMaxDistanceThreshold() <= properties.getMinDistanceThreshold()) {
+            throw new IllegalArgumentException("maxDistanceThreshold must be greater than minDistanceThreshold");
+        }
+    }
+
+    /**
+     * Get a copy of the settings the rules are compiled with
+     */
+    public GameRoundProperties getProperties() {
+        return new GameRoundProperties(properties);
+    }
+}
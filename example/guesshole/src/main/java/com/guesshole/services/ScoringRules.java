@@ -0,0 +1,57 @@
+package com.guesshole.services;
+
+import com.guesshole.config.GameRoundProperties;
+import com.guesshole.entities.GameConfiguration;
+import com.guesshole.entities.LocationPoint;
+import com.guesshole.entities.ScoreMultiplier;
+
+import java.util.List;
+
+/**
+ * How guesses are scored in the games a set of rules applies to. Implementations are beans
+ * picked up by {@link ScoringEngine}, which asks them in order and uses the first that
+ * applies to a game.
+ * <p>
+ * Rules are called for every guess, so they should do their parsing and precomputation in
+ * {@link #compile} and keep the per-guess methods free of allocation where they can. The
+ * multipliers they return are shared and must not be modified.
+ */
+public interface ScoringRules {
+
+    /**
+     * Whether these rules score games with the given configuration, which may be null
+     */
+    boolean appliesTo(GameConfiguration gameConfiguration);
+
+    /**
+     * Prepare the rules for new settings. Called at startup and on every reload.
+     */
+    void compile(GameRoundProperties properties);
+
+    /**
+     * A separate copy of these rules compiled against other settings, leaving these rules as they are
+     */
+    ScoringRules preview(GameRoundProperties properties);
+
+    /**
+     * The score for how close and how fast a guess was, before multipliers
+     */
+    int baseScore(double distanceKm, int roundDuration, int guessTime);
+
+    /**
+     * The bonuses a guess earned
+     */
+    List<ScoreMultiplier> multipliers(int guessTime, boolean isFirstGuess, boolean isSoloGame,
+                                      LocationPoint guessedLocation, LocationPoint targetLocation);
+
+    /**
+     * The base score with each multiplier applied in turn
+     */
+    default int finalScore(int baseScore, List<ScoreMultiplier> multipliers) {
+        double finalScore = baseScore;
+        for (int i = 0; i < multipliers.size(); i++) {
+            finalScore *= multipliers.get(i).getMultiplierValue();
+        }
+        return (int) Math.round(finalScore);
+    }
+}
@@ -1,10 +1,14 @@
 package com.guesshole.websocket;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.guesshole.repositories.PlayerRepository;
+import com.guesshole.services.GameStateDeltaService;
 import com.guesshole.services.GameStateService;
+import com.guesshole.services.LobbyOwnershipService;
+import com.guesshole.services.LobbyStateEngine;
+import com.guesshole.websocket.codec.MessageCodec;
+import com.guesshole.websocket.codec.MessageCodecRegistry;
+import com.guesshole.websocket.services.HeartbeatScheduler;
+import com.guesshole.websocket.services.SessionOutbound;
 import com.guesshole.websocket.services.WebSocketSessionService;
-import com.guesshole.websocket.messages.outgoing.HeartbeatMessage;
 import com.guesshole.websocket.messages.outgoing.PlayersUpdateMessage;
 import com.guesshole.services.LobbyService;
 import com.guesshole.websocket.services.MessageHandlerRegistry;
@@ -13,12 +17,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.socket.WebSocketHandler;
-import org.springframework.web.reactive.socket.WebSocketMessage;
 import org.springframework.web.reactive.socket.WebSocketSession;
-import reactor.core.publisher.Flux;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
 
-import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -28,32 +31,48 @@ import java.util.UUID;
 @Component
 public class LobbyWebSocketHandler implements WebSocketHandler {
     private static final Logger log = LoggerFactory.getLogger(LobbyWebSocketHandler.class);
-    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(30);
 
-    private final ObjectMapper objectMapper;
-    private final PlayerRepository playerRepository;
+    private final LobbyStateEngine lobbyStateEngine;
     private final WebSocketSessionService sessionHandler;
     private final MessageHandlerRegistry messageHandlerRegistry;
     private final LobbyService lobbyService;
     private final PlayerSessionTracker playerSessionTracker;
     private final GameStateService gameStateService;
+    private final HeartbeatScheduler heartbeatScheduler;
+    private final MessageCodecRegistry codecRegistry;
+    private final GameStateDeltaService gameStateDeltaService;
+    private final LobbyOwnershipService lobbyOwnership;
 
     public LobbyWebSocketHandler(
-            ObjectMapper objectMapper,
-            PlayerRepository playerRepository,
+            LobbyStateEngine lobbyStateEngine,
             WebSocketSessionService sessionHandler,
             MessageHandlerRegistry messageHandlerRegistry,
             LobbyService lobbyService,
             PlayerSessionTracker playerSessionTracker,
-            GameStateService gameStateService
+            GameStateService gameStateService,
+            HeartbeatScheduler heartbeatScheduler,
+            MessageCodecRegistry codecRegistry,
+            GameStateDeltaService gameStateDeltaService,
+            LobbyOwnershipService lobbyOwnership
     ) {
-        this.objectMapper = objectMapper;
-        this.playerRepository = playerRepository;
+        this.lobbyStateEngine = lobbyStateEngine;
         this.sessionHandler = sessionHandler;
         this.messageHandlerRegistry = messageHandlerRegistry;
         this.lobbyService = lobbyService;
         this.playerSessionTracker = playerSessionTracker;
         this.gameStateService = gameStateService;
+        this.heartbeatScheduler = heartbeatScheduler;
+        this.codecRegistry = codecRegistry;
+        this.gameStateDeltaService = gameStateDeltaService;
+        this.lobbyOwnership = lobbyOwnership;
+    }
+
+    /**
+     * The wire formats a client can ask for, see {@link MessageCodecRegistry}
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return codecRegistry.getSubProtocols();
     }
 
     @Override
@@ -61,19 +80,29 @@ public class LobbyWebSocketHandler implements WebSocketHandler {
         UUID lobbyId = extractLobbyId(session);
         log.info("New WebSocket connection: session={}, lobbyId={}", session.getId(), lobbyId);
 
-        // Register session with session handler
-        sessionHandler.registerSession(lobbyId, session);
+        // The lobby's state lives on its owner, send the client there
+        if (!lobbyOwnership.isOwner(lobbyId)) {
+            return lobbyOwnership.redirect(session, lobbyId);
+        }
+
+        // Register session with session handler. Everything sent to the session, heartbeats
+        // included, goes through its outbound queue and a single send.
+        SessionOutbound outbound = sessionHandler.registerSession(lobbyId, session);
+        heartbeatScheduler.register(session);
+        resumeStateVersion(session);
 
         // Sequence of operations
         return Mono.when(
                 // 1. Send initial players list and game state
                 sendInitialData(session, lobbyId),
-                // 2. Send heartbeats and process incoming messages in parallel
+                // 2. Write the outbound queue and process incoming messages in parallel
                 Mono.zip(
-                        session.send(createHeartbeatFlux(session)),
-                        processIncomingMessages(session, lobbyId)
+                        session.send(outbound.messages()),
+                        processIncomingMessages(session, lobbyId).doFinally(signal -> outbound.close())
                 )
         ).doFinally(signal -> {
+            heartbeatScheduler.unregister(session);
+            gameStateDeltaService.forget(session);
             UUID playerId = sessionHandler.getPlayerIdForSession(session);
             log.info("WebSocket session completed: {}, playerId={}", session.getId(), playerId);
 
@@ -82,7 +111,7 @@ public class LobbyWebSocketHandler implements WebSocketHandler {
 
             // Handle player disconnection if we have a player ID
             if (playerId != null) {
-                playerSessionTracker.handleDisconnection(playerId);
+                playerSessionTracker.handleDisconnection(playerId, session);
             }
         });
     }
@@ -96,6 +125,25 @@ public class LobbyWebSocketHandler implements WebSocketHandler {
         return UUID.fromString(lobbyIdStr);
     }
 
+    /**
+     * A reconnecting client sends the game state version it last applied, so it can be caught
+     * up with a delta instead of the full state
+     */
+    private void resumeStateVersion(WebSocketSession session) {
+        String stateVersion = UriComponentsBuilder.fromUri(session.getHandshakeInfo().getUri())
+                .build()
+                .getQueryParams()
+                .getFirst("stateVersion");
+        if (stateVersion == null) {
+            return;
+        }
+        try {
+            gameStateDeltaService.resume(session, Long.parseLong(stateVersion));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid state version {} for session {}", stateVersion, session.getId());
+        }
+    }
+
     /**
      * Send the initial data to the new client:
      * - List of players in the lobby
@@ -103,10 +151,9 @@ public class LobbyWebSocketHandler implements WebSocketHandler {
      */
     private Mono<Void> sendInitialData(WebSocketSession session, UUID lobbyId) {
         // Send players list
-        Mono<Void> sendPlayers = playerRepository.findByLobbyId(lobbyId)
-                .collectList()
-                .flatMap(players -> {
-                    PlayersUpdateMessage message = new PlayersUpdateMessage(players);
+        Mono<Void> sendPlayers = lobbyStateEngine.getSnapshot(lobbyId)
+                .flatMap(snapshot -> {
+                    PlayersUpdateMessage message = new PlayersUpdateMessage(snapshot.getRoster());
                     return lobbyService.sendToSession(session, message);
                 })
                 .onErrorResume(e -> {
@@ -125,47 +172,17 @@ public class LobbyWebSocketHandler implements WebSocketHandler {
         return Mono.when(sendPlayers, sendGameState);
     }
 
-    /**
-     * Create a flux that sends periodic heartbeat messages
-     */
-    private Flux<WebSocketMessage> createHeartbeatFlux(WebSocketSession session) {
-        return Flux.interval(HEARTBEAT_INTERVAL)
-                .map(tick -> {
-                    try {
-                        String json = objectMapper.writeValueAsString(new HeartbeatMessage());
-                        return session.textMessage(json);
-                    } catch (Exception e) {
-                        log.error("Error creating heartbeat", e);
-                        return session.textMessage("{\"type\":\"HEARTBEAT\"}");
-                    }
-                });
-    }
-
     /**
      * Process incoming messages from the client
      */
     private Mono<Void> processIncomingMessages(WebSocketSession session, UUID lobbyId) {
+        MessageCodec codec = sessionHandler.getCodec(session);
         return session.receive()
-                .flatMap(message -> handleIncomingMessage(message, session, lobbyId))
+                .flatMap(message -> messageHandlerRegistry.handleMessage(message, codec, session, lobbyId))
                 .onErrorResume(e -> {
                     log.error("WebSocket session error: {}", e.getMessage(), e);
                     return Mono.empty();
                 })
                 .then();
     }
-
-    /**
-     * Handle a single incoming message
-     */
-    private Mono<Void> handleIncomingMessage(WebSocketMessage message, WebSocketSession session, UUID lobbyId) {
-        try {
-            String payload = message.getPayloadAsText();
-            log.debug("Processing message: {}", payload);
-
-            return messageHandlerRegistry.handleMessage(payload, session, lobbyId);
-        } catch (Exception e) {
-            log.error("Error processing WebSocket message", e);
-            return Mono.empty();
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package com.guesshole.websocket.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+
+/**
+ * A wire format for WebSocket messages, selected per connection through the WebSocket subprotocol.
+ * Every codec is a Jackson ObjectMapper, so incoming messages bind to the same message classes
+ * whichever format the client used.
+ */
+public class MessageCodec {
+    private final String subprotocol;
+    private final ObjectMapper objectMapper;
+    private final boolean binary;
+
+    public MessageCodec(String subprotocol, ObjectMapper objectMapper, boolean binary) {
+        this.subprotocol = subprotocol;
+        this.objectMapper = objectMapper;
+        this.binary = binary;
+    }
+
+    /**
+     * The WebSocket subprotocol clients ask for to use this codec
+     */
+    public String getSubprotocol() {
+        return subprotocol;
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * Whether messages go out as binary frames rather than text frames
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public WebSocketMessage.Type getFrameType() {
+        return binary ? WebSocketMessage.Type.BINARY : WebSocketMessage.Type.TEXT;
+    }
+
+    @Override
+    public String toString() {
+        return subprotocol;
+    }
+}
@@ -0,0 +1,66 @@
+package com.guesshole.websocket.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.WebSocketSession;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The wire formats the lobby WebSocket supports. Clients pick one by offering its subprotocol
+ * in the handshake; clients that don't offer any get JSON, as before.
+ */
+@Component
+public class MessageCodecRegistry {
+    private static final Logger log = LoggerFactory.getLogger(MessageCodecRegistry.class);
+
+    public static final String JSON = "guesshole.json";
+    public static final String CBOR = "guesshole.cbor";
+    public static final String SMILE = "guesshole.smile";
+
+    private final MessageCodec defaultCodec;
+    private final Map<String, MessageCodec> codecs = new LinkedHashMap<>();
+
+    public MessageCodecRegistry(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        // The binary mappers are built with the same modules and settings as the JSON one
+        this.defaultCodec = new MessageCodec(JSON, objectMapper, false);
+        register(defaultCodec);
+        register(new MessageCodec(CBOR, objectMapperBuilder.factory(new CBORFactory()).build(), true));
+        register(new MessageCodec(SMILE, objectMapperBuilder.factory(new SmileFactory()).build(), true));
+    }
+
+    private void register(MessageCodec codec) {
+        codecs.put(codec.getSubprotocol(), codec);
+        log.info("Registered WebSocket codec: {}", codec.getSubprotocol());
+    }
+
+    /**
+     * The subprotocols to offer in the handshake, in order of preference
+     */
+    public List<String> getSubProtocols() {
+        return List.copyOf(codecs.keySet());
+    }
+
+    /**
+     * The codec negotiated for a session, JSON if the client didn't ask for one
+     */
+    public MessageCodec forSession(WebSocketSession session) {
+        String subprotocol = session.getHandshakeInfo().getSubProtocol();
+        return subprotocol != null ? codecs.getOrDefault(subprotocol, defaultCodec) : defaultCodec;
+    }
+
+    public MessageCodec getDefaultCodec() {
+        return defaultCodec;
+    }
+
+    public List<MessageCodec> getCodecs() {
+        return List.copyOf(codecs.values());
+    }
+}
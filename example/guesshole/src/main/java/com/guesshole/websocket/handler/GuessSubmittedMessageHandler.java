@@ -1,11 +1,8 @@
 package com.guesshole.websocket.handler;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.guesshole.entities.Round;
 import com.guesshole.services.GameStateService;
 import com.guesshole.services.GuessService;
-import com.guesshole.services.RoundService;
+import com.guesshole.services.RoundContextService;
 import com.guesshole.websocket.messages.incoming.GuessSubmittedMessage;
 import com.guesshole.websocket.services.WebSocketSessionService;
 import org.slf4j.Logger;
@@ -20,25 +17,22 @@ import java.util.UUID;
  * Handler for GUESS_SUBMITTED messages
  */
 @Component
-public class GuessSubmittedMessageHandler implements MessageHandler {
+public class GuessSubmittedMessageHandler implements MessageHandler<GuessSubmittedMessage> {
     private static final Logger log = LoggerFactory.getLogger(GuessSubmittedMessageHandler.class);
     private static final String MESSAGE_TYPE = "GUESS_SUBMITTED";
 
-    private final ObjectMapper objectMapper;
     private final WebSocketSessionService sessionService;
     private final GuessService guessService;
     private final GameStateService gameStateService;
-    private final RoundService roundService;
+    private final RoundContextService roundContextService;
 
     public GuessSubmittedMessageHandler(
-            ObjectMapper objectMapper,
             WebSocketSessionService sessionService,
-            GuessService guessService, GameStateService gameStateService, RoundService roundService) {
-        this.objectMapper = objectMapper;
+            GuessService guessService, GameStateService gameStateService, RoundContextService roundContextService) {
         this.sessionService = sessionService;
         this.guessService = guessService;
         this.gameStateService = gameStateService;
-        this.roundService = roundService;
+        this.roundContextService = roundContextService;
     }
 
     @Override
@@ -47,11 +41,13 @@ public class GuessSubmittedMessageHandler implements MessageHandler {
     }
 
     @Override
-    public Mono<Void> handle(JsonNode payload, WebSocketSession session, UUID lobbyId) {
-        try {
-            // Parse the message
-            GuessSubmittedMessage message = objectMapper.treeToValue(payload, GuessSubmittedMessage.class);
+    public Class<GuessSubmittedMessage> getMessageClass() {
+        return GuessSubmittedMessage.class;
+    }
 
+    @Override
+    public Mono<Void> handle(GuessSubmittedMessage message, WebSocketSession session, UUID lobbyId) {
+        try {
             log.info("Received guess from session {} in lobby {}: lat={}, lng={}, roundId={}, roundDuration={}, guessTime={}",
                     session.getId(), lobbyId,
                     message.getLatitude(),
@@ -77,11 +73,12 @@ public class GuessSubmittedMessageHandler implements MessageHandler {
                     message.getLongitude(),
                     message.getRoundDuration(),
                     message.getGuessTime(),
+                    lobbyId,
                     session
             );
 
-            Mono<Round> roundMono = roundService.findById(message.getRoundId());
-            Mono<Void> playerGuessCheckMono = roundMono.flatMap(round -> gameStateService.checkAllPlayersGuessed(lobbyId, round));
+            Mono<Void> playerGuessCheckMono = roundContextService.getContext(message.getRoundId(), lobbyId)
+                    .flatMap(context -> gameStateService.checkAllPlayersGuessed(lobbyId, context.getRound()));
 
             return processGuessMono.then(playerGuessCheckMono);
         } catch (Exception e) {
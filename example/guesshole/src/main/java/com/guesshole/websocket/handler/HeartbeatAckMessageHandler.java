@@ -1,28 +1,58 @@
 package com.guesshole.websocket.handler;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.guesshole.services.PlayerSessionTracker;
+import com.guesshole.websocket.services.HeartbeatScheduler;
+import com.guesshole.websocket.services.WebSocketSessionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.socket.WebSocketSession;
 import reactor.core.publisher.Mono;
 
-import java.util.UUID; /**
+import java.time.Duration;
+import java.util.UUID;
+
+/**
  * Handler for HEARTBEAT_ACK messages
  */
 @Component
-public class HeartbeatAckMessageHandler implements MessageHandler {
+public class HeartbeatAckMessageHandler implements MessageHandler<Void> {
     private static final Logger log = LoggerFactory.getLogger(HeartbeatAckMessageHandler.class);
     private static final String MESSAGE_TYPE = "HEARTBEAT_ACK";
 
+    private final HeartbeatScheduler heartbeatScheduler;
+    private final WebSocketSessionService sessionHandler;
+    private final PlayerSessionTracker playerSessionTracker;
+
+    public HeartbeatAckMessageHandler(
+            HeartbeatScheduler heartbeatScheduler,
+            WebSocketSessionService sessionHandler,
+            PlayerSessionTracker playerSessionTracker
+    ) {
+        this.heartbeatScheduler = heartbeatScheduler;
+        this.sessionHandler = sessionHandler;
+        this.playerSessionTracker = playerSessionTracker;
+    }
+
     @Override
     public String getMessageType() {
         return MESSAGE_TYPE;
     }
 
     @Override
-    public Mono<Void> handle(JsonNode payload, WebSocketSession session, UUID lobbyId) {
-        log.debug("Received heartbeat acknowledgment from session: {}", session.getId());
+    public Class<Void> getMessageClass() {
+        return Void.class;
+    }
+
+    @Override
+    public Mono<Void> handle(Void message, WebSocketSession session, UUID lobbyId) {
+        Duration roundTrip = heartbeatScheduler.recordAck(session);
+        log.debug("Received heartbeat acknowledgment from session: {}, rtt={}", session.getId(), roundTrip);
+
+        UUID playerId = sessionHandler.getPlayerIdForSession(session);
+        if (playerId != null) {
+            playerSessionTracker.recordHeartbeat(playerId, roundTrip);
+        }
         return Mono.empty();
     }
 }
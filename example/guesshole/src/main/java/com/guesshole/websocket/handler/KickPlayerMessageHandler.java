@@ -1,7 +1,5 @@
 package com.guesshole.websocket.handler;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.guesshole.services.KickPlayerService;
 import com.guesshole.websocket.messages.incoming.KickPlayerMessage;
 import com.guesshole.websocket.services.WebSocketSessionService;
@@ -17,19 +15,16 @@ import java.util.UUID;
  * Handler for KICK_PLAYER messages
  */
 @Component
-public class KickPlayerMessageHandler implements MessageHandler {
+public class KickPlayerMessageHandler implements MessageHandler<KickPlayerMessage> {
     private static final Logger log = LoggerFactory.getLogger(KickPlayerMessageHandler.class);
     private static final String MESSAGE_TYPE = "KICK_PLAYER";
 
-    private final ObjectMapper objectMapper;
     private final WebSocketSessionService sessionService;
     private final KickPlayerService kickPlayerService;
 
     public KickPlayerMessageHandler(
-            ObjectMapper objectMapper,
             WebSocketSessionService sessionService,
             KickPlayerService kickPlayerService) {
-        this.objectMapper = objectMapper;
         this.sessionService = sessionService;
         this.kickPlayerService = kickPlayerService;
     }
@@ -40,9 +35,13 @@ public class KickPlayerMessageHandler implements MessageHandler {
     }
 
     @Override
-    public Mono<Void> handle(JsonNode payload, WebSocketSession session, UUID lobbyId) {
+    public Class<KickPlayerMessage> getMessageClass() {
+        return KickPlayerMessage.class;
+    }
+
+    @Override
+    public Mono<Void> handle(KickPlayerMessage message, WebSocketSession session, UUID lobbyId) {
         try {
-            KickPlayerMessage message = objectMapper.treeToValue(payload, KickPlayerMessage.class);
             UUID playerIdToKick = message.getPlayerId();
 
             if (playerIdToKick == null) {
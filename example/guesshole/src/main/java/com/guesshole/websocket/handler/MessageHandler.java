@@ -1,6 +1,5 @@
 package com.guesshole.websocket.handler;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.web.reactive.socket.WebSocketSession;
 import reactor.core.publisher.Mono;
 
@@ -9,21 +8,29 @@ import java.util.UUID;
 /**
  * Interface for WebSocket message handlers.
  * Each message type should have its own handler implementation.
+ *
+ * @param <T> The class incoming messages of this type are bound to
  */
-public interface MessageHandler {
+public interface MessageHandler<T> {
 
     /**
      * Get the message type this handler supports
      */
     String getMessageType();
 
+    /**
+     * Get the class the message is bound to before it is handled.
+     * Handlers that don't need the message body return {@code Void.class} and are passed null.
+     */
+    Class<T> getMessageClass();
+
     /**
      * Handle a WebSocket message
      *
-     * @param message The parsed JSON message
+     * @param message The bound message
      * @param session The WebSocket session
      * @param lobbyId The lobby ID
      * @return A Mono that completes when the message has been handled
      */
-    Mono<Void> handle(JsonNode message, WebSocketSession session, UUID lobbyId);
+    Mono<Void> handle(T message, WebSocketSession session, UUID lobbyId);
 }
\ No newline at end of file
@@ -5,6 +5,8 @@ import org.springframework.web.reactive.socket.WebSocketHandler;
 import org.springframework.web.reactive.socket.WebSocketSession;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public class MetricsWebSocketHandler implements WebSocketHandler {
     private final WebSocketMetricsRegistry metricsRegistry;
     private final WebSocketHandler delegate;
@@ -14,6 +16,11 @@ public class MetricsWebSocketHandler implements WebSocketHandler {
         this.metricsRegistry = metricsRegistry;
     }
 
+    @Override
+    public List<String> getSubProtocols() {
+        return delegate.getSubProtocols();
+    }
+
     @Override
     public Mono<Void> handle(WebSocketSession session) {
         String path = session.getHandshakeInfo().getUri().getPath();
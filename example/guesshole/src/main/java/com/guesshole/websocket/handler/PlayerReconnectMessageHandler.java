@@ -1,7 +1,5 @@
 package com.guesshole.websocket.handler;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.guesshole.websocket.messages.incoming.PlayerReconnectMessage;
 import com.guesshole.services.PlayerService;
 import org.slf4j.Logger;
@@ -16,15 +14,13 @@ import java.util.UUID;
  * Handler for PLAYER_RECONNECT messages
  */
 @Component
-public class PlayerReconnectMessageHandler implements MessageHandler {
+public class PlayerReconnectMessageHandler implements MessageHandler<PlayerReconnectMessage> {
     private static final Logger log = LoggerFactory.getLogger(PlayerReconnectMessageHandler.class);
     private static final String MESSAGE_TYPE = "PLAYER_RECONNECT";
 
-    private final ObjectMapper objectMapper;
     private final PlayerService playerService;
 
-    public PlayerReconnectMessageHandler(ObjectMapper objectMapper, PlayerService playerService) {
-        this.objectMapper = objectMapper;
+    public PlayerReconnectMessageHandler(PlayerService playerService) {
         this.playerService = playerService;
     }
 
@@ -34,9 +30,13 @@ public class PlayerReconnectMessageHandler implements MessageHandler {
     }
 
     @Override
-    public Mono<Void> handle(JsonNode payload, WebSocketSession session, UUID lobbyId) {
+    public Class<PlayerReconnectMessage> getMessageClass() {
+        return PlayerReconnectMessage.class;
+    }
+
+    @Override
+    public Mono<Void> handle(PlayerReconnectMessage message, WebSocketSession session, UUID lobbyId) {
         try {
-            PlayerReconnectMessage message = objectMapper.treeToValue(payload, PlayerReconnectMessage.class);
             UUID playerId = message.getPlayerId();
 
             if (playerId == null) {
@@ -1,6 +1,5 @@
 package com.guesshole.websocket.handler;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.guesshole.repositories.PlayerRepository;
 import com.guesshole.services.GameStateService;
 import com.guesshole.websocket.services.WebSocketSessionService;
@@ -17,7 +16,7 @@ import java.util.UUID;
  * Resets the game state back to lobby mode.
  */
 @Component
-public class ReturnToLobbyMessageHandler implements MessageHandler {
+public class ReturnToLobbyMessageHandler implements MessageHandler<Void> {
     private static final Logger log = LoggerFactory.getLogger(ReturnToLobbyMessageHandler.class);
     private static final String MESSAGE_TYPE = "RETURN_TO_LOBBY";
 
@@ -41,7 +40,12 @@ public class ReturnToLobbyMessageHandler implements MessageHandler {
     }
 
     @Override
-    public Mono<Void> handle(JsonNode message, WebSocketSession session, UUID lobbyId) {
+    public Class<Void> getMessageClass() {
+        return Void.class;
+    }
+
+    @Override
+    public Mono<Void> handle(Void message, WebSocketSession session, UUID lobbyId) {
         log.info("Handling RETURN_TO_LOBBY request for lobby: {}", lobbyId);
 
         // Get the player ID for this session
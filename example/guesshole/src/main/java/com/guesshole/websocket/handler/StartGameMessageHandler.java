@@ -1,7 +1,5 @@
 package com.guesshole.websocket.handler;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.guesshole.repositories.PlayerRepository;
 import com.guesshole.websocket.messages.incoming.StartGameMessage;
 import com.guesshole.services.GameStateService;
@@ -19,24 +17,21 @@ import java.util.UUID;
  * Handler for START_GAME messages.
  */
 @Component
-public class StartGameMessageHandler implements MessageHandler {
+public class StartGameMessageHandler implements MessageHandler<StartGameMessage> {
     private static final Logger log = LoggerFactory.getLogger(StartGameMessageHandler.class);
     private static final String MESSAGE_TYPE = "START_GAME";
 
-    private final ObjectMapper objectMapper;
     private final WebSocketSessionService sessionService;
     private final PlayerRepository playerRepository;
     private final LobbyService lobbyService;
     private final GameStateService gameStateService;
 
     public StartGameMessageHandler(
-            ObjectMapper objectMapper,
             WebSocketSessionService sessionService,
             PlayerRepository playerRepository,
             LobbyService lobbyService,
             GameStateService gameStateService
     ) {
-        this.objectMapper = objectMapper;
         this.sessionService = sessionService;
         this.playerRepository = playerRepository;
         this.lobbyService = lobbyService;
@@ -49,7 +44,12 @@ public class StartGameMessageHandler implements MessageHandler {
     }
 
     @Override
-    public Mono<Void> handle(JsonNode payload, WebSocketSession session, UUID lobbyId) {
+    public Class<StartGameMessage> getMessageClass() {
+        return StartGameMessage.class;
+    }
+
+    @Override
+    public Mono<Void> handle(StartGameMessage message, WebSocketSession session, UUID lobbyId) {
         log.info("Received START_GAME message from session {} in lobby {}", session.getId(), lobbyId);
 
         // Get the player ID associated with this session
@@ -60,8 +60,6 @@ public class StartGameMessageHandler implements MessageHandler {
         }
 
         try {
-            // Parse the message with game settings
-            StartGameMessage message = objectMapper.treeToValue(payload, StartGameMessage.class);
             log.info("Processing start game request: rounds={}, roundLength={}, geoType={}, session={}",
                     message.getRounds(), message.getRoundLength(), message.getGeoType(), session.getId());
 
@@ -1,10 +1,9 @@
 package com.guesshole.websocket.handler;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.guesshole.entities.Round;
 import com.guesshole.services.GameStateService;
 import com.guesshole.services.LobbyService;
+import com.guesshole.services.LobbyStateEngine;
 import com.guesshole.services.RoundService;
 import com.guesshole.websocket.messages.incoming.StartGameMessage;
 import com.guesshole.websocket.messages.incoming.StartNextRoundMessage;
@@ -18,24 +17,24 @@ import java.util.UUID; /**
  * Handler for HEARTBEAT_ACK messages
  */
 @Component
-public class StartNextRoundMessageHandler implements MessageHandler {
+public class StartNextRoundMessageHandler implements MessageHandler<StartNextRoundMessage> {
     private static final Logger log = LoggerFactory.getLogger(StartNextRoundMessageHandler.class);
     private static final String MESSAGE_TYPE = "START_NEXT_ROUND";
     private final GameStateService gameStateService;
     private final RoundService roundService;
+    private final LobbyStateEngine lobbyStateEngine;
     private final LobbyService lobbyService;
-    private final ObjectMapper objectMapper;
 
     public StartNextRoundMessageHandler(
             GameStateService gameStateService,
             RoundService roundService,
-            LobbyService lobbyService,
-            ObjectMapper objectMapper
+            LobbyStateEngine lobbyStateEngine,
+            LobbyService lobbyService
     ) {
         this.gameStateService = gameStateService;
         this.roundService = roundService;
+        this.lobbyStateEngine = lobbyStateEngine;
         this.lobbyService = lobbyService;
-        this.objectMapper = objectMapper;
     }
 
     @Override
@@ -44,11 +43,16 @@ public class StartNextRoundMessageHandler implements MessageHandler {
     }
 
     @Override
-    public Mono<Void> handle(JsonNode payload, WebSocketSession session, UUID lobbyId) {
-        try {
-            StartNextRoundMessage message = objectMapper.treeToValue(payload, StartNextRoundMessage.class);
+    public Class<StartNextRoundMessage> getMessageClass() {
+        return StartNextRoundMessage.class;
+    }
 
-            return roundService.findById(message.getCurrentRoundId())
+    @Override
+    public Mono<Void> handle(StartNextRoundMessage message, WebSocketSession session, UUID lobbyId) {
+        try {
+            return lobbyStateEngine.getSnapshot(lobbyId)
+                    .flatMap(snapshot -> Mono.justOrEmpty(snapshot.findRound(message.getCurrentRoundId())))
+                    .switchIfEmpty(Mono.defer(() -> roundService.findById(message.getCurrentRoundId())))
                     .flatMap(round -> this.gameStateService.advanceToNextRound(lobbyId, round));
 
         }  catch (Exception e) {
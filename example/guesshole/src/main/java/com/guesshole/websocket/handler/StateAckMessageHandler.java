@@ -0,0 +1,66 @@
+package com.guesshole.websocket.handler;
+
+import com.guesshole.services.GameStateDeltaService;
+import com.guesshole.services.GameStateService;
+import com.guesshole.websocket.messages.incoming.StateAckMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Handler for STATE_ACK messages
+ */
+@Component
+public class StateAckMessageHandler implements MessageHandler<StateAckMessage> {
+    private static final Logger log = LoggerFactory.getLogger(StateAckMessageHandler.class);
+    private static final String MESSAGE_TYPE = "STATE_ACK";
+
+    private final GameStateDeltaService gameStateDeltaService;
+    private final GameStateService gameStateService;
+
+    public StateAckMessageHandler(
+            GameStateDeltaService gameStateDeltaService,
+            GameStateService gameStateService
+    ) {
+        this.gameStateDeltaService = gameStateDeltaService;
+        this.gameStateService = gameStateService;
+    }
+
+    @Override
+    public String getMessageType() {
+        return MESSAGE_TYPE;
+    }
+
+    @Override
+    public Class<StateAckMessage> getMessageClass() {
+        return StateAckMessage.class;
+    }
+
+    @Override
+    public Mono<Void> handle(StateAckMessage message, WebSocketSession session, UUID lobbyId) {
+        try {
+            if (message.isResync()) {
+                log.info("Session {} in lobby {} asked for a full game state after version {}",
+                        session.getId(), lobbyId, message.getVersion());
+                gameStateDeltaService.requestResync(session);
+                return gameStateService.sendGameStateToClient(lobbyId, session);
+            }
+
+            if (message.getVersion() == null) {
+                log.warn("Received state acknowledgement without a version");
+                return Mono.empty();
+            }
+
+            log.debug("Session {} applied game state version {}", session.getId(), message.getVersion());
+            gameStateDeltaService.acknowledge(session, message.getVersion());
+            return Mono.empty();
+        } catch (Exception e) {
+            log.error("Error processing STATE_ACK message", e);
+            return Mono.error(e);
+        }
+    }
+}
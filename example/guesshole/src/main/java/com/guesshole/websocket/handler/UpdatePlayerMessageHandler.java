@@ -1,7 +1,5 @@
 package com.guesshole.websocket.handler;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.guesshole.websocket.messages.incoming.UpdatePlayerMessage;
 import com.guesshole.services.PlayerService;
 import org.slf4j.Logger;
@@ -14,15 +12,13 @@ import java.util.UUID; /**
  * Handler for UPDATE_PLAYER messages
  */
 @Component
-public class UpdatePlayerMessageHandler implements MessageHandler {
+public class UpdatePlayerMessageHandler implements MessageHandler<UpdatePlayerMessage> {
     private static final Logger log = LoggerFactory.getLogger(UpdatePlayerMessageHandler.class);
     private static final String MESSAGE_TYPE = "UPDATE_PLAYER";
 
-    private final ObjectMapper objectMapper;
     private final PlayerService playerService;
 
-    public UpdatePlayerMessageHandler(ObjectMapper objectMapper, PlayerService playerService) {
-        this.objectMapper = objectMapper;
+    public UpdatePlayerMessageHandler(PlayerService playerService) {
         this.playerService = playerService;
     }
 
@@ -32,9 +28,13 @@ public class UpdatePlayerMessageHandler implements MessageHandler {
     }
 
     @Override
-    public Mono<Void> handle(JsonNode payload, WebSocketSession session, UUID lobbyId) {
+    public Class<UpdatePlayerMessage> getMessageClass() {
+        return UpdatePlayerMessage.class;
+    }
+
+    @Override
+    public Mono<Void> handle(UpdatePlayerMessage message, WebSocketSession session, UUID lobbyId) {
         try {
-            UpdatePlayerMessage message = objectMapper.treeToValue(payload, UpdatePlayerMessage.class);
             log.info("Processing player update: playerId={}, name={}, avatar={}, session={}",
                     message.getPlayerId(), message.getName(), message.getAvatar(), session.getId());
 
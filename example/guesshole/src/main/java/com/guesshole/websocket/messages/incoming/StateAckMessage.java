@@ -0,0 +1,32 @@
+package com.guesshole.websocket.messages.incoming;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Sent by a client after applying a game state or delta, or to ask for a full game state
+ * when a delta doesn't follow on from the version it has
+ */
+public class StateAckMessage {
+
+    private final String type = "STATE_ACK";
+    private final Long version;
+    private final boolean resync;
+
+    @JsonCreator
+    public StateAckMessage(
+            @JsonProperty("version") Long version,
+            @JsonProperty("resync") boolean resync
+    ) {
+        this.version = version;
+        this.resync = resync;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Long getVersion() { return version; }
+
+    public boolean isResync() { return resync; }
+}
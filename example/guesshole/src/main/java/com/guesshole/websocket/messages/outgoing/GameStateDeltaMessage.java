@@ -0,0 +1,178 @@
+package com.guesshole.websocket.messages.outgoing;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.guesshole.entities.GameConfiguration;
+import com.guesshole.entities.Guess;
+import com.guesshole.entities.Round;
+import com.guesshole.websocket.messages.WebSocketMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The changes between two versions of a lobby's game state. A client that has applied
+ * {@code baseVersion} gets to {@code version} by overwriting the fields present here and
+ * updating the listed scores. Fields that didn't change are left out.
+ */
+@JsonPropertyOrder({ "type", "baseVersion", "version" })
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GameStateDeltaMessage implements WebSocketMessage {
+    private final String type = "GAME_STATE_DELTA";
+    private final long baseVersion;
+    private final long version;
+
+    private String state;
+    private UUID gameInstanceId;
+    private Round currentRound;
+    private UUID roundId;
+    private Integer roundOrder;
+    private Integer totalRounds;
+    private Boolean lastRound;
+    private GameConfiguration gameConfiguration;
+
+    // Scores that are new or changed, by player ID, and the players no longer on the scoreboard
+    private List<ScoreChange> scores;
+    private List<UUID> removedPlayerIds;
+
+    public GameStateDeltaMessage(long baseVersion, long version) {
+        this.baseVersion = baseVersion;
+        this.version = version;
+    }
+
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public UUID getGameInstanceId() {
+        return gameInstanceId;
+    }
+
+    public void setGameInstanceId(UUID gameInstanceId) {
+        this.gameInstanceId = gameInstanceId;
+    }
+
+    public Round getCurrentRound() {
+        return currentRound;
+    }
+
+    public void setCurrentRound(Round currentRound) {
+        this.currentRound = currentRound;
+    }
+
+    public UUID getRoundId() {
+        return roundId;
+    }
+
+    public void setRoundId(UUID roundId) {
+        this.roundId = roundId;
+    }
+
+    public Integer getRoundOrder() {
+        return roundOrder;
+    }
+
+    public void setRoundOrder(Integer roundOrder) {
+        this.roundOrder = roundOrder;
+    }
+
+    public Integer getTotalRounds() {
+        return totalRounds;
+    }
+
+    public void setTotalRounds(Integer totalRounds) {
+        this.totalRounds = totalRounds;
+    }
+
+    public Boolean getLastRound() {
+        return lastRound;
+    }
+
+    public void setLastRound(Boolean lastRound) {
+        this.lastRound = lastRound;
+    }
+
+    public GameConfiguration getGameConfiguration() {
+        return gameConfiguration;
+    }
+
+    public void setGameConfiguration(GameConfiguration gameConfiguration) {
+        this.gameConfiguration = gameConfiguration;
+    }
+
+    public List<ScoreChange> getScores() {
+        return scores;
+    }
+
+    public List<UUID> getRemovedPlayerIds() {
+        return removedPlayerIds;
+    }
+
+    public void addScore(ScoreChange score) {
+        if (scores == null) {
+            scores = new ArrayList<>();
+        }
+        scores.add(score);
+    }
+
+    public void addRemovedPlayerId(UUID playerId) {
+        if (removedPlayerIds == null) {
+            removedPlayerIds = new ArrayList<>();
+        }
+        removedPlayerIds.add(playerId);
+    }
+
+    /**
+     * Whether applying this delta changes nothing
+     */
+    public boolean isEmpty() {
+        return state == null && gameInstanceId == null && currentRound == null && roundId == null
+                && roundOrder == null && totalRounds == null && lastRound == null
+                && gameConfiguration == null && scores == null && removedPlayerIds == null;
+    }
+
+    /**
+     * A player's new score. Refers to the player by ID, the client already has the roster.
+     */
+    public static class ScoreChange {
+        private final UUID playerId;
+        private final Guess guess;
+        private final Integer totalScore;
+
+        public ScoreChange(UUID playerId, Guess guess, Integer totalScore) {
+            this.playerId = playerId;
+            this.guess = guess;
+            this.totalScore = totalScore;
+        }
+
+        public UUID getPlayerId() {
+            return playerId;
+        }
+
+        public Guess getGuess() {
+            return guess;
+        }
+
+        public Integer getTotalScore() {
+            return totalScore;
+        }
+    }
+}
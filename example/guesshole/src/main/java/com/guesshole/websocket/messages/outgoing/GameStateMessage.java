@@ -32,6 +32,9 @@
 
         private GameConfiguration gameConfiguration;
 
+        // Version of the lobby's game state, acknowledged by clients so later changes can be sent as deltas
+        private Long version;
+
         // Default constructor
         public GameStateMessage() {
         }
@@ -106,6 +109,14 @@
             return "GAME_STATE";
         }
 
+        public Long getVersion() {
+            return version;
+        }
+
+        public void setVersion(Long version) {
+            this.version = version;
+        }
+
         public GameConfiguration getGameConfiguration() {
             return gameConfiguration;
         }
@@ -0,0 +1,49 @@
+package com.guesshole.websocket.messages.outgoing;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.guesshole.websocket.messages.WebSocketMessage;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Message class for the status changes of several players in a lobby at once
+ */
+@JsonPropertyOrder({ "type" })
+public class PlayerStatusesChangeMessage implements WebSocketMessage {
+    private final String type = "PLAYER_STATUSES_CHANGE";
+    private final List<Change> changes;
+
+    public PlayerStatusesChangeMessage(List<Change> changes) {
+        this.changes = changes;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    /**
+     * One player's new status
+     */
+    public static class Change {
+        private final UUID playerId;
+        private final boolean active;
+
+        public Change(UUID playerId, boolean active) {
+            this.playerId = playerId;
+            this.active = active;
+        }
+
+        public UUID getPlayerId() {
+            return playerId;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+    }
+}
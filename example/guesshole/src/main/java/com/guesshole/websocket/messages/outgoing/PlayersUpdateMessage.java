@@ -2,12 +2,13 @@ package com.guesshole.websocket.messages.outgoing;
 
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.guesshole.entities.Player;
+import com.guesshole.websocket.messages.WebSocketMessage;
 
 /**
  * Message to notify clients of an updated player list
  */
 @JsonPropertyOrder({ "type" })
-public class PlayersUpdateMessage {
+public class PlayersUpdateMessage implements WebSocketMessage {
     private final String type = "PLAYERS_UPDATE";
     private final Iterable<Player> players;
 
@@ -15,6 +16,7 @@ public class PlayersUpdateMessage {
         this.players = players;
     }
 
+    @Override
     public String getType() {
         return type;
     }
@@ -0,0 +1,158 @@
+package com.guesshole.websocket.services;
+
+import com.guesshole.websocket.codec.MessageCodec;
+import com.guesshole.websocket.messages.outgoing.HeartbeatMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends heartbeats to every WebSocket session on this node from one timer instead of a
+ * scheduled task per connection. Sessions are spread over buckets and one bucket is visited
+ * per tick, so each session gets a heartbeat once per interval and the work is spread evenly.
+ * Every session in a bucket using the same codec shares one serialized heartbeat frame.
+ */
+@Service
+public class HeartbeatScheduler {
+    private static final Logger log = LoggerFactory.getLogger(HeartbeatScheduler.class);
+
+    private final HashedWheelTimer timerWheel;
+    private final WebSocketSessionService sessionHandler;
+    private final Timer roundTripTimer;
+
+    // Send time (System.nanoTime) of the unacknowledged heartbeat of each session
+    private final Map<String, Long> pendingHeartbeats = new ConcurrentHashMap<>();
+    private final List<Set<WebSocketSession>> buckets = new ArrayList<>();
+    private int cursor;
+
+    @Value("${app.websocket.heartbeat.interval-seconds:30}")
+    private long intervalSeconds;
+
+    @Value("${app.websocket.heartbeat.buckets:30}")
+    private int bucketCount;
+
+    public HeartbeatScheduler(
+            HashedWheelTimer timerWheel,
+            WebSocketSessionService sessionHandler,
+            MeterRegistry meterRegistry
+    ) {
+        this.timerWheel = timerWheel;
+        this.sessionHandler = sessionHandler;
+        this.roundTripTimer = Timer.builder("websocket.heartbeat.rtt")
+                .description("Time from sending a heartbeat to receiving its acknowledgement")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(ConcurrentHashMap.newKeySet());
+        }
+        scheduleNextTick();
+        log.info("Heartbeat scheduler started: interval={}s, buckets={}", intervalSeconds, bucketCount);
+    }
+
+    /**
+     * Start sending heartbeats to a session
+     */
+    public void register(WebSocketSession session) {
+        bucketFor(session).add(session);
+    }
+
+    /**
+     * Stop sending heartbeats to a session
+     */
+    public void unregister(WebSocketSession session) {
+        bucketFor(session).remove(session);
+        pendingHeartbeats.remove(session.getId());
+    }
+
+    /**
+     * Record a heartbeat acknowledgement from a session
+     *
+     * @return The round trip time of the acknowledged heartbeat, or null if none was outstanding
+     */
+    public Duration recordAck(WebSocketSession session) {
+        Long sentAt = pendingHeartbeats.remove(session.getId());
+        if (sentAt == null) {
+            return null;
+        }
+        Duration roundTrip = Duration.ofNanos(System.nanoTime() - sentAt);
+        roundTripTimer.record(roundTrip);
+        return roundTrip;
+    }
+
+    private Set<WebSocketSession> bucketFor(WebSocketSession session) {
+        return buckets.get(Math.floorMod(session.getId().hashCode(), bucketCount));
+    }
+
+    private void scheduleNextTick() {
+        long tickMillis = TimeUnit.SECONDS.toMillis(intervalSeconds) / bucketCount;
+        timerWheel.newTimeout(this::tick, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick(Timeout timeout) {
+        try {
+            Set<WebSocketSession> bucket = buckets.get(cursor);
+            cursor = (cursor + 1) % bucketCount;
+            if (!bucket.isEmpty()) {
+                sendHeartbeats(bucket);
+            }
+        } catch (Exception e) {
+            log.error("Error sending heartbeats", e);
+        } finally {
+            if (!timeout.timer().isStopped()) {
+                scheduleNextTick();
+            }
+        }
+    }
+
+    private void sendHeartbeats(Set<WebSocketSession> bucket) {
+        HeartbeatMessage heartbeat = new HeartbeatMessage();
+        Map<MessageCodec, SharedMessagePayload> payloads = new HashMap<>();
+        try {
+            long sentAt = System.nanoTime();
+            for (WebSocketSession session : bucket) {
+                SessionOutbound outbound = sessionHandler.getOutbound(session);
+                if (outbound == null || !session.isOpen()) {
+                    continue;
+                }
+                SharedMessagePayload payload = payloads.computeIfAbsent(sessionHandler.getCodec(session),
+                        codec -> encode(codec, heartbeat));
+                if (outbound.offer(payload)) {
+                    // Keep the oldest unacknowledged heartbeat so a slow client's RTT isn't understated
+                    pendingHeartbeats.putIfAbsent(session.getId(), sentAt);
+                }
+            }
+        } finally {
+            payloads.values().forEach(SharedMessagePayload::release);
+        }
+    }
+
+    private SharedMessagePayload encode(MessageCodec codec, HeartbeatMessage heartbeat) {
+        try {
+            return SharedMessagePayload.pooled(codec, heartbeat);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
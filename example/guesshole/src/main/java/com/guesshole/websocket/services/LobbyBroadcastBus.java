@@ -0,0 +1,54 @@
+package com.guesshole.websocket.services;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+/**
+ * Carries lobby broadcasts to every application node, so players in one lobby can be connected
+ * to different nodes. Each node only delivers to the sessions connected to it.
+ * <p>
+ * Selected with app.broadcast.bus: loopback (the default) for a single node, or postgres to
+ * relay through Postgres LISTEN/NOTIFY.
+ */
+public interface LobbyBroadcastBus {
+
+    /**
+     * Delivers a message to the sessions of some of a lobby's players on this node
+     */
+    @FunctionalInterface
+    interface PlayerDelivery {
+        Mono<Void> deliver(UUID lobbyId, Collection<UUID> playerIds, Object message);
+    }
+
+    /**
+     * Broadcast a message to a lobby's sessions on this node and every other node
+     */
+    Mono<Void> publish(UUID lobbyId, Object message);
+
+    /**
+     * Broadcast a message to a lobby's sessions on every other node, for callers that deliver
+     * to this node's sessions themselves
+     */
+    Mono<Void> publishToOtherNodes(UUID lobbyId, Object message);
+
+    /**
+     * Send a message to the sessions of some of a lobby's players on every other node, for callers
+     * that deliver to this node's sessions themselves
+     */
+    Mono<Void> publishToOtherNodes(UUID lobbyId, Collection<UUID> playerIds, Object message);
+
+    /**
+     * Set how messages are delivered to the sessions of a lobby on this node. Messages published
+     * on other nodes arrive as a {@link RelayedMessage}.
+     */
+    void setLocalDelivery(BiFunction<UUID, Object, Mono<Void>> localDelivery);
+
+    /**
+     * Set how messages for some of a lobby's players are delivered to their sessions on this node.
+     * Messages published on other nodes arrive as a {@link RelayedMessage}.
+     */
+    void setLocalPlayerDelivery(PlayerDelivery localPlayerDelivery);
+}
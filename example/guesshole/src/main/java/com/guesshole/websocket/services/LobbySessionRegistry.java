@@ -0,0 +1,233 @@
+package com.guesshole.websocket.services;
+
+import com.guesshole.websocket.codec.MessageCodec;
+import org.springframework.web.reactive.socket.WebSocketSession;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * The WebSocket sessions of every lobby on this node. Each lobby's sessions are held in an
+ * immutable snapshot, replaced with a compare-and-set on the lobby's map entry whenever a
+ * session joins, leaves or is identified as a player. Broadcasts read the current snapshot
+ * without locking or copying, and sends to particular players look them up by player ID.
+ * <p>
+ * A lobby's entry is removed with the same compare-and-set that removes its last session,
+ * so a session joining at the same time can't be lost with it.
+ */
+public class LobbySessionRegistry {
+
+    /**
+     * A registered session, replaced as a whole when its player becomes known
+     */
+    private static final class Member {
+        private final UUID lobbyId;
+        private final WebSocketSession session;
+        private final MessageCodec codec;
+        private final UUID playerId;
+
+        private Member(UUID lobbyId, WebSocketSession session, MessageCodec codec, UUID playerId) {
+            this.lobbyId = lobbyId;
+            this.session = session;
+            this.codec = codec;
+            this.playerId = playerId;
+        }
+
+        private Member withPlayerId(UUID newPlayerId) {
+            return new Member(lobbyId, session, codec, newPlayerId);
+        }
+    }
+
+    /**
+     * An immutable view of one lobby's sessions. The lists and maps are built once per change,
+     * so reading them never allocates.
+     */
+    public static final class LobbySessions {
+        private static final LobbySessions EMPTY = new LobbySessions(new Member[0]);
+
+        private final Member[] members;
+        private final List<WebSocketSession> sessions;
+        private final Map<UUID, List<WebSocketSession>> sessionsByPlayer;
+        private final Map<MessageCodec, List<WebSocketSession>> sessionsByCodec;
+
+        private LobbySessions(Member[] members) {
+            this.members = members;
+            WebSocketSession[] all = new WebSocketSession[members.length];
+            Map<UUID, List<WebSocketSession>> byPlayer = new HashMap<>();
+            Map<MessageCodec, List<WebSocketSession>> byCodec = new HashMap<>();
+            for (int i = 0; i < members.length; i++) {
+                Member member = members[i];
+                all[i] = member.session;
+                if (member.playerId != null) {
+                    byPlayer.computeIfAbsent(member.playerId, id -> new ArrayList<>(1)).add(member.session);
+                }
+                byCodec.computeIfAbsent(member.codec, codec -> new ArrayList<>()).add(member.session);
+            }
+            this.sessions = List.of(all);
+            this.sessionsByPlayer = freeze(byPlayer);
+            this.sessionsByCodec = freeze(byCodec);
+        }
+
+        /**
+         * Every session in the lobby
+         */
+        public List<WebSocketSession> getSessions() {
+            return sessions;
+        }
+
+        /**
+         * The sessions of one player in the lobby, usually one
+         */
+        public List<WebSocketSession> getPlayerSessions(UUID playerId) {
+            return sessionsByPlayer.getOrDefault(playerId, List.of());
+        }
+
+        /**
+         * The lobby's sessions grouped by the codec they use
+         */
+        public Map<MessageCodec, List<WebSocketSession>> getSessionsByCodec() {
+            return sessionsByCodec;
+        }
+
+        public int size() {
+            return members.length;
+        }
+
+        public boolean isEmpty() {
+            return members.length == 0;
+        }
+
+        private LobbySessions with(Member member) {
+            Member[] next = Arrays.copyOf(members, members.length + 1);
+            next[members.length] = member;
+            return new LobbySessions(next);
+        }
+
+        private LobbySessions without(String sessionId) {
+            int index = indexOf(sessionId);
+            if (index < 0) {
+                return this;
+            }
+            Member[] next = new Member[members.length - 1];
+            System.arraycopy(members, 0, next, 0, index);
+            System.arraycopy(members, index + 1, next, index, members.length - index - 1);
+            return new LobbySessions(next);
+        }
+
+        private LobbySessions replacing(Member member) {
+            int index = indexOf(member.session.getId());
+            if (index < 0) {
+                return this;
+            }
+            Member[] next = members.clone();
+            next[index] = member;
+            return new LobbySessions(next);
+        }
+
+        private int indexOf(String sessionId) {
+            for (int i = 0; i < members.length; i++) {
+                if (members[i].session.getId().equals(sessionId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static <K> Map<K, List<WebSocketSession>> freeze(Map<K, List<WebSocketSession>> grouped) {
+            Map<K, List<WebSocketSession>> frozen = new HashMap<>(grouped.size() * 2);
+            grouped.forEach((key, group) -> frozen.put(key, List.copyOf(group)));
+            return Collections.unmodifiableMap(frozen);
+        }
+    }
+
+    // Snapshot identity is the compare-and-set token, LobbySessions must not override equals
+    private final ConcurrentHashMap<UUID, LobbySessions> lobbies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Member> members = new ConcurrentHashMap<>();
+
+    /**
+     * Add a session to a lobby
+     */
+    public void add(UUID lobbyId, WebSocketSession session, MessageCodec codec) {
+        Member member = new Member(lobbyId, session, codec, null);
+        members.put(session.getId(), member);
+        update(lobbyId, current -> current.with(member));
+    }
+
+    /**
+     * Remove a session from its lobby
+     *
+     * @return Whether the session was registered
+     */
+    public boolean remove(WebSocketSession session) {
+        Member member = members.remove(session.getId());
+        if (member == null) {
+            return false;
+        }
+        update(member.lobbyId, current -> current.without(session.getId()));
+        return true;
+    }
+
+    /**
+     * Associate a player with a registered session
+     */
+    public void setPlayerId(WebSocketSession session, UUID playerId) {
+        Member member = members.computeIfPresent(session.getId(), (id, current) -> current.withPlayerId(playerId));
+        if (member != null) {
+            // A no-op if the session was removed in the meantime
+            update(member.lobbyId, current -> current.replacing(member));
+        }
+    }
+
+    /**
+     * Get the player associated with a session, or null if it isn't known yet
+     */
+    public UUID getPlayerId(WebSocketSession session) {
+        Member member = members.get(session.getId());
+        return member != null ? member.playerId : null;
+    }
+
+    /**
+     * Get the codec a session was registered with, or null if it isn't registered
+     */
+    public MessageCodec getCodec(WebSocketSession session) {
+        Member member = members.get(session.getId());
+        return member != null ? member.codec : null;
+    }
+
+    /**
+     * Get the current sessions of a lobby
+     */
+    public LobbySessions get(UUID lobbyId) {
+        LobbySessions sessions = lobbies.get(lobbyId);
+        return sessions != null ? sessions : LobbySessions.EMPTY;
+    }
+
+    /**
+     * Get the IDs of the lobbies with at least one session
+     */
+    public Set<UUID> getLobbyIds() {
+        return new HashSet<>(lobbies.keySet());
+    }
+
+    /**
+     * Apply a change to a lobby's snapshot, retrying against the latest snapshot until no other
+     * change got in first. Adding to an absent lobby and removing a lobby's last session are
+     * part of the same compare-and-set.
+     */
+    private void update(UUID lobbyId, UnaryOperator<LobbySessions> change) {
+        while (true) {
+            LobbySessions current = lobbies.get(lobbyId);
+            LobbySessions next = change.apply(current != null ? current : LobbySessions.EMPTY);
+            if (current == null) {
+                if (next.isEmpty() || lobbies.putIfAbsent(lobbyId, next) == null) {
+                    return;
+                }
+            } else if (next == current) {
+                return;
+            } else if (next.isEmpty() ? lobbies.remove(lobbyId, current) : lobbies.replace(lobbyId, current, next)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.guesshole.websocket.services;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+/**
+ * Broadcast bus for a single node: every lobby's sessions are connected here, so messages are
+ * handed straight to local delivery without being serialized.
+ */
+@Service
+@ConditionalOnProperty(name = "app.broadcast.bus", havingValue = "loopback", matchIfMissing = true)
+public class LoopbackLobbyBroadcastBus implements LobbyBroadcastBus {
+    private volatile BiFunction<UUID, Object, Mono<Void>> localDelivery = (lobbyId, message) -> Mono.empty();
+
+    @Override
+    public Mono<Void> publish(UUID lobbyId, Object message) {
+        return localDelivery.apply(lobbyId, message);
+    }
+
+    @Override
+    public Mono<Void> publishToOtherNodes(UUID lobbyId, Object message) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> publishToOtherNodes(UUID lobbyId, Collection<UUID> playerIds, Object message) {
+        return Mono.empty();
+    }
+
+    @Override
+    public void setLocalDelivery(BiFunction<UUID, Object, Mono<Void>> localDelivery) {
+        this.localDelivery = localDelivery;
+    }
+
+    @Override
+    public void setLocalPlayerDelivery(PlayerDelivery localPlayerDelivery) {
+        // Nothing arrives from other nodes
+    }
+}
@@ -1,14 +1,20 @@
 package com.guesshole.websocket.services;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guesshole.websocket.codec.MessageCodec;
 import com.guesshole.websocket.handler.MessageHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.socket.WebSocketMessage;
 import org.springframework.web.reactive.socket.WebSocketSession;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,48 +23,90 @@ import java.util.UUID;
 /**
  * Registry of message handlers.
  * Follows Open/Closed Principle by allowing new message types to be added without modifying existing code.
+ * <p>
+ * Incoming frames are read with a streaming parser straight from the frame's buffer. Clients send
+ * the type first, so only the type is read before the rest of the frame is bound directly to the
+ * handler's message class, without building a tree of the whole message first.
  */
 @Service
 public class MessageHandlerRegistry {
     private static final Logger log = LoggerFactory.getLogger(MessageHandlerRegistry.class);
+    private static final String TYPE_FIELD = "type";
 
-    private final ObjectMapper objectMapper;
-    private final Map<String, MessageHandler> handlers = new HashMap<>();
-
-    public MessageHandlerRegistry(ObjectMapper objectMapper, List<MessageHandler> messageHandlers) {
-        this.objectMapper = objectMapper;
+    private final Map<String, MessageHandler<?>> handlers;
 
+    public MessageHandlerRegistry(List<MessageHandler<?>> messageHandlers) {
         // Register all message handlers
-        for (MessageHandler handler : messageHandlers) {
-            handlers.put(handler.getMessageType(), handler);
-            log.info("Registered message handler for type: {}", handler.getMessageType());
+        Map<String, MessageHandler<?>> byType = new HashMap<>();
+        for (MessageHandler<?> handler : messageHandlers) {
+            byType.put(handler.getMessageType(), handler);
+            log.info("Registered message handler for type: {} ({})",
+                    handler.getMessageType(), handler.getMessageClass().getSimpleName());
         }
+        this.handlers = Map.copyOf(byType);
     }
 
     /**
-     * Handle an incoming WebSocket message
+     * Handle an incoming WebSocket frame, decoding it with the session's codec
      */
-    public Mono<Void> handleMessage(String payload, WebSocketSession session, UUID lobbyId) {
-        try {
-            // Parse the message to get its type
-            JsonNode rootNode = objectMapper.readTree(payload);
-            String messageType = rootNode.path("type").asText("");
+    public Mono<Void> handleMessage(WebSocketMessage frame, MessageCodec codec, WebSocketSession session, UUID lobbyId) {
+        ObjectMapper objectMapper = codec.getObjectMapper();
+        try (InputStream in = frame.getPayload().asInputStream();
+             JsonParser parser = objectMapper.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT || parser.nextToken() != JsonToken.FIELD_NAME) {
+                log.warn("Received message without a type");
+                return Mono.empty();
+            }
 
-            // Find the appropriate handler
-            MessageHandler handler = handlers.get(messageType);
-            if (handler != null) {
-                return handler.handle(rootNode, session, lobbyId)
-                        .onErrorResume(e -> {
-                            log.error("Error handling message of type {}", messageType, e);
-                            return Mono.empty();
-                        });
+            String messageType;
+            JsonParser body;
+            if (TYPE_FIELD.equals(parser.currentName())) {
+                // Bind the rest of the message straight from the stream, positioned after the type
+                parser.nextToken();
+                messageType = parser.getValueAsString("");
+                parser.nextToken();
+                body = parser;
             } else {
+                // The type isn't first, so the message has to be read in full to find it
+                JsonNode rootNode = objectMapper.readTree(parser);
+                messageType = rootNode.path(TYPE_FIELD).asText("");
+                body = objectMapper.treeAsTokens(rootNode);
+                body.nextToken();
+            }
+
+            // Find the appropriate handler
+            MessageHandler<?> handler = handlers.get(messageType);
+            if (handler == null) {
                 log.warn("Received unknown message type: {}", messageType);
                 return Mono.empty();
             }
+            log.debug("Processing {} message of type {}", codec, messageType);
+            return dispatch(handler, objectMapper, body, session, lobbyId);
         } catch (Exception e) {
-            log.error("Error parsing message payload", e);
+            log.error("Error dispatching message", e);
             return Mono.empty();
         }
     }
-}
\ No newline at end of file
+
+    private <T> Mono<Void> dispatch(MessageHandler<T> handler, ObjectMapper objectMapper, JsonParser body,
+                                    WebSocketSession session, UUID lobbyId) throws IOException {
+        T message = bind(handler.getMessageClass(), objectMapper, body);
+        return handler.handle(message, session, lobbyId)
+                .onErrorResume(e -> {
+                    log.error("Error handling message of type {}", handler.getMessageType(), e);
+                    return Mono.empty();
+                });
+    }
+
+    private static <T> T bind(Class<T> messageClass, ObjectMapper objectMapper, JsonParser body) throws IOException {
+        if (messageClass == Void.class) {
+            return null;
+        }
+        // Jackson reads a value that starts at the end of an object as null, so a message with
+        // nothing but its type is bound from an empty object instead
+        if (body.currentToken() == JsonToken.END_OBJECT) {
+            return objectMapper.treeToValue(objectMapper.createObjectNode(), messageClass);
+        }
+        return objectMapper.readValue(body, messageClass);
+    }
+}
@@ -0,0 +1,163 @@
+package com.guesshole.websocket.services;
+
+import io.netty.util.Timeout;
+import org.springframework.web.reactive.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * The connection state of a player on this node, kept with the sessions in
+ * {@link WebSocketSessionService}. Each state has at most one pending timeout on the timer
+ * wheel: the heartbeat check while connected, the end of the reconnection window while
+ * disconnected. Transitions are synchronized on the connection, so a reconnect can't
+ * interleave with the expiry of the disconnect before it.
+ */
+public class PlayerConnection {
+
+    /**
+     * Represents the connection state of a player
+     */
+    public enum State {
+        CONNECTED,      // Player has an active websocket connection
+        DISCONNECTED,   // Player's websocket disconnected but within reconnection window
+        INACTIVE        // Player disconnected and exceeded reconnection window, but still in lobby
+    }
+
+    private final UUID playerId;
+    private volatile UUID lobbyId;
+    private volatile State state;
+    private volatile Instant lastStateChange;
+    private volatile WebSocketSession session;
+    private volatile long lastHeartbeatNanos;
+    private volatile Duration lastRoundTrip;
+    private Timeout pendingTimeout;
+
+    PlayerConnection(UUID playerId) {
+        this.playerId = playerId;
+    }
+
+    /**
+     * Mark the player connected through a session, cancelling whatever the previous state was waiting for
+     *
+     * @param heartbeatCheck Arms the first check that the session is still acknowledging heartbeats
+     */
+    public synchronized void connect(UUID newLobbyId, WebSocketSession newSession,
+                                     Function<PlayerConnection, Timeout> heartbeatCheck) {
+        lobbyId = newLobbyId;
+        session = newSession;
+        lastHeartbeatNanos = System.nanoTime();
+        transition(State.CONNECTED);
+        pendingTimeout = heartbeatCheck.apply(this);
+    }
+
+    /**
+     * Mark the player disconnected, unless they have already reconnected through another session
+     *
+     * @param expiry Arms the end of the reconnection window, called only if the player was disconnected
+     * @return Whether the player was disconnected
+     */
+    public synchronized boolean disconnect(WebSocketSession closed, Function<PlayerConnection, Timeout> expiry) {
+        if (state != State.CONNECTED || session != closed) {
+            return false;
+        }
+        transition(State.DISCONNECTED);
+        pendingTimeout = expiry.apply(this);
+        return true;
+    }
+
+    /**
+     * Mark the player inactive if the given timeout is still the end of their reconnection window
+     *
+     * @return Whether the player became inactive
+     */
+    public synchronized boolean expire(Timeout expiry) {
+        if (state != State.DISCONNECTED || pendingTimeout != expiry) {
+            return false;
+        }
+        transition(State.INACTIVE);
+        return true;
+    }
+
+    /**
+     * Run a heartbeat check that has come due. If the session has acknowledged a heartbeat since
+     * the check was armed it is re-armed for the rest of the timeout, and if the check has been
+     * replaced by a reconnect or disconnect nothing happens.
+     *
+     * @param rearm Arms the next check after the given delay
+     * @return Whether the session has gone the whole timeout without acknowledging a heartbeat
+     */
+    public synchronized boolean heartbeatCheckDue(Timeout check, Duration timeout, Function<Duration, Timeout> rearm) {
+        if (state != State.CONNECTED || pendingTimeout != check) {
+            return false;
+        }
+        Duration remaining = timeout.minus(getTimeSinceHeartbeat());
+        if (remaining.isNegative() || remaining.isZero()) {
+            return true;
+        }
+        pendingTimeout = rearm.apply(remaining);
+        return false;
+    }
+
+    private void setPendingTimeout(Timeout timeout) {
+        if (pendingTimeout != null && pendingTimeout != timeout) {
+            pendingTimeout.cancel();
+        }
+        pendingTimeout = timeout;
+    }
+
+    /**
+     * Cancel the pending timeout, e.g. when the player stops being tracked here
+     */
+    public synchronized void cancelPendingTimeout() {
+        setPendingTimeout(null);
+    }
+
+    /**
+     * Record a heartbeat acknowledgement
+     *
+     * @param roundTrip The heartbeat's round trip time, or null if it isn't known
+     */
+    public void recordHeartbeat(Duration roundTrip) {
+        lastHeartbeatNanos = System.nanoTime();
+        if (roundTrip != null) {
+            lastRoundTrip = roundTrip;
+        }
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    public UUID getLobbyId() {
+        return lobbyId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    public Duration getTimeSinceStateChange() {
+        return Duration.between(lastStateChange, Instant.now());
+    }
+
+    public Duration getTimeSinceHeartbeat() {
+        return Duration.ofNanos(System.nanoTime() - lastHeartbeatNanos);
+    }
+
+    public Duration getLastRoundTrip() {
+        return lastRoundTrip;
+    }
+
+    private void transition(State newState) {
+        state = newState;
+        lastStateChange = Instant.now();
+        setPendingTimeout(null);
+    }
+}
@@ -0,0 +1,261 @@
+package com.guesshole.websocket.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.postgresql.api.Notification;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+/**
+ * Broadcast bus that relays messages between nodes through Postgres LISTEN/NOTIFY. Every node
+ * listens on one channel over a dedicated connection outside the pool, and skips the
+ * notifications it sent itself.
+ * <p>
+ * A NOTIFY payload has to stay under 8000 bytes, so larger messages are written to the
+ * lobby_broadcast table and only their ID is sent; receiving nodes fetch them from there.
+ * Messages for some of a lobby's players carry their IDs, and each node only delivers them to
+ * those players' sessions. Messages published while a node's listening connection is down are
+ * not replayed, clients catch up with the next game state they are sent.
+ */
+@Service
+@ConditionalOnProperty(name = "app.broadcast.bus", havingValue = "postgres")
+public class PostgresLobbyBroadcastBus implements LobbyBroadcastBus {
+    private static final Logger log = LoggerFactory.getLogger(PostgresLobbyBroadcastBus.class);
+    private static final String CHANNEL = "lobby_broadcast";
+    // Leaves room for the envelope under the 8000 byte NOTIFY limit
+    private static final int MAX_INLINE_BYTES = 7000;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final DatabaseClient databaseClient;
+    private final ObjectMapper objectMapper;
+    private final ConnectionFactory listenerConnectionFactory;
+    private final Counter publishedInline;
+    private final Counter publishedByReference;
+    private final Counter received;
+
+    private volatile BiFunction<UUID, Object, Mono<Void>> localDelivery = (lobbyId, message) -> Mono.empty();
+    private volatile PlayerDelivery localPlayerDelivery = (lobbyId, playerIds, message) -> Mono.empty();
+    private volatile Disposable listener;
+
+    @Value("${app.broadcast.postgres.retention-seconds:60}")
+    private long retentionSeconds;
+
+    public PostgresLobbyBroadcastBus(DatabaseClient databaseClient,
+                                     ObjectMapper objectMapper,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${spring.r2dbc.url}") String url,
+                                     @Value("${spring.r2dbc.username}") String username,
+                                     @Value("${spring.r2dbc.password}") String password) {
+        this.databaseClient = databaseClient;
+        this.objectMapper = objectMapper;
+        // LISTEN is per connection, so the listener gets its own rather than holding one from the pool
+        this.listenerConnectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.DRIVER, "postgresql")
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build());
+        this.publishedInline = Counter.builder("lobby.broadcast.published")
+                .description("Lobby broadcasts sent to other nodes")
+                .tag("mode", "inline")
+                .register(meterRegistry);
+        this.publishedByReference = Counter.builder("lobby.broadcast.published")
+                .description("Lobby broadcasts sent to other nodes")
+                .tag("mode", "reference")
+                .register(meterRegistry);
+        this.received = Counter.builder("lobby.broadcast.received")
+                .description("Lobby broadcasts received from other nodes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start listening once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        listener = listen()
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Lost the {} listener, reconnecting: {}",
+                                CHANNEL, signal.failure().getMessage())))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Disposable current = listener;
+        if (current != null) {
+            current.dispose();
+        }
+    }
+
+    @Override
+    public Mono<Void> publish(UUID lobbyId, Object message) {
+        return Mono.when(localDelivery.apply(lobbyId, message), publishToOtherNodes(lobbyId, message));
+    }
+
+    @Override
+    public Mono<Void> publishToOtherNodes(UUID lobbyId, Object message) {
+        return publishToOtherNodes(lobbyId, null, message);
+    }
+
+    @Override
+    public Mono<Void> publishToOtherNodes(UUID lobbyId, Collection<UUID> playerIds, Object message) {
+        return Mono.fromCallable(() -> {
+                    ObjectNode envelope = objectMapper.createObjectNode()
+                            .put("node", nodeId)
+                            .put("lobby", lobbyId.toString());
+                    if (playerIds != null) {
+                        ArrayNode players = envelope.putArray("players");
+                        playerIds.forEach(playerId -> players.add(playerId.toString()));
+                    }
+                    envelope.set("message", objectMapper.valueToTree(message));
+                    return envelope;
+                })
+                .flatMap(envelope -> {
+                    String payload = envelope.toString();
+                    if (payload.getBytes(StandardCharsets.UTF_8).length <= MAX_INLINE_BYTES) {
+                        publishedInline.increment();
+                        return notifyNodes(payload);
+                    }
+                    publishedByReference.increment();
+                    return databaseClient.sql("INSERT INTO lobby_broadcast (lobby_id, payload) VALUES (:lobbyId, :payload) RETURNING id")
+                            .bind("lobbyId", lobbyId)
+                            .bind("payload", envelope.get("message").toString())
+                            .map(row -> row.get("id", Long.class))
+                            .one()
+                            .flatMap(id -> {
+                                envelope.remove("message");
+                                envelope.put("ref", id);
+                                return notifyNodes(envelope.toString());
+                            });
+                })
+                .onErrorResume(e -> {
+                    log.error("Error publishing {} to other nodes for lobby {}: {}",
+                            message.getClass().getSimpleName(), lobbyId, e.getMessage(), e);
+                    return Mono.empty();
+                });
+    }
+
+    @Override
+    public void setLocalDelivery(BiFunction<UUID, Object, Mono<Void>> localDelivery) {
+        this.localDelivery = localDelivery;
+    }
+
+    @Override
+    public void setLocalPlayerDelivery(PlayerDelivery localPlayerDelivery) {
+        this.localPlayerDelivery = localPlayerDelivery;
+    }
+
+    /**
+     * Scheduled task to delete broadcasts sent by reference once every node has had time to fetch them
+     */
+    @Scheduled(fixedRate = 60000) // Run every minute
+    public void pruneBroadcasts() {
+        databaseClient.sql("DELETE FROM lobby_broadcast WHERE created_at < :cutoff")
+                .bind("cutoff", OffsetDateTime.now().minusSeconds(retentionSeconds))
+                .fetch()
+                .rowsUpdated()
+                .subscribe(
+                        deleted -> {
+                            if (deleted > 0) {
+                                log.debug("Pruned {} lobby broadcasts", deleted);
+                            }
+                        },
+                        error -> log.error("Error pruning lobby broadcasts: {}", error.getMessage(), error));
+    }
+
+    private Mono<Void> notifyNodes(String payload) {
+        return databaseClient.sql("SELECT pg_notify(:channel, :payload)")
+                .bind("channel", CHANNEL)
+                .bind("payload", payload)
+                .then();
+    }
+
+    private Flux<Void> listen() {
+        return Flux.usingWhen(
+                Mono.from(listenerConnectionFactory.create()).cast(PostgresqlConnection.class),
+                connection -> connection.createStatement("LISTEN " + CHANNEL)
+                        .execute()
+                        .flatMap(PostgresqlResult::getRowsUpdated)
+                        .doOnComplete(() -> log.info("Node {} listening for lobby broadcasts", nodeId))
+                        .thenMany(connection.getNotifications())
+                        // In order, so a lobby's messages reach its sessions in the order they were sent
+                        .concatMap(this::receive)
+                        // The notifications only end when the connection does
+                        .concatWith(Mono.error(new IllegalStateException("Listening connection closed"))),
+                PostgresqlConnection::close);
+    }
+
+    private Mono<Void> receive(Notification notification) {
+        return Mono.fromCallable(() -> objectMapper.readTree(notification.getParameter()))
+                .filter(envelope -> !nodeId.equals(envelope.path("node").textValue()))
+                .flatMap(envelope -> {
+                    UUID lobbyId = UUID.fromString(envelope.path("lobby").textValue());
+                    Mono<JsonNode> message = envelope.has("message") ? Mono.just(envelope.get("message"))
+                            : fetch(envelope.path("ref").longValue());
+                    return message.flatMap(tree -> {
+                        received.increment();
+                        if (envelope.has("players")) {
+                            return localPlayerDelivery.deliver(lobbyId, playerIds(envelope), new RelayedMessage(tree));
+                        }
+                        return localDelivery.apply(lobbyId, new RelayedMessage(tree));
+                    });
+                })
+                .onErrorResume(e -> {
+                    log.error("Error delivering lobby broadcast {}: {}", notification.getParameter(), e.getMessage(), e);
+                    return Mono.empty();
+                });
+    }
+
+    private static List<UUID> playerIds(JsonNode envelope) {
+        List<UUID> playerIds = new ArrayList<>();
+        envelope.path("players").forEach(playerId -> playerIds.add(UUID.fromString(playerId.textValue())));
+        return playerIds;
+    }
+
+    private Mono<JsonNode> fetch(long id) {
+        return databaseClient.sql("SELECT payload FROM lobby_broadcast WHERE id = :id")
+                .bind("id", id)
+                .map(row -> row.get("payload", String.class))
+                .one()
+                .map(payload -> {
+                    try {
+                        return objectMapper.readTree(payload);
+                    } catch (JsonProcessingException e) {
+                        throw new IllegalStateException("Unreadable lobby broadcast " + id, e);
+                    }
+                })
+                .switchIfEmpty(Mono.fromRunnable(() -> log.warn("Lobby broadcast {} was pruned before it was fetched", id)));
+    }
+}
@@ -0,0 +1,32 @@
+package com.guesshole.websocket.services;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.guesshole.websocket.messages.WebSocketMessage;
+
+/**
+ * A message published on another node, kept as the JSON tree it arrived as. Serializes to
+ * exactly that tree with any codec, so it doesn't have to be bound back to its message class.
+ */
+public class RelayedMessage implements WebSocketMessage {
+    private final JsonNode tree;
+
+    public RelayedMessage(JsonNode tree) {
+        this.tree = tree;
+    }
+
+    @JsonValue
+    public JsonNode getTree() {
+        return tree;
+    }
+
+    @Override
+    public String getType() {
+        return tree.path("type").textValue();
+    }
+
+    @Override
+    public String toString() {
+        return "RelayedMessage{type=" + getType() + "}";
+    }
+}
@@ -0,0 +1,199 @@
+package com.guesshole.websocket.services;
+
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * The single outbound stream of a WebSocket session. Every message for the session, heartbeats
+ * included, is queued here and written by one {@code session.send} subscription, so the client
+ * can never have more than a bounded number of messages waiting for it.
+ * <p>
+ * State messages supersede each other: a queued PLAYERS_UPDATE or HEARTBEAT is replaced by a
+ * newer one of the same type instead of both being sent.
+ * <p>
+ * Game states are versioned, and the version a client was sent is what its next delta is based on,
+ * so they are never dropped. A full GAME_STATE replaces the game states and deltas queued before it,
+ * deltas are always sent in order.
+ */
+public class SessionOutbound {
+    private static final Logger log = LoggerFactory.getLogger(SessionOutbound.class);
+
+    // Message types where only the latest one queued matters to the client
+    private static final Set<String> COALESCED_TYPES = Set.of("PLAYERS_UPDATE", "HEARTBEAT");
+
+    // Message types that make up a client's chain of game state versions
+    private static final Set<String> VERSIONED_TYPES = Set.of("GAME_STATE", "GAME_STATE_DELTA");
+
+    /**
+     * What to do with a message for a client whose queue is full
+     */
+    public enum SlowConsumerPolicy {
+        /** Discard the new message, unless it is a game state */
+        DROP,
+        /** Discard the queued messages that aren't state, keeping the latest state for the client */
+        COALESCE,
+        /** Close the session, the client reconnects and gets the current state */
+        DISCONNECT
+    }
+
+    private final WebSocketSession session;
+    private final int maxQueueSize;
+    private final SlowConsumerPolicy policy;
+    private final Counter coalesced;
+    private final Counter dropped;
+    private final Counter disconnects;
+
+    private final ArrayDeque<SharedMessagePayload> queue = new ArrayDeque<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile FluxSink<WebSocketMessage> sink;
+    private boolean closed;
+
+    SessionOutbound(WebSocketSession session, int maxQueueSize, SlowConsumerPolicy policy,
+                    Counter coalesced, Counter dropped, Counter disconnects) {
+        this.session = session;
+        this.maxQueueSize = maxQueueSize;
+        this.policy = policy;
+        this.coalesced = coalesced;
+        this.dropped = dropped;
+        this.disconnects = disconnects;
+    }
+
+    /**
+     * The messages to write to the session. Only one subscriber is supported.
+     */
+    public Flux<WebSocketMessage> messages() {
+        return Flux.create(emitter -> {
+            sink = emitter;
+            emitter.onRequest(n -> drain());
+            emitter.onDispose(this::close);
+        });
+    }
+
+    /**
+     * Queue a message for the session. The queue takes its own reference to the payload,
+     * so the caller keeps ownership of the one it passed in.
+     *
+     * @return true if the message was queued
+     */
+    public boolean offer(SharedMessagePayload payload) {
+        String type = payload.getMessageType();
+        boolean disconnect = false;
+
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+
+            if ("GAME_STATE".equals(type)) {
+                removeQueued(queuedType -> queuedType != null && VERSIONED_TYPES.contains(queuedType));
+            } else if (type != null && COALESCED_TYPES.contains(type)) {
+                removeQueued(type::equals);
+            }
+
+            if (queue.size() >= maxQueueSize) {
+                if (policy == SlowConsumerPolicy.COALESCE) {
+                    removeQueued(queuedType -> queuedType == null
+                            || !(COALESCED_TYPES.contains(queuedType) || VERSIONED_TYPES.contains(queuedType)));
+                }
+                if (policy == SlowConsumerPolicy.DISCONNECT) {
+                    disconnect = true;
+                } else if (queue.size() >= maxQueueSize && (type == null || !VERSIONED_TYPES.contains(type))) {
+                    // DROP, or a queue still full of state messages of other types after coalescing.
+                    // Game states go over the limit, the delta service has already counted them as sent.
+                    dropped.increment();
+                    log.debug("Outbound queue full for session {}, dropped {}", session.getId(), type);
+                    return false;
+                }
+            }
+
+            if (!disconnect) {
+                queue.addLast(payload.retain());
+            }
+        }
+
+        if (disconnect) {
+            disconnects.increment();
+            log.warn("Closing session {}, outbound queue reached {} messages", session.getId(), maxQueueSize);
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Client is not keeping up"))
+                    .subscribe(null, e -> log.error("Error closing slow session {}", session.getId(), e));
+            close();
+            return false;
+        }
+
+        drain();
+        return true;
+    }
+
+    /**
+     * Number of messages waiting to be written
+     */
+    public synchronized int depth() {
+        return queue.size();
+    }
+
+    /**
+     * Release everything still queued and complete the stream
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.forEach(SharedMessagePayload::release);
+            queue.clear();
+        }
+        FluxSink<WebSocketMessage> current = sink;
+        if (current != null) {
+            current.complete();
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            FluxSink<WebSocketMessage> current = sink;
+            while (current != null && current.requestedFromDownstream() > 0) {
+                SharedMessagePayload next;
+                synchronized (this) {
+                    next = queue.pollFirst();
+                }
+                if (next == null) {
+                    break;
+                }
+                try {
+                    current.next(next.toMessage(session));
+                } finally {
+                    next.release();
+                }
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+
+    // Must hold the lock
+    private void removeQueued(Predicate<String> typeMatches) {
+        Iterator<SharedMessagePayload> it = queue.iterator();
+        while (it.hasNext()) {
+            SharedMessagePayload queued = it.next();
+            if (typeMatches.test(queued.getMessageType())) {
+                it.remove();
+                queued.release();
+                coalesced.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.guesshole.websocket.services;
+
+import com.guesshole.websocket.codec.MessageCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An outgoing message that has been serialized once with one codec and can be sent to any number
+ * of sessions using that codec.
+ * On Netty every session gets a retained duplicate of the same buffer: the bytes are shared, only
+ * the read position is per session, and Netty releases each duplicate once it has been written.
+ */
+public final class SharedMessagePayload {
+    private final ByteBuf buffer;
+    private final boolean pooled;
+    private final String messageType;
+    private final MessageCodec codec;
+    private volatile byte[] bytes;
+
+    private SharedMessagePayload(ByteBuf buffer, boolean pooled, String messageType, MessageCodec codec) {
+        this.buffer = buffer;
+        this.pooled = pooled;
+        this.messageType = messageType;
+        this.codec = codec;
+    }
+
+    /**
+     * Serialize a message into a pooled buffer for a single fan-out.
+     * The caller must call {@link #release()} once every send has completed.
+     */
+    public static SharedMessagePayload pooled(MessageCodec codec, Object message) throws IOException {
+        ByteBuf buffer = ByteBufAllocator.DEFAULT.buffer();
+        try (OutputStream out = new ByteBufOutputStream(buffer)) {
+            codec.getObjectMapper().writeValue(out, message);
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+        return new SharedMessagePayload(buffer, true, typeOf(message), codec);
+    }
+
+    /**
+     * Serialize a message onto the heap so it can be kept and sent again later.
+     * A reusable payload is left to the garbage collector and never needs releasing.
+     */
+    public static SharedMessagePayload reusable(MessageCodec codec, Object message) throws IOException {
+        byte[] encoded = codec.getObjectMapper().writeValueAsBytes(message);
+        return new SharedMessagePayload(Unpooled.wrappedBuffer(encoded), false, typeOf(message), codec);
+    }
+
+    /**
+     * Take a reference to this payload that stays valid after the original is released,
+     * e.g. for a message waiting in a session's outbound queue. It must be released itself.
+     */
+    public SharedMessagePayload retain() {
+        return new SharedMessagePayload(buffer.retainedDuplicate(), true, messageType, codec);
+    }
+
+    /**
+     * Create a message for a session that shares this payload's bytes.
+     * The session must be using the codec the payload was serialized with.
+     */
+    public WebSocketMessage toMessage(WebSocketSession session) {
+        DataBufferFactory bufferFactory = session.bufferFactory();
+        if (bufferFactory instanceof NettyDataBufferFactory nettyBufferFactory) {
+            return new WebSocketMessage(codec.getFrameType(), nettyBufferFactory.wrap(buffer.retainedDuplicate()));
+        }
+        // Other servers can't share a Netty buffer, so they get the bytes, copied out at most once
+        return new WebSocketMessage(codec.getFrameType(), bufferFactory.wrap(getBytes()));
+    }
+
+    /**
+     * The message's type, or null if it doesn't declare one
+     */
+    public String getMessageType() {
+        return messageType;
+    }
+
+    public MessageCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Size of the serialized message in bytes
+     */
+    public int size() {
+        return buffer.readableBytes();
+    }
+
+    /**
+     * Release a pooled payload. Sessions that already took a duplicate keep it until it is written.
+     */
+    public void release() {
+        if (pooled) {
+            buffer.release();
+        }
+    }
+
+    private static String typeOf(Object message) {
+        return message instanceof com.guesshole.websocket.messages.WebSocketMessage typed ? typed.getType() : null;
+    }
+
+    private byte[] getBytes() {
+        byte[] copy = bytes;
+        if (copy == null) {
+            copy = ByteBufUtil.getBytes(buffer);
+            bytes = copy;
+        }
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return codec.isBinary() ? codec + " payload of " + size() + " bytes" : buffer.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -1,7 +1,13 @@
 package com.guesshole.websocket.services;
 
+import com.guesshole.websocket.codec.MessageCodec;
+import com.guesshole.websocket.codec.MessageCodecRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.socket.WebSocketSession;
 
@@ -16,18 +22,57 @@ import java.util.concurrent.ConcurrentHashMap;
 public class WebSocketSessionService {
     private static final Logger log = LoggerFactory.getLogger(WebSocketSessionService.class);
 
-    // Store active sessions by lobby ID
-    private final Map<UUID, Map<String, WebSocketSession>> lobbySessions = new ConcurrentHashMap<>();
-    // Map sessions to player IDs
-    private final Map<String, UUID> sessionPlayerIds = new ConcurrentHashMap<>();
+    // Active sessions by lobby, with the player and wire format of each
+    private final LobbySessionRegistry registry = new LobbySessionRegistry();
+    // Connection state of every player seen on this node, whether or not they are connected
+    private final Map<UUID, PlayerConnection> playerConnections = new ConcurrentHashMap<>();
+    // Outbound queue of each session
+    private final Map<String, SessionOutbound> sessionOutbounds = new ConcurrentHashMap<>();
+
+    private final MessageCodecRegistry codecRegistry;
+    private final Counter coalescedMessages;
+    private final Counter droppedMessages;
+    private final Counter slowConsumerDisconnects;
+
+    @Value("${app.websocket.outbound.max-queue-size:64}")
+    private int maxQueueSize;
+
+    @Value("${app.websocket.outbound.slow-consumer-policy:COALESCE}")
+    private SessionOutbound.SlowConsumerPolicy slowConsumerPolicy;
+
+    public WebSocketSessionService(MeterRegistry meterRegistry, MessageCodecRegistry codecRegistry) {
+        this.codecRegistry = codecRegistry;
+        this.coalescedMessages = Counter.builder("websocket.outbound.coalesced")
+                .description("Queued outgoing messages replaced by a newer message of the same type or discarded to make room")
+                .register(meterRegistry);
+        this.droppedMessages = Counter.builder("websocket.outbound.dropped")
+                .description("Outgoing messages discarded because the session's queue was full")
+                .register(meterRegistry);
+        this.slowConsumerDisconnects = Counter.builder("websocket.outbound.disconnects")
+                .description("Sessions closed because their outbound queue filled up")
+                .register(meterRegistry);
+        // Aggregated over every session, a gauge per session would add a time series for each connection
+        Gauge.builder("websocket.outbound.queue.depth", this, WebSocketSessionService::totalQueueDepth)
+                .description("Outgoing messages waiting to be written, across every session")
+                .register(meterRegistry);
+        Gauge.builder("websocket.outbound.queue.depth.max", this, WebSocketSessionService::maxQueueDepth)
+                .description("Outgoing messages waiting to be written to the most backed up session")
+                .register(meterRegistry);
+    }
 
     /**
      * Register a new WebSocket session for a lobby
+     *
+     * @return The outbound queue every message for the session must go through
      */
-    public void registerSession(UUID lobbyId, WebSocketSession session) {
-        lobbySessions.computeIfAbsent(lobbyId, k -> new ConcurrentHashMap<>())
-                .put(session.getId(), session);
+    public SessionOutbound registerSession(UUID lobbyId, WebSocketSession session) {
+        SessionOutbound outbound = new SessionOutbound(session, maxQueueSize, slowConsumerPolicy,
+                coalescedMessages, droppedMessages, slowConsumerDisconnects);
+        sessionOutbounds.put(session.getId(), outbound);
+
+        registry.add(lobbyId, session, codecRegistry.forSession(session));
         log.debug("Added session {} to lobby {}", session.getId(), lobbyId);
+        return outbound;
     }
 
     /**
@@ -36,44 +81,116 @@ public class WebSocketSessionService {
     public void unregisterSession(UUID lobbyId, WebSocketSession session) {
         String sessionId = session.getId();
 
-        // Remove session from lobby sessions
-        Map<String, WebSocketSession> sessions = lobbySessions.get(lobbyId);
-        if (sessions != null) {
-            sessions.remove(sessionId);
-            if (sessions.isEmpty()) {
-                lobbySessions.remove(lobbyId);
-                log.debug("Removed empty lobby {}", lobbyId);
-            }
-        }
+        // Remove the session, its player and its codec. The lobby goes with its last session.
+        registry.remove(session);
 
-        // Remove player ID mapping
-        sessionPlayerIds.remove(sessionId);
+        // Release anything still waiting to be sent
+        SessionOutbound outbound = sessionOutbounds.remove(sessionId);
+        if (outbound != null) {
+            outbound.close();
+        }
         log.debug("Removed session {} from lobby {}", sessionId, lobbyId);
     }
 
     /**
-     * Get all active sessions for a lobby
+     * Get all active sessions for a lobby. The list is an immutable snapshot, it is not copied.
      */
     public List<WebSocketSession> getLobbySessions(UUID lobbyId) {
-        Map<String, WebSocketSession> sessions = lobbySessions.get(lobbyId);
-        if (sessions == null) {
-            return Collections.emptyList();
-        }
-        return new ArrayList<>(sessions.values());
+        return registry.get(lobbyId).getSessions();
+    }
+
+    /**
+     * Get the active sessions for a lobby grouped by the codec they use
+     */
+    public Map<MessageCodec, List<WebSocketSession>> getLobbySessionsByCodec(UUID lobbyId) {
+        return registry.get(lobbyId).getSessionsByCodec();
+    }
+
+    /**
+     * Get the sessions of one player in a lobby
+     */
+    public List<WebSocketSession> getPlayerSessions(UUID lobbyId, UUID playerId) {
+        return registry.get(lobbyId).getPlayerSessions(playerId);
+    }
+
+    /**
+     * Get the IDs of the lobbies with sessions on this node
+     */
+    public Set<UUID> getLobbyIds() {
+        return registry.getLobbyIds();
+    }
+
+    /**
+     * Get the outbound queue of a session, or null if the session isn't registered
+     */
+    public SessionOutbound getOutbound(WebSocketSession session) {
+        return sessionOutbounds.get(session.getId());
+    }
+
+    /**
+     * Get the wire format of a session, JSON if the session isn't registered
+     */
+    public MessageCodec getCodec(WebSocketSession session) {
+        MessageCodec codec = registry.getCodec(session);
+        return codec != null ? codec : codecRegistry.forSession(session);
     }
 
     /**
      * Get the player ID associated with a session
      */
     public UUID getPlayerIdForSession(WebSocketSession session) {
-        return sessionPlayerIds.get(session.getId());
+        return registry.getPlayerId(session);
     }
 
     /**
      * Associate a player ID with a session
      */
     public void setPlayerIdForSession(WebSocketSession session, UUID playerId) {
-        sessionPlayerIds.put(session.getId(), playerId);
+        registry.setPlayerId(session, playerId);
         log.debug("Mapped session {} to player {}", session.getId(), playerId);
     }
-}
\ No newline at end of file
+
+    /**
+     * Get a player's connection state, creating it the first time the player connects here
+     */
+    public PlayerConnection getOrCreatePlayerConnection(UUID playerId) {
+        return playerConnections.computeIfAbsent(playerId, PlayerConnection::new);
+    }
+
+    /**
+     * Get a player's connection state, or null if the player hasn't connected to this node
+     */
+    public PlayerConnection getPlayerConnection(UUID playerId) {
+        return playerConnections.get(playerId);
+    }
+
+    /**
+     * Get the connection state of every player seen on this node
+     */
+    public Collection<PlayerConnection> getPlayerConnections() {
+        return playerConnections.values();
+    }
+
+    /**
+     * Forget a player's connection state
+     */
+    public void removePlayerConnection(PlayerConnection connection) {
+        playerConnections.remove(connection.getPlayerId(), connection);
+    }
+
+    private double totalQueueDepth() {
+        long total = 0;
+        for (SessionOutbound outbound : sessionOutbounds.values()) {
+            total += outbound.depth();
+        }
+        return total;
+    }
+
+    private double maxQueueDepth() {
+        int max = 0;
+        for (SessionOutbound outbound : sessionOutbounds.values()) {
+            max = Math.max(max, outbound.depth());
+        }
+        return max;
+    }
+}
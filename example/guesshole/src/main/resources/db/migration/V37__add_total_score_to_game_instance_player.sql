@@ -0,0 +1,10 @@
+ALTER TABLE game_instance_player ADD COLUMN total_score INTEGER NOT NULL DEFAULT 0;
+
+-- Backfill running totals from existing guesses. Players who joined a game after it
+-- started have guesses but no association row yet, so those rows are created here.
+INSERT INTO game_instance_player (id, game_instance_id, player_id, total_score)
+SELECT gen_random_uuid(), game_instance_id, player_id, SUM(COALESCE(score, 0))
+FROM guesses
+GROUP BY game_instance_id, player_id
+ON CONFLICT (game_instance_id, player_id)
+    DO UPDATE SET total_score = EXCLUDED.total_score;
@@ -0,0 +1,7 @@
+-- The pending round-end or scoreboard-advance deadline of a lobby, so timers survive a restart
+ALTER TABLE game_state
+    ADD COLUMN deadline_type VARCHAR(32),
+    ADD COLUMN deadline_round_id UUID,
+    ADD COLUMN deadline_at TIMESTAMP WITH TIME ZONE;
+
+CREATE INDEX idx_game_state_deadline_at ON game_state (deadline_at) WHERE deadline_at IS NOT NULL;
@@ -0,0 +1,19 @@
+-- Score multipliers stored inline on the guess, so a guess is written and read as a single row.
+-- The score_multipliers table is kept as an optional projection for analytics.
+ALTER TABLE guesses
+    ADD COLUMN score_multipliers JSONB NOT NULL DEFAULT '[]'::jsonb;
+
+UPDATE guesses g
+SET score_multipliers = m.multipliers
+FROM (
+    SELECT guess_id,
+           jsonb_agg(jsonb_build_object(
+                   'multiplierType', multiplier_type,
+                   'multiplierValue', multiplier_value,
+                   'displayName', display_name,
+                   'tooltip', tooltip
+           ) ORDER BY created_at, id) AS multipliers
+    FROM score_multipliers
+    GROUP BY guess_id
+) m
+WHERE g.id = m.guess_id;
@@ -0,0 +1,9 @@
+-- Lobby broadcasts too large for a NOTIFY payload, fetched by ID by the nodes that are notified
+CREATE TABLE lobby_broadcast (
+    id BIGSERIAL PRIMARY KEY,
+    lobby_id UUID NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_lobby_broadcast_created_at ON lobby_broadcast (created_at);
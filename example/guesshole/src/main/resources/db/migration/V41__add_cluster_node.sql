@@ -0,0 +1,10 @@
+-- Application nodes and their last heartbeat. Lobbies are owned by the live nodes through a
+-- consistent hash of the lobby ID
+CREATE TABLE cluster_node (
+    node_id UUID PRIMARY KEY,
+    address VARCHAR(255) NOT NULL,
+    started_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    last_heartbeat TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX idx_cluster_node_last_heartbeat ON cluster_node (last_heartbeat);
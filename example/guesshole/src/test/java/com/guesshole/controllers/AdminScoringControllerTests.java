@@ -0,0 +1,56 @@
+package com.guesshole.controllers;
+
+import com.guesshole.config.GameRoundProperties;
+import com.guesshole.services.CityGuesserScoringRules;
+import com.guesshole.services.ScoringEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdminScoringControllerTests {
+
+	private final ScoringEngine scoringEngine = new ScoringEngine(List.of(new CityGuesserScoringRules()), new GameRoundProperties());
+	private final AdminScoringController controller = new AdminScoringController(scoringEngine);
+
+	@Test
+	void updateRecompilesTheRules() {
+		GameRoundProperties properties = new GameRoundProperties();
+		properties.setMaxDistanceThreshold(1010);
+
+		GameRoundProperties updated = controller.updateSettings(properties).block();
+
+		assertThat(updated.getMaxDistanceThreshold()).isEqualTo(1010.0);
+		assertThat(controller.getSettings().block().getMaxDistanceThreshold()).isEqualTo(1010.0);
+		assertThat(scoringEngine.rulesFor(null).baseScore(510, 60, 60)).isEqualTo(500);
+	}
+
+	@Test
+	void updateIsRejectedWhenTheMaximumDistanceIsNotAboveTheMinimum() {
+		GameRoundProperties properties = new GameRoundProperties();
+		properties.setMaxDistanceThreshold(10);
+		properties.setMinDistanceThreshold(10);
+
+		assertThatThrownBy(() -> controller.updateSettings(properties).block())
+				.isInstanceOf(ResponseStatusException.class)
+				.satisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+
+		// The settings in use are unchanged
+		assertThat(scoringEngine.getProperties().getMaxDistanceThreshold()).isEqualTo(5000.0);
+		assertThat(scoringEngine.rulesFor(null).baseScore(2505, 60, 60)).isEqualTo(500);
+	}
+
+	@Test
+	void updateDoesNotKeepTheCallersSettings() {
+		GameRoundProperties properties = new GameRoundProperties();
+		controller.updateSettings(properties).block();
+
+		properties.setMaxDistanceThreshold(1010);
+
+		assertThat(scoringEngine.getProperties().getMaxDistanceThreshold()).isEqualTo(5000.0);
+	}
+}
@@ -0,0 +1,173 @@
+package com.guesshole.geocoding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GadmIndexTests {
+
+	private static final AdminHierarchy COUNTRY = hierarchy("Country A", null);
+	private static final AdminHierarchy REGION = hierarchy("Country A", "Region A1");
+	private static final AdminHierarchy HOLED_COUNTRY = hierarchy("Country B", null);
+
+	/**
+	 * Country A covers (0,0)-(10,10) with Region A1 at (0,0)-(5,5) inside it.
+	 * Country B covers (20,0)-(30,10) except for a hole at (24,4)-(26,6).
+	 */
+	private static ArrayGadmPolygonSet countries() {
+		ArrayGadmPolygonSet.Builder builder = new ArrayGadmPolygonSet.Builder();
+		builder.beginFeature(COUNTRY).beginPolygon();
+		ring(builder, 0, 0, 10, 10);
+		builder.beginFeature(REGION).beginPolygon();
+		ring(builder, 0, 0, 5, 5);
+		builder.beginFeature(HOLED_COUNTRY).beginPolygon();
+		ring(builder, 20, 0, 30, 10);
+		ring(builder, 24, 4, 26, 6);
+		return builder.build();
+	}
+
+	@Test
+	void containsExcludesHoles() {
+		ArrayGadmPolygonSet polygons = countries();
+
+		assertThat(polygons.size()).isEqualTo(3);
+		assertThat(polygons.contains(2, 21, 1)).isTrue();
+		assertThat(polygons.contains(2, 25, 5)).isFalse();
+		assertThat(polygons.contains(2, 31, 5)).isFalse();
+		assertThat(polygons.minX(2)).isEqualTo(20.0);
+		assertThat(polygons.maxY(2)).isEqualTo(10.0);
+	}
+
+	@Test
+	void containsEnvelopeRejectsEnvelopesCrossingAnEdgeOrHole() {
+		ArrayGadmPolygonSet polygons = countries();
+
+		assertThat(polygons.containsEnvelope(2, 21, 1, 22, 2)).isTrue();
+		assertThat(polygons.containsEnvelope(2, 29, 1, 31, 2)).isFalse();
+		assertThat(polygons.containsEnvelope(2, 23, 3, 25, 5)).isFalse();
+		// Around the hole: every corner is inside but the hole isn't
+		assertThat(polygons.containsEnvelope(2, 23, 3, 27, 7)).isFalse();
+	}
+
+	@Test
+	void lookupReturnsTheMostSpecificBoundary() {
+		GadmIndex index = new GadmIndex(countries());
+
+		assertThat(index.lookup(2, 2)).isSameAs(REGION);
+		assertThat(index.lookup(7, 7)).isSameAs(COUNTRY);
+		assertThat(index.lookup(21, 1)).isSameAs(HOLED_COUNTRY);
+	}
+
+	@Test
+	void lookupOutsideEveryBoundaryReturnsNull() {
+		GadmIndex index = new GadmIndex(countries());
+
+		assertThat(index.lookup(15, 5)).isNull();
+		assertThat(index.lookup(25, 5)).isNull();
+		assertThat(index.lookup(-120, 45)).isNull();
+	}
+
+	@Test
+	void emptySetFindsNothing() {
+		GadmIndex index = new GadmIndex(new ArrayGadmPolygonSet.Builder().build());
+
+		assertThat(index.lookup(0, 0)).isNull();
+		CellLookup cell = index.lookupCell(0, 0, GeohashCell.of(0, 0, 7));
+		assertThat(cell.getHierarchy()).isNull();
+		assertThat(cell.coversCell()).isTrue();
+	}
+
+	@Test
+	void lookupCellReportsWhetherTheBoundaryCoversTheCell() {
+		GadmIndex index = new GadmIndex(countries());
+
+		CellLookup inside = index.lookupCell(2.5, 2.5, GeohashCell.of(2.5, 2.5, 7));
+		assertThat(inside.getHierarchy()).isSameAs(REGION);
+		assertThat(inside.coversCell()).isTrue();
+
+		// A precision 3 cell is about 1.4 degrees wide, so this one straddles the region's eastern edge
+		CellLookup onEdge = index.lookupCell(4.99, 2.5, GeohashCell.of(4.99, 2.5, 3));
+		assertThat(onEdge.getHierarchy()).isSameAs(REGION);
+		assertThat(onEdge.coversCell()).isFalse();
+	}
+
+	@Test
+	void lookupCellOutsideEveryBoundaryOnlyCoversCellsAwayFromBoundaries() {
+		GadmIndex index = new GadmIndex(countries());
+
+		CellLookup openSea = index.lookupCell(100, 50, GeohashCell.of(100, 50, 5));
+		assertThat(openSea.getHierarchy()).isNull();
+		assertThat(openSea.coversCell()).isTrue();
+
+		// Outside Country A but in a cell reaching over its northern edge
+		CellLookup nearCoast = index.lookupCell(5.5, 11, GeohashCell.of(5.5, 11, 3));
+		assertThat(nearCoast.getHierarchy()).isNull();
+		assertThat(nearCoast.coversCell()).isFalse();
+	}
+
+	@Test
+	void treeSearchMatchesABruteForceScan() {
+		// Enough polygons for a tree several levels deep
+		ArrayGadmPolygonSet.Builder builder = new ArrayGadmPolygonSet.Builder();
+		for (int x = 0; x < 60; x++) {
+			for (int y = 0; y < 60; y++) {
+				builder.beginFeature(hierarchy("Cell " + x + "," + y, null)).beginPolygon();
+				ring(builder, x, y, x + 0.9, y + 0.9);
+			}
+		}
+		ArrayGadmPolygonSet polygons = builder.build();
+		StrTree tree = new StrTree(polygons);
+		Random random = new Random(42);
+
+		for (int i = 0; i < 500; i++) {
+			double minX = random.nextDouble() * 64 - 2;
+			double minY = random.nextDouble() * 64 - 2;
+			double maxX = minX + random.nextDouble() * 3;
+			double maxY = minY + random.nextDouble() * 3;
+
+			List<Integer> found = new ArrayList<>();
+			tree.search(minX, minY, maxX, maxY, found::add);
+
+			List<Integer> expected = new ArrayList<>();
+			for (int polygon = 0; polygon < polygons.size(); polygon++) {
+				if (polygons.minX(polygon) <= maxX && polygons.maxX(polygon) >= minX
+						&& polygons.minY(polygon) <= maxY && polygons.maxY(polygon) >= minY) {
+					expected.add(polygon);
+				}
+			}
+			assertThat(found).containsExactlyInAnyOrderElementsOf(expected);
+		}
+	}
+
+	@Test
+	void builderRejectsPolygonsAndRingsOutOfOrder() {
+		assertThatThrownBy(() -> new ArrayGadmPolygonSet.Builder().beginPolygon())
+				.isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> new ArrayGadmPolygonSet.Builder().beginFeature(COUNTRY).beginRing())
+				.isInstanceOf(IllegalStateException.class);
+	}
+
+	static AdminHierarchy hierarchy(String country, String region) {
+		return AdminHierarchy.fromGadm(
+				new String[]{region == null ? null : "Region", null, null, null, null},
+				new String[]{country, region, null, null, null, null},
+				new String[]{country, region, null, null, null, null});
+	}
+
+	/**
+	 * Add a closed rectangular ring to the current polygon
+	 */
+	static void ring(ArrayGadmPolygonSet.Builder builder, double minX, double minY, double maxX, double maxY) {
+		builder.beginRing()
+				.addPoint(minX, minY)
+				.addPoint(maxX, minY)
+				.addPoint(maxX, maxY)
+				.addPoint(minX, maxY)
+				.addPoint(minX, minY);
+	}
+}
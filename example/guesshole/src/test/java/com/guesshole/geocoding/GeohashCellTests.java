@@ -0,0 +1,68 @@
+package com.guesshole.geocoding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class GeohashCellTests {
+
+	@Test
+	void producesStandardGeohashes() {
+		assertThat(GeohashCell.of(-5.6, 42.6, 5).getHash()).isEqualTo("ezs42");
+		assertThat(GeohashCell.of(10.40744, 57.64911, 11).getHash()).isEqualTo("u4pruydqqvj");
+		assertThat(GeohashCell.of(0, 0, 1).getHash()).isEqualTo("s");
+		assertThat(GeohashCell.of(-180, -90, 3).getHash()).isEqualTo("000");
+		assertThat(GeohashCell.of(180, 90, 3).getHash()).isEqualTo("zzz");
+	}
+
+	@Test
+	void cellContainsItsCoordinate() {
+		Random random = new Random(7);
+		for (int i = 0; i < 10_000; i++) {
+			double longitude = random.nextDouble() * 360 - 180;
+			double latitude = random.nextDouble() * 180 - 90;
+			GeohashCell cell = GeohashCell.of(longitude, latitude, 1 + random.nextInt(10));
+
+			assertThat(longitude).isBetween(cell.getMinLongitude(), cell.getMaxLongitude());
+			assertThat(latitude).isBetween(cell.getMinLatitude(), cell.getMaxLatitude());
+		}
+	}
+
+	@Test
+	void precisionSetsTheHashLengthAndCellSize() {
+		GeohashCell cell = GeohashCell.of(151.2093, -33.8688, 7);
+
+		assertThat(cell.getHash()).hasSize(7);
+		// 35 bits: 18 for longitude and 17 for latitude
+		assertThat(cell.getMaxLongitude() - cell.getMinLongitude()).isCloseTo(360 / Math.pow(2, 18), within(1e-12));
+		assertThat(cell.getMaxLatitude() - cell.getMinLatitude()).isCloseTo(180 / Math.pow(2, 17), within(1e-12));
+	}
+
+	@Test
+	void coarserCellsArePrefixesOfFinerOnes() {
+		String fine = GeohashCell.of(-73.9857, 40.7484, 9).getHash();
+		for (int precision = 1; precision < 9; precision++) {
+			assertThat(fine).startsWith(GeohashCell.of(-73.9857, 40.7484, precision).getHash());
+		}
+	}
+
+	@Test
+	void everyCoordinateInACellSharesItsHash() {
+		GeohashCell cell = GeohashCell.of(2.2945, 48.8584, 7);
+		double width = cell.getMaxLongitude() - cell.getMinLongitude();
+		double height = cell.getMaxLatitude() - cell.getMinLatitude();
+
+		for (double dx = 0; dx < 1; dx += 0.125) {
+			for (double dy = 0; dy < 1; dy += 0.125) {
+				GeohashCell other = GeohashCell.of(cell.getMinLongitude() + dx * width, cell.getMinLatitude() + dy * height, 7);
+				assertThat(other.getHash()).isEqualTo(cell.getHash());
+			}
+		}
+		// Cells are half-open, so the far edges belong to the neighbouring cells
+		assertThat(GeohashCell.of(cell.getMaxLongitude(), cell.getMinLatitude(), 7).getHash()).isNotEqualTo(cell.getHash());
+		assertThat(GeohashCell.of(cell.getMinLongitude(), cell.getMaxLatitude(), 7).getHash()).isNotEqualTo(cell.getHash());
+	}
+}
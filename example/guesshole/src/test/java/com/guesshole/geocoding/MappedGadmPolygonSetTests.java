@@ -0,0 +1,166 @@
+package com.guesshole.geocoding;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class MappedGadmPolygonSetTests {
+
+	private static final String SCHEMA_VERSION = "41";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void storeRoundTripsThePolygonSet() throws IOException {
+		ArrayGadmPolygonSet original = polygons();
+		Path store = tempDir.resolve("gadm.bin");
+		GadmStoreWriter.write(original, SCHEMA_VERSION, store);
+
+		MappedGadmPolygonSet mapped = MappedGadmPolygonSet.open(store, SCHEMA_VERSION);
+
+		assertThat(mapped.size()).isEqualTo(original.size());
+		for (int polygon = 0; polygon < original.size(); polygon++) {
+			assertThat(mapped.minX(polygon)).isCloseTo(original.minX(polygon), within(1e-7));
+			assertThat(mapped.minY(polygon)).isCloseTo(original.minY(polygon), within(1e-7));
+			assertThat(mapped.maxX(polygon)).isCloseTo(original.maxX(polygon), within(1e-7));
+			assertThat(mapped.maxY(polygon)).isCloseTo(original.maxY(polygon), within(1e-7));
+
+			AdminHierarchy expected = original.hierarchy(polygon);
+			AdminHierarchy actual = mapped.hierarchy(polygon);
+			assertThat(actual.getAdminLevel()).isEqualTo(expected.getAdminLevel());
+			for (int level = 0; level <= AdminHierarchy.MAX_LEVEL; level++) {
+				assertThat(actual.getType(level)).isEqualTo(expected.getType(level));
+				assertThat(actual.getName(level)).isEqualTo(expected.getName(level));
+				assertThat(actual.getGid(level)).isEqualTo(expected.getGid(level));
+			}
+		}
+
+		// Sample away from the edges, where fixed point rounding can't change the answer
+		for (double x = -0.75; x <= 12; x += 0.5) {
+			for (double y = -0.75; y <= 12; y += 0.5) {
+				for (int polygon = 0; polygon < original.size(); polygon++) {
+					assertThat(mapped.contains(polygon, x, y)).isEqualTo(original.contains(polygon, x, y));
+				}
+			}
+		}
+		assertThat(mapped.containsEnvelope(0, 6.1, 6.1, 6.2, 6.2)).isTrue();
+		assertThat(mapped.containsEnvelope(0, 2.5, 2.5, 3.5, 3.5)).isFalse();
+	}
+
+	@Test
+	void indexOverTheStoreGivesTheSameLookups() throws IOException {
+		ArrayGadmPolygonSet original = polygons();
+		Path store = tempDir.resolve("gadm.bin");
+		GadmStoreWriter.write(original, SCHEMA_VERSION, store);
+
+		GadmIndex fromArrays = new GadmIndex(original);
+		GadmIndex fromStore = new GadmIndex(MappedGadmPolygonSet.open(store, SCHEMA_VERSION));
+
+		for (double x = -0.75; x <= 12; x += 0.5) {
+			for (double y = -0.75; y <= 12; y += 0.5) {
+				AdminHierarchy expected = fromArrays.lookup(x, y);
+				AdminHierarchy actual = fromStore.lookup(x, y);
+				if (expected == null) {
+					assertThat(actual).isNull();
+				} else {
+					assertThat(actual.getGid(actual.getAdminLevel())).isEqualTo(expected.getGid(expected.getAdminLevel()));
+				}
+			}
+		}
+	}
+
+	@Test
+	void emptySetRoundTrips() throws IOException {
+		Path store = tempDir.resolve("gadm.bin");
+		GadmStoreWriter.write(new ArrayGadmPolygonSet.Builder().build(), SCHEMA_VERSION, store);
+
+		MappedGadmPolygonSet mapped = MappedGadmPolygonSet.open(store, SCHEMA_VERSION);
+
+		assertThat(mapped.size()).isEqualTo(0);
+		assertThat(new GadmIndex(mapped).lookup(0, 0)).isNull();
+	}
+
+	@Test
+	void rejectsStoreBuiltForAnotherSchemaVersion() throws IOException {
+		Path store = tempDir.resolve("gadm.bin");
+		GadmStoreWriter.write(polygons(), SCHEMA_VERSION, store);
+
+		assertThatThrownBy(() -> MappedGadmPolygonSet.open(store, "42"))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("schema version");
+	}
+
+	@Test
+	void rejectsCorruptBody() throws IOException {
+		Path store = tempDir.resolve("gadm.bin");
+		GadmStoreWriter.write(polygons(), SCHEMA_VERSION, store);
+
+		try (FileChannel channel = FileChannel.open(store, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer value = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			channel.read(value, GadmStoreFormat.HEADER_SIZE);
+			value.flip();
+			int polygonCount = value.getInt();
+			value.clear();
+			value.putInt(polygonCount + 1).flip();
+			channel.write(value, GadmStoreFormat.HEADER_SIZE);
+		}
+
+		assertThatThrownBy(() -> MappedGadmPolygonSet.open(store, SCHEMA_VERSION))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("checksum");
+	}
+
+	@Test
+	void rejectsTruncatedStore() throws IOException {
+		Path store = tempDir.resolve("gadm.bin");
+		GadmStoreWriter.write(polygons(), SCHEMA_VERSION, store);
+
+		try (FileChannel channel = FileChannel.open(store, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 4);
+		}
+
+		assertThatThrownBy(() -> MappedGadmPolygonSet.open(store, SCHEMA_VERSION))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("truncated");
+	}
+
+	@Test
+	void rejectsFilesThatAreNotAStore() throws IOException {
+		Path store = tempDir.resolve("not-a-store.bin");
+		Files.write(store, new byte[GadmStoreFormat.HEADER_SIZE * 2]);
+
+		assertThatThrownBy(() -> MappedGadmPolygonSet.open(store, SCHEMA_VERSION))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("is not a GADM store");
+	}
+
+	/**
+	 * A country with a hole, a region inside it sharing its strings, and a second country
+	 * made of two polygons
+	 */
+	private static ArrayGadmPolygonSet polygons() {
+		ArrayGadmPolygonSet.Builder builder = new ArrayGadmPolygonSet.Builder();
+		builder.beginFeature(GadmIndexTests.hierarchy("Country A", null)).beginPolygon();
+		GadmIndexTests.ring(builder, 0, 0, 10, 10);
+		GadmIndexTests.ring(builder, 2, 2, 4, 4);
+		builder.beginFeature(GadmIndexTests.hierarchy("Country A", "Region A1")).beginPolygon();
+		GadmIndexTests.ring(builder, 5, 5, 8, 8);
+		builder.beginFeature(GadmIndexTests.hierarchy("C\u00f4te d'Ivoire", null)).beginPolygon();
+		GadmIndexTests.ring(builder, 10.5, 0.1234567, 11.5, 1.7654321);
+		builder.beginPolygon();
+		GadmIndexTests.ring(builder, 10.5, 3, 11.5, 11.5);
+		return builder.build();
+	}
+}
@@ -0,0 +1,102 @@
+package com.guesshole.geocoding;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WkbPolygonReaderTests {
+
+	private static final int WKB_POINT = 1;
+	private static final int WKB_POLYGON = 3;
+	private static final int WKB_MULTIPOLYGON = 6;
+
+	private static final double[][] SQUARE = {{0, 0}, {4, 0}, {4, 4}, {0, 4}, {0, 0}};
+	private static final double[][] HOLE = {{1, 1}, {2, 1}, {2, 2}, {1, 2}, {1, 1}};
+	private static final double[][] ISLAND = {{10, 10}, {11, 10}, {11, 11}, {10, 11}, {10, 10}};
+
+	@Test
+	void readsLittleEndianPolygonWithHole() {
+		ArrayGadmPolygonSet polygons = read(polygon(ByteOrder.LITTLE_ENDIAN, SQUARE, HOLE));
+
+		assertThat(polygons.size()).isEqualTo(1);
+		assertThat(polygons.contains(0, 3, 3)).isTrue();
+		assertThat(polygons.contains(0, 1.5, 1.5)).isFalse();
+		assertThat(polygons.maxX(0)).isEqualTo(4.0);
+	}
+
+	@Test
+	void readsBigEndianPolygon() {
+		ArrayGadmPolygonSet polygons = read(polygon(ByteOrder.BIG_ENDIAN, SQUARE));
+
+		assertThat(polygons.size()).isEqualTo(1);
+		assertThat(polygons.contains(0, 1.5, 1.5)).isTrue();
+		assertThat(polygons.minY(0)).isEqualTo(0.0);
+		assertThat(polygons.maxY(0)).isEqualTo(4.0);
+	}
+
+	@Test
+	void readsEveryPartOfAMultiPolygonWithMixedByteOrders() {
+		ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put((byte) 1).putInt(WKB_MULTIPOLYGON).putInt(2);
+		buffer.put(polygon(ByteOrder.BIG_ENDIAN, SQUARE, HOLE));
+		buffer.put(polygon(ByteOrder.LITTLE_ENDIAN, ISLAND));
+
+		ArrayGadmPolygonSet polygons = read(bytes(buffer));
+
+		assertThat(polygons.size()).isEqualTo(2);
+		assertThat(polygons.contains(0, 3, 3)).isTrue();
+		assertThat(polygons.contains(0, 1.5, 1.5)).isFalse();
+		assertThat(polygons.contains(1, 10.5, 10.5)).isTrue();
+		assertThat(polygons.hierarchy(1)).isSameAs(polygons.hierarchy(0));
+	}
+
+	@Test
+	void rejectsOtherGeometryTypes() {
+		ByteBuffer point = ByteBuffer.allocate(21).order(ByteOrder.LITTLE_ENDIAN);
+		point.put((byte) 1).putInt(WKB_POINT).putDouble(1).putDouble(2);
+
+		assertThatThrownBy(() -> read(point.array()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("Unsupported");
+	}
+
+	@Test
+	void rejectsNonPolygonPartsOfAMultiPolygon() {
+		ByteBuffer buffer = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put((byte) 1).putInt(WKB_MULTIPOLYGON).putInt(1);
+		buffer.put((byte) 1).putInt(WKB_POINT).putDouble(1).putDouble(2);
+
+		assertThatThrownBy(() -> read(bytes(buffer)))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("inside multipolygon");
+	}
+
+	private static ArrayGadmPolygonSet read(byte[] wkb) {
+		ArrayGadmPolygonSet.Builder builder = new ArrayGadmPolygonSet.Builder();
+		builder.beginFeature(GadmIndexTests.hierarchy("Country", null));
+		WkbPolygonReader.read(wkb, builder);
+		return builder.build();
+	}
+
+	private static byte[] polygon(ByteOrder order, double[][]... rings) {
+		ByteBuffer buffer = ByteBuffer.allocate(1024).order(order);
+		buffer.put((byte) (order == ByteOrder.BIG_ENDIAN ? 0 : 1)).putInt(WKB_POLYGON).putInt(rings.length);
+		for (double[][] ring : rings) {
+			buffer.putInt(ring.length);
+			for (double[] point : ring) {
+				buffer.putDouble(point[0]).putDouble(point[1]);
+			}
+		}
+		return bytes(buffer);
+	}
+
+	private static byte[] bytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.position()];
+		buffer.flip().get(bytes);
+		return bytes;
+	}
+}
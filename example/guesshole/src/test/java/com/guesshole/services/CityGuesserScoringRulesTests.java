@@ -0,0 +1,158 @@
+package com.guesshole.services;
+
+import com.guesshole.config.GameRoundProperties;
+import com.guesshole.entities.LocationPoint;
+import com.guesshole.entities.MultiplierType;
+import com.guesshole.entities.ScoreMultiplier;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CityGuesserScoringRulesTests {
+
+	private final CityGuesserScoringRules rules = new CityGuesserScoringRules();
+
+	@Test
+	void closeFastGuessGetsDistanceAndTimeScore() {
+		rules.compile(new GameRoundProperties());
+
+		// Inside both the minimum distance and the grace time
+		assertThat(rules.baseScore(5, 60, 3)).isEqualTo(2000);
+		assertThat(rules.baseScore(10, 60, 5)).isEqualTo(2000);
+	}
+
+	@Test
+	void distanceScoreFallsLinearlyToTheMaximumDistance() {
+		rules.compile(new GameRoundProperties());
+
+		// Half way between 10km and 5000km, at the end of the round
+		assertThat(rules.baseScore(2505, 60, 60)).isEqualTo(500);
+		assertThat(rules.baseScore(5000, 60, 0)).isZero();
+		assertThat(rules.baseScore(20_000, 60, 0)).isZero();
+	}
+
+	@Test
+	void timeBonusFallsLinearlyToTheEndOfTheRound() {
+		rules.compile(new GameRoundProperties());
+
+		// Half way between the 5s grace time and the 65s round
+		assertThat(rules.baseScore(0, 65, 35)).isEqualTo(1500);
+		assertThat(rules.baseScore(0, 60, 60)).isEqualTo(1000);
+		assertThat(rules.baseScore(0, 60, 90)).isEqualTo(1000);
+	}
+
+	@Test
+	void compileReplacesTheSettings() {
+		GameRoundProperties properties = new GameRoundProperties();
+		properties.setDistanceScoreMultiplier(2.0);
+		properties.setTimeScoreMultiplier(0.5);
+		rules.compile(properties);
+
+		assertThat(rules.baseScore(0, 60, 0)).isEqualTo(2500);
+	}
+
+	@Test
+	void previewLeavesTheRulesUnchanged() {
+		rules.compile(new GameRoundProperties());
+		GameRoundProperties properties = new GameRoundProperties();
+		properties.setMaxDistanceThreshold(1010);
+
+		ScoringRules preview = rules.preview(properties);
+
+		assertThat(preview.baseScore(510, 60, 60)).isEqualTo(500);
+		assertThat(rules.baseScore(510, 60, 60)).isEqualTo(900);
+	}
+
+	@Test
+	void multipliersForEachBonusEarned() {
+		rules.compile(new GameRoundProperties());
+		LocationPoint target = location(1L, "New Zealand", "Wellington", "Wellington City");
+
+		List<ScoreMultiplier> all = rules.multipliers(2, true, false,
+				location(2L, "New Zealand", "Wellington", "Wellington City"), target);
+		List<ScoreMultiplier> none = rules.multipliers(30, false, false,
+				location(3L, "Australia", "Victoria", "Melbourne"), target);
+		List<ScoreMultiplier> solo = rules.multipliers(30, true, true,
+				location(4L, "New Zealand", "Auckland", "Auckland"), target);
+
+		assertThat(all).extracting(ScoreMultiplier::getMultiplierType).containsExactly(
+				MultiplierType.TRIGGER_HAPPY, MultiplierType.FIRST_GUESS, MultiplierType.CORRECT_COUNTRY,
+				MultiplierType.CORRECT_CITY, MultiplierType.CORRECT_COUNTY);
+		assertThat(all.get(3).getTooltip()).isEqualTo("Region Bonus: Correctly identified Wellington");
+		assertThat(rules.finalScore(1000, all)).isEqualTo(2831);
+		assertThat(none).isEmpty();
+		// No first guess bonus when playing alone
+		assertThat(solo).extracting(ScoreMultiplier::getMultiplierType).containsExactly(MultiplierType.CORRECT_COUNTRY);
+	}
+
+	@Test
+	void multipliersAreSharedForTheSameTarget() {
+		rules.compile(new GameRoundProperties());
+		LocationPoint guess = location(2L, "New Zealand", "Auckland", "Auckland");
+
+		List<ScoreMultiplier> first = rules.multipliers(30, false, false, guess,
+				location(1L, "New Zealand", "Wellington", "Wellington City"));
+		List<ScoreMultiplier> second = rules.multipliers(30, false, false, guess,
+				location(1L, "New Zealand", "Wellington", "Wellington City"));
+
+		assertThat(second).isSameAs(first);
+		assertThat(cachedTargets()).hasSize(1);
+	}
+
+	@Test
+	void targetsWithoutAnIdAreNotCached() {
+		rules.compile(new GameRoundProperties());
+		LocationPoint guess = location(2L, "New Zealand", "Auckland", "Auckland");
+		LocationPoint target = location(null, "New Zealand", "Wellington", "Wellington City");
+
+		List<ScoreMultiplier> first = rules.multipliers(30, false, false, guess, target);
+		List<ScoreMultiplier> second = rules.multipliers(30, false, false, guess, target);
+
+		assertThat(second).isNotSameAs(first);
+		assertThat(second).extracting(ScoreMultiplier::getMultiplierType).containsExactly(MultiplierType.CORRECT_COUNTRY);
+		assertThat(cachedTargets()).isEmpty();
+	}
+
+	@Test
+	void cacheIsClearedOnceItHoldsTenThousandTargets() {
+		rules.compile(new GameRoundProperties());
+		LocationPoint guess = location(0L, "New Zealand", "Auckland", "Auckland");
+		List<ScoreMultiplier> first = rules.multipliers(30, false, false, guess,
+				location(1L, "New Zealand", "Wellington", "Wellington City"));
+		for (long id = 2; id <= 10_000; id++) {
+			rules.multipliers(30, false, false, guess, location(id, "New Zealand", "Wellington", "Wellington City"));
+		}
+		assertThat(cachedTargets()).hasSize(10_000);
+		assertThat(rules.multipliers(30, false, false, guess,
+				location(1L, "New Zealand", "Wellington", "Wellington City"))).isSameAs(first);
+
+		rules.multipliers(30, false, false, guess, location(10_001L, "New Zealand", "Wellington", "Wellington City"));
+
+		assertThat(cachedTargets()).hasSize(1);
+		// The first target's multipliers are built again the next time it is guessed at
+		List<ScoreMultiplier> rebuilt = rules.multipliers(30, false, false, guess,
+				location(1L, "New Zealand", "Wellington", "Wellington City"));
+		assertThat(rebuilt).isNotSameAs(first);
+		assertThat(rebuilt).extracting(ScoreMultiplier::getMultiplierType).containsExactly(MultiplierType.CORRECT_COUNTRY);
+		assertThat(cachedTargets()).hasSize(2);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<Long, ?> cachedTargets() {
+		return (Map<Long, ?>) ReflectionTestUtils.getField(rules, "targets");
+	}
+
+	static LocationPoint location(Long id, String country, String region, String district) {
+		return new LocationPoint.Builder()
+				.id(id)
+				.coordinates(-41.2865, 174.7762)
+				.level0("Country", country, "NZL")
+				.level1("Region", region, "NZL.17_1")
+				.level2("District", district, "NZL.17.6_1")
+				.build();
+	}
+}
@@ -0,0 +1,213 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.GameInstance;
+import com.guesshole.entities.Round;
+import com.guesshole.repositories.LocationPointRepository;
+import com.guesshole.repositories.RoundTemplateRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GameInstancePoolTests {
+
+	private static final int ROUNDS = 3;
+	private static final int ROUND_LENGTH = 60;
+	private static final String GEO_TYPE = "WORLD";
+
+	private final GameInstanceService gameInstanceService = mock(GameInstanceService.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	// Every game the pool has had built, in order
+	private final List<GameInstance> built = new ArrayList<>();
+	private final GameInstance created = game(ROUNDS);
+	private RoundTemplateCatalog catalog;
+	private GameInstancePool pool;
+
+	@BeforeEach
+	void setUp() {
+		when(gameInstanceService.buildGameInstance(any(), anyInt(), anyInt(), any())).thenAnswer(invocation ->
+				Mono.fromSupplier(() -> {
+					GameInstance gameInstance = game(invocation.getArgument(1));
+					built.add(gameInstance);
+					return gameInstance;
+				}));
+		when(gameInstanceService.createGameInstance(any(), anyInt(), anyInt(), any())).thenReturn(Mono.just(created));
+		when(gameInstanceService.saveGameInstance(any(), any()))
+				.thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+		catalog = new RoundTemplateCatalog(mock(RoundTemplateRepository.class), mock(LocationPointRepository.class));
+		ReflectionTestUtils.setField(catalog, "recentPerLobby", 50);
+		ReflectionTestUtils.setField(catalog, "maxLobbies", 100);
+
+		pool = new GameInstancePool(gameInstanceService, catalog, meterRegistry);
+		ReflectionTestUtils.setField(pool, "enabled", true);
+		ReflectionTestUtils.setField(pool, "headroom", 2.0);
+		ReflectionTestUtils.setField(pool, "maxSize", 20);
+		ReflectionTestUtils.setField(pool, "maxAgeSeconds", 300L);
+	}
+
+	@Test
+	void missFallsBackToCreatingTheGame() {
+		UUID lobbyId = UUID.randomUUID();
+
+		GameInstance claimed = claim(lobbyId);
+
+		assertThat(claimed).isSameAs(created);
+		verify(gameInstanceService).createGameInstance(lobbyId, ROUNDS, ROUND_LENGTH, GEO_TYPE);
+		assertThat(claims("miss")).isEqualTo(1.0);
+		assertThat(claims("hit")).isEqualTo(0.0);
+	}
+
+	@Test
+	void startRateSizesThePool() {
+		startGames(5);
+
+		// 0.2 * 5 starts = 1 start per interval, with room for two
+		pool.adjust();
+
+		assertThat(built).hasSize(2);
+		assertThat(ready()).isEqualTo(2.0);
+	}
+
+	@Test
+	void poolIsCappedAtTheMaximumSize() {
+		ReflectionTestUtils.setField(pool, "maxSize", 5);
+		startGames(100);
+
+		pool.adjust();
+
+		assertThat(ready()).isEqualTo(5.0);
+	}
+
+	@Test
+	void idleConfigurationDecaysToNothing() {
+		startGames(5);
+		pool.adjust();
+		assertThat(ready()).isEqualTo(2.0);
+
+		double previous = ready();
+		for (int i = 0; i < 20; i++) {
+			pool.adjust();
+			assertThat(ready()).isLessThanOrEqualTo(previous);
+			previous = ready();
+		}
+
+		assertThat(ready()).isEqualTo(0.0);
+		assertThat((Map<?, ?>) ReflectionTestUtils.getField(pool, "entries")).isEmpty();
+	}
+
+	@Test
+	void claimTakesAPreBuiltGameAndReplacesIt() {
+		startGames(5);
+		pool.adjust();
+		UUID lobbyId = UUID.randomUUID();
+
+		GameInstance claimed = claim(lobbyId);
+
+		// The most recently built game is taken first
+		assertThat(claimed).isSameAs(built.get(1));
+		verify(gameInstanceService).saveGameInstance(claimed, lobbyId);
+		verify(gameInstanceService, never()).createGameInstance(eq(lobbyId), anyInt(), anyInt(), any());
+		assertThat(claims("hit")).isEqualTo(1.0);
+		// Its rounds count as played by the lobby, and a new game is built in its place
+		assertThat(catalog.playedRecently(lobbyId, templateIds(claimed))).isTrue();
+		assertThat(built).hasSize(3);
+		assertThat(ready()).isEqualTo(2.0);
+	}
+
+	@Test
+	void claimSkipsGamesWithRoundsTheLobbyPlayedRecently() {
+		startGames(5);
+		pool.adjust();
+		GameInstance older = built.get(0);
+		GameInstance newer = built.get(1);
+		UUID lobbyId = UUID.randomUUID();
+		catalog.markPlayed(lobbyId, templateIds(newer).subList(0, 1));
+
+		assertThat(claim(lobbyId)).isSameAs(older);
+
+		// The game passed over is still there for a lobby that hasn't played it
+		UUID otherLobbyId = UUID.randomUUID();
+		built.stream()
+				.filter(gameInstance -> gameInstance != newer)
+				.forEach(gameInstance -> catalog.markPlayed(otherLobbyId, templateIds(gameInstance)));
+		assertThat(claim(otherLobbyId)).isSameAs(newer);
+	}
+
+	@Test
+	void claimCreatesAGameWhenTheLobbyHasPlayedEveryPreBuiltOne() {
+		startGames(5);
+		pool.adjust();
+		UUID lobbyId = UUID.randomUUID();
+		built.forEach(gameInstance -> catalog.markPlayed(lobbyId, templateIds(gameInstance)));
+		int readyGames = (int) ready();
+
+		assertThat(claim(lobbyId)).isSameAs(created);
+
+		assertThat(claims("miss")).isEqualTo(6.0);
+		assertThat(ready()).isEqualTo((double) readyGames);
+	}
+
+	@Test
+	void disabledPoolAlwaysCreates() {
+		ReflectionTestUtils.setField(pool, "enabled", false);
+		startGames(5);
+		pool.adjust();
+
+		assertThat(claim(UUID.randomUUID())).isSameAs(created);
+		assertThat(built).isEmpty();
+	}
+
+	private void startGames(int count) {
+		for (int i = 0; i < count; i++) {
+			claim(UUID.randomUUID());
+		}
+	}
+
+	private GameInstance claim(UUID lobbyId) {
+		return pool.claim(lobbyId, ROUNDS, ROUND_LENGTH, GEO_TYPE).block();
+	}
+
+	private double claims(String result) {
+		return meterRegistry.get("game.instance.pool.claims").tag("result", result).counter().count();
+	}
+
+	private double ready() {
+		return meterRegistry.get("game.instance.pool.ready").gauge().value();
+	}
+
+	private static List<UUID> templateIds(GameInstance gameInstance) {
+		return gameInstance.getRounds().stream().map(Round::getRoundTemplateId).collect(Collectors.toList());
+	}
+
+	private static GameInstance game(int rounds) {
+		GameInstance gameInstance = new GameInstance();
+		gameInstance.setId(UUID.randomUUID());
+		List<Round> gameRounds = new ArrayList<>();
+		for (int i = 0; i < rounds; i++) {
+			Round round = new Round();
+			round.setId(UUID.randomUUID());
+			round.setRoundTemplateId(UUID.randomUUID());
+			round.setRoundOrder(i + 1);
+			gameRounds.add(round);
+		}
+		gameInstance.setRounds(gameRounds);
+		return gameInstance;
+	}
+}
@@ -0,0 +1,262 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.Player;
+import com.guesshole.entities.Round;
+import com.guesshole.websocket.messages.outgoing.GameStateDeltaMessage;
+import com.guesshole.websocket.messages.outgoing.GameStateMessage;
+import com.guesshole.websocket.services.LobbyBroadcastBus;
+import com.guesshole.websocket.services.WebSocketSessionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GameStateDeltaServiceTests {
+
+	private static final int HISTORY_SIZE = 3;
+	// The largest integer the browser client can hold exactly
+	private static final long MAX_SAFE_INTEGER = (1L << 53) - 1;
+
+	private final LobbyService lobbyService = mock(LobbyService.class);
+	private final List<Object> sent = new ArrayList<>();
+	private final UUID lobbyId = UUID.randomUUID();
+	private final Player alice = player("Alice");
+	private final Player bob = player("Bob");
+	private GameStateDeltaService service;
+
+	@BeforeEach
+	void setUp() {
+		when(lobbyService.sendToSessions(any(), any())).thenAnswer(invocation -> {
+			sent.add(invocation.getArgument(1));
+			return Mono.empty();
+		});
+		service = service();
+	}
+
+	@Test
+	void newClientIsSentTheFullState() {
+		WebSocketSession session = session();
+
+		GameStateMessage message = state("ROUND_ACTIVE", round(1), 100, 0);
+		service.sendToSession(lobbyId, session, message).block();
+
+		assertThat(lastSent()).isSameAs(message);
+		assertThat(message.getVersion()).isPositive().isLessThanOrEqualTo(MAX_SAFE_INTEGER);
+	}
+
+	@Test
+	void clientThatHasNeverAcknowledgedIsSentTheFullState() {
+		WebSocketSession session = session();
+		service.sendToSession(lobbyId, session, state("ROUND_ACTIVE", round(1), 100, 0)).block();
+
+		GameStateMessage message = state("ROUND_ACTIVE", round(1), 150, 0);
+		service.sendToSession(lobbyId, session, message).block();
+
+		assertThat(lastSent()).isSameAs(message);
+	}
+
+	@Test
+	void acknowledgedClientIsSentOnlyWhatChanged() {
+		WebSocketSession session = session();
+		Round round = round(1);
+		GameStateMessage first = send(session, state("ROUND_ACTIVE", round, 100, 0));
+		service.acknowledge(session, first.getVersion());
+
+		GameStateMessage second = state("ROUND_ACTIVE", round, 100, 40);
+		service.sendToSession(lobbyId, session, second).block();
+
+		GameStateDeltaMessage delta = (GameStateDeltaMessage) lastSent();
+		assertThat(delta.getBaseVersion()).isEqualTo(first.getVersion());
+		assertThat(delta.getVersion()).isEqualTo(second.getVersion());
+		assertThat(delta.getState()).isNull();
+		assertThat(delta.getCurrentRound()).isNull();
+		assertThat(delta.getScores()).extracting(GameStateDeltaMessage.ScoreChange::getPlayerId).containsExactly(bob.getId());
+		assertThat(delta.getScores().get(0).getTotalScore()).isEqualTo(40);
+	}
+
+	@Test
+	void deltaCarriesTheNewRoundAndDroppedPlayers() {
+		WebSocketSession session = session();
+		GameStateMessage first = send(session, state("ROUND_ACTIVE", round(1), 100, 40));
+		service.acknowledge(session, first.getVersion());
+
+		Round next = round(2);
+		GameStateMessage second = state("ROUND_ACTIVE", next, 100, 40);
+		second.setPlayerScores(List.of(new GameStateMessage.PlayerScore(alice, null, 100)));
+		service.sendToSession(lobbyId, session, second).block();
+
+		GameStateDeltaMessage delta = (GameStateDeltaMessage) lastSent();
+		assertThat(delta.getCurrentRound()).isSameAs(next);
+		assertThat(delta.getRoundOrder()).isEqualTo(2);
+		assertThat(delta.getScores()).isEmpty();
+		assertThat(delta.getRemovedPlayerIds()).containsExactly(bob.getId());
+	}
+
+	@Test
+	void stateThatClearsAFieldIsSentInFull() {
+		WebSocketSession session = session();
+		GameStateMessage first = send(session, state("SCOREBOARD", round(1), 100, 40));
+		service.acknowledge(session, first.getVersion());
+
+		// Back in the waiting room there is no round, which a delta can't express
+		GameStateMessage waiting = state("WAITING", null, 100, 40);
+		service.sendToSession(lobbyId, session, waiting).block();
+
+		assertThat(lastSent()).isSameAs(waiting);
+	}
+
+	@Test
+	void clientTooFarBehindTheHistoryIsSentTheFullState() {
+		WebSocketSession session = session();
+		Round round = round(1);
+		GameStateMessage first = send(session, state("ROUND_ACTIVE", round, 100, 0));
+		service.acknowledge(session, first.getVersion());
+
+		// Still has what it applied in the history, so these are deltas on top of what it was sent
+		send(session, state("ROUND_ACTIVE", round, 110, 0));
+		assertThat(((GameStateDeltaMessage) lastSent()).getBaseVersion()).isEqualTo(first.getVersion());
+		GameStateMessage third = send(session, state("ROUND_ACTIVE", round, 120, 0));
+		assertThat(lastSent()).isInstanceOf(GameStateDeltaMessage.class);
+
+		// The version it applied has now been evicted
+		GameStateMessage fourth = send(session, state("ROUND_ACTIVE", round, 130, 0));
+		assertThat(lastSent()).isSameAs(fourth);
+
+		service.acknowledge(session, fourth.getVersion());
+		send(session, state("ROUND_ACTIVE", round, 140, 0));
+		assertThat(((GameStateDeltaMessage) lastSent()).getBaseVersion()).isEqualTo(fourth.getVersion());
+		assertThat(third.getVersion()).isLessThan(fourth.getVersion());
+	}
+
+	@Test
+	void resyncSendsTheFullStateThenDeltasOnceItIsAcknowledged() {
+		WebSocketSession session = session();
+		Round round = round(1);
+		GameStateMessage first = send(session, state("ROUND_ACTIVE", round, 100, 0));
+		service.acknowledge(session, first.getVersion());
+
+		// What a STATE_ACK with resync set does before the state is sent again
+		service.requestResync(session);
+		GameStateMessage full = send(session, state("ROUND_ACTIVE", round, 110, 0));
+		assertThat(lastSent()).isSameAs(full);
+
+		service.acknowledge(session, full.getVersion());
+		send(session, state("ROUND_ACTIVE", round, 120, 0));
+		assertThat(((GameStateDeltaMessage) lastSent()).getBaseVersion()).isEqualTo(full.getVersion());
+	}
+
+	@Test
+	void resumedClientIsSentADeltaFromTheVersionItHas() {
+		WebSocketSession first = session();
+		Round round = round(1);
+		GameStateMessage applied = send(first, state("ROUND_ACTIVE", round, 100, 0));
+
+		WebSocketSession reconnected = session();
+		service.resume(reconnected, applied.getVersion());
+		service.sendToSession(lobbyId, reconnected, state("ROUND_ACTIVE", round, 100, 30)).block();
+
+		assertThat(((GameStateDeltaMessage) lastSent()).getBaseVersion()).isEqualTo(applied.getVersion());
+	}
+
+	@Test
+	void versionsAreCountedPerLobby() {
+		WebSocketSession session = session();
+		UUID otherLobbyId = UUID.randomUUID();
+
+		GameStateMessage first = send(session, state("WAITING", null, 0, 0));
+		service.sendToSession(otherLobbyId, session(), state("WAITING", null, 0, 0)).block();
+		service.sendToSession(otherLobbyId, session(), state("WAITING", null, 0, 0)).block();
+		GameStateMessage second = send(session, state("WAITING", null, 0, 0));
+
+		assertThat(second.getVersion()).isEqualTo(first.getVersion() + 1);
+	}
+
+	@Test
+	void exhaustedCounterMovesToTheNextEpoch() {
+		WebSocketSession session = session();
+		GameStateMessage first = send(session, state("ROUND_ACTIVE", round(1), 100, 0));
+		Object history = ((Map<?, ?>) ReflectionTestUtils.getField(service, "lobbyHistory")).get(lobbyId);
+		ReflectionTestUtils.setField(history, "counter", (1L << 21) - 1);
+
+		GameStateMessage next = send(session, state("ROUND_ACTIVE", round(1), 100, 0));
+
+		assertThat(next.getVersion()).isGreaterThan(first.getVersion()).isLessThanOrEqualTo(MAX_SAFE_INTEGER);
+		assertThat(next.getVersion() >> 21).isGreaterThan(first.getVersion() >> 21);
+	}
+
+	@Test
+	void disabledDeltasAlwaysSendTheFullState() {
+		ReflectionTestUtils.setField(service, "enabled", false);
+		WebSocketSession session = session();
+		GameStateMessage first = send(session, state("ROUND_ACTIVE", round(1), 100, 0));
+		service.acknowledge(session, first.getVersion());
+
+		GameStateMessage second = send(session, state("ROUND_ACTIVE", round(1), 100, 40));
+
+		assertThat(lastSent()).isSameAs(second);
+	}
+
+	private GameStateDeltaService service() {
+		GameStateDeltaService service = new GameStateDeltaService(mock(WebSocketSessionService.class), lobbyService,
+				mock(LobbyBroadcastBus.class), new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(service, "enabled", true);
+		ReflectionTestUtils.setField(service, "historySize", HISTORY_SIZE);
+		return service;
+	}
+
+	private GameStateMessage send(WebSocketSession session, GameStateMessage message) {
+		service.sendToSession(lobbyId, session, message).block();
+		return message;
+	}
+
+	private Object lastSent() {
+		return sent.get(sent.size() - 1);
+	}
+
+	private GameStateMessage state(String state, Round round, int aliceScore, int bobScore) {
+		GameStateMessage message = new GameStateMessage();
+		message.setState(state);
+		if (round != null) {
+			message.setCurrentRound(round);
+			message.setRoundId(round.getId());
+			message.setRoundOrder(round.getRoundOrder());
+		}
+		message.setTotalRounds(5);
+		message.setPlayerScores(List.of(
+				new GameStateMessage.PlayerScore(alice, null, aliceScore),
+				new GameStateMessage.PlayerScore(bob, null, bobScore)));
+		return message;
+	}
+
+	private static Round round(int roundOrder) {
+		Round round = new Round();
+		round.setId(UUID.randomUUID());
+		round.setRoundOrder(roundOrder);
+		return round;
+	}
+
+	private static Player player(String name) {
+		Player player = new Player(name, UUID.randomUUID(), false);
+		player.setId(UUID.randomUUID());
+		return player;
+	}
+
+	private static WebSocketSession session() {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn(UUID.randomUUID().toString());
+		when(session.isOpen()).thenReturn(true);
+		return session;
+	}
+}
@@ -0,0 +1,291 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.GameState;
+import com.guesshole.repositories.GameStateRepository;
+import com.guesshole.services.GameTimerService.DeadlineType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GameTimerServiceTests {
+
+	private final HashedWheelTimer timerWheel = mock(HashedWheelTimer.class);
+	private final GameStateRepository gameStateRepository = mock(GameStateRepository.class);
+	private final LobbyOwnershipService lobbyOwnership = mock(LobbyOwnershipService.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	// Every timeout armed on the wheel, in order
+	private final List<ScheduledTimeout> armed = new ArrayList<>();
+	// The lobby and round of every handled deadline, by type
+	private final List<String> fired = new CopyOnWriteArrayList<>();
+	private final UUID lobbyId = UUID.randomUUID();
+	private final UUID roundId = UUID.randomUUID();
+	private GameTimerService timers;
+	private Runnable ownershipListener;
+
+	@BeforeEach
+	void setUp() {
+		when(timerWheel.newTimeout(any(), anyLong(), any())).thenAnswer(invocation -> {
+			TimeUnit unit = invocation.getArgument(2);
+			ScheduledTimeout timeout = new ScheduledTimeout(invocation.getArgument(0),
+					unit.toMillis(invocation.getArgument(1)));
+			armed.add(timeout);
+			return timeout;
+		});
+		when(gameStateRepository.setDeadline(any(), anyString(), any(), any())).thenReturn(Mono.just(1));
+		when(gameStateRepository.clearDeadline(any(), anyString(), any())).thenReturn(Mono.just(1));
+		when(gameStateRepository.findByDeadlineAtIsNotNull()).thenReturn(Flux.empty());
+		when(lobbyOwnership.isOwner(any())).thenReturn(true);
+
+		timers = new GameTimerService(timerWheel, gameStateRepository, lobbyOwnership, meterRegistry);
+		ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+		verify(lobbyOwnership).addOwnershipListener(listener.capture());
+		ownershipListener = listener.getValue();
+		for (DeadlineType type : DeadlineType.values()) {
+			timers.setHandler(type, (lobby, round) -> Mono.fromRunnable(() -> fired.add(type + " " + lobby + " " + round)));
+		}
+	}
+
+	@Test
+	void scheduleArmsTheDeadlineAndPersistsIt() {
+		Instant deadline = Instant.now().plusSeconds(30);
+
+		timers.schedule(lobbyId, DeadlineType.ROUND_END, roundId, deadline).block();
+
+		assertThat(armed).hasSize(1);
+		assertThat(armed.get(0).delayMillis).isBetween(25_000L, 30_000L);
+		assertThat(timers.getDeadline(lobbyId)).isEqualTo(deadline);
+		verify(gameStateRepository).setDeadline(lobbyId, "ROUND_END", roundId, deadline);
+	}
+
+	@Test
+	void firedDeadlineRunsItsHandlerAndClearsThePersistedDeadline() {
+		timers.schedule(lobbyId, DeadlineType.ROUND_END, roundId, Instant.now().plusSeconds(30)).block();
+
+		armed.get(0).fire();
+
+		assertThat(fired).containsExactly("ROUND_END " + lobbyId + " " + roundId);
+		assertThat(timers.getDeadline(lobbyId)).isNull();
+		verify(gameStateRepository).clearDeadline(lobbyId, "ROUND_END", roundId);
+		assertThat(meterRegistry.get("game.timers.lag").timer().count()).isEqualTo(1L);
+	}
+
+	@Test
+	void cancelledDeadlineThatFiresAnywayDoesNothing() {
+		timers.schedule(lobbyId, DeadlineType.ROUND_END, roundId, Instant.now().plusSeconds(30)).block();
+
+		timers.cancel(lobbyId);
+		// The wheel had already picked the timeout up when it was cancelled
+		armed.get(0).fire();
+
+		assertThat(armed.get(0).isCancelled()).isTrue();
+		assertThat(fired).isEmpty();
+		verify(gameStateRepository, times(1)).clearDeadline(lobbyId, "ROUND_END", roundId);
+	}
+
+	@Test
+	void replacedDeadlineThatFiresAnywayDoesNothing() {
+		Instant scoreboardDeadline = Instant.now().plusSeconds(10);
+		timers.schedule(lobbyId, DeadlineType.ROUND_END, roundId, Instant.now().plusSeconds(30)).block();
+		timers.schedule(lobbyId, DeadlineType.SCOREBOARD_ADVANCE, roundId, scoreboardDeadline).block();
+
+		armed.get(0).fire();
+
+		assertThat(armed.get(0).isCancelled()).isTrue();
+		assertThat(fired).isEmpty();
+		assertThat(timers.getDeadline(lobbyId)).isEqualTo(scoreboardDeadline);
+		verify(gameStateRepository, never()).clearDeadline(any(), anyString(), any());
+
+		armed.get(1).fire();
+
+		assertThat(fired).containsExactly("SCOREBOARD_ADVANCE " + lobbyId + " " + roundId);
+	}
+
+	@Test
+	void lateCancelForAnEarlierStageLeavesTheDeadline() {
+		timers.schedule(lobbyId, DeadlineType.SCOREBOARD_ADVANCE, roundId, Instant.now().plusSeconds(10)).block();
+
+		timers.cancel(lobbyId, DeadlineType.ROUND_END, roundId);
+		timers.cancel(lobbyId, DeadlineType.SCOREBOARD_ADVANCE, UUID.randomUUID());
+
+		assertThat(armed.get(0).isCancelled()).isFalse();
+		armed.get(0).fire();
+		assertThat(fired).hasSize(1);
+	}
+
+	@Test
+	void startupRestoresTheDeadlinesOfOwnedLobbies() {
+		UUID overdueLobbyId = UUID.randomUUID();
+		UUID otherNodesLobbyId = UUID.randomUUID();
+		UUID unknownLobbyId = UUID.randomUUID();
+		Instant deadline = Instant.now().plusSeconds(30);
+		when(lobbyOwnership.isOwner(otherNodesLobbyId)).thenReturn(false);
+		when(gameStateRepository.findByDeadlineAtIsNotNull()).thenReturn(Flux.just(
+				gameState(lobbyId, "ROUND_END", deadline),
+				gameState(overdueLobbyId, "SCOREBOARD_ADVANCE", Instant.now().minusSeconds(5)),
+				gameState(otherNodesLobbyId, "ROUND_END", deadline),
+				gameState(unknownLobbyId, "INTERMISSION", deadline)));
+
+		timers.restoreDeadlines();
+
+		assertThat(armed).hasSize(2);
+		assertThat(timers.getDeadline(lobbyId)).isEqualTo(deadline);
+		assertThat(timers.getDeadline(otherNodesLobbyId)).isNull();
+		assertThat(timers.getDeadline(unknownLobbyId)).isNull();
+		// Passed while the node was down, so it fires on the next tick
+		assertThat(armed.get(1).delayMillis).isZero();
+
+		armed.get(1).fire();
+
+		assertThat(fired).containsExactly("SCOREBOARD_ADVANCE " + overdueLobbyId + " " + roundId);
+		// Restoring doesn't write the deadlines back
+		verify(gameStateRepository, never()).setDeadline(any(), anyString(), any(), any());
+	}
+
+	@Test
+	void restoreKeepsDeadlinesArmedSinceStartup() {
+		Instant newer = Instant.now().plusSeconds(60);
+		timers.schedule(lobbyId, DeadlineType.SCOREBOARD_ADVANCE, roundId, newer).block();
+		when(gameStateRepository.findByDeadlineAtIsNotNull()).thenReturn(Flux.just(
+				gameState(lobbyId, "ROUND_END", Instant.now().plusSeconds(5))));
+
+		timers.restoreDeadlines();
+
+		assertThat(armed).hasSize(1);
+		assertThat(armed.get(0).isCancelled()).isFalse();
+		assertThat(timers.getDeadline(lobbyId)).isEqualTo(newer);
+	}
+
+	@Test
+	void deadlineOfALobbyThatMovedIsHandedOff() {
+		timers.schedule(lobbyId, DeadlineType.ROUND_END, roundId, Instant.now().plusSeconds(30)).block();
+		when(lobbyOwnership.isOwner(lobbyId)).thenReturn(false);
+
+		ownershipListener.run();
+
+		assertThat(armed.get(0).isCancelled()).isTrue();
+		assertThat(timers.getDeadline(lobbyId)).isNull();
+		// Left persisted for the new owner
+		verify(gameStateRepository, never()).clearDeadline(any(), anyString(), any());
+	}
+
+	@Test
+	void deadlineThatFiresAsTheLobbyMovesIsLeftForTheNewOwner() {
+		timers.schedule(lobbyId, DeadlineType.ROUND_END, roundId, Instant.now().plusSeconds(30)).block();
+		when(lobbyOwnership.isOwner(lobbyId)).thenReturn(false);
+
+		armed.get(0).fire();
+
+		assertThat(fired).isEmpty();
+		assertThat(timers.getDeadline(lobbyId)).isNull();
+		verify(gameStateRepository, never()).clearDeadline(any(), anyString(), any());
+	}
+
+	@Test
+	void cancelledAndReplacedDeadlinesNeverFireOnARealWheel() throws InterruptedException {
+		HashedWheelTimer wheel = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+		try {
+			GameTimerService wheelTimers = new GameTimerService(wheel, gameStateRepository, lobbyOwnership, meterRegistry);
+			for (DeadlineType type : DeadlineType.values()) {
+				wheelTimers.setHandler(type, (lobby, round) -> Mono.fromRunnable(() -> fired.add(type + " " + lobby)));
+			}
+			UUID cancelledLobbyId = UUID.randomUUID();
+			wheelTimers.schedule(cancelledLobbyId, DeadlineType.ROUND_END, roundId, Instant.now().plusMillis(50)).block();
+			wheelTimers.schedule(lobbyId, DeadlineType.ROUND_END, roundId, Instant.now().plusMillis(50)).block();
+			wheelTimers.schedule(lobbyId, DeadlineType.SCOREBOARD_ADVANCE, roundId, Instant.now().plusMillis(150)).block();
+			wheelTimers.cancel(cancelledLobbyId);
+
+			long giveUpAt = System.currentTimeMillis() + 5_000;
+			while (fired.isEmpty() && System.currentTimeMillis() < giveUpAt) {
+				Thread.sleep(10);
+			}
+			// Long enough for the cancelled and replaced deadlines to have been due several times over
+			Thread.sleep(200);
+
+			assertThat(fired).containsExactly("SCOREBOARD_ADVANCE " + lobbyId);
+			assertThat(wheelTimers.getDeadline(lobbyId)).isNull();
+		} finally {
+			wheel.stop();
+		}
+	}
+
+	private GameState gameState(UUID lobbyId, String deadlineType, Instant deadlineAt) {
+		GameState gameState = new GameState(lobbyId);
+		gameState.setDeadlineType(deadlineType);
+		gameState.setDeadlineRoundId(roundId);
+		gameState.setDeadlineAt(deadlineAt);
+		return gameState;
+	}
+
+	/**
+	 * A timeout on the mocked wheel, run by the test instead of the wheel's worker thread
+	 */
+	private static class ScheduledTimeout implements Timeout {
+		private final TimerTask task;
+		private final long delayMillis;
+		private volatile boolean cancelled;
+
+		private ScheduledTimeout(TimerTask task, long delayMillis) {
+			this.task = task;
+			this.delayMillis = delayMillis;
+		}
+
+		private void fire() {
+			try {
+				task.run(this);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public Timer timer() {
+			return null;
+		}
+
+		@Override
+		public TimerTask task() {
+			return task;
+		}
+
+		@Override
+		public boolean isExpired() {
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public boolean cancel() {
+			boolean wasPending = !cancelled;
+			cancelled = true;
+			return wasPending;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.Player;
+import com.guesshole.support.GameDatabaseTest;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the database round trips of the guess path. Once the round context is loaded, a guess
+ * costs the same small number of statements whatever the size of the lobby.
+ */
+class GuessIngestionStatementCountTests extends GameDatabaseTest {
+
+	// Saving the guess's location point, and writing the guess with its multipliers and the running total
+	private static final int STATEMENTS_PER_GUESS = 2;
+
+	@Test
+	void guessesCostAConstantNumberOfStatements() throws Exception {
+		List<Integer> small = guessStatementCounts(2, new BigDecimal("10.5"));
+		List<Integer> large = guessStatementCounts(8, new BigDecimal("20.5"));
+
+		// Loading the round context doesn't depend on the number of players
+		assertThat(large.get(0)).isEqualTo(small.get(0));
+		assertThat(small.subList(1, small.size())).containsOnly(STATEMENTS_PER_GUESS);
+		assertThat(large.subList(1, large.size())).containsOnly(STATEMENTS_PER_GUESS);
+	}
+
+	/**
+	 * Start a game in a new lobby and have every player guess the same point in the first round
+	 *
+	 * @return The statements each guess ran, in order
+	 */
+	private List<Integer> guessStatementCounts(int playerCount, BigDecimal coordinate) throws Exception {
+		StartedGame game = startGame("Statement count " + playerCount, playerCount, 3);
+		UUID roundId = game.getSnapshot().getCurrentRoundId();
+		assertThat(roundId).isNotNull();
+
+		List<Integer> counts = new ArrayList<>();
+		for (Player player : game.getPlayers()) {
+			statements.awaitQuiet(Duration.ofMillis(500), Duration.ofSeconds(30));
+			statements.reset();
+			guess(game, player, roundId, coordinate, coordinate);
+			counts.add(statements.count());
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,103 @@
+package com.guesshole.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guesshole.entities.Guess;
+import com.guesshole.entities.Player;
+import com.guesshole.repositories.GuessRepository;
+import com.guesshole.support.GameDatabaseTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replays a journal whose guesses were partly written to the database before a crash. The
+ * guesses already written are skipped, and so aren't added to the running totals twice.
+ */
+class GuessJournalReplayTests extends GameDatabaseTest {
+
+	@Autowired
+	private GuessRepository guessRepository;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private DatabaseClient databaseClient;
+
+	@TempDir
+	Path journalDir;
+
+	@Test
+	void replayingAPartlyFlushedJournalWritesEachGuessOnce() throws IOException {
+		StartedGame game = startGame("Journal replay", 3, 1);
+		UUID roundId = game.getSnapshot().getCurrentRoundId();
+		UUID gameInstanceId = game.getSnapshot().getGameInstanceId();
+		List<Player> players = game.getPlayers();
+		List<Guess> guesses = List.of(
+				guess(players.get(0), roundId, gameInstanceId, 800),
+				guess(players.get(1), roundId, gameInstanceId, 350),
+				guess(players.get(2), roundId, gameInstanceId, 120));
+
+		GuessJournal running = journal(true);
+		for (Guess guess : guesses) {
+			running.append(guess).block();
+		}
+		// The first batch reached the database, then the node died before deleting the journal
+		guessRepository.insertAllWithMultipliers(guesses.subList(0, 2)).block();
+
+		GuessJournal restarted = journal(false);
+		restarted.flush().block();
+
+		assertThat(guessRepository.findByRoundId(roundId).collectList().block())
+				.extracting(Guess::getId)
+				.containsExactlyInAnyOrderElementsOf(guesses.stream().map(Guess::getId).toList());
+		assertThat(totalScores(gameInstanceId)).isEqualTo(Map.of(
+				players.get(0).getId(), 800,
+				players.get(1).getId(), 350,
+				players.get(2).getId(), 120));
+
+		// Writing the same guesses again changes nothing
+		assertThat(guessRepository.insertAllWithMultipliers(guesses).block()).isZero();
+		assertThat(guessRepository.countByRoundId(roundId).block()).isEqualTo(3L);
+		assertThat(totalScores(gameInstanceId).get(players.get(0).getId())).isEqualTo(800);
+	}
+
+	private GuessJournal journal(boolean enabled) throws IOException {
+		GuessJournal journal = new GuessJournal(guessRepository, objectMapper, new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(journal, "enabled", enabled);
+		ReflectionTestUtils.setField(journal, "journalDir", journalDir.toString());
+		ReflectionTestUtils.setField(journal, "batchSize", 500);
+		ReflectionTestUtils.setField(journal, "maxFlushAttempts", 120);
+		journal.start();
+		return journal;
+	}
+
+	private Map<UUID, Integer> totalScores(UUID gameInstanceId) {
+		return databaseClient.sql("SELECT player_id, total_score FROM game_instance_player WHERE game_instance_id = :id")
+				.bind("id", gameInstanceId)
+				.map(row -> Map.entry(row.get("player_id", UUID.class), row.get("total_score", Integer.class)))
+				.all()
+				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
+				.block();
+	}
+
+	private static Guess guess(Player player, UUID roundId, UUID gameInstanceId, int score) {
+		Guess guess = new Guess(player.getId(), roundId, gameInstanceId, new BigDecimal("48.8584"),
+				new BigDecimal("2.2945"), null, 12.5, score, score, List.of(), 60, 10);
+		guess.setId(UUID.randomUUID());
+		return guess;
+	}
+}
@@ -0,0 +1,151 @@
+package com.guesshole.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guesshole.entities.Guess;
+import com.guesshole.entities.MultiplierType;
+import com.guesshole.entities.ScoreMultiplier;
+import com.guesshole.repositories.GuessRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GuessJournalTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+	private final GuessRepository guessRepository = mock(GuessRepository.class);
+	private final List<GuessJournal> journals = new ArrayList<>();
+
+	@TempDir
+	Path journalDir;
+
+	@AfterEach
+	void tearDown() {
+		journals.forEach(GuessJournal::stop);
+	}
+
+	@Test
+	void appendedGuessesAreFlushedAndTheJournalDeleted() throws IOException {
+		when(guessRepository.insertAllWithMultipliers(any())).thenAnswer(invocation -> {
+			List<Guess> guesses = invocation.getArgument(0);
+			return Mono.just((long) guesses.size());
+		});
+		GuessJournal journal = journal(true);
+		Guess first = guess(800);
+		Guess second = guess(350);
+
+		journal.append(first).block();
+		journal.append(second).block();
+		assertThat(segments()).hasSize(1);
+
+		journal.flush().block();
+
+		List<Guess> written = captureInserts(1).get(0);
+		assertThat(written).extracting(Guess::getId).containsExactly(first.getId(), second.getId());
+		assertThat(written.get(0).getScore()).isEqualTo(800);
+		assertThat(written.get(0).getScoreMultipliers()).hasSize(1);
+		assertThat(written.get(0).getScoreMultipliers().get(0).getMultiplierType()).isEqualTo(MultiplierType.CORRECT_COUNTRY);
+		// Only the new, empty segment is left
+		assertThat(segments()).hasSize(1);
+		assertThat(Files.size(segments().get(0))).isZero();
+	}
+
+	@Test
+	void recoverySkipsAPartialLastLine() throws IOException {
+		when(guessRepository.insertAllWithMultipliers(any())).thenReturn(Mono.just(2L));
+		Guess first = guess(800);
+		Guess second = guess(350);
+		GuessJournal writer = journal(true);
+		writer.append(first).block();
+		writer.append(second).block();
+		Path segment = segments().get(0);
+		// A crash part way through the next write
+		Files.write(segment, "{\"id\":\"".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		GuessJournal recovered = journal(false);
+		recovered.flush().block();
+
+		List<Guess> written = captureInserts(1).get(0);
+		assertThat(written).extracting(Guess::getId).containsExactly(first.getId(), second.getId());
+		assertThat(Files.exists(segment)).isFalse();
+	}
+
+	@Test
+	void segmentThatKeepsFailingIsDeadLettered() throws IOException {
+		when(guessRepository.insertAllWithMultipliers(any()))
+				.thenReturn(Mono.error(new IllegalStateException("violates foreign key constraint")));
+		GuessJournal journal = journal(true);
+		ReflectionTestUtils.setField(journal, "maxFlushAttempts", 3);
+		journal.append(guess(800)).block();
+		Path segment = segments().get(0);
+
+		for (int i = 0; i < 5; i++) {
+			journal.flush().block();
+		}
+
+		// Given up on after the third attempt rather than retried forever
+		verify(guessRepository, times(3)).insertAllWithMultipliers(any());
+		assertThat(Files.exists(segment)).isFalse();
+		assertThat(Files.exists(segment.resolveSibling(segment.getFileName() + ".dead"))).isTrue();
+
+		// Dead letters aren't replayed at the next start
+		GuessJournal restarted = journal(false);
+		restarted.flush().block();
+		verify(guessRepository, times(3)).insertAllWithMultipliers(any());
+	}
+
+	private GuessJournal journal(boolean enabled) throws IOException {
+		GuessJournal journal = new GuessJournal(guessRepository, objectMapper, new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(journal, "enabled", enabled);
+		ReflectionTestUtils.setField(journal, "journalDir", journalDir.toString());
+		ReflectionTestUtils.setField(journal, "batchSize", 500);
+		ReflectionTestUtils.setField(journal, "maxFlushAttempts", 120);
+		journal.start();
+		journals.add(journal);
+		return journal;
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(journalDir)) {
+			return files.filter(path -> path.getFileName().toString().endsWith(".journal")).sorted().toList();
+		}
+	}
+
+	private List<List<Guess>> captureInserts(int count) {
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<Guess>> batches = ArgumentCaptor.forClass(List.class);
+		verify(guessRepository, times(count)).insertAllWithMultipliers(batches.capture());
+		return batches.getAllValues();
+	}
+
+	static Guess guess(int score) {
+		UUID id = UUID.randomUUID();
+		Guess guess = new Guess(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+				new BigDecimal("48.8584"), new BigDecimal("2.2945"), null, 12.5, score, score,
+				List.of(new ScoreMultiplier(id, 1.1f, MultiplierType.CORRECT_COUNTRY, "Correct country", "You guessed the right country")),
+				60, 10);
+		guess.setId(id);
+		return guess;
+	}
+}
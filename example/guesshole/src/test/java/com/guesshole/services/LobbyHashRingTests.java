@@ -0,0 +1,132 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.ClusterNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LobbyHashRingTests {
+
+	private static final int VIRTUAL_NODES = 128;
+	private static final int LOBBIES = 20_000;
+
+	private final Random random = new Random(11);
+
+	@Test
+	void emptyRingOwnsNothing() {
+		LobbyHashRing ring = LobbyHashRing.of(List.of(), VIRTUAL_NODES);
+
+		assertThat(ring.isEmpty()).isTrue();
+		assertThat(ring.getNodes()).isEmpty();
+		assertThat(ring.ownerOf(UUID.randomUUID())).isNull();
+	}
+
+	@Test
+	void singleNodeOwnsEveryLobby() {
+		ClusterNode node = node();
+		LobbyHashRing ring = LobbyHashRing.of(List.of(node), VIRTUAL_NODES);
+
+		for (UUID lobbyId : lobbies(1000)) {
+			assertThat(ring.ownerOf(lobbyId)).isSameAs(node);
+		}
+	}
+
+	@Test
+	void everyNodeBuildsTheSameRing() {
+		List<ClusterNode> nodes = nodes(5);
+		List<ClusterNode> shuffled = new ArrayList<>(nodes);
+		Collections.shuffle(shuffled, random);
+
+		LobbyHashRing ring = LobbyHashRing.of(nodes, VIRTUAL_NODES);
+		LobbyHashRing other = LobbyHashRing.of(shuffled, VIRTUAL_NODES);
+
+		assertThat(other.getNodes()).isEqualTo(ring.getNodes());
+		for (UUID lobbyId : lobbies(LOBBIES)) {
+			assertThat(other.ownerOf(lobbyId).getNodeId()).isEqualTo(ring.ownerOf(lobbyId).getNodeId());
+		}
+	}
+
+	@Test
+	void joiningNodeOnlyTakesLobbies() {
+		List<ClusterNode> nodes = nodes(4);
+		LobbyHashRing before = LobbyHashRing.of(nodes, VIRTUAL_NODES);
+		ClusterNode joining = node();
+		List<ClusterNode> after = new ArrayList<>(nodes);
+		after.add(joining);
+		LobbyHashRing ring = LobbyHashRing.of(after, VIRTUAL_NODES);
+
+		int moved = 0;
+		for (UUID lobbyId : lobbies(LOBBIES)) {
+			ClusterNode owner = ring.ownerOf(lobbyId);
+			if (!owner.equals(before.ownerOf(lobbyId))) {
+				// Lobbies never move between the nodes that were already there
+				assertThat(owner).isEqualTo(joining);
+				moved++;
+			}
+		}
+		// About a fifth of the lobbies move to the fifth node
+		assertThat((double) moved / LOBBIES).isBetween(0.12, 0.28);
+	}
+
+	@Test
+	void leavingNodeOnlyGivesUpItsOwnLobbies() {
+		List<ClusterNode> nodes = nodes(5);
+		LobbyHashRing before = LobbyHashRing.of(nodes, VIRTUAL_NODES);
+		ClusterNode leaving = nodes.get(2);
+		List<ClusterNode> remaining = new ArrayList<>(nodes);
+		remaining.remove(leaving);
+		LobbyHashRing ring = LobbyHashRing.of(remaining, VIRTUAL_NODES);
+
+		for (UUID lobbyId : lobbies(LOBBIES)) {
+			ClusterNode previous = before.ownerOf(lobbyId);
+			if (previous.equals(leaving)) {
+				assertThat(ring.ownerOf(lobbyId)).isIn(remaining);
+			} else {
+				assertThat(ring.ownerOf(lobbyId)).isEqualTo(previous);
+			}
+		}
+	}
+
+	@Test
+	void lobbiesAreSpreadOverTheNodes() {
+		List<ClusterNode> nodes = nodes(4);
+		LobbyHashRing ring = LobbyHashRing.of(nodes, VIRTUAL_NODES);
+
+		Map<ClusterNode, Integer> owned = new HashMap<>();
+		for (UUID lobbyId : lobbies(LOBBIES)) {
+			owned.merge(ring.ownerOf(lobbyId), 1, Integer::sum);
+		}
+
+		assertThat(owned).hasSize(nodes.size());
+		// Each node is expected to own a quarter
+		assertThat(owned.values()).allMatch(count -> count > LOBBIES * 0.15 && count < LOBBIES * 0.35);
+	}
+
+	private List<ClusterNode> nodes(int count) {
+		List<ClusterNode> nodes = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			nodes.add(node());
+		}
+		return nodes;
+	}
+
+	private ClusterNode node() {
+		return new ClusterNode(new UUID(random.nextLong(), random.nextLong()), "10.0.0." + random.nextInt(255) + ":8080");
+	}
+
+	private List<UUID> lobbies(int count) {
+		List<UUID> lobbies = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			lobbies.add(new UUID(random.nextLong(), random.nextLong()));
+		}
+		return lobbies;
+	}
+}
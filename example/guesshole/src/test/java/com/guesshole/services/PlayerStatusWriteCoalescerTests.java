@@ -0,0 +1,229 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.Player;
+import com.guesshole.repositories.PlayerRepository;
+import com.guesshole.websocket.messages.outgoing.PlayerStatusChangeMessage;
+import com.guesshole.websocket.messages.outgoing.PlayerStatusesChangeMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.util.HashedWheelTimer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PlayerStatusWriteCoalescerTests {
+
+	private static final long WINDOW_MILLIS = 50;
+	private static final long MAX_BACKOFF_MILLIS = 400;
+	private static final long VERIFY_TIMEOUT_MILLIS = 5000;
+	// The wheel's tick, how far a flush can stray from its delay
+	private static final long TICK_MILLIS = 10;
+
+	private final UUID lobbyId = UUID.randomUUID();
+	// The players table, as far as the UPDATEs have written it
+	private final Map<UUID, Boolean> stored = new ConcurrentHashMap<>();
+
+	private HashedWheelTimer timer;
+	private PlayerRepository playerRepository;
+	private LobbyService lobbyService;
+	private LobbyStateEngine lobbyStateEngine;
+	private PlayerStatusWriteCoalescer coalescer;
+
+	@BeforeEach
+	void setUp() {
+		timer = new HashedWheelTimer(TICK_MILLIS, TimeUnit.MILLISECONDS);
+		playerRepository = mock(PlayerRepository.class);
+		lobbyService = mock(LobbyService.class);
+		lobbyStateEngine = mock(LobbyStateEngine.class);
+		when(lobbyService.broadcastToLobby(any(), any())).thenReturn(Mono.empty());
+
+		coalescer = new PlayerStatusWriteCoalescer(timer, playerRepository, lobbyService, lobbyStateEngine,
+				new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(coalescer, "windowMillis", WINDOW_MILLIS);
+		ReflectionTestUtils.setField(coalescer, "batchSize", 1000);
+		ReflectionTestUtils.setField(coalescer, "maxBackoffMillis", MAX_BACKOFF_MILLIS);
+	}
+
+	@AfterEach
+	void tearDown() {
+		timer.stop();
+	}
+
+	@Test
+	void changesInOneWindowAreWrittenTogetherWithTheLatestStatus() {
+		UUID first = UUID.randomUUID();
+		UUID second = UUID.randomUUID();
+		when(playerRepository.updateActiveAll(any(), any())).thenAnswer(invocation -> write(invocation.getArgument(0), invocation.getArgument(1)));
+
+		coalescer.setActive(first, false);
+		coalescer.setActive(second, true);
+		coalescer.setActive(first, true);
+
+		List<Map<UUID, Boolean>> writes = captureWrites(1);
+		assertThat(writes.get(0)).isEqualTo(Map.of(first, true, second, true));
+		// Both changes reach the lobby in one message
+		verify(lobbyService, timeout(VERIFY_TIMEOUT_MILLIS)).broadcastToLobby(eq(lobbyId), any(PlayerStatusesChangeMessage.class));
+		verify(lobbyStateEngine, timeout(VERIFY_TIMEOUT_MILLIS).times(2)).putPlayer(any());
+	}
+
+	@Test
+	void changesAreWrittenInBatches() {
+		ReflectionTestUtils.setField(coalescer, "batchSize", 2);
+		when(playerRepository.updateActiveAll(any(), any())).thenAnswer(invocation -> write(invocation.getArgument(0), invocation.getArgument(1)));
+
+		List<UUID> playerIds = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			UUID playerId = UUID.randomUUID();
+			playerIds.add(playerId);
+			coalescer.setActive(playerId, true);
+		}
+
+		List<Map<UUID, Boolean>> writes = captureWrites(3);
+		Map<UUID, Boolean> written = new HashMap<>();
+		writes.forEach(written::putAll);
+		assertThat(written.keySet()).containsExactlyInAnyOrderElementsOf(playerIds);
+		assertThat(writes).allMatch(batch -> batch.size() <= 2);
+	}
+
+	@Test
+	void failedWritesAreRetriedInTheNextFlush() {
+		UUID playerId = UUID.randomUUID();
+		when(playerRepository.updateActiveAll(any(), any()))
+				.thenReturn(Flux.error(new IllegalStateException("Connection refused")))
+				.thenAnswer(invocation -> write(invocation.getArgument(0), invocation.getArgument(1)));
+
+		coalescer.setActive(playerId, true);
+
+		List<Map<UUID, Boolean>> writes = captureWrites(2);
+		assertThat(writes.get(0)).isEqualTo(Map.of(playerId, true));
+		assertThat(writes.get(1)).isEqualTo(Map.of(playerId, true));
+		assertThat(stored).isEqualTo(Map.of(playerId, true));
+		verify(lobbyService, timeout(VERIFY_TIMEOUT_MILLIS)).broadcastToLobby(eq(lobbyId), any(PlayerStatusChangeMessage.class));
+	}
+
+	@Test
+	void retryDoesNotOverwriteAStatusRequestedDuringTheFailedWrite() {
+		UUID playerId = UUID.randomUUID();
+		when(playerRepository.updateActiveAll(any(), any()))
+				.thenAnswer(invocation -> {
+					// The player disconnects again while their reconnect is being written
+					coalescer.setActive(playerId, false);
+					return Flux.error(new IllegalStateException("Connection refused"));
+				})
+				.thenAnswer(invocation -> write(invocation.getArgument(0), invocation.getArgument(1)));
+
+		coalescer.setActive(playerId, true);
+
+		List<Map<UUID, Boolean>> writes = captureWrites(2);
+		assertThat(writes.get(0)).isEqualTo(Map.of(playerId, true));
+		assertThat(writes.get(1)).isEqualTo(Map.of(playerId, false));
+	}
+
+	@Test
+	void retriesBackOffWhileWritesKeepFailingAndResetOnceOneSucceeds() {
+		UUID playerId = UUID.randomUUID();
+		List<Long> attemptedAt = new CopyOnWriteArrayList<>();
+		when(playerRepository.updateActiveAll(any(), any()))
+				.thenAnswer(invocation -> fail(attemptedAt))
+				.thenAnswer(invocation -> fail(attemptedAt))
+				.thenAnswer(invocation -> fail(attemptedAt))
+				.thenAnswer(invocation -> fail(attemptedAt))
+				.thenAnswer(invocation -> {
+					attemptedAt.add(System.nanoTime());
+					return write(invocation.getArgument(0), invocation.getArgument(1));
+				});
+
+		coalescer.setActive(playerId, true);
+
+		captureWrites(5);
+		// Each retry waits twice as long as the last, up to the maximum
+		long[] expectedDelays = {2 * WINDOW_MILLIS, 4 * WINDOW_MILLIS, MAX_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS};
+		for (int i = 0; i < expectedDelays.length; i++) {
+			long delayMillis = TimeUnit.NANOSECONDS.toMillis(attemptedAt.get(i + 1) - attemptedAt.get(i));
+			assertThat(delayMillis).as("retry %d", i + 1).isGreaterThanOrEqualTo(expectedDelays[i] - TICK_MILLIS);
+		}
+		assertThat(stored).isEqualTo(Map.of(playerId, true));
+		verify(lobbyService, timeout(VERIFY_TIMEOUT_MILLIS)).broadcastToLobby(eq(lobbyId), any(PlayerStatusChangeMessage.class));
+		await(() -> (int) ReflectionTestUtils.getField(coalescer, "failedFlushes") == 0);
+
+		// The next change is written after the normal window again
+		long changedAt = System.nanoTime();
+		coalescer.setActive(playerId, false);
+
+		captureWrites(6);
+		long delayMillis = TimeUnit.NANOSECONDS.toMillis(attemptedAt.get(5) - changedAt);
+		assertThat(delayMillis).isLessThan(2 * WINDOW_MILLIS);
+	}
+
+	/**
+	 * Record a write attempt and fail it
+	 */
+	private static Flux<Player> fail(List<Long> attemptedAt) {
+		attemptedAt.add(System.nanoTime());
+		return Flux.error(new IllegalStateException("Connection refused"));
+	}
+
+	private static void await(BooleanSupplier condition) {
+		long giveUpAt = System.currentTimeMillis() + VERIFY_TIMEOUT_MILLIS;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < giveUpAt) {
+			Thread.onSpinWait();
+		}
+		assertThat(condition.getAsBoolean()).isTrue();
+	}
+
+	/**
+	 * Wait for the given number of UPDATEs and return the statuses each one wrote
+	 */
+	private List<Map<UUID, Boolean>> captureWrites(int count) {
+		ArgumentCaptor<UUID[]> ids = ArgumentCaptor.forClass(UUID[].class);
+		ArgumentCaptor<Boolean[]> statuses = ArgumentCaptor.forClass(Boolean[].class);
+		verify(playerRepository, timeout(VERIFY_TIMEOUT_MILLIS).times(count)).updateActiveAll(ids.capture(), statuses.capture());
+
+		List<Map<UUID, Boolean>> writes = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			Map<UUID, Boolean> write = new HashMap<>();
+			for (int j = 0; j < ids.getAllValues().get(i).length; j++) {
+				write.put(ids.getAllValues().get(i)[j], statuses.getAllValues().get(i)[j]);
+			}
+			writes.add(write);
+		}
+		return writes;
+	}
+
+	/**
+	 * Apply an UPDATE to the fake table, returning the players whose status changed as the real statement does
+	 */
+	private Flux<Player> write(UUID[] ids, Boolean[] statuses) {
+		List<Player> changed = new ArrayList<>();
+		for (int i = 0; i < ids.length; i++) {
+			if (!statuses[i].equals(stored.put(ids[i], statuses[i]))) {
+				Player player = new Player("Player " + i, lobbyId, false);
+				player.setId(ids[i]);
+				player.setActive(statuses[i]);
+				changed.add(player);
+			}
+		}
+		return Flux.fromIterable(changed);
+	}
+}
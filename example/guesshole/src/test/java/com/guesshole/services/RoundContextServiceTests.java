@@ -0,0 +1,94 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.Round;
+import com.guesshole.repositories.GuessRepository;
+import com.guesshole.repositories.LocationPointRepository;
+import com.guesshole.repositories.PlayerRepository;
+import com.guesshole.services.LobbyStateEngine.LobbySnapshot;
+import com.guesshole.services.RoundContextService.RoundContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RoundContextServiceTests {
+
+	private final LobbyStateEngine lobbyStateEngine = mock(LobbyStateEngine.class);
+	private final RoundService roundService = mock(RoundService.class);
+	private final GuessRepository guessRepository = mock(GuessRepository.class);
+	private final GuessJournal guessJournal = mock(GuessJournal.class);
+	private final UUID lobbyId = UUID.randomUUID();
+	private final UUID gameInstanceId = UUID.randomUUID();
+	private RoundContextService roundContextService;
+
+	@BeforeEach
+	void setUp() {
+		// The lobby state doesn't hold the round, so it is looked up in the database
+		LobbySnapshot snapshot = mock(LobbySnapshot.class);
+		when(snapshot.getGameInstanceId()).thenReturn(gameInstanceId);
+		when(snapshot.getRoster()).thenReturn(List.of());
+		when(lobbyStateEngine.getSnapshot(lobbyId)).thenReturn(Mono.just(snapshot));
+		when(guessJournal.flush()).thenReturn(Mono.empty());
+		when(guessRepository.findByRoundId(any())).thenReturn(Flux.empty());
+
+		roundContextService = new RoundContextService(lobbyStateEngine, roundService, mock(PlayerRepository.class),
+				guessRepository, guessJournal, mock(LocationPointRepository.class));
+	}
+
+	@Test
+	void roundOfTheLobbysCurrentGameIsLoadedFromTheDatabase() {
+		Round round = round(gameInstanceId);
+
+		RoundContext context = roundContextService.getContext(round.getId(), lobbyId).block();
+
+		assertThat(context.getRound()).isSameAs(round);
+		assertThat(context.getLobbyId()).isEqualTo(lobbyId);
+		// Cached for the round's later guesses
+		assertThat(roundContextService.getContext(round.getId(), lobbyId).block()).isSameAs(context);
+		verify(roundService, times(1)).findById(round.getId());
+	}
+
+	@Test
+	void roundOfAnotherGameIsNotCached() {
+		Round round = round(UUID.randomUUID());
+
+		assertThatThrownBy(() -> roundContextService.getContext(round.getId(), lobbyId).block())
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> roundContextService.getContext(round.getId(), lobbyId).block())
+				.isInstanceOf(IllegalArgumentException.class);
+
+		verify(roundService, times(2)).findById(round.getId());
+	}
+
+	@Test
+	void roundThatDoesNotExistIsNotCached() {
+		UUID roundId = UUID.randomUUID();
+		when(roundService.findById(roundId)).thenReturn(Mono.empty());
+
+		assertThatThrownBy(() -> roundContextService.getContext(roundId, lobbyId).block())
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> roundContextService.getContext(roundId, lobbyId).block())
+				.isInstanceOf(IllegalArgumentException.class);
+
+		verify(roundService, times(2)).findById(roundId);
+	}
+
+	private Round round(UUID gameInstanceId) {
+		Round round = new Round();
+		round.setId(UUID.randomUUID());
+		round.setGameInstanceId(gameInstanceId);
+		when(roundService.findById(round.getId())).thenReturn(Mono.just(round));
+		return round;
+	}
+}
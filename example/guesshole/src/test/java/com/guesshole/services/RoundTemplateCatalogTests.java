@@ -0,0 +1,173 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.LocationPoint;
+import com.guesshole.entities.RoundTemplate;
+import com.guesshole.repositories.LocationPointRepository;
+import com.guesshole.repositories.RoundTemplateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RoundTemplateCatalogTests {
+
+	private static final int RECENT_PER_LOBBY = 50;
+
+	private final List<UUID> france = new ArrayList<>();
+	private final List<UUID> japan = new ArrayList<>();
+	// Templates without a location point are only in the WORLD pool
+	private final List<UUID> unlocated = new ArrayList<>();
+	private final List<UUID> all = new ArrayList<>();
+
+	private RoundTemplateCatalog catalog;
+
+	@BeforeEach
+	void setUp() {
+		List<RoundTemplate> templates = new ArrayList<>();
+		List<LocationPoint> locationPoints = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			templates.add(template(france, locationPoints, "FRA"));
+			templates.add(template(japan, locationPoints, "JPN"));
+			templates.add(template(unlocated, locationPoints, null));
+		}
+		templates.forEach(template -> all.add(template.getId()));
+
+		RoundTemplateRepository roundTemplateRepository = mock(RoundTemplateRepository.class);
+		LocationPointRepository locationPointRepository = mock(LocationPointRepository.class);
+		when(roundTemplateRepository.findPlayable(anyBoolean())).thenReturn(Flux.fromIterable(templates));
+		when(locationPointRepository.findAllByIdIn(any())).thenReturn(Flux.fromIterable(locationPoints));
+
+		catalog = new RoundTemplateCatalog(roundTemplateRepository, locationPointRepository);
+		ReflectionTestUtils.setField(catalog, "approvedOnly", true);
+		ReflectionTestUtils.setField(catalog, "recentPerLobby", RECENT_PER_LOBBY);
+		ReflectionTestUtils.setField(catalog, "maxLobbies", 100);
+		// The repositories answer synchronously, so the reload has finished when this returns
+		catalog.refresh();
+		assertThat(catalog.size()).isEqualTo(all.size());
+	}
+
+	@Test
+	void samplesDistinctTemplatesFromTheWholeWorld() {
+		List<UUID> picked = catalog.sample(null, 20, "WORLD");
+
+		assertThat(picked).hasSize(20).doesNotHaveDuplicates();
+		assertThat(all).containsAll(picked);
+		assertThat(catalog.sample(null, 20, "default")).hasSize(20).doesNotHaveDuplicates();
+		assertThat(catalog.sample(null, 20, null)).hasSize(20).doesNotHaveDuplicates();
+	}
+
+	@Test
+	void returnsTheWholePoolWhenAskedForMore() {
+		assertThat(catalog.sample(null, 100, "WORLD")).containsExactlyInAnyOrderElementsOf(all);
+		assertThat(catalog.sample(null, 100, "FRA")).containsExactlyInAnyOrderElementsOf(france);
+	}
+
+	@Test
+	void countryPoolsOnlyHoldThatCountry() {
+		List<UUID> picked = catalog.sample(null, 5, "jpn");
+
+		assertThat(picked).hasSize(5).doesNotHaveDuplicates();
+		assertThat(japan).containsAll(picked);
+	}
+
+	@Test
+	void unknownCountryFallsBackToTheWholeWorld() {
+		List<UUID> picked = catalog.sample(null, all.size(), "ATA");
+
+		assertThat(picked).containsExactlyInAnyOrderElementsOf(all);
+	}
+
+	@Test
+	void everyTemplateIsEquallyLikely() {
+		Map<UUID, Integer> counts = new HashMap<>();
+		int draws = 12_000;
+		for (int i = 0; i < draws; i++) {
+			for (UUID templateId : catalog.sample(null, 3, "FRA")) {
+				counts.merge(templateId, 1, Integer::sum);
+			}
+		}
+
+		// Each of the 12 French templates is expected 3000 times, a deviation of about 50
+		assertThat(counts).hasSize(france.size());
+		assertThat(counts.values()).allMatch(count -> count > 2700 && count < 3300);
+	}
+
+	@Test
+	void lobbyGetsTemplatesItHasNotPlayedUntilTheyRunOut() {
+		UUID lobbyId = UUID.randomUUID();
+
+		List<UUID> first = catalog.sample(lobbyId, 6, "FRA");
+		List<UUID> second = catalog.sample(lobbyId, 6, "FRA");
+
+		assertThat(second).doesNotContainAnyElementsOf(first);
+		Set<UUID> played = new HashSet<>(first);
+		played.addAll(second);
+		assertThat(played).containsExactlyInAnyOrderElementsOf(france);
+
+		// Everything has been played, so the lobby gets replays rather than a short game
+		assertThat(catalog.sample(lobbyId, 6, "FRA")).hasSize(6).doesNotHaveDuplicates();
+		assertThat(catalog.playedRecently(lobbyId, first)).isTrue();
+	}
+
+	@Test
+	void otherLobbiesAreNotAffected() {
+		UUID lobbyId = UUID.randomUUID();
+		List<UUID> picked = catalog.sample(lobbyId, 6, "FRA");
+
+		assertThat(catalog.playedRecently(UUID.randomUUID(), picked)).isFalse();
+		assertThat(catalog.sample(null, 12, "FRA")).containsExactlyInAnyOrderElementsOf(france);
+	}
+
+	@Test
+	void markPlayedTemplatesAreAvoided() {
+		UUID lobbyId = UUID.randomUUID();
+		List<UUID> prebuilt = japan.subList(0, 8);
+
+		assertThat(catalog.playedRecently(lobbyId, prebuilt)).isFalse();
+		catalog.markPlayed(lobbyId, prebuilt);
+
+		assertThat(catalog.playedRecently(lobbyId, prebuilt)).isTrue();
+		assertThat(catalog.playedRecently(lobbyId, List.of(japan.get(8)))).isFalse();
+		assertThat(catalog.sample(lobbyId, 4, "JPN")).containsExactlyInAnyOrderElementsOf(japan.subList(8, 12));
+	}
+
+	@Test
+	void onlyTheMostRecentTemplatesAreRemembered() {
+		ReflectionTestUtils.setField(catalog, "recentPerLobby", 5);
+		UUID lobbyId = UUID.randomUUID();
+
+		catalog.markPlayed(lobbyId, france.subList(0, 5));
+		catalog.markPlayed(lobbyId, france.subList(5, 8));
+
+		assertThat(catalog.playedRecently(lobbyId, france.subList(0, 3))).isFalse();
+		assertThat(catalog.playedRecently(lobbyId, france.subList(3, 8))).isTrue();
+	}
+
+	private static RoundTemplate template(List<UUID> ids, List<LocationPoint> locationPoints, String gid0) {
+		RoundTemplate template = new RoundTemplate();
+		template.setId(UUID.randomUUID());
+		if (gid0 != null) {
+			LocationPoint locationPoint = new LocationPoint();
+			locationPoint.setId((long) locationPoints.size() + 1);
+			locationPoint.setGid0(gid0);
+			locationPoints.add(locationPoint);
+			template.setLocationPointId(locationPoint.getId());
+		}
+		ids.add(template.getId());
+		return template;
+	}
+}
@@ -0,0 +1,61 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.RoundTemplate;
+import com.guesshole.repositories.LocationPointRepository;
+import com.guesshole.repositories.RoundTemplateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RoundTemplateServiceTests {
+
+	private final RoundTemplateRepository roundTemplateRepository = mock(RoundTemplateRepository.class);
+	private final List<RoundTemplate> approved = new ArrayList<>();
+	private RoundTemplateCatalog catalog;
+	private RoundTemplateService service;
+
+	@BeforeEach
+	void setUp() {
+		for (int i = 0; i < 3; i++) {
+			RoundTemplate template = new RoundTemplate();
+			template.setId(UUID.randomUUID());
+			approved.add(template);
+		}
+		// The catalog hasn't loaded, so templates are sampled in the database
+		catalog = new RoundTemplateCatalog(roundTemplateRepository, mock(LocationPointRepository.class));
+		service = new RoundTemplateService(roundTemplateRepository, mock(LocationPointRepository.class),
+				mock(LocationService.class), catalog);
+	}
+
+	@Test
+	void fallbackLeavesOutUnapprovedTemplates() {
+		ReflectionTestUtils.setField(catalog, "approvedOnly", true);
+		when(roundTemplateRepository.selectRandomPlayable(anyInt(), eq(true))).thenReturn(Flux.fromIterable(approved));
+
+		List<RoundTemplate> templates = service.getRandomTemplates(UUID.randomUUID(), 3, "WORLD").collectList().block();
+
+		assertThat(templates).containsExactlyElementsOf(approved);
+		verify(roundTemplateRepository).selectRandomPlayable(3, true);
+	}
+
+	@Test
+	void fallbackFollowsTheCatalogsApprovalSetting() {
+		ReflectionTestUtils.setField(catalog, "approvedOnly", false);
+		when(roundTemplateRepository.selectRandomPlayable(anyInt(), eq(false))).thenReturn(Flux.fromIterable(approved));
+
+		assertThat(service.getRandomTemplates(UUID.randomUUID(), 3, "WORLD").collectList().block()).hasSize(3);
+		verify(roundTemplateRepository).selectRandomPlayable(3, false);
+	}
+}
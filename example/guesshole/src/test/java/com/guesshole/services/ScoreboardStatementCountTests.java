@@ -0,0 +1,68 @@
+package com.guesshole.services;
+
+import com.guesshole.entities.Round;
+import com.guesshole.support.GameDatabaseTest;
+import com.guesshole.websocket.messages.outgoing.GameStateMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the database round trips of building the round scoreboard. Guesses, multipliers,
+ * locations and totals come from one query, so the count doesn't grow with players or rounds.
+ */
+class ScoreboardStatementCountTests extends GameDatabaseTest {
+
+	// The scoreboard query; the lobby, rounds and roster come from the lobby state engine
+	private static final int SCOREBOARD_STATEMENTS = 1;
+
+	@Autowired
+	private GameStateMessageService gameStateMessageService;
+
+	@Test
+	void scoreboardCostsAConstantNumberOfStatements() throws Exception {
+		int small = scoreboardStatementCount(2, 2);
+		int manyPlayers = scoreboardStatementCount(8, 2);
+		int manyRounds = scoreboardStatementCount(2, 5);
+		int large = scoreboardStatementCount(8, 5);
+
+		assertThat(small).isEqualTo(SCOREBOARD_STATEMENTS);
+		assertThat(manyPlayers).isEqualTo(SCOREBOARD_STATEMENTS);
+		assertThat(manyRounds).isEqualTo(SCOREBOARD_STATEMENTS);
+		assertThat(large).isEqualTo(SCOREBOARD_STATEMENTS);
+	}
+
+	/**
+	 * Start a game in a new lobby, have every player guess in every round, then build the
+	 * scoreboard of the last round
+	 *
+	 * @return The statements building the scoreboard ran
+	 */
+	private int scoreboardStatementCount(int playerCount, int roundCount) throws Exception {
+		StartedGame game = startGame("Scoreboard " + playerCount + "x" + roundCount, playerCount, roundCount);
+		assertThat(game.getSnapshot().getRounds()).hasSize(roundCount);
+
+		for (Round round : game.getSnapshot().getRounds()) {
+			for (int i = 0; i < playerCount; i++) {
+				BigDecimal coordinate = BigDecimal.valueOf(round.getRoundOrder() * 10 + i);
+				guess(game, game.getPlayers().get(i), round.getId(), coordinate, coordinate);
+			}
+		}
+
+		Round lastRound = game.getSnapshot().getRounds().get(roundCount - 1);
+		statements.awaitQuiet(Duration.ofMillis(500), Duration.ofSeconds(30));
+		statements.reset();
+		GameStateMessage message = gameStateMessageService.buildGameStateMessage(game.getLobby().getId(),
+				GameStateService.STATE_ROUND_SCOREBOARD, game.getSnapshot().getGameInstanceId(), lastRound).block();
+		int count = statements.count();
+
+		// Every player's guess is on the scoreboard
+		assertThat(message.getPlayerScores()).hasSize(playerCount);
+		assertThat(message.getTotalRounds()).isEqualTo(roundCount);
+		return count;
+	}
+}
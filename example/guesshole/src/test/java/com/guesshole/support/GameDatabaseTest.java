@@ -0,0 +1,127 @@
+package com.guesshole.support;
+
+import com.guesshole.entities.Lobby;
+import com.guesshole.entities.Player;
+import com.guesshole.services.GameStateService;
+import com.guesshole.services.GuessService;
+import com.guesshole.services.LobbyService;
+import com.guesshole.services.LobbyStateEngine;
+import com.guesshole.services.LobbyStateEngine.LobbySnapshot;
+import com.guesshole.services.PlayerService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.socket.HandshakeInfo;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Base for tests that play games against {@link PostgresTestDatabase}, counting their statements
+ * with {@link StatementCounter}. Starts games in new lobbies and makes guesses through the same
+ * services the WebSocket handlers use.
+ */
+@SpringBootTest
+@Import(StatementCounter.CountingConfiguration.class)
+public abstract class GameDatabaseTest {
+
+	@DynamicPropertySource
+	static void database(DynamicPropertyRegistry registry) {
+		PostgresTestDatabase.register(registry);
+	}
+
+	@Autowired
+	protected LobbyService lobbyService;
+
+	@Autowired
+	protected PlayerService playerService;
+
+	@Autowired
+	protected GameStateService gameStateService;
+
+	@Autowired
+	protected LobbyStateEngine lobbyStateEngine;
+
+	@Autowired
+	protected GuessService guessService;
+
+	@Autowired
+	protected StatementCounter statements;
+
+	/**
+	 * A game started in a new lobby
+	 */
+	protected static class StartedGame {
+		private final Lobby lobby;
+		private final List<Player> players;
+		private final LobbySnapshot snapshot;
+
+		private StartedGame(Lobby lobby, List<Player> players, LobbySnapshot snapshot) {
+			this.lobby = lobby;
+			this.players = players;
+			this.snapshot = snapshot;
+		}
+
+		public Lobby getLobby() {
+			return lobby;
+		}
+
+		public List<Player> getPlayers() {
+			return players;
+		}
+
+		/**
+		 * The lobby as the game started
+		 */
+		public LobbySnapshot getSnapshot() {
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Create a lobby with the given number of players and start a WORLD game in it
+	 */
+	protected StartedGame startGame(String lobbyName, int playerCount, int roundCount) {
+		Lobby lobby = lobbyService.createLobby(lobbyName, "public").block();
+		List<Player> players = new ArrayList<>();
+		for (int i = 0; i < playerCount; i++) {
+			players.add(playerService.createPlayer("Player " + i, lobby.getId(), "avatar1").block());
+		}
+		gameStateService.startGame(lobby.getId(), roundCount, 60, "WORLD").block();
+		return new StartedGame(lobby, players, lobbyStateEngine.getSnapshot(lobby.getId()).block());
+	}
+
+	/**
+	 * Guess a point for a player, ten seconds into a sixty second round
+	 */
+	protected void guess(StartedGame game, Player player, UUID roundId, BigDecimal latitude, BigDecimal longitude) {
+		UUID lobbyId = game.getLobby().getId();
+		guessService.processGuess(player.getId(), roundId, latitude, longitude, 60, 10, lobbyId, session(lobbyId))
+				.block();
+	}
+
+	/**
+	 * A mocked open session connected to a lobby, accepting whatever is sent to it
+	 */
+	public static WebSocketSession session(UUID lobbyId) {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn(UUID.randomUUID().toString());
+		when(session.isOpen()).thenReturn(true);
+		when(session.getHandshakeInfo()).thenReturn(new HandshakeInfo(
+				URI.create("ws://localhost/ws/lobby/" + lobbyId), new HttpHeaders(), Mono.empty(), null));
+		when(session.send(any())).thenReturn(Mono.empty());
+		return session;
+	}
+}
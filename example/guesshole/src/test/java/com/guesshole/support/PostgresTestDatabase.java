@@ -0,0 +1,51 @@
+package com.guesshole.support;
+
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A PostGIS database in a container, shared by every test that needs a real database.
+ * The migrations run against it as they do in production, after a test migration that
+ * creates an empty gadm_boundaries table, which is normally loaded outside Flyway.
+ */
+public final class PostgresTestDatabase {
+
+	private static final PostgreSQLContainer<?> CONTAINER = new PostgreSQLContainer<>(
+			DockerImageName.parse("postgis/postgis:16-3.4").asCompatibleSubstituteFor("postgres"))
+			.withDatabaseName("guessholedb")
+			.withUsername("guessholedbuser")
+			.withPassword("guesshole");
+
+	static {
+		CONTAINER.start();
+	}
+
+	private PostgresTestDatabase() {
+	}
+
+	/**
+	 * The properties pointing an application context at the database
+	 */
+	public static Map<String, String> properties() {
+		Map<String, String> properties = new LinkedHashMap<>();
+		properties.put("spring.r2dbc.url", "r2dbc:postgresql://" + CONTAINER.getHost() + ":"
+				+ CONTAINER.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + CONTAINER.getDatabaseName());
+		properties.put("spring.r2dbc.username", CONTAINER.getUsername());
+		properties.put("spring.r2dbc.password", CONTAINER.getPassword());
+		properties.put("spring.flyway.url", CONTAINER.getJdbcUrl());
+		properties.put("spring.flyway.user", CONTAINER.getUsername());
+		properties.put("spring.flyway.password", CONTAINER.getPassword());
+		properties.put("spring.flyway.locations", "classpath:db/migration,classpath:db/testmigration");
+		// Pre-built games are written in the background and would run statements during a measurement
+		properties.put("app.game-instance.pool.enabled", "false");
+		return properties;
+	}
+
+	public static void register(DynamicPropertyRegistry registry) {
+		properties().forEach((name, value) -> registry.add(name, () -> value));
+	}
+}
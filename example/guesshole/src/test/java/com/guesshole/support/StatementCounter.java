@@ -0,0 +1,88 @@
+package com.guesshole.support;
+
+import io.r2dbc.proxy.ProxyConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records every statement the application sends to the database, one entry per round trip.
+ * Import {@link CountingConfiguration} into a test context to wrap its connection factory.
+ */
+public class StatementCounter {
+
+	private final List<String> statements = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Forget the statements recorded so far
+	 */
+	public void reset() {
+		statements.clear();
+	}
+
+	public int count() {
+		return statements.size();
+	}
+
+	public List<String> getStatements() {
+		return List.copyOf(statements);
+	}
+
+	/**
+	 * Wait until no statement has run for the given time, so startup work and scheduled tasks
+	 * that run at startup don't end up in a measurement
+	 */
+	public void awaitQuiet(Duration quietPeriod, Duration timeout) throws InterruptedException {
+		long deadline = System.nanoTime() + timeout.toNanos();
+		int seen = count();
+		long quietSince = System.nanoTime();
+		while (System.nanoTime() - quietSince < quietPeriod.toNanos()) {
+			if (System.nanoTime() > deadline) {
+				throw new IllegalStateException("Statements still running after " + timeout + ": " + getStatements());
+			}
+			Thread.sleep(50);
+			int now = count();
+			if (now != seen) {
+				seen = now;
+				quietSince = System.nanoTime();
+			}
+		}
+	}
+
+	private void record(List<String> queries) {
+		statements.add(String.join("; ", queries));
+	}
+
+	@TestConfiguration(proxyBeanMethods = false)
+	public static class CountingConfiguration {
+
+		@Bean
+		StatementCounter statementCounter() {
+			return new StatementCounter();
+		}
+
+		@Bean
+		static BeanPostProcessor statementCountingConnectionFactory(ObjectProvider<StatementCounter> counter) {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					if (!(bean instanceof ConnectionFactory)) {
+						return bean;
+					}
+					StatementCounter statementCounter = counter.getObject();
+					return ProxyConnectionFactory.builder((ConnectionFactory) bean)
+							.onAfterQuery(execution -> statementCounter.record(execution.getQueries().stream()
+									.map(query -> query.getQuery())
+									.toList()))
+							.build();
+				}
+			};
+		}
+	}
+}
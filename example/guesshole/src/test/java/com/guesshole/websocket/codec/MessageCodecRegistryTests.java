@@ -0,0 +1,125 @@
+package com.guesshole.websocket.codec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.guesshole.entities.Player;
+import com.guesshole.websocket.messages.incoming.GuessSubmittedMessage;
+import com.guesshole.websocket.messages.incoming.StateAckMessage;
+import com.guesshole.websocket.messages.outgoing.PlayersUpdateMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.socket.HandshakeInfo;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MessageCodecRegistryTests {
+
+	private final MessageCodecRegistry registry = new MessageCodecRegistry(
+			Jackson2ObjectMapperBuilder.json().build(), Jackson2ObjectMapperBuilder.json());
+
+	@Test
+	void subprotocolsAreOfferedWithJsonFirst() {
+		assertThat(registry.getSubProtocols()).containsExactly(
+				MessageCodecRegistry.JSON, MessageCodecRegistry.CBOR, MessageCodecRegistry.SMILE);
+		assertThat(registry.getDefaultCodec().getSubprotocol()).isEqualTo(MessageCodecRegistry.JSON);
+	}
+
+	@Test
+	void sessionGetsTheCodecItNegotiated() {
+		assertThat(registry.forSession(session(MessageCodecRegistry.CBOR)).getSubprotocol())
+				.isEqualTo(MessageCodecRegistry.CBOR);
+		assertThat(registry.forSession(session(MessageCodecRegistry.SMILE)).getSubprotocol())
+				.isEqualTo(MessageCodecRegistry.SMILE);
+		assertThat(registry.forSession(session(MessageCodecRegistry.JSON)).getSubprotocol())
+				.isEqualTo(MessageCodecRegistry.JSON);
+	}
+
+	@Test
+	void sessionWithoutAKnownSubprotocolGetsJson() {
+		assertThat(registry.forSession(session(null))).isSameAs(registry.getDefaultCodec());
+		assertThat(registry.forSession(session("graphql-ws"))).isSameAs(registry.getDefaultCodec());
+	}
+
+	@Test
+	void onlyJsonIsSentAsText() {
+		assertThat(codec(MessageCodecRegistry.JSON).getFrameType()).isEqualTo(WebSocketMessage.Type.TEXT);
+		assertThat(codec(MessageCodecRegistry.CBOR).getFrameType()).isEqualTo(WebSocketMessage.Type.BINARY);
+		assertThat(codec(MessageCodecRegistry.SMILE).getFrameType()).isEqualTo(WebSocketMessage.Type.BINARY);
+	}
+
+	@Test
+	void outgoingMessagesReadBackAsTheSameTreeWithEveryCodec() throws Exception {
+		PlayersUpdateMessage message = new PlayersUpdateMessage(List.of(player("Alice", true), player("Bob", false)));
+		JsonNode expected = registry.getDefaultCodec().getObjectMapper()
+				.readTree(registry.getDefaultCodec().getObjectMapper().writeValueAsBytes(message));
+
+		for (MessageCodec codec : registry.getCodecs()) {
+			byte[] frame = codec.getObjectMapper().writeValueAsBytes(message);
+
+			assertThat(codec.getObjectMapper().readTree(frame)).as(codec.getSubprotocol()).isEqualTo(expected);
+		}
+		assertThat(expected.path("type").textValue()).isEqualTo("PLAYERS_UPDATE");
+		assertThat(expected.path("players")).hasSize(2);
+	}
+
+	@Test
+	void incomingMessagesBindWithEveryCodec() throws Exception {
+		UUID roundId = UUID.randomUUID();
+		GuessSubmittedMessage guess = new GuessSubmittedMessage(
+				new BigDecimal("-41.2865"), new BigDecimal("174.7762"), roundId, 60, 14);
+		StateAckMessage ack = new StateAckMessage(1234567890123L, true);
+
+		for (MessageCodec codec : registry.getCodecs()) {
+			GuessSubmittedMessage boundGuess = codec.getObjectMapper().readValue(
+					codec.getObjectMapper().writeValueAsBytes(guess), GuessSubmittedMessage.class);
+			StateAckMessage boundAck = codec.getObjectMapper().readValue(
+					codec.getObjectMapper().writeValueAsBytes(ack), StateAckMessage.class);
+
+			assertThat(boundGuess.getLatitude()).as(codec.getSubprotocol()).isEqualByComparingTo("-41.2865");
+			assertThat(boundGuess.getLongitude()).as(codec.getSubprotocol()).isEqualByComparingTo("174.7762");
+			assertThat(boundGuess.getRoundId()).isEqualTo(roundId);
+			assertThat(boundGuess.getGuessTime()).isEqualTo(14);
+			assertThat(boundAck.getVersion()).isEqualTo(1234567890123L);
+			assertThat(boundAck.isResync()).isTrue();
+		}
+	}
+
+	@Test
+	void binaryFramesAreSmallerThanJson() throws Exception {
+		PlayersUpdateMessage message = new PlayersUpdateMessage(List.of(player("Alice", true), player("Bob", false)));
+		int jsonSize = codec(MessageCodecRegistry.JSON).getObjectMapper().writeValueAsBytes(message).length;
+
+		assertThat(codec(MessageCodecRegistry.CBOR).getObjectMapper().writeValueAsBytes(message).length).isLessThan(jsonSize);
+		assertThat(codec(MessageCodecRegistry.SMILE).getObjectMapper().writeValueAsBytes(message).length).isLessThan(jsonSize);
+	}
+
+	private MessageCodec codec(String subprotocol) {
+		return registry.getCodecs().stream()
+				.filter(codec -> codec.getSubprotocol().equals(subprotocol))
+				.findFirst()
+				.orElseThrow();
+	}
+
+	private static WebSocketSession session(String subprotocol) {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getHandshakeInfo()).thenReturn(new HandshakeInfo(
+				URI.create("ws://localhost/ws/lobby/" + UUID.randomUUID()), new HttpHeaders(), Mono.empty(), subprotocol));
+		return session;
+	}
+
+	private static Player player(String name, boolean host) {
+		Player player = new Player(name, UUID.randomUUID(), host, "avatar1");
+		player.setId(UUID.randomUUID());
+		return player;
+	}
+}
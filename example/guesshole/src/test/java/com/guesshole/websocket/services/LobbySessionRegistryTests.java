@@ -0,0 +1,182 @@
+package com.guesshole.websocket.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guesshole.websocket.codec.MessageCodec;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LobbySessionRegistryTests {
+
+	private static final int THREADS = 8;
+	private static final int SESSIONS_PER_THREAD = 500;
+	private static final UUID[] LOBBIES = { UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID() };
+
+	private final MessageCodec codec = new MessageCodec("guesshole.json", new ObjectMapper(), false);
+
+	@Test
+	void concurrentJoinsAndLeavesLoseNothing() throws Exception {
+		LobbySessionRegistry registry = new LobbySessionRegistry();
+		AtomicReference<Throwable> readerFailure = new AtomicReference<>();
+		List<List<Member>> kept = runConcurrently(registry, readerFailure);
+
+		assertThat(readerFailure.get()).isNull();
+		for (int lobby = 0; lobby < LOBBIES.length; lobby++) {
+			UUID lobbyId = LOBBIES[lobby];
+			List<Member> expected = kept.get(lobby);
+			assertThat(registry.get(lobbyId).getSessions())
+					.containsExactlyInAnyOrderElementsOf(expected.stream().map(member -> member.session).toList());
+			for (Member member : expected) {
+				assertThat(registry.getPlayerId(member.session)).isEqualTo(member.playerId);
+				assertThat(registry.get(lobbyId).getPlayerSessions(member.playerId)).containsExactly(member.session);
+				assertThat(registry.getCodec(member.session)).isSameAs(codec);
+			}
+			assertThat(registry.get(lobbyId).getSessionsByCodec().get(codec)).hasSize(expected.size());
+		}
+	}
+
+	@Test
+	void lobbyIsRemovedWithItsLastSessionWithoutLosingConcurrentJoins() throws Exception {
+		LobbySessionRegistry registry = new LobbySessionRegistry();
+		UUID lobbyId = UUID.randomUUID();
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CyclicBarrier start = new CyclicBarrier(THREADS);
+		List<Future<WebSocketSession>> survivors = new ArrayList<>();
+
+		try {
+			for (int t = 0; t < THREADS; t++) {
+				int thread = t;
+				survivors.add(executor.submit(() -> {
+					WebSocketSession[] churn = new WebSocketSession[SESSIONS_PER_THREAD];
+					for (int i = 0; i < churn.length; i++) {
+						churn[i] = session("churn-" + thread + "-" + i);
+					}
+					start.await();
+					// Keep emptying the lobby while other threads join it
+					for (WebSocketSession session : churn) {
+						registry.add(lobbyId, session, codec);
+						registry.remove(session);
+					}
+					WebSocketSession survivor = session("survivor-" + thread);
+					registry.add(lobbyId, survivor, codec);
+					return survivor;
+				}));
+			}
+
+			List<WebSocketSession> expected = new ArrayList<>();
+			for (Future<WebSocketSession> survivor : survivors) {
+				expected.add(survivor.get(60, TimeUnit.SECONDS));
+			}
+			assertThat(registry.get(lobbyId).getSessions()).containsExactlyInAnyOrderElementsOf(expected);
+
+			expected.forEach(registry::remove);
+			assertThat(registry.get(lobbyId).isEmpty()).isTrue();
+			assertThat(registry.getLobbyIds()).doesNotContain(lobbyId);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Every thread adds sessions to all lobbies, identifies them, and removes every other one,
+	 * while a reader keeps checking each snapshot it sees is internally consistent
+	 */
+	private List<List<Member>> runConcurrently(LobbySessionRegistry registry, AtomicReference<Throwable> readerFailure)
+			throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+		CyclicBarrier start = new CyclicBarrier(THREADS + 1);
+		CountDownLatch writersDone = new CountDownLatch(THREADS);
+		List<Future<List<Member>>> results = new ArrayList<>();
+
+		try {
+			executor.submit(() -> {
+				start.await();
+				try {
+					while (writersDone.getCount() > 0) {
+						for (UUID lobbyId : LOBBIES) {
+							LobbySessionRegistry.LobbySessions snapshot = registry.get(lobbyId);
+							int grouped = snapshot.getSessionsByCodec().values().stream().mapToInt(List::size).sum();
+							assertThat(grouped).isEqualTo(snapshot.size());
+							assertThat(snapshot.getSessions()).hasSize(snapshot.size());
+						}
+					}
+				} catch (Throwable e) {
+					readerFailure.compareAndSet(null, e);
+				}
+				return null;
+			});
+
+			for (int t = 0; t < THREADS; t++) {
+				int thread = t;
+				results.add(executor.submit(() -> {
+					Member[] members = new Member[SESSIONS_PER_THREAD];
+					for (int i = 0; i < members.length; i++) {
+						members[i] = new Member(LOBBIES[i % LOBBIES.length], session(thread + "-" + i), UUID.randomUUID());
+					}
+					start.await();
+					List<Member> keptByThread = new ArrayList<>();
+					try {
+						for (int i = 0; i < members.length; i++) {
+							Member member = members[i];
+							registry.add(member.lobbyId, member.session, codec);
+							registry.setPlayerId(member.session, member.playerId);
+							if (i % 2 == 0) {
+								registry.remove(member.session);
+							} else {
+								keptByThread.add(member);
+							}
+						}
+					} finally {
+						writersDone.countDown();
+					}
+					return keptByThread;
+				}));
+			}
+
+			List<List<Member>> kept = new ArrayList<>();
+			for (UUID ignored : LOBBIES) {
+				kept.add(new ArrayList<>());
+			}
+			for (Future<List<Member>> result : results) {
+				for (Member member : result.get(60, TimeUnit.SECONDS)) {
+					for (int lobby = 0; lobby < LOBBIES.length; lobby++) {
+						if (LOBBIES[lobby].equals(member.lobbyId)) {
+							kept.get(lobby).add(member);
+						}
+					}
+				}
+			}
+			return kept;
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(60, TimeUnit.SECONDS);
+		}
+	}
+
+	private static WebSocketSession session(String id) {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn(id);
+		return session;
+	}
+
+	private static final class Member {
+		private final UUID lobbyId;
+		private final WebSocketSession session;
+		private final UUID playerId;
+
+		private Member(UUID lobbyId, WebSocketSession session, UUID playerId) {
+			this.lobbyId = lobbyId;
+			this.session = session;
+			this.playerId = playerId;
+		}
+	}
+}
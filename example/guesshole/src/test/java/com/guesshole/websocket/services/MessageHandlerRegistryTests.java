@@ -0,0 +1,206 @@
+package com.guesshole.websocket.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.guesshole.websocket.codec.MessageCodec;
+import com.guesshole.websocket.codec.MessageCodecRegistry;
+import com.guesshole.websocket.handler.MessageHandler;
+import com.guesshole.websocket.messages.incoming.GuessSubmittedMessage;
+import com.guesshole.websocket.messages.incoming.StateAckMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class MessageHandlerRegistryTests {
+
+	private final MessageCodecRegistry codecs = new MessageCodecRegistry(
+			Jackson2ObjectMapperBuilder.json().build(), Jackson2ObjectMapperBuilder.json());
+	private final RecordingHandler<GuessSubmittedMessage> guessHandler =
+			new RecordingHandler<>("GUESS_SUBMITTED", GuessSubmittedMessage.class);
+	private final RecordingHandler<StateAckMessage> ackHandler =
+			new RecordingHandler<>("STATE_ACK", StateAckMessage.class);
+	private final RecordingHandler<Void> heartbeatHandler =
+			new RecordingHandler<>("HEARTBEAT_ACK", Void.class);
+	private final MessageHandlerRegistry registry =
+			new MessageHandlerRegistry(List.of(guessHandler, ackHandler, heartbeatHandler));
+	private final WebSocketSession session = mock(WebSocketSession.class);
+	private final UUID lobbyId = UUID.randomUUID();
+	private final UUID roundId = UUID.randomUUID();
+
+	@Test
+	void messageWithTheTypeFirstIsBoundFromTheStream() throws Exception {
+		for (MessageCodec codec : codecs.getCodecs()) {
+			ObjectNode guess = codec.getObjectMapper().createObjectNode().put("type", "GUESS_SUBMITTED");
+			guess.setAll(guessFields(codec.getObjectMapper()));
+
+			registry.handleMessage(frame(codec, guess), codec, session, lobbyId).block();
+
+			assertThat(guessHandler.messages).as(codec.getSubprotocol()).hasSize(1);
+			assertGuess(guessHandler.messages.remove(0));
+		}
+		assertThat(guessHandler.lobbyIds).containsOnly(lobbyId);
+	}
+
+	@Test
+	void messageWithTheTypeLaterIsReadInFull() throws Exception {
+		for (MessageCodec codec : codecs.getCodecs()) {
+			ObjectNode guess = guessFields(codec.getObjectMapper()).put("type", "GUESS_SUBMITTED");
+
+			registry.handleMessage(frame(codec, guess), codec, session, lobbyId).block();
+
+			assertThat(guessHandler.messages).as(codec.getSubprotocol()).hasSize(1);
+			assertGuess(guessHandler.messages.remove(0));
+		}
+	}
+
+	@Test
+	void messageWithOnlyATypeIsBoundFromAnEmptyObject() throws Exception {
+		for (MessageCodec codec : codecs.getCodecs()) {
+			ObjectNode ack = codec.getObjectMapper().createObjectNode().put("type", "STATE_ACK");
+
+			registry.handleMessage(frame(codec, ack), codec, session, lobbyId).block();
+
+			assertThat(ackHandler.messages).as(codec.getSubprotocol()).hasSize(1);
+			StateAckMessage bound = ackHandler.messages.remove(0);
+			assertThat(bound).isNotNull();
+			assertThat(bound.getVersion()).isNull();
+			assertThat(bound.isResync()).isFalse();
+		}
+	}
+
+	@Test
+	void handlerWithoutABodyIsPassedNull() throws Exception {
+		MessageCodec codec = codecs.getDefaultCodec();
+
+		registry.handleMessage(jsonFrame(codec, "{\"type\":\"HEARTBEAT_ACK\",\"sentAt\":123}"), codec, session, lobbyId).block();
+
+		assertThat(heartbeatHandler.messages).hasSize(1);
+		assertThat(heartbeatHandler.messages.get(0)).isNull();
+	}
+
+	@Test
+	void messageOfAnUnknownTypeIsDropped() throws Exception {
+		for (MessageCodec codec : codecs.getCodecs()) {
+			ObjectNode unknown = codec.getObjectMapper().createObjectNode().put("type", "SELF_DESTRUCT");
+			ObjectNode unknownLater = guessFields(codec.getObjectMapper()).put("type", "SELF_DESTRUCT");
+
+			registry.handleMessage(frame(codec, unknown), codec, session, lobbyId).block();
+			registry.handleMessage(frame(codec, unknownLater), codec, session, lobbyId).block();
+		}
+
+		assertNothingHandled();
+	}
+
+	@Test
+	void messageWithoutATypeIsDropped() {
+		MessageCodec codec = codecs.getDefaultCodec();
+
+		registry.handleMessage(jsonFrame(codec, "{\"version\":3}"), codec, session, lobbyId).block();
+		registry.handleMessage(jsonFrame(codec, "{}"), codec, session, lobbyId).block();
+		registry.handleMessage(jsonFrame(codec, "[\"STATE_ACK\"]"), codec, session, lobbyId).block();
+
+		assertNothingHandled();
+	}
+
+	@Test
+	void malformedMessageIsDropped() {
+		MessageCodec codec = codecs.getDefaultCodec();
+
+		registry.handleMessage(jsonFrame(codec, "{\"type\":\"GUESS_SUBMITTED\",\"latitude\":"), codec, session, lobbyId).block();
+		registry.handleMessage(jsonFrame(codec, "{\"type\":\"STATE_ACK\",\"version\":\"soon\"}"), codec, session, lobbyId).block();
+
+		assertNothingHandled();
+	}
+
+	@Test
+	void handlerErrorsDontEndTheSession() throws Exception {
+		MessageHandler<Void> failing = new RecordingHandler<>("HEARTBEAT_ACK", Void.class) {
+			@Override
+			public Mono<Void> handle(Void message, WebSocketSession session, UUID lobbyId) {
+				return Mono.error(new IllegalStateException("lobby is gone"));
+			}
+		};
+		MessageHandlerRegistry failingRegistry = new MessageHandlerRegistry(List.of(failing));
+		MessageCodec codec = codecs.getDefaultCodec();
+
+		Mono<Void> handled = failingRegistry.handleMessage(jsonFrame(codec, "{\"type\":\"HEARTBEAT_ACK\"}"), codec, session, lobbyId);
+
+		assertThat(handled.hasElement().block()).isFalse();
+	}
+
+	private void assertNothingHandled() {
+		assertThat(guessHandler.messages).isEmpty();
+		assertThat(ackHandler.messages).isEmpty();
+		assertThat(heartbeatHandler.messages).isEmpty();
+	}
+
+	private ObjectNode guessFields(ObjectMapper objectMapper) {
+		return objectMapper.createObjectNode()
+				.put("latitude", -41.2865)
+				.put("longitude", 174.7762)
+				.put("roundId", roundId.toString())
+				.put("roundDuration", 60)
+				.put("guessTime", 14);
+	}
+
+	private void assertGuess(GuessSubmittedMessage guess) {
+		assertThat(guess.getLatitude()).isEqualByComparingTo("-41.2865");
+		assertThat(guess.getLongitude()).isEqualByComparingTo("174.7762");
+		assertThat(guess.getRoundId()).isEqualTo(roundId);
+		assertThat(guess.getRoundDuration()).isEqualTo(60);
+		assertThat(guess.getGuessTime()).isEqualTo(14);
+	}
+
+	private static WebSocketMessage frame(MessageCodec codec, ObjectNode message) throws Exception {
+		return new WebSocketMessage(codec.getFrameType(),
+				DefaultDataBufferFactory.sharedInstance.wrap(codec.getObjectMapper().writeValueAsBytes(message)));
+	}
+
+	private static WebSocketMessage jsonFrame(MessageCodec codec, String json) {
+		return new WebSocketMessage(codec.getFrameType(),
+				DefaultDataBufferFactory.sharedInstance.wrap(json.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * A handler that keeps every message it is given
+	 */
+	private static class RecordingHandler<T> implements MessageHandler<T> {
+		private final String messageType;
+		private final Class<T> messageClass;
+		private final List<T> messages = new ArrayList<>();
+		private final List<UUID> lobbyIds = new ArrayList<>();
+
+		private RecordingHandler(String messageType, Class<T> messageClass) {
+			this.messageType = messageType;
+			this.messageClass = messageClass;
+		}
+
+		@Override
+		public String getMessageType() {
+			return messageType;
+		}
+
+		@Override
+		public Class<T> getMessageClass() {
+			return messageClass;
+		}
+
+		@Override
+		public Mono<Void> handle(T message, WebSocketSession session, UUID lobbyId) {
+			messages.add(message);
+			lobbyIds.add(lobbyId);
+			return Mono.empty();
+		}
+	}
+}
@@ -0,0 +1,313 @@
+package com.guesshole.websocket.services;
+
+import com.guesshole.websocket.services.PlayerConnection.State;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class PlayerConnectionTests {
+
+	private static final int RACES = 2000;
+	private static final Duration HEARTBEAT_TIMEOUT = Duration.ofSeconds(30);
+
+	private final UUID lobbyId = UUID.randomUUID();
+
+	@Test
+	void connectArmsTheHeartbeatCheck() {
+		PlayerConnection connection = new PlayerConnection(UUID.randomUUID());
+		WebSocketSession session = mock(WebSocketSession.class);
+		FakeTimeout check = new FakeTimeout();
+
+		connection.connect(lobbyId, session, arm(check));
+
+		assertThat(connection.getState()).isEqualTo(State.CONNECTED);
+		assertThat(connection.getSession()).isSameAs(session);
+		assertThat(connection.getLobbyId()).isEqualTo(lobbyId);
+		assertThat(check.isCancelled()).isFalse();
+	}
+
+	@Test
+	void disconnectReplacesTheHeartbeatCheckWithTheReconnectionWindow() {
+		PlayerConnection connection = new PlayerConnection(UUID.randomUUID());
+		WebSocketSession session = mock(WebSocketSession.class);
+		FakeTimeout check = new FakeTimeout();
+		FakeTimeout expiry = new FakeTimeout();
+		connection.connect(lobbyId, session, arm(check));
+
+		assertThat(connection.disconnect(session, arm(expiry))).isTrue();
+
+		assertThat(connection.getState()).isEqualTo(State.DISCONNECTED);
+		assertThat(check.isCancelled()).isTrue();
+		assertThat(expiry.isCancelled()).isFalse();
+		// The replaced check does nothing when it fires
+		assertThat(connection.heartbeatCheckDue(check, Duration.ZERO, delay -> new FakeTimeout())).isFalse();
+	}
+
+	@Test
+	void closingAReplacedSessionDoesNotDisconnect() {
+		PlayerConnection connection = new PlayerConnection(UUID.randomUUID());
+		WebSocketSession first = mock(WebSocketSession.class);
+		WebSocketSession second = mock(WebSocketSession.class);
+		FakeTimeout firstCheck = new FakeTimeout();
+		FakeTimeout secondCheck = new FakeTimeout();
+		connection.connect(lobbyId, first, arm(firstCheck));
+		connection.connect(lobbyId, second, arm(secondCheck));
+
+		assertThat(connection.disconnect(first, c -> {
+			throw new AssertionError("The reconnection window shouldn't start");
+		})).isFalse();
+
+		assertThat(connection.getState()).isEqualTo(State.CONNECTED);
+		assertThat(connection.getSession()).isSameAs(second);
+		assertThat(firstCheck.isCancelled()).isTrue();
+		assertThat(secondCheck.isCancelled()).isFalse();
+	}
+
+	@Test
+	void expiryMakesADisconnectedPlayerInactive() {
+		PlayerConnection connection = new PlayerConnection(UUID.randomUUID());
+		WebSocketSession session = mock(WebSocketSession.class);
+		FakeTimeout expiry = new FakeTimeout();
+		connection.connect(lobbyId, session, arm(new FakeTimeout()));
+		connection.disconnect(session, arm(expiry));
+
+		assertThat(connection.expire(expiry)).isTrue();
+
+		assertThat(connection.getState()).isEqualTo(State.INACTIVE);
+		// Only once
+		assertThat(connection.expire(expiry)).isFalse();
+	}
+
+	@Test
+	void reconnectingCancelsTheReconnectionWindow() {
+		PlayerConnection connection = new PlayerConnection(UUID.randomUUID());
+		WebSocketSession first = mock(WebSocketSession.class);
+		WebSocketSession second = mock(WebSocketSession.class);
+		FakeTimeout expiry = new FakeTimeout();
+		connection.connect(lobbyId, first, arm(new FakeTimeout()));
+		connection.disconnect(first, arm(expiry));
+
+		connection.connect(lobbyId, second, arm(new FakeTimeout()));
+
+		assertThat(expiry.isCancelled()).isTrue();
+		// An expiry already running when it was cancelled finds it has been replaced
+		assertThat(connection.expire(expiry)).isFalse();
+		assertThat(connection.getState()).isEqualTo(State.CONNECTED);
+	}
+
+	@Test
+	void onlyTheLatestReconnectionWindowExpires() {
+		PlayerConnection connection = new PlayerConnection(UUID.randomUUID());
+		WebSocketSession first = mock(WebSocketSession.class);
+		WebSocketSession second = mock(WebSocketSession.class);
+		FakeTimeout firstExpiry = new FakeTimeout();
+		FakeTimeout secondExpiry = new FakeTimeout();
+		connection.connect(lobbyId, first, arm(new FakeTimeout()));
+		connection.disconnect(first, arm(firstExpiry));
+		connection.connect(lobbyId, second, arm(new FakeTimeout()));
+		connection.disconnect(second, arm(secondExpiry));
+
+		assertThat(connection.expire(firstExpiry)).isFalse();
+		assertThat(connection.getState()).isEqualTo(State.DISCONNECTED);
+		assertThat(connection.expire(secondExpiry)).isTrue();
+		assertThat(connection.getState()).isEqualTo(State.INACTIVE);
+	}
+
+	@Test
+	void heartbeatCheckIsRearmedWhileHeartbeatsAreAcknowledged() {
+		PlayerConnection connection = new PlayerConnection(UUID.randomUUID());
+		FakeTimeout check = new FakeTimeout();
+		FakeTimeout rearmed = new FakeTimeout();
+		List<Duration> delays = new ArrayList<>();
+		connection.connect(lobbyId, mock(WebSocketSession.class), arm(check));
+		connection.recordHeartbeat(Duration.ofMillis(20));
+
+		boolean timedOut = connection.heartbeatCheckDue(check, HEARTBEAT_TIMEOUT, delay -> {
+			delays.add(delay);
+			return rearmed;
+		});
+
+		assertThat(timedOut).isFalse();
+		// Re-armed for what is left of the timeout since the last heartbeat
+		assertThat(delays).hasSize(1);
+		assertThat(delays.get(0)).isPositive().isLessThanOrEqualTo(HEARTBEAT_TIMEOUT);
+		assertThat(connection.getLastRoundTrip()).isEqualTo(Duration.ofMillis(20));
+		// The old check has been replaced by the re-armed one
+		assertThat(connection.heartbeatCheckDue(check, HEARTBEAT_TIMEOUT, delay -> new FakeTimeout())).isFalse();
+		assertThat(delays).hasSize(1);
+	}
+
+	@Test
+	void heartbeatCheckTimesOutWithoutAnAcknowledgement() {
+		PlayerConnection connection = new PlayerConnection(UUID.randomUUID());
+		FakeTimeout check = new FakeTimeout();
+		connection.connect(lobbyId, mock(WebSocketSession.class), arm(check));
+
+		assertThat(connection.heartbeatCheckDue(check, Duration.ZERO, delay -> {
+			throw new AssertionError("A timed out check shouldn't be re-armed");
+		})).isTrue();
+	}
+
+	@Test
+	void disconnectRacingAReconnectLeavesThePlayerConnected() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (int i = 0; i < RACES; i++) {
+				PlayerConnection connection = new PlayerConnection(UUID.randomUUID());
+				WebSocketSession first = mock(WebSocketSession.class);
+				WebSocketSession second = mock(WebSocketSession.class);
+				FakeTimeout expiry = new FakeTimeout();
+				FakeTimeout secondCheck = new FakeTimeout();
+				connection.connect(lobbyId, first, arm(new FakeTimeout()));
+
+				List<Boolean> results = race(executor,
+						() -> connection.disconnect(first, arm(expiry)),
+						() -> {
+							connection.connect(lobbyId, second, arm(secondCheck));
+							return true;
+						});
+
+				assertThat(connection.getState()).isEqualTo(State.CONNECTED);
+				assertThat(connection.getSession()).isSameAs(second);
+				assertThat(secondCheck.isCancelled()).isFalse();
+				// If the old session's close won, its reconnection window was cancelled by the reconnect
+				if (results.get(0)) {
+					assertThat(expiry.isCancelled()).isTrue();
+					assertThat(connection.expire(expiry)).isFalse();
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void expiryRacingAReconnectLeavesThePlayerConnected() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (int i = 0; i < RACES; i++) {
+				PlayerConnection connection = new PlayerConnection(UUID.randomUUID());
+				WebSocketSession first = mock(WebSocketSession.class);
+				WebSocketSession second = mock(WebSocketSession.class);
+				FakeTimeout expiry = new FakeTimeout();
+				FakeTimeout secondCheck = new FakeTimeout();
+				connection.connect(lobbyId, first, arm(new FakeTimeout()));
+				connection.disconnect(first, arm(expiry));
+
+				race(executor,
+						() -> connection.expire(expiry),
+						() -> {
+							connection.connect(lobbyId, second, arm(secondCheck));
+							return true;
+						});
+
+				// Whichever ran first, the reconnect is the last word
+				assertThat(connection.getState()).isEqualTo(State.CONNECTED);
+				assertThat(connection.getSession()).isSameAs(second);
+				assertThat(secondCheck.isCancelled()).isFalse();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void heartbeatCheckRacingADisconnectNeverTimesOutTheDisconnectedPlayer() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (int i = 0; i < RACES; i++) {
+				PlayerConnection connection = new PlayerConnection(UUID.randomUUID());
+				WebSocketSession session = mock(WebSocketSession.class);
+				FakeTimeout check = new FakeTimeout();
+				FakeTimeout expiry = new FakeTimeout();
+				connection.connect(lobbyId, session, arm(check));
+
+				List<Boolean> results = race(executor,
+						() -> connection.heartbeatCheckDue(check, Duration.ZERO, delay -> new FakeTimeout()),
+						() -> connection.disconnect(session, arm(expiry)));
+
+				// The disconnect always applies, the check only times out a session that was still connected
+				assertThat(results.get(1)).isTrue();
+				assertThat(connection.getState()).isEqualTo(State.DISCONNECTED);
+				assertThat(expiry.isCancelled()).isFalse();
+				assertThat(connection.expire(expiry)).isTrue();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Run two transitions at the same time and return what each returned
+	 */
+	private static List<Boolean> race(ExecutorService executor, RaceStep first, RaceStep second) throws Exception {
+		CyclicBarrier start = new CyclicBarrier(2);
+		Future<Boolean> firstResult = executor.submit(() -> {
+			start.await();
+			return first.run();
+		});
+		Future<Boolean> secondResult = executor.submit(() -> {
+			start.await();
+			return second.run();
+		});
+		return List.of(firstResult.get(10, TimeUnit.SECONDS), secondResult.get(10, TimeUnit.SECONDS));
+	}
+
+	private interface RaceStep {
+		boolean run();
+	}
+
+	private static Function<PlayerConnection, Timeout> arm(Timeout timeout) {
+		return connection -> timeout;
+	}
+
+	/**
+	 * A timeout that is never run, only cancelled
+	 */
+	private static class FakeTimeout implements Timeout {
+		private volatile boolean cancelled;
+
+		@Override
+		public Timer timer() {
+			return null;
+		}
+
+		@Override
+		public TimerTask task() {
+			return null;
+		}
+
+		@Override
+		public boolean isExpired() {
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public boolean cancel() {
+			boolean wasPending = !cancelled;
+			cancelled = true;
+			return wasPending;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package com.guesshole.websocket.services;
+
+import com.guesshole.GuessholeApplication;
+import com.guesshole.support.PostgresTestDatabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two application nodes on one database, relaying lobby broadcasts to each other through
+ * Postgres LISTEN/NOTIFY
+ */
+class PostgresLobbyBroadcastBusTests {
+
+	private static final long RECEIVE_TIMEOUT_MILLIS = 10_000;
+	// Over the bus's inline limit, so the message goes through the lobby_broadcast table
+	private static final int LARGE_MESSAGE_CHARS = 10_000;
+
+	private static ConfigurableApplicationContext first;
+	private static ConfigurableApplicationContext second;
+	private static final BlockingQueue<Delivery> firstDeliveries = new LinkedBlockingQueue<>();
+	private static final BlockingQueue<Delivery> secondDeliveries = new LinkedBlockingQueue<>();
+
+	/**
+	 * A message handed to a node's local sessions
+	 */
+	private static class Delivery {
+		private final UUID lobbyId;
+		// Null when the message was for the whole lobby
+		private final Collection<UUID> playerIds;
+		private final Object message;
+
+		private Delivery(UUID lobbyId, Collection<UUID> playerIds, Object message) {
+			this.lobbyId = lobbyId;
+			this.playerIds = playerIds;
+			this.message = message;
+		}
+	}
+
+	@BeforeAll
+	static void startNodes() throws InterruptedException {
+		first = startNode(firstDeliveries);
+		second = startNode(secondDeliveries);
+		awaitListening(first, secondDeliveries);
+		awaitListening(second, firstDeliveries);
+	}
+
+	@AfterAll
+	static void stopNodes() {
+		if (second != null) {
+			second.close();
+		}
+		if (first != null) {
+			first.close();
+		}
+	}
+
+	@Test
+	void smallMessagesAreSentInline() throws InterruptedException {
+		UUID lobbyId = UUID.randomUUID();
+
+		bus(first).publishToOtherNodes(lobbyId, chat("Hello from the first node")).block();
+
+		RelayedMessage received = receive(secondDeliveries, lobbyId);
+		assertThat(received.getType()).isEqualTo("CHAT");
+		assertThat(received.getTree().path("text").textValue()).isEqualTo("Hello from the first node");
+		assertThat(storedBroadcasts(lobbyId)).isEqualTo(0);
+		// A node skips its own notifications
+		assertThat(poll(firstDeliveries, lobbyId, 500)).isNull();
+	}
+
+	@Test
+	void largeMessagesAreSentThroughTheTable() throws InterruptedException {
+		UUID lobbyId = UUID.randomUUID();
+		String text = "x".repeat(LARGE_MESSAGE_CHARS);
+
+		bus(second).publishToOtherNodes(lobbyId, chat(text)).block();
+
+		RelayedMessage received = receive(firstDeliveries, lobbyId);
+		assertThat(received.getType()).isEqualTo("CHAT");
+		assertThat(received.getTree().path("text").textValue()).isEqualTo(text);
+		assertThat(storedBroadcasts(lobbyId)).isEqualTo(1);
+		assertThat(poll(secondDeliveries, lobbyId, 500)).isNull();
+	}
+
+	@Test
+	void messagesForSomePlayersAreOnlyDeliveredToThem() throws InterruptedException {
+		UUID lobbyId = UUID.randomUUID();
+		List<UUID> playerIds = List.of(UUID.randomUUID(), UUID.randomUUID());
+
+		bus(first).publishToOtherNodes(lobbyId, playerIds, chat("Only for you two")).block();
+		bus(first).publishToOtherNodes(lobbyId, playerIds, chat("x".repeat(LARGE_MESSAGE_CHARS))).block();
+
+		Delivery inline = poll(secondDeliveries, lobbyId, RECEIVE_TIMEOUT_MILLIS);
+		assertThat(inline).isNotNull();
+		assertThat(inline.playerIds).containsExactlyElementsOf(playerIds);
+		assertThat(((RelayedMessage) inline.message).getTree().path("text").textValue()).isEqualTo("Only for you two");
+		Delivery byReference = poll(secondDeliveries, lobbyId, RECEIVE_TIMEOUT_MILLIS);
+		assertThat(byReference).isNotNull();
+		assertThat(byReference.playerIds).containsExactlyElementsOf(playerIds);
+		assertThat(poll(firstDeliveries, lobbyId, 500)).isNull();
+	}
+
+	@Test
+	void messagesArriveInTheOrderTheyWerePublished() throws InterruptedException {
+		UUID lobbyId = UUID.randomUUID();
+
+		for (int i = 0; i < 6; i++) {
+			// Alternate inline and by reference, which take different paths on the receiving node
+			String text = i + (i % 2 == 0 ? "" : "x".repeat(LARGE_MESSAGE_CHARS));
+			bus(first).publishToOtherNodes(lobbyId, chat(text)).block();
+		}
+
+		List<String> received = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			received.add(receive(secondDeliveries, lobbyId).getTree().path("text").textValue().substring(0, 1));
+		}
+		assertThat(received).containsExactly("0", "1", "2", "3", "4", "5");
+	}
+
+	private static ConfigurableApplicationContext startNode(BlockingQueue<Delivery> deliveries) {
+		List<String> args = new ArrayList<>();
+		PostgresTestDatabase.properties().forEach((name, value) -> args.add("--" + name + "=" + value));
+		args.add("--app.broadcast.bus=postgres");
+		args.add("--server.port=0");
+
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(GuessholeApplication.class)
+				.run(args.toArray(new String[0]));
+		// Capture what reaches this node instead of sending it to sessions
+		bus(context).setLocalDelivery((lobbyId, message) -> Mono.fromRunnable(
+				() -> deliveries.add(new Delivery(lobbyId, null, message))));
+		bus(context).setLocalPlayerDelivery((lobbyId, playerIds, message) -> Mono.fromRunnable(
+				() -> deliveries.add(new Delivery(lobbyId, playerIds, message))));
+		return context;
+	}
+
+	/**
+	 * The listener connects in the background once a node is up, so publish until one gets through
+	 */
+	private static void awaitListening(ConfigurableApplicationContext from, BlockingQueue<Delivery> to)
+			throws InterruptedException {
+		UUID lobbyId = UUID.randomUUID();
+		long deadline = System.currentTimeMillis() + RECEIVE_TIMEOUT_MILLIS * 3;
+		while (System.currentTimeMillis() < deadline) {
+			bus(from).publishToOtherNodes(lobbyId, chat("ping")).block();
+			if (poll(to, lobbyId, 200) != null) {
+				return;
+			}
+		}
+		throw new AssertionError("Node never started listening for lobby broadcasts");
+	}
+
+	private static RelayedMessage receive(BlockingQueue<Delivery> deliveries, UUID lobbyId)
+			throws InterruptedException {
+		Delivery delivery = poll(deliveries, lobbyId, RECEIVE_TIMEOUT_MILLIS);
+		assertThat(delivery).as("broadcast to lobby %s", lobbyId).isNotNull();
+		assertThat(delivery.playerIds).isNull();
+		assertThat(delivery.message).isInstanceOf(RelayedMessage.class);
+		return (RelayedMessage) delivery.message;
+	}
+
+	/**
+	 * The next delivery for a lobby, skipping those for other lobbies, or null if none arrives in time
+	 */
+	private static Delivery poll(BlockingQueue<Delivery> deliveries, UUID lobbyId, long timeoutMillis)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		long remaining;
+		while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+			Delivery delivery = deliveries.poll(remaining, TimeUnit.MILLISECONDS);
+			if (delivery != null && delivery.lobbyId.equals(lobbyId)) {
+				return delivery;
+			}
+		}
+		return null;
+	}
+
+	private static long storedBroadcasts(UUID lobbyId) {
+		return first.getBean(DatabaseClient.class)
+				.sql("SELECT COUNT(*) AS count FROM lobby_broadcast WHERE lobby_id = :lobbyId")
+				.bind("lobbyId", lobbyId)
+				.map(row -> row.get("count", Long.class))
+				.one()
+				.block();
+	}
+
+	private static LobbyBroadcastBus bus(ConfigurableApplicationContext context) {
+		return context.getBean(LobbyBroadcastBus.class);
+	}
+
+	private static Map<String, String> chat(String text) {
+		return Map.of("type", "CHAT", "text", text);
+	}
+}
@@ -0,0 +1,146 @@
+package com.guesshole.websocket.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.guesshole.entities.Player;
+import com.guesshole.websocket.codec.MessageCodec;
+import com.guesshole.websocket.messages.outgoing.GameStateDeltaMessage;
+import com.guesshole.websocket.messages.outgoing.GameStateMessage;
+import com.guesshole.websocket.messages.outgoing.PlayerJoinedMessage;
+import com.guesshole.websocket.messages.outgoing.PlayersUpdateMessage;
+import com.guesshole.websocket.services.SessionOutbound.SlowConsumerPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SessionOutboundTests {
+
+	private static final int MAX_QUEUE_SIZE = 2;
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+	private final MessageCodec codec = new MessageCodec("guesshole.json", objectMapper, false);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final Counter dropped = meterRegistry.counter("dropped");
+	private final UUID lobbyId = UUID.randomUUID();
+
+	@Test
+	void deltaChainSurvivesAFullQueue() throws Exception {
+		SessionOutbound outbound = outbound(SlowConsumerPolicy.DROP);
+
+		assertThat(outbound.offer(payload(gameState(1)))).isTrue();
+		assertThat(outbound.offer(payload(new PlayerJoinedMessage(player())))).isTrue();
+		// The queue is full: the next delta still goes out, the chat-like message doesn't
+		assertThat(outbound.offer(payload(new GameStateDeltaMessage(1, 2)))).isTrue();
+		assertThat(outbound.offer(payload(new PlayerJoinedMessage(player())))).isFalse();
+		assertThat(outbound.offer(payload(new GameStateDeltaMessage(2, 3)))).isTrue();
+
+		List<JsonNode> sent = drain(outbound);
+
+		assertThat(types(sent)).containsExactly("GAME_STATE", "PLAYER_JOINED", "GAME_STATE_DELTA", "GAME_STATE_DELTA");
+		assertDeltasFollowOn(sent);
+		assertThat(dropped.count()).isEqualTo(1);
+	}
+
+	@Test
+	void coalescingKeepsTheDeltaChain() throws Exception {
+		SessionOutbound outbound = outbound(SlowConsumerPolicy.COALESCE);
+
+		outbound.offer(payload(gameState(1)));
+		outbound.offer(payload(new PlayerJoinedMessage(player())));
+		outbound.offer(payload(new GameStateDeltaMessage(1, 2)));
+		outbound.offer(payload(new PlayersUpdateMessage(List.of(player()))));
+		outbound.offer(payload(new GameStateDeltaMessage(2, 3)));
+
+		List<JsonNode> sent = drain(outbound);
+
+		assertThat(types(sent)).doesNotContain("PLAYER_JOINED");
+		assertThat(types(sent)).filteredOn(type -> type.startsWith("GAME_STATE"))
+				.containsExactly("GAME_STATE", "GAME_STATE_DELTA", "GAME_STATE_DELTA");
+		assertDeltasFollowOn(sent);
+	}
+
+	@Test
+	void fullGameStateReplacesQueuedGameStatesAndDeltas() throws Exception {
+		SessionOutbound outbound = outbound(SlowConsumerPolicy.DROP);
+
+		outbound.offer(payload(gameState(1)));
+		outbound.offer(payload(new GameStateDeltaMessage(1, 2)));
+		outbound.offer(payload(gameState(3)));
+		outbound.offer(payload(new GameStateDeltaMessage(3, 4)));
+
+		List<JsonNode> sent = drain(outbound);
+
+		assertThat(types(sent)).containsExactly("GAME_STATE", "GAME_STATE_DELTA");
+		assertThat(sent.get(0).get("version").asLong()).isEqualTo(3);
+		assertDeltasFollowOn(sent);
+	}
+
+	/**
+	 * Every delta must be based on the game state version the client got just before it
+	 */
+	private static void assertDeltasFollowOn(List<JsonNode> sent) {
+		long version = -1;
+		for (JsonNode message : sent) {
+			String type = message.get("type").asText();
+			if (type.equals("GAME_STATE_DELTA")) {
+				assertThat(message.get("baseVersion").asLong()).isEqualTo(version);
+			}
+			if (type.startsWith("GAME_STATE")) {
+				version = message.get("version").asLong();
+			}
+		}
+	}
+
+	private SessionOutbound outbound(SlowConsumerPolicy policy) {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn(UUID.randomUUID().toString());
+		when(session.bufferFactory()).thenReturn(DefaultDataBufferFactory.sharedInstance);
+		return new SessionOutbound(session, MAX_QUEUE_SIZE, policy, meterRegistry.counter("coalesced"), dropped,
+				meterRegistry.counter("disconnects"));
+	}
+
+	/**
+	 * Subscribe as the session's send would, once everything has been queued
+	 */
+	private List<JsonNode> drain(SessionOutbound outbound) throws Exception {
+		List<WebSocketMessage> messages = new ArrayList<>();
+		outbound.messages().subscribe(messages::add);
+		outbound.close();
+
+		List<JsonNode> sent = new ArrayList<>();
+		for (WebSocketMessage message : messages) {
+			sent.add(objectMapper.readTree(message.getPayloadAsText()));
+		}
+		return sent;
+	}
+
+	private static List<String> types(List<JsonNode> sent) {
+		return sent.stream().map(message -> message.get("type").asText()).toList();
+	}
+
+	private SharedMessagePayload payload(Object message) throws Exception {
+		return SharedMessagePayload.reusable(codec, message);
+	}
+
+	private static GameStateMessage gameState(long version) {
+		GameStateMessage message = new GameStateMessage();
+		message.setState("ROUND_IN_PROGRESS");
+		message.setVersion(version);
+		return message;
+	}
+
+	private Player player() {
+		return new Player("Player", lobbyId, false);
+	}
+}
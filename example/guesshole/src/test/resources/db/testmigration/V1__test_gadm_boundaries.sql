@@ -0,0 +1,14 @@
+-- Test databases only: production loads gadm_boundaries from the GADM dataset outside Flyway
+CREATE EXTENSION IF NOT EXISTS postgis;
+
+CREATE TABLE IF NOT EXISTS gadm_boundaries (
+    gid_0 varchar, name_0 varchar,
+    gid_1 varchar, name_1 varchar, engtype_1 varchar,
+    gid_2 varchar, name_2 varchar, engtype_2 varchar,
+    gid_3 varchar, name_3 varchar, engtype_3 varchar,
+    gid_4 varchar, name_4 varchar, engtype_4 varchar,
+    gid_5 varchar, name_5 varchar, engtype_5 varchar,
+    geom geometry(MultiPolygon, 4326)
+);
+
+CREATE INDEX IF NOT EXISTS idx_gadm_boundaries_geom ON gadm_boundaries USING gist (geom);